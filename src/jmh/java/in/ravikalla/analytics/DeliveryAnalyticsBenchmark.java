@@ -0,0 +1,69 @@
+package in.ravikalla.analytics;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full aggregation of delivered orders by {@link DeliveryColumns} on fork-join pools of growing
+ * parallelism, to show how the scan scales with cores. Parallelism above the core count of the
+ * machine only adds overhead.
+ *
+ * @author - Ravi Kalla
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DeliveryAnalyticsBenchmark {
+
+	private static final long MONDAY = 1_791_763_200_000L;
+	private static final long HOUR = 3_600_000L;
+
+	@Param({"20000000"})
+	private int orders;
+
+	@Param({"1", "2", "4", "8"})
+	private int parallelism;
+
+	private DeliveryColumns columns;
+	private ForkJoinPool pool;
+
+	@Setup
+	public void setUp() {
+		columns = new DeliveryColumns(orders);
+		SplittableRandom random = new SplittableRandom(42);
+		for (int i = 0; i < orders; i++) {
+			long sendMillis = MONDAY + random.nextInt(7 * 24) * HOUR;
+			long estimatedDeliveryMillis = sendMillis + 48 * HOUR;
+			columns.add(random.nextInt(3) == 0, sendMillis, estimatedDeliveryMillis,
+					estimatedDeliveryMillis + (random.nextInt(96) - 48) * HOUR, random.nextInt(60));
+		}
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public DeliveryAggregate aggregateAll() {
+		return columns.aggregate(0, columns.size(), pool);
+	}
+}
@@ -0,0 +1,88 @@
+package in.ravikalla.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares a JMH JSON result against a stored baseline and exits with status 1 when any benchmark
+ * regressed by more than the allowed percentage.
+ * <p>
+ * Usage: {@code BaselineComparator <baseline.json> <result.json> [allowed regression %, default 10]}
+ *
+ * @author - Ravi Kalla
+ */
+public final class BaselineComparator {
+
+	private static final double DEFAULT_ALLOWED_REGRESSION_PERCENT = 10.0;
+
+	private BaselineComparator() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: BaselineComparator <baseline.json> <result.json> [allowed regression %]");
+			System.exit(2);
+		}
+		double allowed = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_ALLOWED_REGRESSION_PERCENT;
+
+		Map<String, JsonNode> baseline = read(new File(args[0]));
+		Map<String, JsonNode> current = read(new File(args[1]));
+
+		int regressions = 0;
+		for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+			JsonNode before = baseline.get(entry.getKey());
+			if (before == null) {
+				System.out.printf("NEW        %s%n", entry.getKey());
+				continue;
+			}
+			double change = changePercent(entry.getValue(), before);
+			boolean regressed = change < -allowed;
+			if (regressed) {
+				regressions++;
+			}
+			System.out.printf("%-10s %s %+.1f%% (%.3f -> %.3f %s)%n", regressed ? "REGRESSED" : "OK",
+					entry.getKey(), change, score(before), score(entry.getValue()),
+					entry.getValue().path("primaryMetric").path("scoreUnit").asText());
+		}
+		if (regressions > 0) {
+			System.out.println(regressions + " benchmark(s) regressed by more than " + allowed + "%");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return Improvement in percent, negative when the benchmark got worse whatever its mode
+	 */
+	private static double changePercent(JsonNode current, JsonNode baseline) {
+		double before = score(baseline);
+		double after = score(current);
+		if (before == 0) {
+			return 0;
+		}
+		double change = (after - before) / before * 100.0;
+		boolean higherIsBetter = "thrpt".equals(current.path("mode").asText());
+		return higherIsBetter ? change : -change;
+	}
+
+	private static double score(JsonNode result) {
+		return result.path("primaryMetric").path("score").asDouble();
+	}
+
+	private static Map<String, JsonNode> read(File file) throws IOException {
+		Map<String, JsonNode> results = new LinkedHashMap<>();
+		for (JsonNode result : new ObjectMapper().readTree(file)) {
+			StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+			key.append(" threads=").append(result.path("threads").asInt());
+			JsonNode params = result.path("params");
+			params.fieldNames().forEachRemaining(name -> key.append(' ').append(name).append('=')
+					.append(params.path(name).asText()));
+			results.put(key.toString(), result);
+		}
+		return results;
+	}
+}
@@ -0,0 +1,25 @@
+package in.ravikalla.benchmark;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import in.ravikalla.model.Order;
+import in.ravikalla.service.NotificationService;
+
+/**
+ * Notification stand-in for benchmarks, only counts the notifications.
+ *
+ * @author - Ravi Kalla
+ */
+public class CountingNotificationService implements NotificationService {
+
+	private final LongAdder notified = new LongAdder();
+
+	@Override
+	public void notifyDelivered(Order order) {
+		notified.increment();
+	}
+
+	public long getNotified() {
+		return notified.sum();
+	}
+}
@@ -0,0 +1,86 @@
+package in.ravikalla.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.service.impl.DiscountCatalogServiceImpl;
+
+/**
+ * Builds a synthetic set of orders, each given two of a few hundred promotions, and reports the
+ * heap they hold. With {@code fresh} every order gets its own discounts, as when each request
+ * deserializes them, with {@code catalog} the discounts go through the catalog and are shared.
+ * Run it once per mode, each in its own JVM, with the same heap settings.
+ * <p>
+ * Usage: {@code DiscountFootprint <fresh|catalog> [orders, default 10000000] [promotions, default 300]}
+ *
+ * @author - Ravi Kalla
+ */
+public final class DiscountFootprint {
+
+	private DiscountFootprint() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: DiscountFootprint <fresh|catalog> [orders] [promotions]");
+			System.exit(2);
+		}
+		boolean shared = "catalog".equals(args[0]);
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+		int promotions = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+		DiscountCatalogServiceImpl catalog = new DiscountCatalogServiceImpl(catalogFile(promotions).toString(), 0);
+
+		long heapBefore = usedHeapAfterGc();
+		long start = System.nanoTime();
+		Order[] orders = new Order[count];
+		for (int i = 0; i < count; i++) {
+			Order order = new Order();
+			order.setDescription("Order #" + i);
+			order.setBasePriceCents(1_000 + i % 100_000);
+			for (int promotion : new int[] { i % promotions, (i / promotions + 1) % promotions }) {
+				//a new string per discount, as read from a request
+				Discount discount = new Discount(new String(description(promotion)), percent(promotion));
+				order.addDiscount(shared ? catalog.intern(discount) : discount);
+			}
+			orders[i] = order;
+		}
+		long elapsed = System.nanoTime() - start;
+
+		long heap = usedHeapAfterGc() - heapBefore;
+		System.out.printf("%s: %d orders with %d discounts in %d ms%n", args[0], count, 2L * count,
+				TimeUnit.NANOSECONDS.toMillis(elapsed));
+		System.out.printf("Heap held: %d MB, %d bytes per order (%d)%n", heap >> 20, heap / count,
+				orders[count - 1].getDiscounts().size());
+	}
+
+	private static Path catalogFile(int promotions) throws IOException {
+		StringBuilder json = new StringBuilder("{");
+		for (int i = 0; i < promotions; i++) {
+			json.append(i == 0 ? "" : ",").append("\"P").append(i).append("\":{\"description\":\"")
+					.append(description(i)).append("\",\"percent\":").append(percent(i)).append('}');
+		}
+		Path file = Files.createTempFile("discount-catalog", ".json");
+		file.toFile().deleteOnExit();
+		return Files.write(file, json.append('}').toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String description(int promotion) {
+		return "Promotion of the season #" + promotion;
+	}
+
+	private static double percent(int promotion) {
+		return 1 + promotion % 20;
+	}
+
+	private static long usedHeapAfterGc() {
+		System.gc();
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,91 @@
+package in.ravikalla.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import in.ravikalla.external.service.OrderStorageService;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+
+/**
+ * Storage stand-in for benchmarks. Delivered orders are forgotten, so that lifecycle benchmarks
+ * keep a steady heap no matter how many iterations run.
+ *
+ * @author - Ravi Kalla
+ */
+public class InMemoryOrderStorageService implements OrderStorageService {
+
+	private final ConcurrentHashMap<String, Order> orders = new ConcurrentHashMap<>();
+
+	@Override
+	public void store(Order order) {
+		if (order.isDelivered()) {
+			orders.remove(order.getDescription());
+		} else {
+			orders.put(order.getDescription(), order);
+		}
+	}
+
+	@Override
+	public void storeAll(Collection<Order> orders) {
+		for (Order order : orders) {
+			store(order);
+		}
+	}
+
+	@Override
+	public boolean storeIfAbsent(Order order) {
+		return orders.putIfAbsent(order.getDescription(), order) == null;
+	}
+
+	@Override
+	public Collection<Order> storeAllIfAbsent(Collection<Order> orders) {
+		Collection<Order> rejected = new ArrayList<>();
+		for (Order order : orders) {
+			if (!storeIfAbsent(order)) {
+				rejected.add(order);
+			}
+		}
+		return rejected;
+	}
+
+	@Override
+	public boolean exists(String description) {
+		return orders.containsKey(description);
+	}
+
+	@Override
+	public Order find(String description) {
+		return orders.get(description);
+	}
+
+	/**
+	 * {@inheritDoc} Scans the orders, the benchmarks using this store look orders up by description.
+	 */
+	@Override
+	public Order findById(long id) {
+		for (Order order : orders.values()) {
+			if (order.getId() == id) {
+				return order;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public Collection<Order> findByState(OrderState state) {
+		Collection<Order> result = new ArrayList<>();
+		for (Order order : orders.values()) {
+			if (OrderState.of(order) == state) {
+				result.add(order);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean remove(String description) {
+		return orders.remove(description) != null;
+	}
+}
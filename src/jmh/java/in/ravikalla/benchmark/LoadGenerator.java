@@ -0,0 +1,160 @@
+package in.ravikalla.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import in.ravikalla.SampleApplication;
+import in.ravikalla.metrics.LatencyHistogram;
+
+/**
+ * Closed-loop HTTP load against the application, started in this JVM with a journal store and a
+ * {@link SlowMailServer} that take the given time to answer, reporting throughput and latency percentiles of whole
+ * order lifecycles (create, discount, send, deliver). Admission control is off, so that every
+ * lifecycle runs to the end.
+ * <p>
+ * Scenario {@code blocking} runs each lifecycle through the sample controller, {@code GET /}, with
+ * {@code fsync: GROUP}: every change holds its Tomcat thread until the group commit. Scenario
+ * {@code async} runs it through the order REST API, one request per step, with {@code fsync: ASYNC}:
+ * every change answers once the group commit made it durable, without holding a thread meanwhile.
+ * The storage latency is the group commit interval. Both scenarios send notifications through the
+ * same pipeline.
+ * <p>
+ * Usage: {@code LoadGenerator <blocking|async> [concurrency, default 128] [seconds, default 30]
+ * [storage latency ms, default 20] [email latency ms, default 20] [Tomcat threads, default 16]}
+ *
+ * @author - Ravi Kalla
+ */
+public final class LoadGenerator {
+
+	private LoadGenerator() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: LoadGenerator <blocking|async> [concurrency] [seconds] [storage latency ms]"
+					+ " [email latency ms] [Tomcat threads]");
+			System.exit(2);
+		}
+		boolean async = "async".equals(args[0]);
+		int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 128;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+		long storageLatencyMillis = args.length > 3 ? Long.parseLong(args[3]) : 20;
+		long emailLatencyMillis = args.length > 4 ? Long.parseLong(args[4]) : 20;
+		int tomcatThreads = args.length > 5 ? Integer.parseInt(args[5]) : 16;
+		//one keep-alive connection per load thread, the default pool only keeps 5
+		System.setProperty("http.maxConnections", String.valueOf(concurrency));
+
+		//as arguments, which take precedence over application.properties
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SampleApplication.class,
+				SlowMailServer.class).run(
+				"--server.port=0",
+				"--server.tomcat.max-threads=" + tomcatThreads,
+				"--order.storage.type=journal",
+				"--order.storage.journal.dir=" + Files.createTempDirectory("load-journal"),
+				"--order.storage.journal.fsync=" + (async ? "ASYNC" : "GROUP"),
+				"--order.storage.journal.group-commit-ms=" + storageLatencyMillis,
+				"--load.email.latency-ms=" + emailLatencyMillis,
+				"--admission.enabled=false",
+				"--logging.level.in.ravikalla=WARN")) {
+			String baseUrl = "http://localhost:"
+					+ ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+
+			//warm up for a fifth of the run, then measure
+			run(baseUrl, async, concurrency, Math.max(1, seconds / 5), new LatencyHistogram(), new LongAdder());
+			LatencyHistogram latency = new LatencyHistogram();
+			LongAdder errors = new LongAdder();
+			long elapsed = run(baseUrl, async, concurrency, seconds, latency, errors);
+
+			double lifecyclesPerSecond = latency.getCount() * 1e9 / elapsed;
+			System.out.printf("%s concurrency %d, storage %d ms, email %d ms, %d Tomcat threads: %.0f lifecycles/s,"
+					+ " p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d errors%n", args[0], concurrency,
+					storageLatencyMillis, emailLatencyMillis, tomcatThreads, lifecyclesPerSecond,
+					millis(latency.getPercentile(50)), millis(latency.getPercentile(99)), millis(latency.getMax()),
+					errors.sum());
+		}
+	}
+
+	private static long run(String baseUrl, boolean async, int concurrency, int seconds, LatencyHistogram latency,
+			LongAdder errors) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		String prefix = UUID.randomUUID().toString().substring(0, 8);
+		AtomicLong sequence = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(concurrency);
+		long start = System.nanoTime();
+		for (int i = 0; i < concurrency; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					while (System.nanoTime() < deadline) {
+						long begin = System.nanoTime();
+						try {
+							if (async) {
+								lifecycle(baseUrl, prefix + "-" + sequence.incrementAndGet());
+							} else {
+								request("GET", baseUrl + "/", null);
+							}
+							latency.record(System.nanoTime() - begin);
+						} catch (IOException e) {
+							errors.increment();
+						}
+					}
+				} finally {
+					done.countDown();
+				}
+			}, "load-" + i);
+			thread.start();
+		}
+		done.await();
+		return System.nanoTime() - start;
+	}
+
+	private static void lifecycle(String baseUrl, String description) throws IOException {
+		String order = baseUrl + "/orders/" + URLEncoder.encode(description, "UTF-8");
+		request("POST", baseUrl + "/orders",
+				"{\"description\":\"" + description + "\",\"basePrice\":90.25,\"premium\":true}");
+		request("POST", order + "/discounts", "{\"description\":\"Promo of new year\",\"percent\":5.0}");
+		request("POST", order + "/send", null);
+		request("POST", order + "/deliver", null);
+	}
+
+	private static void request(String method, String url, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestMethod(method);
+		if (body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		int status = connection.getResponseCode();
+		//drain the body so that the connection goes back to the keep-alive pool
+		byte[] discarded = new byte[8192];
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			while (in != null && in.read(discarded) >= 0) {
+				//discard
+			}
+		}
+		if (status >= 400) {
+			throw new IOException(method + " " + url + " returned " + status);
+		}
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+}
@@ -0,0 +1,86 @@
+package in.ravikalla.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a synthetic order file of the given size for the order file importer, CSV or NDJSON by
+ * the extension of the file. About one row in a hundred repeats an earlier description and one in
+ * ten thousand is malformed, so that the dead-letter file gets some of both.
+ * <p>
+ * Usage: {@code OrderFileGenerator <file> <size, e.g. 4g, 500m or bytes> [seed, default 42]}
+ *
+ * @author - Ravi Kalla
+ */
+public final class OrderFileGenerator {
+
+	private static final int DUPLICATE_PER_MILLION = 10_000;
+	private static final int MALFORMED_PER_MILLION = 100;
+	private static final String[] PRODUCTS = { "Soaps", "Shampoo, large", "Toothpaste \"mint\"", "Coffee",
+			"Crème brûlée", "Batteries" };
+
+	private OrderFileGenerator() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: OrderFileGenerator <file> <size> [seed]");
+			System.exit(2);
+		}
+		String file = args[0];
+		long size = parseSize(args[1]);
+		boolean ndjson = file.endsWith(".ndjson") || file.endsWith(".jsonl") || file.endsWith(".json");
+		SplittableRandom random = new SplittableRandom(args.length > 2 ? Long.parseLong(args[2]) : 42);
+
+		long start = System.nanoTime();
+		long written = 0;
+		long rows = 0;
+		StringBuilder row = new StringBuilder(128);
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 20)) {
+			if (!ndjson) {
+				written += write(out, row.append("description,basePrice,premium\n"));
+			}
+			while (written < size) {
+				long id = random.nextInt(1_000_000) < DUPLICATE_PER_MILLION && rows > 0 ? random.nextLong(rows) : rows;
+				String product = PRODUCTS[(int) (id % PRODUCTS.length)];
+				long cents = 100 + random.nextLong(1_000_000);
+				boolean premium = random.nextBoolean();
+				row.setLength(0);
+				if (random.nextInt(1_000_000) < MALFORMED_PER_MILLION) {
+					row.append(ndjson ? "{\"description\": \"Broken\", \"basePrice\": }" : "Broken,not a price");
+				} else if (ndjson) {
+					row.append("{\"description\": \"").append(product.replace("\"", "\\\"")).append(" #").append(id)
+							.append("\", \"basePrice\": ").append(cents / 100).append('.').append(cents % 100 / 10)
+							.append(cents % 10).append(", \"premium\": ").append(premium).append('}');
+				} else {
+					row.append('"').append(product.replace("\"", "\"\"")).append(" #").append(id).append("\",")
+							.append(cents / 100).append('.').append(cents % 100 / 10).append(cents % 10).append(',')
+							.append(premium);
+				}
+				written += write(out, row.append('\n'));
+				rows++;
+			}
+		}
+		long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		System.out.printf("Wrote %d rows, %d MB to %s in %d ms (%d MB/s)%n", rows, written >> 20, file, millis,
+				(written >> 20) * 1000 / millis);
+	}
+
+	private static int write(OutputStream out, CharSequence row) throws IOException {
+		byte[] bytes = row.toString().getBytes(StandardCharsets.UTF_8);
+		out.write(bytes);
+		return bytes.length;
+	}
+
+	private static long parseSize(String size) {
+		String lower = size.toLowerCase();
+		char unit = lower.charAt(lower.length() - 1);
+		int shift = unit == 'g' ? 30 : unit == 'm' ? 20 : unit == 'k' ? 10 : 0;
+		return Long.parseLong(shift == 0 ? lower : lower.substring(0, lower.length() - 1)) << shift;
+	}
+}
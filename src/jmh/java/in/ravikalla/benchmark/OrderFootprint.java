@@ -0,0 +1,93 @@
+package in.ravikalla.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+
+/**
+ * Prints the heap footprint of an {@link Order} measured with JOL, next to the layout Order had
+ * before its flags were packed and its dates kept as epoch millis.
+ * <p>
+ * Usage: {@code OrderFootprint}
+ *
+ * @author - Ravi Kalla
+ */
+public final class OrderFootprint {
+
+	private static final long SEND_MILLIS = 1_792_000_000_000L;
+	private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+	private OrderFootprint() {
+	}
+
+	public static void main(String[] args) {
+		System.out.println(ClassLayout.parseClass(Order.class).toPrintable());
+		System.out.println(ClassLayout.parseClass(LegacyOrder.class).toPrintable());
+
+		//orders without description and region, totals include the Date objects and the empty discount list
+		System.out.printf("%-10s %12s %12s %8s%n", "State", "Legacy (B)", "Packed (B)", "Saved");
+		for (int state = 0; state < 3; state++) {
+			long legacy = GraphLayout.parseInstance(legacyOrder(state)).totalSize();
+			long packed = GraphLayout.parseInstance(order(state)).totalSize();
+			System.out.printf("%-10s %12d %12d %7.0f%%%n", new String[] { "CREATED", "SENT", "DELIVERED" }[state],
+					legacy, packed, 100.0 * (legacy - packed) / legacy);
+		}
+	}
+
+	private static Order order(int state) {
+		Order order = new Order();
+		order.setPremium(true);
+		if (state >= 1) {
+			order.setSendMillis(SEND_MILLIS);
+			order.setEstimatedDeliveryMillis(SEND_MILLIS + 2 * DAY_MILLIS);
+			order.setSent(true);
+		}
+		if (state >= 2) {
+			order.setRealDeliveryMillis(SEND_MILLIS + DAY_MILLIS);
+			order.setDelivered(true);
+		}
+		return order;
+	}
+
+	private static LegacyOrder legacyOrder(int state) {
+		LegacyOrder order = new LegacyOrder();
+		order.premium = true;
+		if (state >= 1) {
+			order.sendDate = new Date(SEND_MILLIS);
+			order.estimatedDelivery = new Date(SEND_MILLIS + 2 * DAY_MILLIS);
+			order.sent = true;
+		}
+		if (state >= 2) {
+			order.realDelivery = new Date(SEND_MILLIS + DAY_MILLIS);
+			order.delivered = true;
+		}
+		return order;
+	}
+
+	/**
+	 * Fields of Order before the lifecycle state was packed.
+	 */
+	@SuppressWarnings("unused")
+	private static final class LegacyOrder {
+		private String description;
+		private long basePriceCents;
+		private List<Discount> discounts = new ArrayList<>();
+		private long finalPriceCents;
+		private long additiveDiscountBasisPoints;
+		private long compoundedRemaining;
+		private long exclusiveDiscountBasisPoints;
+		private boolean sent;
+		private Date sendDate;
+		private Date estimatedDelivery;
+		private boolean delivered;
+		private Date realDelivery;
+		private boolean premium;
+		private String region;
+	}
+}
@@ -0,0 +1,80 @@
+package in.ravikalla.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import in.ravikalla.external.service.EmailService;
+import in.ravikalla.factory.EmailServiceFactory;
+import in.ravikalla.model.Order;
+
+/**
+ * Mail server stand-in for {@link LoadGenerator}, registered next to the application: its
+ * {@link EmailServiceFactory} takes precedence and hands out a sender answering after
+ * {@code load.email.latency-ms}.
+ *
+ * @author - Ravi Kalla
+ */
+@Configuration
+public class SlowMailServer {
+
+	@Bean
+	public SlowEmailService slowEmailService(@Value("${load.email.latency-ms}") long latencyMillis) {
+		return new SlowEmailService(latencyMillis);
+	}
+
+	@Bean
+	@Primary
+	public EmailServiceFactory slowEmailServiceFactory(SlowEmailService slowEmailService) {
+		return new EmailServiceFactory(slowEmailService);
+	}
+
+	/**
+	 * Sends on the calling thread sleep for the latency; asynchronous sends are answered by a
+	 * scheduler and hold no thread meanwhile.
+	 */
+	public static class SlowEmailService extends EmailService implements AutoCloseable {
+
+		private final ScheduledExecutorService mailServer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "slow-mail-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		private final long latencyMillis;
+
+		public SlowEmailService(long latencyMillis) {
+			this.latencyMillis = latencyMillis;
+		}
+
+		@Override
+		public void sendDeliveryNotification(Order order) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			super.sendDeliveryNotification(order);
+		}
+
+		@Override
+		public CompletableFuture<Void> sendDeliveryNotificationAsync(Order order) {
+			CompletableFuture<Void> sent = new CompletableFuture<>();
+			mailServer.schedule(() -> {
+				super.sendDeliveryNotification(order);
+				sent.complete(null);
+			}, latencyMillis, TimeUnit.MILLISECONDS);
+			return sent;
+		}
+
+		@Override
+		public void close() {
+			mailServer.shutdownNow();
+		}
+	}
+}
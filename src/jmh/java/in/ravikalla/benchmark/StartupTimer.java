@@ -0,0 +1,94 @@
+package in.ravikalla.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cold start of the packaged application: starts it in a new JVM, polls a URL until
+ * the first response and stops it again, the given number of times. Reports the time from process
+ * launch to the first response. JVM options go before the jar or main class, application arguments
+ * after it.
+ * <p>
+ * Usage: {@code StartupTimer <runs> <url> [JVM options] <jar or main class> [application arguments]}, e.g.
+ * {@code StartupTimer 5 http://localhost:18080/ target/springboot-mockito-1.0-SNAPSHOT.jar --server.port=18080}
+ *
+ * @author - Ravi Kalla
+ */
+public final class StartupTimer {
+
+	private static final long TIMEOUT_SECONDS = 120;
+	private static final long POLL_MILLIS = 20;
+
+	private StartupTimer() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println("Usage: StartupTimer <runs> <url> [JVM options] <jar or main class> [application arguments]");
+			System.exit(2);
+		}
+		int runs = Integer.parseInt(args[0]);
+		URL url = new URL(args[1]);
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].endsWith(".jar")) {
+				command.add("-jar");
+			}
+			command.add(args[i]);
+		}
+
+		long[] millis = new long[runs];
+		for (int run = 0; run < runs; run++) {
+			millis[run] = timeToFirstResponse(command, url);
+			System.out.printf("Run %d: first response after %d ms%n", run + 1, millis[run]);
+		}
+		Arrays.sort(millis);
+		System.out.printf("Time to first response over %d runs: min %d ms, median %d ms, max %d ms%n", runs,
+				millis[0], millis[runs / 2], millis[runs - 1]);
+	}
+
+	private static long timeToFirstResponse(List<String> command, URL url) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(command).redirectErrorStream(true)
+				.redirectOutput(ProcessBuilder.Redirect.appendTo(new File("target/startup-timer.log"))).start();
+		try {
+			long deadline = start + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+			while (System.nanoTime() < deadline) {
+				if (!process.isAlive()) {
+					throw new IllegalStateException("Application exited with " + process.exitValue()
+							+ ", see target/startup-timer.log");
+				}
+				if (respond(url)) {
+					return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				}
+				Thread.sleep(POLL_MILLIS);
+			}
+			throw new IllegalStateException("No response from " + url + " within " + TIMEOUT_SECONDS + " s");
+		} finally {
+			process.destroy();
+			if (!process.waitFor(30, TimeUnit.SECONDS)) {
+				process.destroyForcibly().waitFor();
+			}
+		}
+	}
+
+	private static boolean respond(URL url) {
+		try {
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			connection.setConnectTimeout(1000);
+			connection.setReadTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+			connection.getResponseCode();
+			connection.disconnect();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
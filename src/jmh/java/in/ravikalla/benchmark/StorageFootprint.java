@@ -0,0 +1,139 @@
+package in.ravikalla.benchmark;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import in.ravikalla.external.service.OrderStorageService;
+import in.ravikalla.external.service.impl.OffHeapOrderStorageServiceImpl;
+import in.ravikalla.external.service.impl.OrderStorageServiceImpl;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+
+/**
+ * Fills an order store and reports the heap and direct memory it holds, the pause of a full
+ * collection, and the young collections caused by a lookup workload that allocates garbage.
+ * Run it once per store, each in its own JVM, with the same heap settings.
+ * <p>
+ * Usage: {@code StorageFootprint <memory|offheap> [orders, default 1000000] [lookups, default 20000000]}
+ *
+ * @author - Ravi Kalla
+ */
+public final class StorageFootprint {
+
+	private static final String[] DISCOUNTS = { "Black Friday", "Loyalty", "Coupon", "Bundle" };
+	private static final int FULL_COLLECTIONS = 5;
+
+	private StorageFootprint() {
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: StorageFootprint <memory|offheap> [orders] [lookups]");
+			System.exit(2);
+		}
+		int orders = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+		long lookups = args.length > 2 ? Long.parseLong(args[2]) : 20_000_000L;
+		OrderStorageService storage = "offheap".equals(args[0])
+				? new OffHeapOrderStorageServiceImpl(orders)
+				: new OrderStorageServiceImpl();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < orders; i++) {
+			storage.storeIfAbsent(order(i));
+		}
+		System.out.printf("%s: stored %d orders in %d ms%n", args[0], orders,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+		System.gc();
+		System.gc();
+		long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		System.out.printf("Heap used after full GC: %d MB, direct memory: %d MB%n", heap >> 20, directMemory() >> 20);
+
+		long maxPause = 0;
+		long totalPause = 0;
+		for (int i = 0; i < FULL_COLLECTIONS; i++) {
+			long pauseStart = System.nanoTime();
+			System.gc();
+			long pause = System.nanoTime() - pauseStart;
+			maxPause = Math.max(maxPause, pause);
+			totalPause += pause;
+		}
+		System.out.printf("Full GC pause: mean %d ms, max %d ms%n",
+				TimeUnit.NANOSECONDS.toMillis(totalPause / FULL_COLLECTIONS), TimeUnit.NANOSECONDS.toMillis(maxPause));
+
+		long[] countsBefore = collectionCounts();
+		long[] timesBefore = collectionTimes();
+		start = System.nanoTime();
+		long found = 0;
+		for (long i = 0; i < lookups; i++) {
+			//finds from the off-heap store allocate orders, both stores also get short-lived garbage
+			Order order = storage.find("Order #" + (i * 7919 % orders));
+			found += order.getDiscounts().size();
+			if ((i & 1) == 0) {
+				found += new Order().getDiscounts().size();
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		long[] countsAfter = collectionCounts();
+		long[] timesAfter = collectionTimes();
+		List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		System.out.printf("%d lookups in %d ms (%d)%n", lookups, TimeUnit.NANOSECONDS.toMillis(elapsed), found);
+		for (int i = 0; i < collectors.size(); i++) {
+			long count = countsAfter[i] - countsBefore[i];
+			long time = timesAfter[i] - timesBefore[i];
+			System.out.printf("  %-20s %6d collections, %6d ms, mean pause %.2f ms%n", collectors.get(i).getName(),
+					count, time, count == 0 ? 0.0 : (double) time / count);
+		}
+	}
+
+	private static Order order(int i) {
+		Order order = new Order();
+		order.setDescription("Order #" + i);
+		order.setRegion(i % 4 == 0 ? "EU" : null);
+		order.setBasePriceCents(1_000 + i % 100_000);
+		order.setPremium(i % 3 == 0);
+		order.addDiscount(new Discount(DISCOUNTS[i % DISCOUNTS.length], 5.0));
+		order.addDiscount(new Discount(DISCOUNTS[(i + 1) % DISCOUNTS.length], 2.5, true, false));
+		order.setFinalPriceCents(order.getBasePriceCents() * 9 / 10);
+		if (i % 2 == 0) {
+			order.setSendMillis(1_792_000_000_000L + i);
+			order.setEstimatedDeliveryMillis(1_792_000_000_000L + i + 172_800_000L);
+			order.setSent(true);
+		}
+		if (i % 4 == 0) {
+			order.setRealDeliveryMillis(1_792_000_000_000L + i + 86_400_000L);
+			order.setDelivered(true);
+		}
+		return order;
+	}
+
+	private static long directMemory() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if ("direct".equals(pool.getName())) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	private static long[] collectionCounts() {
+		List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		long[] counts = new long[collectors.size()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = collectors.get(i).getCollectionCount();
+		}
+		return counts;
+	}
+
+	private static long[] collectionTimes() {
+		List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		long[] times = new long[collectors.size()];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = collectors.get(i).getCollectionTime();
+		}
+		return times;
+	}
+}
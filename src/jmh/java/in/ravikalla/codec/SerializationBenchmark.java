@@ -0,0 +1,115 @@
+package in.ravikalla.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+
+/**
+ * Round trip of an order through {@link OrderCodec}, Java serialization and Jackson.
+ * The encoded sizes are checked by OrderCodecTest.
+ *
+ * @author - Ravi Kalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+	private static final String[] DISCOUNTS = {"Black Friday", "Prime", "Coupon"};
+
+	@Param({"0", "3", "20"})
+	private int discounts;
+
+	private Order order;
+
+	private final OrderCodec codec = new OrderCodec();
+	private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.addMixIn(Discount.class, DiscountMixin.class)
+			.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+	@Setup
+	public void setUp() {
+		order = new Order();
+		order.setDescription("Soaps #1234567");
+		order.setRegion("EU");
+		order.setBasePrice(90.25);
+		order.setPremium(true);
+		order.setSent(true);
+		order.setSendDate(new Date(1_792_000_000_000L));
+		order.setEstimatedDelivery(new Date(1_792_000_000_000L + TimeUnit.DAYS.toMillis(3)));
+		for (int i = 0; i < discounts; i++) {
+			order.addDiscount(new Discount(DISCOUNTS[i % DISCOUNTS.length], 5 + i % 3));
+		}
+		order.setFinalPrice(80.5);
+	}
+
+	@Benchmark
+	public Order orderCodec() {
+		encode();
+		return codec.decode(buffer);
+	}
+
+	@Benchmark
+	public Order javaSerialization() throws IOException, ClassNotFoundException {
+		ByteArrayOutputStream bytes = javaSerialize();
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			return (Order) in.readObject();
+		}
+	}
+
+	@Benchmark
+	public Order jackson() throws IOException {
+		return objectMapper.readValue(objectMapper.writeValueAsBytes(order), Order.class);
+	}
+
+	private void encode() {
+		buffer.clear();
+		codec.reset();
+		codec.encode(order, buffer);
+		buffer.flip();
+	}
+
+	private ByteArrayOutputStream javaSerialize() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(order);
+		}
+		return bytes;
+	}
+
+	abstract static class DiscountMixin {
+		@JsonCreator
+		DiscountMixin(@JsonProperty("description") String description, @JsonProperty("percent") double percent,
+				@JsonProperty("compounding") boolean compounding, @JsonProperty("exclusive") boolean exclusive) {
+		}
+	}
+}
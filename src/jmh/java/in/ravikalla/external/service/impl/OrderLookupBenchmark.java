@@ -0,0 +1,120 @@
+package in.ravikalla.external.service.impl;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import in.ravikalla.model.Order;
+import in.ravikalla.util.LongIndex;
+import in.ravikalla.util.SnowflakeIdGenerator;
+
+/**
+ * Random lookups of stored orders in {@link OrderStorageServiceImpl} by description and by
+ * identifier, next to the bare {@link LongIndex} and to hash maps keyed by the boxed identifier and
+ * by the description, to separate the cost of the key from the cost of the store.
+ *
+ * @author - Ravi Kalla
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderLookupBenchmark {
+
+	private static final int LOOKUPS = 1 << 16;
+
+	@Param({"100000", "1000000"})
+	private int orders;
+
+	private OrderStorageServiceImpl storage;
+	private LongIndex<Order> index;
+	private Map<Long, Order> boxed;
+	private Map<String, Order> byDescription;
+
+	private long[] ids;
+	private String[] descriptions;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		storage = new OrderStorageServiceImpl(new SnowflakeIdGenerator(Clock.systemUTC(), 1), true);
+		index = new LongIndex<>(orders);
+		boxed = new HashMap<>(orders * 2);
+		byDescription = new HashMap<>(orders * 2);
+
+		List<Order> stored = new ArrayList<>(orders);
+		for (int i = 0; i < orders; i++) {
+			Order order = new Order();
+			order.setDescription("Order-" + i);
+			order.setBasePrice(100.0);
+			order.setFinalPrice(100.0);
+			stored.add(order);
+		}
+		storage.storeAll(stored);
+
+		long[] storedIds = new long[orders];
+		for (int i = 0; i < orders; i++) {
+			Order order = stored.get(i);
+			index.put(order.getId(), order);
+			boxed.put(order.getId(), order);
+			byDescription.put(order.getDescription(), order);
+			storedIds[i] = order.getId();
+		}
+
+		SplittableRandom random = new SplittableRandom(42);
+		ids = new long[LOOKUPS];
+		descriptions = new String[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			int order = random.nextInt(orders);
+			ids[i] = storedIds[order];
+			descriptions[i] = "Order-" + order;
+		}
+	}
+
+	@Benchmark
+	public Order storageFindByDescription() {
+		return storage.find(descriptions[next()]);
+	}
+
+	@Benchmark
+	public Order storageFindById() {
+		return storage.findById(ids[next()]);
+	}
+
+	@Benchmark
+	public Order longIndexGet() {
+		return index.get(ids[next()]);
+	}
+
+	@Benchmark
+	public Order boxedHashMapGet() {
+		return boxed.get(ids[next()]);
+	}
+
+	@Benchmark
+	public Order stringHashMapGet() {
+		return byDescription.get(descriptions[next()]);
+	}
+
+	private int next() {
+		return next = (next + 1) & (LOOKUPS - 1);
+	}
+}
@@ -0,0 +1,66 @@
+package in.ravikalla.idempotency;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import in.ravikalla.exception.OrderException;
+
+/**
+ * Cost of the {@link IdempotencyTable} check around a send: without a key, with a new key each call
+ * (the table kept full, so each call also evicts) and with a retried key.
+ *
+ * @author - Ravi Kalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdempotencyTableBenchmark {
+
+	private static final int MAX_KEYS = 100_000;
+
+	private IdempotencyTable table;
+	private long sent;
+	private long key;
+
+	private final IdempotencyTable.Operation send = () -> sent++;
+
+	@Setup
+	public void setUp() throws OrderException {
+		table = new IdempotencyTable(600_000, 1000, MAX_KEYS);
+		for (int i = 0; i < MAX_KEYS; i++) {
+			table.run("warm-" + i, "send 1", send);
+		}
+		table.run("retried", "send 1", send);
+	}
+
+	@Benchmark
+	public long withoutKey() throws OrderException {
+		send.run();
+		return sent;
+	}
+
+	@Benchmark
+	public long newKey() throws OrderException {
+		table.run(Long.toString(key++), "send 1", send);
+		return sent;
+	}
+
+	@Benchmark
+	public long retriedKey() throws OrderException {
+		table.run("retried", "send 1", send);
+		return sent;
+	}
+}
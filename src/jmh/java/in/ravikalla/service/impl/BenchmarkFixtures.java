@@ -0,0 +1,51 @@
+package in.ravikalla.service.impl;
+
+import java.lang.reflect.Field;
+import java.time.Clock;
+
+import in.ravikalla.benchmark.CountingNotificationService;
+import in.ravikalla.benchmark.InMemoryOrderStorageService;
+import in.ravikalla.config.DeliveryEstimationProperties;
+import in.ravikalla.external.service.DeliveryScoreService;
+import in.ravikalla.external.service.OrderStorageService;
+import in.ravikalla.external.service.impl.DeliveryScoreServiceImpl;
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.service.NotificationService;
+
+/**
+ * Wires {@link AmazonDeliveryServiceImpl} against in-memory stand-ins, the way Spring injects it.
+ *
+ * @author - Ravi Kalla
+ */
+public final class BenchmarkFixtures {
+
+	private BenchmarkFixtures() {
+	}
+
+	public static AmazonDeliveryServiceImpl newDeliveryService() {
+		return newDeliveryService(new InMemoryOrderStorageService(), new DeliveryScoreServiceImpl(),
+				new CountingNotificationService());
+	}
+
+	public static AmazonDeliveryServiceImpl newDeliveryService(OrderStorageService orderStorageService,
+			DeliveryScoreService deliveryScoreService, NotificationService notificationService) {
+		AmazonDeliveryServiceImpl service = new AmazonDeliveryServiceImpl();
+		inject(service, "orderStorageService", orderStorageService);
+		inject(service, "deliveryScoreService", deliveryScoreService);
+		inject(service, "notificationService", notificationService);
+		inject(service, "deliveryEstimationService",
+				new DeliveryEstimationServiceImpl(new DeliveryEstimationProperties(), Clock.systemUTC()));
+		inject(service, "orderMetrics", new OrderMetrics());
+		return service;
+	}
+
+	static void inject(Object target, String fieldName, Object value) {
+		try {
+			Field field = target.getClass().getDeclaredField(fieldName);
+			field.setAccessible(true);
+			field.set(target, value);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot inject " + fieldName, e);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package in.ravikalla.service.impl;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import in.ravikalla.config.DeliveryEstimationProperties;
+import in.ravikalla.model.Order;
+import in.ravikalla.service.AmazonDeliveryService;
+
+/**
+ * Delivery date estimation and delivery score computation. The Calendar based estimation the
+ * service used before the estimation engine is kept here as the reference.
+ *
+ * @author - Ravi Kalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeliveryDateBenchmark {
+
+	private AmazonDeliveryServiceImpl amazonDeliveryService;
+
+	private DeliveryEstimationServiceImpl calendarDaysEngine;
+
+	private DeliveryEstimationServiceImpl businessDaysEngine;
+
+	private Order deliveredOrder;
+
+	private long sendMillis;
+
+	@Setup
+	public void setUp() {
+		amazonDeliveryService = BenchmarkFixtures.newDeliveryService();
+		calendarDaysEngine = new DeliveryEstimationServiceImpl(new DeliveryEstimationProperties(), Clock.systemUTC());
+
+		DeliveryEstimationProperties businessDays = new DeliveryEstimationProperties();
+		businessDays.setBusinessDays(Arrays.asList("MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY"));
+		businessDays.setHolidays(Arrays.asList("2026-12-25", "2027-01-01"));
+		businessDays.setCutoff("16:00");
+		businessDays.getRegions().put("EU", new DeliveryEstimationProperties.Sla(3, 6));
+		businessDaysEngine = new DeliveryEstimationServiceImpl(businessDays, Clock.systemUTC());
+
+		sendMillis = System.currentTimeMillis();
+		deliveredOrder = new Order();
+		deliveredOrder.setDescription("Soaps");
+		deliveredOrder.setSent(true);
+		deliveredOrder.setSendDate(new Date(sendMillis));
+		deliveredOrder.setEstimatedDelivery(new Date(sendMillis + TimeUnit.DAYS.toMillis(2)));
+		deliveredOrder.setDelivered(true);
+		deliveredOrder.setRealDelivery(new Date(sendMillis + TimeUnit.HOURS.toMillis(30)));
+	}
+
+	@Benchmark
+	public Date calendarEstimatedDeliveryDate() {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(new Date());
+		calendar.add(Calendar.DAY_OF_MONTH, AmazonDeliveryService.ESTIMATED_DAYS_TO_DELIVER_REGULAR);
+		return calendar.getTime();
+	}
+
+	@Benchmark
+	public long engineCalendarDays() {
+		return calendarDaysEngine.estimateDeliveryMillis(sendMillis, false, null);
+	}
+
+	@Benchmark
+	public long engineBusinessDaysWithRegion() {
+		return businessDaysEngine.estimateDeliveryMillis(sendMillis, false, "EU");
+	}
+
+	@Benchmark
+	public Date calcEstimatedDeliveryDate() {
+		return amazonDeliveryService.calcEstimatedDeliveryDate(deliveredOrder, deliveredOrder.getSendDate());
+	}
+
+	@Benchmark
+	public long calcDeliveryDateScore() {
+		return amazonDeliveryService.calcDeliveryDateScore(deliveredOrder);
+	}
+}
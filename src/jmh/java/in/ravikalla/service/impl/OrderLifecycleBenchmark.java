@@ -0,0 +1,92 @@
+package in.ravikalla.service.impl;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import in.ravikalla.exception.OrderAlreadyExistsException;
+import in.ravikalla.exception.OrderException;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+
+/**
+ * Full initOrder, addDiscount, markSent and markDelivered cycle against in-memory stand-ins,
+ * run by one thread and by as many threads as there are cores.
+ *
+ * @author - Ravi Kalla
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderLifecycleBenchmark {
+
+	private static final Discount PROMO = new Discount("Promo of new year", 5.0);
+
+	@State(Scope.Benchmark)
+	public static class Service {
+
+		private AmazonDeliveryServiceImpl amazonDeliveryService;
+
+		private final AtomicInteger threads = new AtomicInteger();
+
+		@Setup
+		public void setUp() {
+			amazonDeliveryService = BenchmarkFixtures.newDeliveryService();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Descriptions {
+
+		private String prefix;
+
+		private long sequence;
+
+		@Setup
+		public void setUp(Service service) {
+			prefix = "Soaps-" + service.threads.incrementAndGet() + "-";
+		}
+
+		String next() {
+			return prefix + sequence++;
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Order lifecycleSingleThread(Service service, Descriptions descriptions)
+			throws OrderAlreadyExistsException, OrderException {
+		return lifecycle(service.amazonDeliveryService, descriptions.next());
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Order lifecycleAllCores(Service service, Descriptions descriptions)
+			throws OrderAlreadyExistsException, OrderException {
+		return lifecycle(service.amazonDeliveryService, descriptions.next());
+	}
+
+	private Order lifecycle(AmazonDeliveryServiceImpl amazonDeliveryService, String description)
+			throws OrderAlreadyExistsException, OrderException {
+		Date now = new Date();
+		Order order = amazonDeliveryService.initOrder(description, 90.25, true);
+		amazonDeliveryService.addDiscount(order, PROMO);
+		amazonDeliveryService.markSent(order, now);
+		amazonDeliveryService.markDelivered(order, now);
+		return order;
+	}
+}
@@ -0,0 +1,56 @@
+package in.ravikalla.service.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+
+/**
+ * Final price computation of an order holding a growing number of discounts.
+ *
+ * @author - Ravi Kalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+	@Param({"0", "1", "10", "100"})
+	private int discounts;
+
+	private AmazonDeliveryServiceImpl amazonDeliveryService;
+
+	private Order order;
+
+	@Setup
+	public void setUp() {
+		amazonDeliveryService = BenchmarkFixtures.newDeliveryService();
+		order = new Order();
+		order.setDescription("Soaps");
+		order.setBasePrice(90.25);
+		for (int i = 0; i < discounts; i++) {
+			order.addDiscount(new Discount("Promo " + i, 0.5));
+		}
+	}
+
+	@Benchmark
+	public double calcFinalPrice() {
+		amazonDeliveryService.calcFinalPrice(order);
+		return order.getFinalPrice();
+	}
+}
@@ -1,22 +1,45 @@
 package in.ravikalla;
 
+import java.time.Clock;
+
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
-import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import in.ravikalla.config.ApplicationComponents;
+import in.ravikalla.util.SnowflakeIdGenerator;
 
 /**
+ * The components are registered from {@link ApplicationComponents} instead of scanning the
+ * classpath. The {@code lean} profile makes beans lazy and skips unused auto-configuration.
+ *
  * @author - Ravi Kalla
  */
-@SpringBootApplication
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@Import(ApplicationComponents.class)
 public class SampleApplication {
 
 	private static Log logger = LogFactory.getLog(SampleApplication.class);
 
+	@Bean
+	public Clock clock() {
+		return Clock.systemUTC();
+	}
+
+	@Bean
+	public SnowflakeIdGenerator orderIdGenerator(Clock clock, @Value("${orders.id.node:0}") int node) {
+		return new SnowflakeIdGenerator(clock, node);
+	}
+
 	@Bean
 	protected ServletContextListener listener() {
 		return new ServletContextListener() {
@@ -0,0 +1,135 @@
+package in.ravikalla.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limit of the calls in progress, adjusted from their latency by additive increase and
+ * multiplicative decrease. A call slower than {@code tolerance} times the lowest latency of the
+ * last two windows of calls, taken as the latency without queueing, shrinks the limit by
+ * {@code backoff}, at most once per window: the calls queued behind the same congestion complete
+ * together and are one signal. A faster call while at least half the limit is in use grows it by
+ * one per limit's worth of calls, about one per round trip.
+ *
+ * @author - Ravi Kalla
+ */
+public class AdaptiveConcurrencyLimit {
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+	private final double backoff;
+	private final int window;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile int limit;
+
+	//Guarded by this
+	private double exactLimit;
+	private long previousWindowMinNanos = Long.MAX_VALUE;
+	private long windowMinNanos = Long.MAX_VALUE;
+	private int windowSamples;
+	private boolean decreasedInWindow;
+	private volatile long smoothedLatencyNanos;
+
+	/**
+	 * @param initialLimit
+	 * @param minLimit At least 1
+	 * @param maxLimit
+	 * @param tolerance Latency ratio to the latency without queueing above which calls are taken as queued, above 1
+	 * @param backoff Factor applied to the limit on a queued call, between 0 and 1
+	 * @param window Number of calls the latency without queueing is the lowest of, and in which the
+	 *        limit shrinks at most once
+	 */
+	public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoff,
+			int window) {
+		if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("Limits " + minLimit + " <= " + initialLimit + " <= " + maxLimit
+					+ " are not ordered");
+		}
+		if (tolerance <= 1 || backoff <= 0 || backoff >= 1 || window < 1) {
+			throw new IllegalArgumentException("Tolerance " + tolerance + ", backoff " + backoff + " or window "
+					+ window + " out of range");
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.tolerance = tolerance;
+		this.backoff = backoff;
+		this.window = window;
+		this.limit = initialLimit;
+		this.exactLimit = initialLimit;
+	}
+
+	/**
+	 * Takes a slot if fewer calls than the share of the limit are in progress.
+	 *
+	 * @param share Part of the limit the caller may use, between 0 and 1, at least one slot
+	 * @return true when a slot was taken, to be given back with {@link #release(long)}
+	 */
+	public boolean tryAcquire(double share) {
+		int ceiling = Math.max(1, (int) (limit * share));
+		while (true) {
+			int current = inFlight.get();
+			if (current >= ceiling) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Gives a slot back and adjusts the limit to the latency of the call.
+	 *
+	 * @param latencyNanos
+	 */
+	public void release(long latencyNanos) {
+		int busy = inFlight.getAndDecrement();
+		synchronized (this) {
+			long smoothed = smoothedLatencyNanos;
+			smoothedLatencyNanos = smoothed == 0 ? latencyNanos : smoothed + (latencyNanos - smoothed) / 8;
+
+			windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+			if (++windowSamples == window) {
+				previousWindowMinNanos = windowMinNanos;
+				windowMinNanos = Long.MAX_VALUE;
+				windowSamples = 0;
+				decreasedInWindow = false;
+			}
+			long noLoadNanos = Math.min(previousWindowMinNanos, windowMinNanos);
+
+			if (latencyNanos > noLoadNanos * tolerance) {
+				if (!decreasedInWindow) {
+					exactLimit = Math.max(minLimit, exactLimit * backoff);
+					decreasedInWindow = true;
+				}
+			} else if (busy * 2 >= limit) {
+				exactLimit = Math.min(maxLimit, exactLimit + 1 / exactLimit);
+			}
+			limit = (int) exactLimit;
+		}
+	}
+
+	/**
+	 * Getter for property 'limit'.
+	 *
+	 * @return Value for property 'limit'.
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return Number of calls in progress
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return Latency of the calls, exponentially smoothed, 0 before the first call
+	 */
+	public long getSmoothedLatencyNanos() {
+		return smoothedLatencyNanos;
+	}
+}
@@ -0,0 +1,192 @@
+package in.ravikalla.admission;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import in.ravikalla.exception.OrderRejectedException;
+import in.ravikalla.exception.OrderRejectedException.Reason;
+
+/**
+ * Admits order operations before they start, so that under a spike the node rejects the excess
+ * at once instead of queueing it in front of storage, score and notifications. Each customer
+ * class has its own {@link TokenBucket}, and all classes share an {@link AdaptiveConcurrencyLimit}
+ * of which premium customers may use all, the priority lane, and regular customers only the part
+ * left by the premium reserve.
+ * <p>
+ * Rejections carry a retry-after hint: the wait for the next token, or the usual latency of an
+ * operation when the node is overloaded.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ConditionalOnProperty(name = "admission.enabled", havingValue = "true", matchIfMissing = true)
+@ManagedResource(objectName = "in.ravikalla:type=AdmissionControl", description = "Admission control of order operations")
+public class AdmissionControl {
+
+	private final TokenBucket premiumRate;
+	private final TokenBucket regularRate;
+	private final AdaptiveConcurrencyLimit concurrencyLimit;
+	private final double regularShare;
+
+	private final LongAdder admitted = new LongAdder();
+	private final LongAdder rateLimited = new LongAdder();
+	private final LongAdder overloaded = new LongAdder();
+
+	@Inject
+	public AdmissionControl(Clock clock,
+			@Value("${admission.premium.orders-per-second:2000}") double premiumOrdersPerSecond,
+			@Value("${admission.premium.burst:200}") int premiumBurst,
+			@Value("${admission.regular.orders-per-second:1000}") double regularOrdersPerSecond,
+			@Value("${admission.regular.burst:100}") int regularBurst,
+			@Value("${admission.concurrency.initial-limit:32}") int initialLimit,
+			@Value("${admission.concurrency.min-limit:4}") int minLimit,
+			@Value("${admission.concurrency.max-limit:256}") int maxLimit,
+			@Value("${admission.concurrency.tolerance:2.0}") double tolerance,
+			@Value("${admission.concurrency.backoff:0.9}") double backoff,
+			@Value("${admission.concurrency.window:1000}") int window,
+			@Value("${admission.premium.reserved-share:0.2}") double premiumReservedShare) {
+		this(new TokenBucket(clock, premiumOrdersPerSecond, premiumBurst),
+				new TokenBucket(clock, regularOrdersPerSecond, regularBurst),
+				new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance, backoff, window),
+				premiumReservedShare);
+	}
+
+	public AdmissionControl(TokenBucket premiumRate, TokenBucket regularRate, AdaptiveConcurrencyLimit concurrencyLimit,
+			double premiumReservedShare) {
+		if (premiumReservedShare < 0 || premiumReservedShare >= 1) {
+			throw new IllegalArgumentException("Reserved share " + premiumReservedShare + " not in [0, 1)");
+		}
+		this.premiumRate = premiumRate;
+		this.regularRate = regularRate;
+		this.concurrencyLimit = concurrencyLimit;
+		this.regularShare = 1 - premiumReservedShare;
+	}
+
+	/**
+	 * Admits an operation, to be followed by {@link #release(long)} once it is done.
+	 *
+	 * @param premium Whether the order is of a premium customer
+	 * @throws OrderRejectedException When the operation is not admitted
+	 */
+	public void acquire(boolean premium) {
+		TokenBucket rate = rate(premium);
+		long waitMillis = rate.tryAcquire();
+		if (waitMillis > 0) {
+			rateLimited.increment();
+			throw new OrderRejectedException(Reason.RATE_LIMITED, waitMillis);
+		}
+		if (!concurrencyLimit.tryAcquire(premium ? 1 : regularShare)) {
+			//the operation does not run, its token stays with the customer class
+			rate.refund();
+			overloaded.increment();
+			throw overloaded();
+		}
+		admitted.increment();
+	}
+
+	/**
+	 * Admits a batch of orders as one operation, to be followed by {@link #release(long)} once it is
+	 * done unless every order was rejected. Each order takes a token of its customer class and is
+	 * rejected alone over the rate; the batch takes one slot of the concurrency limit, of the
+	 * premium share when it has a premium order, or all its orders are rejected.
+	 *
+	 * @param premium Whether each order is of a premium customer
+	 * @return Rejection of each order, null for the admitted ones
+	 */
+	public OrderRejectedException[] acquireAll(boolean[] premium) {
+		OrderRejectedException[] rejections = new OrderRejectedException[premium.length];
+		int withinRate = 0;
+		boolean anyPremium = false;
+		for (int i = 0; i < premium.length; i++) {
+			long waitMillis = rate(premium[i]).tryAcquire();
+			if (waitMillis > 0) {
+				rateLimited.increment();
+				rejections[i] = new OrderRejectedException(Reason.RATE_LIMITED, waitMillis);
+			} else {
+				withinRate++;
+				anyPremium |= premium[i];
+			}
+		}
+		if (withinRate == 0) {
+			return rejections;
+		}
+		if (!concurrencyLimit.tryAcquire(anyPremium ? 1 : regularShare)) {
+			OrderRejectedException rejection = overloaded();
+			for (int i = 0; i < premium.length; i++) {
+				if (rejections[i] == null) {
+					rate(premium[i]).refund();
+					rejections[i] = rejection;
+				}
+			}
+			overloaded.add(withinRate);
+			return rejections;
+		}
+		admitted.add(withinRate);
+		return rejections;
+	}
+
+	/**
+	 * @param latencyNanos Time the admitted operation took, per order for a batch
+	 */
+	public void release(long latencyNanos) {
+		concurrencyLimit.release(latencyNanos);
+	}
+
+	private TokenBucket rate(boolean premium) {
+		return premium ? premiumRate : regularRate;
+	}
+
+	private OrderRejectedException overloaded() {
+		return new OrderRejectedException(Reason.OVERLOADED,
+				Math.max(1, TimeUnit.NANOSECONDS.toMillis(concurrencyLimit.getSmoothedLatencyNanos())));
+	}
+
+	/**
+	 * @return Number of operations in progress the node currently admits
+	 */
+	@ManagedAttribute(description = "Number of operations in progress the node currently admits")
+	public int getConcurrencyLimit() {
+		return concurrencyLimit.getLimit();
+	}
+
+	/**
+	 * @return Number of admitted operations in progress
+	 */
+	@ManagedAttribute(description = "Number of admitted operations in progress")
+	public int getInFlight() {
+		return concurrencyLimit.getInFlight();
+	}
+
+	/**
+	 * @return Number of operations admitted
+	 */
+	@ManagedAttribute(description = "Number of operations admitted")
+	public long getAdmitted() {
+		return admitted.sum();
+	}
+
+	/**
+	 * @return Number of operations rejected by the rate of their customer class
+	 */
+	@ManagedAttribute(description = "Number of operations rejected by the rate of their customer class")
+	public long getRateLimited() {
+		return rateLimited.sum();
+	}
+
+	/**
+	 * @return Number of operations rejected by the concurrency limit
+	 */
+	@ManagedAttribute(description = "Number of operations rejected by the concurrency limit")
+	public long getOverloaded() {
+		return overloaded.sum();
+	}
+}
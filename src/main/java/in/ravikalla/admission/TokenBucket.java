@@ -0,0 +1,69 @@
+package in.ravikalla.admission;
+
+import java.time.Clock;
+
+/**
+ * Rate limit allowing bursts: tokens are added at a steady rate up to a capacity and every
+ * admitted call takes one.
+ *
+ * @author - Ravi Kalla
+ */
+public class TokenBucket {
+
+	private final Clock clock;
+	private final double capacity;
+	private final double tokensPerMilli;
+
+	private double tokens;
+	private long refilledMillis;
+
+	/**
+	 * @param clock
+	 * @param tokensPerSecond Steady rate, above 0
+	 * @param capacity Largest burst, at least 1
+	 */
+	public TokenBucket(Clock clock, double tokensPerSecond, int capacity) {
+		if (tokensPerSecond <= 0 || capacity < 1) {
+			throw new IllegalArgumentException("Rate " + tokensPerSecond + " and capacity " + capacity
+					+ " must be positive");
+		}
+		this.clock = clock;
+		this.capacity = capacity;
+		this.tokensPerMilli = tokensPerSecond / 1000;
+		this.tokens = capacity;
+		this.refilledMillis = clock.millis();
+	}
+
+	/**
+	 * Takes a token if there is one.
+	 *
+	 * @return 0 when a token was taken, else milliseconds until the next one, at least 1
+	 */
+	public synchronized long tryAcquire() {
+		long now = clock.millis();
+		if (now > refilledMillis) {
+			tokens = Math.min(capacity, tokens + (now - refilledMillis) * tokensPerMilli);
+			refilledMillis = now;
+		}
+		if (tokens >= 1) {
+			tokens--;
+			return 0;
+		}
+		return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerMilli));
+	}
+
+	/**
+	 * Gives back a token taken by a call that was turned away after all, up to the capacity.
+	 */
+	public synchronized void refund() {
+		tokens = Math.min(capacity, tokens + 1);
+	}
+
+	/**
+	 * @return Tokens available now, without taking one
+	 */
+	public synchronized double getTokens() {
+		long now = clock.millis();
+		return Math.min(capacity, tokens + Math.max(0, now - refilledMillis) * tokensPerMilli);
+	}
+}
@@ -0,0 +1,139 @@
+package in.ravikalla.analytics;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Count, sum, extremes and an hourly histogram of the hours late per group of orders. Aggregates
+ * of separate rows merge into the aggregate of all of them, which is what lets the rows be split
+ * across threads and new rows be added to an earlier result.
+ * <p>
+ * The histogram has a bucket per hour within {@link #MAX_HOURS} of the estimate, so quantiles are
+ * exact within that range; later or earlier deliveries count in the edge buckets.
+ *
+ * @author - Ravi Kalla
+ */
+public class DeliveryAggregate {
+
+	public static final int MAX_HOURS = 30 * 24;
+	private static final int BUCKETS = 2 * MAX_HOURS + 1;
+
+	private final long[] counts = new long[DeliveryColumns.GROUPS];
+	private final long[] sums = new long[DeliveryColumns.GROUPS];
+	private final int[] minimums = new int[DeliveryColumns.GROUPS];
+	private final int[] maximums = new int[DeliveryColumns.GROUPS];
+	private final long[] early = new long[DeliveryColumns.GROUPS];
+	private final long[] late = new long[DeliveryColumns.GROUPS];
+	//histograms of the groups one after the other, allocated on first use
+	private long[] histograms;
+
+	public DeliveryAggregate() {
+		Arrays.fill(minimums, Integer.MAX_VALUE);
+		Arrays.fill(maximums, Integer.MIN_VALUE);
+	}
+
+	void record(int group, int hoursLate) {
+		if (histograms == null) {
+			histograms = new long[DeliveryColumns.GROUPS * BUCKETS];
+		}
+		counts[group]++;
+		sums[group] += hoursLate;
+		if (hoursLate < minimums[group]) {
+			minimums[group] = hoursLate;
+		}
+		if (hoursLate > maximums[group]) {
+			maximums[group] = hoursLate;
+		}
+		if (hoursLate < 0) {
+			early[group]++;
+		} else if (hoursLate > 0) {
+			late[group]++;
+		}
+		int bucket = Math.max(-MAX_HOURS, Math.min(MAX_HOURS, hoursLate)) + MAX_HOURS;
+		histograms[group * BUCKETS + bucket]++;
+	}
+
+	/**
+	 * Adds the other aggregate to this one.
+	 *
+	 * @return This aggregate
+	 */
+	public DeliveryAggregate merge(DeliveryAggregate other) {
+		for (int group = 0; group < DeliveryColumns.GROUPS; group++) {
+			counts[group] += other.counts[group];
+			sums[group] += other.sums[group];
+			minimums[group] = Math.min(minimums[group], other.minimums[group]);
+			maximums[group] = Math.max(maximums[group], other.maximums[group]);
+			early[group] += other.early[group];
+			late[group] += other.late[group];
+		}
+		if (other.histograms != null) {
+			if (histograms == null) {
+				histograms = other.histograms.clone();
+			} else {
+				for (int i = 0; i < histograms.length; i++) {
+					histograms[i] += other.histograms[i];
+				}
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @param groups Groups to combine, as built by {@link DeliveryColumns}
+	 * @return Statistics of the orders in the groups
+	 */
+	public DeliveryStatistics statistics(IntPredicate groups) {
+		long count = 0;
+		long sum = 0;
+		long earlyCount = 0;
+		long lateCount = 0;
+		int minimum = Integer.MAX_VALUE;
+		int maximum = Integer.MIN_VALUE;
+		long[] histogram = new long[BUCKETS];
+		for (int group = 0; group < DeliveryColumns.GROUPS; group++) {
+			if (!groups.test(group) || counts[group] == 0) {
+				continue;
+			}
+			count += counts[group];
+			sum += sums[group];
+			earlyCount += early[group];
+			lateCount += late[group];
+			minimum = Math.min(minimum, minimums[group]);
+			maximum = Math.max(maximum, maximums[group]);
+			for (int bucket = 0; bucket < BUCKETS; bucket++) {
+				histogram[bucket] += histograms[group * BUCKETS + bucket];
+			}
+		}
+		if (count == 0) {
+			return new DeliveryStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0);
+		}
+		return new DeliveryStatistics(count, earlyCount, lateCount, (double) sum / count, minimum, maximum,
+				percentile(histogram, count, 50, minimum, maximum), percentile(histogram, count, 90, minimum, maximum),
+				percentile(histogram, count, 99, minimum, maximum));
+	}
+
+	/**
+	 * @return Total number of orders aggregated
+	 */
+	public long count() {
+		long count = 0;
+		for (long groupCount : counts) {
+			count += groupCount;
+		}
+		return count;
+	}
+
+	private static long percentile(long[] histogram, long count, double percentile, int minimum, int maximum) {
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+		long seen = 0;
+		for (int bucket = 0; bucket < histogram.length; bucket++) {
+			seen += histogram[bucket];
+			if (seen >= rank) {
+				//the edge buckets hold everything beyond the range, the extremes are exact
+				return Math.max(minimum, Math.min(maximum, bucket - MAX_HOURS));
+			}
+		}
+		return maximum;
+	}
+}
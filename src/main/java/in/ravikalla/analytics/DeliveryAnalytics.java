@@ -0,0 +1,190 @@
+package in.ravikalla.analytics;
+
+import java.time.DayOfWeek;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import in.ravikalla.event.OrderDelivered;
+import in.ravikalla.event.OrderEvent;
+import in.ravikalla.event.OrderEventConsumer;
+import in.ravikalla.external.service.OrderStorageService;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+
+/**
+ * Breakdowns of how late orders are delivered, by customer type, send day and discount band.
+ * <p>
+ * Delivered orders are kept in {@link DeliveryColumns}, loaded from the order storage on start and
+ * then appended as {@link OrderDelivered} events come in. A refresh aggregates only the rows added
+ * since the last one, in parallel on a fork-join pool, and merges them into the running aggregate.
+ * With order events disabled every refresh reloads the delivered orders from the storage instead.
+ *
+ * @author - Ravi Kalla
+ */
+@Service
+@ManagedResource(objectName = "in.ravikalla:type=DeliveryAnalytics", description = "Delivery analytics")
+public class DeliveryAnalytics implements OrderEventConsumer {
+
+	private static final Logger logger = LoggerFactory.getLogger(DeliveryAnalytics.class);
+
+	private final OrderStorageService orderStorageService;
+	private final ZoneOffset zoneOffset;
+	private final ForkJoinPool pool;
+	//rows come from order events, otherwise from reloading the storage
+	private final boolean incremental;
+
+	private volatile DeliveryColumns columns = new DeliveryColumns(0);
+	private DeliveryAggregate aggregate = new DeliveryAggregate();
+	private int aggregatedRows;
+	private volatile long lastRefreshNanos;
+
+	@Inject
+	public DeliveryAnalytics(OrderStorageService orderStorageService,
+			@Value("${delivery.zone-offset:Z}") String zoneOffset,
+			@Value("${analytics.parallelism:0}") int parallelism,
+			@Value("${orders.events.enabled:true}") boolean incremental) {
+		this.orderStorageService = orderStorageService;
+		this.incremental = incremental;
+		this.zoneOffset = ZoneOffset.of(zoneOffset);
+		this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Loads the orders delivered before the start, before any order event comes in.
+	 */
+	@PostConstruct
+	public void start() {
+		reload();
+	}
+
+	@PreDestroy
+	public void stop() {
+		pool.shutdown();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onEvents(List<OrderEvent> events) {
+		DeliveryColumns current = columns;
+		for (OrderEvent event : events) {
+			if (event.getType() == OrderEvent.Type.DELIVERED) {
+				OrderDelivered delivered = (OrderDelivered) event;
+				add(current, delivered.isPremium(), delivered.getSendMillis(), delivered.getEstimatedDeliveryMillis(),
+						delivered.getRealDeliveryMillis(), delivered.getBasePriceCents(), delivered.getFinalPriceCents());
+			}
+		}
+	}
+
+	/**
+	 * Aggregates the orders delivered since the last refresh.
+	 *
+	 * @return Number of orders aggregated by this refresh
+	 */
+	@ManagedOperation(description = "Aggregates the orders delivered since the last refresh")
+	public synchronized int refresh() {
+		if (!incremental) {
+			reload();
+			return aggregatedRows;
+		}
+		final long start = System.nanoTime();
+		DeliveryColumns current = columns;
+		int rows = current.size();
+		int added = rows - aggregatedRows;
+		if (added > 0) {
+			aggregate.merge(current.aggregate(aggregatedRows, rows, pool));
+			aggregatedRows = rows;
+		}
+		lastRefreshNanos = System.nanoTime() - start;
+		return added;
+	}
+
+	/**
+	 * @return Breakdown of the orders aggregated by the last refresh
+	 */
+	public synchronized DeliveryReport getReport() {
+		Map<String, DeliveryStatistics> byCustomer = new LinkedHashMap<>();
+		byCustomer.put("premium", aggregate.statistics(DeliveryColumns::isPremium));
+		byCustomer.put("regular", aggregate.statistics(group -> !DeliveryColumns.isPremium(group)));
+
+		Map<String, DeliveryStatistics> bySendDay = new LinkedHashMap<>();
+		for (DayOfWeek day : DayOfWeek.values()) {
+			bySendDay.put(day.name(), aggregate.statistics(group -> DeliveryColumns.day(group) == day.ordinal()));
+		}
+
+		Map<String, DeliveryStatistics> byDiscountBand = new LinkedHashMap<>();
+		for (DiscountBand band : DiscountBand.values()) {
+			byDiscountBand.put(band.getLabel(),
+					aggregate.statistics(group -> DeliveryColumns.band(group) == band.ordinal()));
+		}
+		return new DeliveryReport(aggregate.statistics(group -> true), byCustomer, bySendDay, byDiscountBand);
+	}
+
+	/**
+	 * @return Number of delivered orders aggregated
+	 */
+	@ManagedAttribute(description = "Number of delivered orders aggregated")
+	public synchronized int getAggregatedOrders() {
+		return aggregatedRows;
+	}
+
+	/**
+	 * @return Duration of the last refresh in microseconds
+	 */
+	@ManagedAttribute(description = "Duration of the last refresh in microseconds")
+	public long getLastRefreshMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(lastRefreshNanos);
+	}
+
+	/**
+	 * Replaces the columns with the delivered orders of the storage and aggregates them all.
+	 */
+	private synchronized void reload() {
+		final long start = System.nanoTime();
+		Collection<Order> delivered = orderStorageService.findByState(OrderState.DELIVERED);
+		DeliveryColumns loaded = new DeliveryColumns(delivered.size());
+		for (Order order : delivered) {
+			add(loaded, order);
+		}
+		columns = loaded;
+		aggregate = loaded.aggregate(0, loaded.size(), pool);
+		aggregatedRows = loaded.size();
+		lastRefreshNanos = System.nanoTime() - start;
+		logger.debug("DeliveryAnalytics - loaded {} delivered orders in {} ms", aggregatedRows,
+				TimeUnit.NANOSECONDS.toMillis(lastRefreshNanos));
+	}
+
+	private void add(DeliveryColumns target, Order order) {
+		add(target, order.isPremium(), order.getSendMillis(), order.getEstimatedDeliveryMillis(),
+				order.getRealDeliveryMillis(), order.getBasePriceCents(), order.getFinalPriceCents());
+	}
+
+	private void add(DeliveryColumns target, boolean premium, long sendMillis, long estimatedDeliveryMillis,
+			long realDeliveryMillis, long basePriceCents, long finalPriceCents) {
+		if (sendMillis == Order.NO_DATE || estimatedDeliveryMillis == Order.NO_DATE
+				|| realDeliveryMillis == Order.NO_DATE) {
+			return;
+		}
+		double discountPercent = basePriceCents <= 0 ? 0 : (basePriceCents - finalPriceCents) * 100.0 / basePriceCents;
+		target.add(premium, sendMillis + zoneOffset.getTotalSeconds() * 1000L, estimatedDeliveryMillis,
+				realDeliveryMillis, discountPercent);
+	}
+}
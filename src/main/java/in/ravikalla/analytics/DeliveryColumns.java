@@ -0,0 +1,138 @@
+package in.ravikalla.analytics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Delivered orders as primitive columns, five bytes an order: the hours late as an int, and the
+ * group of the order as a byte combining customer type, send day and discount band.
+ * <p>
+ * Rows are only appended. Appending is synchronized and publishes the new size, so scans of the
+ * rows below a size read earlier need no lock.
+ *
+ * @author - Ravi Kalla
+ */
+public class DeliveryColumns {
+
+	static final int DAYS = 7;
+	static final int BANDS = DiscountBand.values().length;
+	static final int GROUPS = 2 * DAYS * BANDS;
+
+	//rows a fork-join leaf aggregates sequentially
+	private static final int LEAF_ROWS = 1 << 18;
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+	private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+	private int[] hoursLate;
+	private byte[] groups;
+	private volatile int size;
+
+	public DeliveryColumns(int initialCapacity) {
+		hoursLate = new int[Math.max(16, initialCapacity)];
+		groups = new byte[hoursLate.length];
+	}
+
+	/**
+	 * Appends a delivered order.
+	 *
+	 * @param premium True for a premium customer
+	 * @param sendMillis Send date, in epoch milliseconds shifted to the zone of the send day
+	 * @param estimatedDeliveryMillis Estimated delivery date in epoch milliseconds
+	 * @param realDeliveryMillis Real delivery date in epoch milliseconds
+	 * @param discountPercent Share of the base price taken off by discounts
+	 */
+	public synchronized void add(boolean premium, long sendMillis, long estimatedDeliveryMillis,
+			long realDeliveryMillis, double discountPercent) {
+		if (size == hoursLate.length) {
+			hoursLate = Arrays.copyOf(hoursLate, size * 2);
+			groups = Arrays.copyOf(groups, size * 2);
+		}
+		//negated delivery score, truncated to whole hours the same way
+		long late = -((estimatedDeliveryMillis - realDeliveryMillis) / MILLIS_PER_HOUR);
+		hoursLate[size] = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, late));
+		//1970-01-01 was a Thursday, day 3 counting from Monday
+		int day = (int) Math.floorMod(Math.floorDiv(sendMillis, MILLIS_PER_DAY) + 3, DAYS);
+		groups[size] = (byte) group(premium, day, DiscountBand.of(discountPercent).ordinal());
+		size++;
+	}
+
+	/**
+	 * Getter for property 'size'.
+	 *
+	 * @return Value for property 'size'.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Aggregates the rows [from, to) on the given pool, splitting them in ranges aggregated in parallel.
+	 *
+	 * @param from First row
+	 * @param to Row following the last, at most a size read before
+	 * @param pool Pool running the aggregation
+	 * @return Aggregate of the rows
+	 */
+	public DeliveryAggregate aggregate(int from, int to, ForkJoinPool pool) {
+		int[] hoursLateColumn;
+		byte[] groupColumn;
+		synchronized (this) {
+			if (to > size) {
+				throw new IllegalArgumentException("Rows up to " + to + " requested, " + size + " stored");
+			}
+			hoursLateColumn = hoursLate;
+			groupColumn = groups;
+		}
+		return pool.invoke(new AggregateTask(hoursLateColumn, groupColumn, from, to));
+	}
+
+	static int group(boolean premium, int day, int band) {
+		return ((premium ? 1 : 0) * DAYS + day) * BANDS + band;
+	}
+
+	static boolean isPremium(int group) {
+		return group / (DAYS * BANDS) == 1;
+	}
+
+	static int day(int group) {
+		return group / BANDS % DAYS;
+	}
+
+	static int band(int group) {
+		return group % BANDS;
+	}
+
+	private static final class AggregateTask extends RecursiveTask<DeliveryAggregate> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] hoursLate;
+		private final byte[] groups;
+		private final int from;
+		private final int to;
+
+		private AggregateTask(int[] hoursLate, byte[] groups, int from, int to) {
+			this.hoursLate = hoursLate;
+			this.groups = groups;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected DeliveryAggregate compute() {
+			if (to - from <= LEAF_ROWS) {
+				DeliveryAggregate aggregate = new DeliveryAggregate();
+				for (int row = from; row < to; row++) {
+					aggregate.record(groups[row], hoursLate[row]);
+				}
+				return aggregate;
+			}
+			int middle = (from + to) >>> 1;
+			AggregateTask left = new AggregateTask(hoursLate, groups, from, middle);
+			left.fork();
+			DeliveryAggregate right = new AggregateTask(hoursLate, groups, middle, to).compute();
+			return left.join().merge(right);
+		}
+	}
+}
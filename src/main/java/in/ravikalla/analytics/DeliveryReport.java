@@ -0,0 +1,60 @@
+package in.ravikalla.analytics;
+
+import java.util.Map;
+
+/**
+ * Breakdown of the hours late of the delivered orders.
+ *
+ * @author - Ravi Kalla
+ */
+public class DeliveryReport {
+
+	private final DeliveryStatistics all;
+	private final Map<String, DeliveryStatistics> byCustomer;
+	private final Map<String, DeliveryStatistics> bySendDay;
+	private final Map<String, DeliveryStatistics> byDiscountBand;
+
+	public DeliveryReport(DeliveryStatistics all, Map<String, DeliveryStatistics> byCustomer,
+			Map<String, DeliveryStatistics> bySendDay, Map<String, DeliveryStatistics> byDiscountBand) {
+		this.all = all;
+		this.byCustomer = byCustomer;
+		this.bySendDay = bySendDay;
+		this.byDiscountBand = byDiscountBand;
+	}
+
+	/**
+	 * Getter for property 'all'.
+	 *
+	 * @return Value for property 'all'.
+	 */
+	public DeliveryStatistics getAll() {
+		return all;
+	}
+
+	/**
+	 * Getter for property 'byCustomer'.
+	 *
+	 * @return Value for property 'byCustomer', premium and regular.
+	 */
+	public Map<String, DeliveryStatistics> getByCustomer() {
+		return byCustomer;
+	}
+
+	/**
+	 * Getter for property 'bySendDay'.
+	 *
+	 * @return Value for property 'bySendDay', MONDAY to SUNDAY.
+	 */
+	public Map<String, DeliveryStatistics> getBySendDay() {
+		return bySendDay;
+	}
+
+	/**
+	 * Getter for property 'byDiscountBand'.
+	 *
+	 * @return Value for property 'byDiscountBand', by {@link DiscountBand} label.
+	 */
+	public Map<String, DeliveryStatistics> getByDiscountBand() {
+		return byDiscountBand;
+	}
+}
@@ -0,0 +1,122 @@
+package in.ravikalla.analytics;
+
+/**
+ * Hours late of a group of delivered orders, negative for orders delivered before their estimate.
+ *
+ * @author - Ravi Kalla
+ */
+public class DeliveryStatistics {
+
+	private final long count;
+	private final long early;
+	private final long late;
+	private final double meanHoursLate;
+	private final long minHoursLate;
+	private final long maxHoursLate;
+	private final long p50HoursLate;
+	private final long p90HoursLate;
+	private final long p99HoursLate;
+
+	public DeliveryStatistics(long count, long early, long late, double meanHoursLate, long minHoursLate,
+			long maxHoursLate, long p50HoursLate, long p90HoursLate, long p99HoursLate) {
+		this.count = count;
+		this.early = early;
+		this.late = late;
+		this.meanHoursLate = meanHoursLate;
+		this.minHoursLate = minHoursLate;
+		this.maxHoursLate = maxHoursLate;
+		this.p50HoursLate = p50HoursLate;
+		this.p90HoursLate = p90HoursLate;
+		this.p99HoursLate = p99HoursLate;
+	}
+
+	/**
+	 * Getter for property 'count'.
+	 *
+	 * @return Value for property 'count'.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Getter for property 'early'.
+	 *
+	 * @return Value for property 'early', orders delivered at least an hour before the estimate.
+	 */
+	public long getEarly() {
+		return early;
+	}
+
+	/**
+	 * Getter for property 'onTime'.
+	 *
+	 * @return Value for property 'onTime', orders delivered within the hour of the estimate.
+	 */
+	public long getOnTime() {
+		return count - early - late;
+	}
+
+	/**
+	 * Getter for property 'late'.
+	 *
+	 * @return Value for property 'late', orders delivered at least an hour after the estimate.
+	 */
+	public long getLate() {
+		return late;
+	}
+
+	/**
+	 * Getter for property 'meanHoursLate'.
+	 *
+	 * @return Value for property 'meanHoursLate'.
+	 */
+	public double getMeanHoursLate() {
+		return meanHoursLate;
+	}
+
+	/**
+	 * Getter for property 'minHoursLate'.
+	 *
+	 * @return Value for property 'minHoursLate'.
+	 */
+	public long getMinHoursLate() {
+		return minHoursLate;
+	}
+
+	/**
+	 * Getter for property 'maxHoursLate'.
+	 *
+	 * @return Value for property 'maxHoursLate'.
+	 */
+	public long getMaxHoursLate() {
+		return maxHoursLate;
+	}
+
+	/**
+	 * Getter for property 'p50HoursLate'.
+	 *
+	 * @return Value for property 'p50HoursLate'.
+	 */
+	public long getP50HoursLate() {
+		return p50HoursLate;
+	}
+
+	/**
+	 * Getter for property 'p90HoursLate'.
+	 *
+	 * @return Value for property 'p90HoursLate'.
+	 */
+	public long getP90HoursLate() {
+		return p90HoursLate;
+	}
+
+	/**
+	 * Getter for property 'p99HoursLate'.
+	 *
+	 * @return Value for property 'p99HoursLate'.
+	 */
+	public long getP99HoursLate() {
+		return p99HoursLate;
+	}
+}
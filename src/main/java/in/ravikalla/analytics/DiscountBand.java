@@ -0,0 +1,47 @@
+package in.ravikalla.analytics;
+
+/**
+ * Ranges of the share of the base price taken off an order by its discounts.
+ *
+ * @author - Ravi Kalla
+ */
+public enum DiscountBand {
+
+	NONE("none"),
+	UP_TO_10("0-10%"),
+	UP_TO_25("10-25%"),
+	UP_TO_50("25-50%"),
+	OVER_50("50%+");
+
+	private final String label;
+
+	DiscountBand(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * Getter for property 'label'.
+	 *
+	 * @return Value for property 'label'.
+	 */
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * @param discountPercent Share of the base price taken off, between 0 and 100
+	 * @return Band of the discount
+	 */
+	public static DiscountBand of(double discountPercent) {
+		if (discountPercent <= 0) {
+			return NONE;
+		}
+		if (discountPercent <= 10) {
+			return UP_TO_10;
+		}
+		if (discountPercent <= 25) {
+			return UP_TO_25;
+		}
+		return discountPercent <= 50 ? UP_TO_50 : OVER_50;
+	}
+}
@@ -0,0 +1,353 @@
+package in.ravikalla.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+
+/**
+ * Compact binary encoding of {@link Order} and its {@link Discount}s, written to and read from
+ * {@link ByteBuffer}s directly, without intermediate arrays or reflection.
+ * <p>
+ * Integers are variable-length, except the identifier which uses all of its bits, dates are
+ * epoch millis stored relative to the send date, and whole basis point percents take one or two
+ * bytes. Strings are deduplicated: the first occurrence is written as UTF-8 and later ones as a
+ * reference into a dictionary that the encoder and the decoder build the same way. The dictionary
+ * lives as long as the codec, so a stream of orders encoded with one codec must be decoded with
+ * one codec, in order; call {@link #reset()} between self-contained records.
+ * <p>
+ * A codec is not thread-safe.
+ *
+ * @author - Ravi Kalla
+ */
+public final class OrderCodec {
+
+	public static final int DEFAULT_DICTIONARY_SIZE = 1024;
+
+	//Version 2 adds the identifier, version 1 orders are decoded with identifier 0
+	private static final byte FORMAT_VERSION = 2;
+	private static final byte FORMAT_VERSION_WITHOUT_ID = 1;
+	private static final int HEADER = 2;
+
+	private static final int SENT = 1;
+	private static final int DELIVERED = 1 << 1;
+	private static final int PREMIUM = 1 << 2;
+	private static final int SEND_DATE = 1 << 3;
+	private static final int ESTIMATED_DELIVERY = 1 << 4;
+	private static final int REAL_DELIVERY = 1 << 5;
+
+	private static final int COMPOUNDING = 1;
+	private static final int EXCLUSIVE = 1 << 1;
+	private static final int BASIS_POINTS = 1 << 2;
+
+	//String references, dictionary entries are numbered from FIRST_ENTRY
+	private static final int NULL = 0;
+	private static final int LITERAL = 1;
+	private static final int FIRST_ENTRY = 2;
+
+	private final int dictionarySize;
+	private final Map<String, Integer> encodeDictionary = new HashMap<>();
+	private final List<String> encodeEntries = new ArrayList<>();
+	private final List<String> decodeEntries = new ArrayList<>();
+
+	public OrderCodec() {
+		this(DEFAULT_DICTIONARY_SIZE);
+	}
+
+	public OrderCodec(int dictionarySize) {
+		this.dictionarySize = dictionarySize;
+	}
+
+	/**
+	 * Writes the order at the position of the buffer and advances it.
+	 *
+	 * @param order
+	 * @param buffer
+	 * @throws BufferOverflowException When the order does not fit, the position of the buffer is then
+	 *             undefined but the codec can still be used
+	 */
+	public void encode(Order order, ByteBuffer buffer) {
+		int mark = encodeEntries.size();
+		try {
+			buffer.put(FORMAT_VERSION);
+			long sendMillis = order.getSendMillis();
+			long estimatedDeliveryMillis = order.getEstimatedDeliveryMillis();
+			long realDeliveryMillis = order.getRealDeliveryMillis();
+			buffer.put((byte) ((order.isSent() ? SENT : 0)
+					| (order.isDelivered() ? DELIVERED : 0)
+					| (order.isPremium() ? PREMIUM : 0)
+					| (sendMillis != Order.NO_DATE ? SEND_DATE : 0)
+					| (estimatedDeliveryMillis != Order.NO_DATE ? ESTIMATED_DELIVERY : 0)
+					| (realDeliveryMillis != Order.NO_DATE ? REAL_DELIVERY : 0)));
+			buffer.putLong(order.getId());
+			putString(buffer, order.getDescription());
+			putString(buffer, order.getRegion());
+			VarInts.putSignedVarLong(buffer, order.getBasePriceCents());
+			VarInts.putSignedVarLong(buffer, order.getFinalPriceCents() - order.getBasePriceCents());
+
+			long reference = 0;
+			if (sendMillis != Order.NO_DATE) {
+				reference = sendMillis;
+				VarInts.putSignedVarLong(buffer, reference);
+			}
+			if (estimatedDeliveryMillis != Order.NO_DATE) {
+				VarInts.putSignedVarLong(buffer, estimatedDeliveryMillis - reference);
+			}
+			if (realDeliveryMillis != Order.NO_DATE) {
+				VarInts.putSignedVarLong(buffer, realDeliveryMillis - reference);
+			}
+
+			List<Discount> discounts = order.getDiscounts();
+			VarInts.putVarInt(buffer, discounts.size());
+			for (int i = 0; i < discounts.size(); i++) {
+				putDiscount(buffer, discounts.get(i));
+			}
+		} catch (BufferOverflowException e) {
+			//the decoder never sees this record, forget the strings it added
+			while (encodeEntries.size() > mark) {
+				encodeDictionary.remove(encodeEntries.remove(encodeEntries.size() - 1));
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads an order at the position of the buffer and advances it past the order.
+	 *
+	 * @param buffer
+	 * @return Decoded order
+	 * @throws BufferUnderflowException When the buffer ends in the middle of the order
+	 * @throws IllegalArgumentException When the data is not an encoded order
+	 */
+	public Order decode(ByteBuffer buffer) {
+		int mark = decodeEntries.size();
+		try {
+			byte version = buffer.get();
+			if (version != FORMAT_VERSION && version != FORMAT_VERSION_WITHOUT_ID) {
+				throw new IllegalArgumentException("Unsupported order format version " + version);
+			}
+			int flags = buffer.get();
+			Order order = new Order();
+			if (version == FORMAT_VERSION) {
+				order.setId(buffer.getLong());
+			}
+			order.setDescription(getString(buffer));
+			order.setRegion(getString(buffer));
+			long basePriceCents = VarInts.getSignedVarLong(buffer);
+			long finalPriceCents = basePriceCents + VarInts.getSignedVarLong(buffer);
+			order.setBasePriceCents(basePriceCents);
+			order.setPremium((flags & PREMIUM) != 0);
+			if ((flags & DELIVERED) != 0) {
+				order.setState(OrderState.DELIVERED);
+			} else if ((flags & SENT) != 0) {
+				order.setState(OrderState.SENT);
+			}
+
+			long reference = 0;
+			if ((flags & SEND_DATE) != 0) {
+				reference = VarInts.getSignedVarLong(buffer);
+				order.setSendMillis(reference);
+			}
+			if ((flags & ESTIMATED_DELIVERY) != 0) {
+				order.setEstimatedDeliveryMillis(reference + VarInts.getSignedVarLong(buffer));
+			}
+			if ((flags & REAL_DELIVERY) != 0) {
+				order.setRealDeliveryMillis(reference + VarInts.getSignedVarLong(buffer));
+			}
+
+			int discounts = VarInts.getVarInt(buffer);
+			if (discounts > buffer.remaining()) {
+				throw new IllegalArgumentException("Malformed order, " + discounts + " discounts");
+			}
+			for (int i = 0; i < discounts; i++) {
+				order.addDiscount(getDiscount(buffer));
+			}
+			//the price may have been computed with rules that changed since, keep it as it was
+			order.setFinalPriceCents(finalPriceCents);
+			return order;
+		} catch (RuntimeException e) {
+			while (decodeEntries.size() > mark) {
+				decodeEntries.remove(decodeEntries.size() - 1);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the description of the order at the position of the buffer, leaving the buffer and the
+	 * codec unchanged.
+	 *
+	 * @param buffer
+	 * @return Description of the order
+	 */
+	public String decodeDescription(ByteBuffer buffer) {
+		ByteBuffer header = buffer.duplicate();
+		boolean withId = header.get(header.position()) == FORMAT_VERSION;
+		header.position(header.position() + HEADER + (withId ? Long.BYTES : 0));
+		int reference = VarInts.getVarInt(header);
+		if (reference == NULL) {
+			return null;
+		}
+		if (reference == LITERAL) {
+			return getUtf8(header);
+		}
+		return decodeEntries.get(reference - FIRST_ENTRY);
+	}
+
+	/**
+	 * Reads the identifier of the order at the position of the buffer, leaving the buffer and the
+	 * codec unchanged.
+	 *
+	 * @param buffer
+	 * @return Identifier of the order, 0 for orders encoded without one
+	 */
+	public long decodeId(ByteBuffer buffer) {
+		int position = buffer.position();
+		return buffer.get(position) == FORMAT_VERSION ? buffer.getLong(position + HEADER) : 0;
+	}
+
+	/**
+	 * Forgets the strings seen so far, on both the encoding and the decoding side.
+	 */
+	public void reset() {
+		encodeDictionary.clear();
+		encodeEntries.clear();
+		decodeEntries.clear();
+	}
+
+	private void putDiscount(ByteBuffer buffer, Discount discount) {
+		double percent = discount.getPercent();
+		long basisPoints = Math.round(percent * 100);
+		boolean wholeBasisPoints = Double.doubleToLongBits(basisPoints / 100.0) == Double.doubleToLongBits(percent);
+		buffer.put((byte) ((discount.isCompounding() ? COMPOUNDING : 0)
+				| (discount.isExclusive() ? EXCLUSIVE : 0)
+				| (wholeBasisPoints ? BASIS_POINTS : 0)));
+		putString(buffer, discount.getDescription());
+		if (wholeBasisPoints) {
+			VarInts.putSignedVarLong(buffer, basisPoints);
+		} else {
+			buffer.putDouble(percent);
+		}
+	}
+
+	private Discount getDiscount(ByteBuffer buffer) {
+		int flags = buffer.get();
+		String description = getString(buffer);
+		double percent = (flags & BASIS_POINTS) != 0
+				? VarInts.getSignedVarLong(buffer) / 100.0
+				: buffer.getDouble();
+		return new Discount(description, percent, (flags & COMPOUNDING) != 0, (flags & EXCLUSIVE) != 0);
+	}
+
+	private void putString(ByteBuffer buffer, String value) {
+		if (value == null) {
+			buffer.put((byte) NULL);
+			return;
+		}
+		Integer entry = encodeDictionary.get(value);
+		if (entry != null) {
+			VarInts.putVarInt(buffer, FIRST_ENTRY + entry);
+			return;
+		}
+		buffer.put((byte) LITERAL);
+		putUtf8(buffer, value);
+		if (encodeEntries.size() < dictionarySize) {
+			encodeDictionary.put(value, encodeEntries.size());
+			encodeEntries.add(value);
+		}
+	}
+
+	private String getString(ByteBuffer buffer) {
+		int reference = VarInts.getVarInt(buffer);
+		if (reference == NULL) {
+			return null;
+		}
+		if (reference == LITERAL) {
+			String value = getUtf8(buffer);
+			if (decodeEntries.size() < dictionarySize) {
+				decodeEntries.add(value);
+			}
+			return value;
+		}
+		int entry = reference - FIRST_ENTRY;
+		if (entry >= decodeEntries.size()) {
+			throw new IllegalArgumentException("Unknown string reference " + reference);
+		}
+		return decodeEntries.get(entry);
+	}
+
+	/**
+	 * Writes the UTF-8 length and bytes of the value straight into the buffer. Unpaired surrogates
+	 * are written as '?', like {@link String#getBytes(java.nio.charset.Charset)} does.
+	 */
+	private static void putUtf8(ByteBuffer buffer, String value) {
+		int length = value.length();
+		int utf8Length = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				utf8Length++;
+			} else if (c < 0x800) {
+				utf8Length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				utf8Length += 4;
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				utf8Length++;
+			} else {
+				utf8Length += 3;
+			}
+		}
+		VarInts.putVarInt(buffer, utf8Length);
+		if (buffer.remaining() < utf8Length) {
+			throw new BufferOverflowException();
+		}
+
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer.put((byte) (0xF0 | (codePoint >> 18)));
+				buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+			} else if (Character.isSurrogate(c)) {
+				buffer.put((byte) '?');
+			} else {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	private static String getUtf8(ByteBuffer buffer) {
+		int length = VarInts.getVarInt(buffer);
+		if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		String value;
+		if (buffer.hasArray()) {
+			value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+}
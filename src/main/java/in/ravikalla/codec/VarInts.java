@@ -0,0 +1,80 @@
+package in.ravikalla.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * LEB128 variable-length integers: 7 bits per byte, high bit set on every byte but the last.
+ * Signed values are zigzag encoded first so that small negative numbers stay short.
+ *
+ * @author - Ravi Kalla
+ */
+public final class VarInts {
+
+	private VarInts() {
+	}
+
+	/**
+	 * @param buffer
+	 * @param value Unsigned value
+	 * @throws BufferOverflowException When the buffer is full, its position is then undefined
+	 */
+	public static void putVarLong(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * @param buffer
+	 * @return Unsigned value
+	 * @throws BufferUnderflowException When the buffer ends in the middle of the value
+	 */
+	public static long getVarLong(ByteBuffer buffer) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed variable-length integer");
+	}
+
+	public static void putVarInt(ByteBuffer buffer, int value) {
+		putVarLong(buffer, value & 0xFFFFFFFFL);
+	}
+
+	public static int getVarInt(ByteBuffer buffer) {
+		long value = getVarLong(buffer);
+		if ((value >>> 32) != 0) {
+			throw new IllegalArgumentException("Variable-length integer out of int range");
+		}
+		return (int) value;
+	}
+
+	public static void putSignedVarLong(ByteBuffer buffer, long value) {
+		putVarLong(buffer, (value << 1) ^ (value >> 63));
+	}
+
+	public static long getSignedVarLong(ByteBuffer buffer) {
+		long value = getVarLong(buffer);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * @return Number of bytes of the unsigned value once encoded
+	 */
+	public static int sizeOfVarLong(long value) {
+		int size = 1;
+		while ((value & ~0x7FL) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+}
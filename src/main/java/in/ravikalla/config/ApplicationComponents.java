@@ -0,0 +1,64 @@
+package in.ravikalla.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import in.ravikalla.admission.AdmissionControl;
+import in.ravikalla.analytics.DeliveryAnalytics;
+import in.ravikalla.controller.AnalyticsController;
+import in.ravikalla.controller.MetricsController;
+import in.ravikalla.controller.OrderController;
+import in.ravikalla.controller.SampleController;
+import in.ravikalla.controller.ShardController;
+import in.ravikalla.event.DeliveryScoreConsumer;
+import in.ravikalla.event.NotificationConsumer;
+import in.ravikalla.event.OrderEventDispatcher;
+import in.ravikalla.external.service.impl.BufferedDeliveryScoreServiceImpl;
+import in.ravikalla.external.service.impl.CachingOrderStorageServiceImpl;
+import in.ravikalla.external.service.impl.DeliveryScoreServiceImpl;
+import in.ravikalla.external.service.impl.JournalOrderStorageServiceImpl;
+import in.ravikalla.external.service.impl.OffHeapOrderStorageServiceImpl;
+import in.ravikalla.external.service.impl.OrderStorageServiceImpl;
+import in.ravikalla.factory.EmailServiceFactory;
+import in.ravikalla.idempotency.IdempotencyTable;
+import in.ravikalla.importer.OrderFileImporter;
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.service.impl.AmazonDeliveryServiceImpl;
+import in.ravikalla.service.impl.DeliveryEstimationServiceImpl;
+import in.ravikalla.service.impl.DiscountCatalogServiceImpl;
+import in.ravikalla.service.impl.EmailNotificationServiceImpl;
+import in.ravikalla.shard.HttpShardTransport;
+import in.ravikalla.shard.LocalShard;
+import in.ravikalla.shard.ShardAuthentication;
+import in.ravikalla.shard.ShardMembership;
+import in.ravikalla.shard.ShardedAmazonDeliveryService;
+
+/**
+ * Index of the components of the application, registered without scanning the classpath.
+ * Conditions on the components still apply. A new component has to be added here.
+ *
+ * @author - Ravi Kalla
+ */
+@Configuration
+@Import({
+		//configuration
+		OrderExecutionConfiguration.class, DeliveryEstimationProperties.class,
+		LazyInitializationBeanFactoryPostProcessor.class,
+		//controllers
+		SampleController.class, OrderController.class, MetricsController.class, AnalyticsController.class,
+		//services
+		AmazonDeliveryServiceImpl.class, DeliveryEstimationServiceImpl.class, EmailNotificationServiceImpl.class,
+		EmailServiceFactory.class, OrderMetrics.class, OrderFileImporter.class, DeliveryAnalytics.class,
+		DiscountCatalogServiceImpl.class, AdmissionControl.class, IdempotencyTable.class,
+		//order storage
+		OrderStorageServiceImpl.class, OffHeapOrderStorageServiceImpl.class, JournalOrderStorageServiceImpl.class,
+		CachingOrderStorageServiceImpl.class,
+		//delivery score
+		DeliveryScoreServiceImpl.class, BufferedDeliveryScoreServiceImpl.class,
+		//events
+		OrderEventDispatcher.class, DeliveryScoreConsumer.class, NotificationConsumer.class,
+		//sharding
+		ShardMembership.class, LocalShard.class, HttpShardTransport.class, ShardedAmazonDeliveryService.class,
+		ShardAuthentication.class, ShardController.class })
+public class ApplicationComponents {
+}
@@ -0,0 +1,221 @@
+package in.ravikalla.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import in.ravikalla.service.AmazonDeliveryService;
+
+/**
+ * Settings of the delivery estimation engine, bound from the {@code delivery.*} properties.
+ * The defaults count calendar days with no holidays and no cutoff time.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ConfigurationProperties(prefix = "delivery")
+public class DeliveryEstimationProperties {
+
+	//Fixed offset the calendar is evaluated in, e.g. Z or +05:30
+	private String zoneOffset = "Z";
+
+	//Days of week on which parcels move, all days when empty
+	private List<String> businessDays = new ArrayList<>();
+
+	//ISO dates on which parcels do not move
+	private List<String> holidays = new ArrayList<>();
+
+	//Orders sent at or after this local time (HH:mm) start being processed the next day, none when empty
+	private String cutoff = "";
+
+	//Days covered by the precomputed calendar tables, before and after today
+	private int horizonDays = 5 * 366;
+
+	private Sla defaultSla = new Sla(AmazonDeliveryService.ESTIMATED_DAYS_TO_DELIVER_PREMIUM,
+			AmazonDeliveryService.ESTIMATED_DAYS_TO_DELIVER_REGULAR);
+
+	private Map<String, Sla> regions = new HashMap<>();
+
+	/**
+	 * Getter for property 'zoneOffset'.
+	 *
+	 * @return Value for property 'zoneOffset'.
+	 */
+	public String getZoneOffset() {
+		return zoneOffset;
+	}
+
+	/**
+	 * Setter for property 'zoneOffset'.
+	 *
+	 * @param zoneOffset Value to set for property 'zoneOffset'.
+	 */
+	public void setZoneOffset(String zoneOffset) {
+		this.zoneOffset = zoneOffset;
+	}
+
+	/**
+	 * Getter for property 'businessDays'.
+	 *
+	 * @return Value for property 'businessDays'.
+	 */
+	public List<String> getBusinessDays() {
+		return businessDays;
+	}
+
+	/**
+	 * Setter for property 'businessDays'.
+	 *
+	 * @param businessDays Value to set for property 'businessDays'.
+	 */
+	public void setBusinessDays(List<String> businessDays) {
+		this.businessDays = businessDays;
+	}
+
+	/**
+	 * Getter for property 'holidays'.
+	 *
+	 * @return Value for property 'holidays'.
+	 */
+	public List<String> getHolidays() {
+		return holidays;
+	}
+
+	/**
+	 * Setter for property 'holidays'.
+	 *
+	 * @param holidays Value to set for property 'holidays'.
+	 */
+	public void setHolidays(List<String> holidays) {
+		this.holidays = holidays;
+	}
+
+	/**
+	 * Getter for property 'cutoff'.
+	 *
+	 * @return Value for property 'cutoff'.
+	 */
+	public String getCutoff() {
+		return cutoff;
+	}
+
+	/**
+	 * Setter for property 'cutoff'.
+	 *
+	 * @param cutoff Value to set for property 'cutoff'.
+	 */
+	public void setCutoff(String cutoff) {
+		this.cutoff = cutoff;
+	}
+
+	/**
+	 * Getter for property 'horizonDays'.
+	 *
+	 * @return Value for property 'horizonDays'.
+	 */
+	public int getHorizonDays() {
+		return horizonDays;
+	}
+
+	/**
+	 * Setter for property 'horizonDays'.
+	 *
+	 * @param horizonDays Value to set for property 'horizonDays'.
+	 */
+	public void setHorizonDays(int horizonDays) {
+		this.horizonDays = horizonDays;
+	}
+
+	/**
+	 * Getter for property 'defaultSla'.
+	 *
+	 * @return Value for property 'defaultSla'.
+	 */
+	public Sla getDefaultSla() {
+		return defaultSla;
+	}
+
+	/**
+	 * Setter for property 'defaultSla'.
+	 *
+	 * @param defaultSla Value to set for property 'defaultSla'.
+	 */
+	public void setDefaultSla(Sla defaultSla) {
+		this.defaultSla = defaultSla;
+	}
+
+	/**
+	 * Getter for property 'regions'.
+	 *
+	 * @return Value for property 'regions'.
+	 */
+	public Map<String, Sla> getRegions() {
+		return regions;
+	}
+
+	/**
+	 * Setter for property 'regions'.
+	 *
+	 * @param regions Value to set for property 'regions'.
+	 */
+	public void setRegions(Map<String, Sla> regions) {
+		this.regions = regions;
+	}
+
+	/**
+	 * Business days to deliver, per customer class.
+	 */
+	public static class Sla {
+
+		private int premiumDays;
+		private int regularDays;
+
+		public Sla() {
+		}
+
+		public Sla(int premiumDays, int regularDays) {
+			this.premiumDays = premiumDays;
+			this.regularDays = regularDays;
+		}
+
+		/**
+		 * Getter for property 'premiumDays'.
+		 *
+		 * @return Value for property 'premiumDays'.
+		 */
+		public int getPremiumDays() {
+			return premiumDays;
+		}
+
+		/**
+		 * Setter for property 'premiumDays'.
+		 *
+		 * @param premiumDays Value to set for property 'premiumDays'.
+		 */
+		public void setPremiumDays(int premiumDays) {
+			this.premiumDays = premiumDays;
+		}
+
+		/**
+		 * Getter for property 'regularDays'.
+		 *
+		 * @return Value for property 'regularDays'.
+		 */
+		public int getRegularDays() {
+			return regularDays;
+		}
+
+		/**
+		 * Setter for property 'regularDays'.
+		 *
+		 * @param regularDays Value to set for property 'regularDays'.
+		 */
+		public void setRegularDays(int regularDays) {
+			this.regularDays = regularDays;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package in.ravikalla.config;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Makes the beans of the application lazy, so each one is created when first used instead of
+ * during startup. Beans annotated with {@link Lazy} keep their setting. Infrastructure beans and
+ * {@link SmartInitializingSingleton}s, like the JMX exporter, stay eager as they only do their
+ * work when created with the other singletons. The first requests pay for the beans they need.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ConditionalOnProperty(name = "startup.lazy-initialization", havingValue = "true")
+public class LazyInitializationBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
+
+	@Override
+	public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+		for (String name : beanFactory.getBeanDefinitionNames()) {
+			BeanDefinition definition = beanFactory.getBeanDefinition(name);
+			if (definition.getRole() == BeanDefinition.ROLE_INFRASTRUCTURE || isLazyAnnotated(definition)
+					|| isInitializedWithSingletons(definition, beanFactory.getBeanClassLoader())) {
+				continue;
+			}
+			definition.setLazyInit(true);
+		}
+	}
+
+	private static boolean isLazyAnnotated(BeanDefinition definition) {
+		if (!(definition instanceof AnnotatedBeanDefinition)) {
+			return false;
+		}
+		AnnotatedBeanDefinition annotated = (AnnotatedBeanDefinition) definition;
+		MethodMetadata factoryMethod = annotated.getFactoryMethodMetadata();
+		return annotated.getMetadata().isAnnotated(Lazy.class.getName())
+				|| (factoryMethod != null && factoryMethod.isAnnotated(Lazy.class.getName()));
+	}
+
+	/**
+	 * Resolves the declared type of the bean, from its factory method when it has one, without
+	 * creating anything.
+	 */
+	private static boolean isInitializedWithSingletons(BeanDefinition definition, ClassLoader classLoader) {
+		String typeName = definition.getBeanClassName();
+		if (definition instanceof AnnotatedBeanDefinition
+				&& ((AnnotatedBeanDefinition) definition).getFactoryMethodMetadata() != null) {
+			typeName = ((AnnotatedBeanDefinition) definition).getFactoryMethodMetadata().getReturnTypeName();
+		}
+		if (typeName == null || !ClassUtils.isPresent(typeName, classLoader)) {
+			return false;
+		}
+		return SmartInitializingSingleton.class.isAssignableFrom(ClassUtils.resolveClassName(typeName, classLoader));
+	}
+}
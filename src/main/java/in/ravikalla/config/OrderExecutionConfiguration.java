@@ -0,0 +1,53 @@
+package in.ravikalla.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Execution of the order REST API.
+ * Handlers hand their work over to the order executor and return right away, so Tomcat threads
+ * only parse requests and write responses. Executor threads only run the in-memory part of a call:
+ * waiting for the storage to make a change durable and sending notifications happen without a
+ * thread, see {@code OrderController}. Streamed responses are written from the same executor.
+ *
+ * @author - Ravi Kalla
+ */
+@Configuration
+public class OrderExecutionConfiguration extends WebMvcConfigurerAdapter {
+
+	public static final String ORDER_EXECUTOR = "orderExecutor";
+
+	@Value("${orders.executor.threads:64}")
+	private int threads;
+
+	@Value("${orders.executor.queue-capacity:10000}")
+	private int queueCapacity;
+
+	@Value("${orders.request-timeout-ms:30000}")
+	private long requestTimeoutMillis;
+
+	@Bean(name = ORDER_EXECUTOR)
+	public ThreadPoolTaskExecutor orderExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(threads);
+		executor.setMaxPoolSize(threads);
+		executor.setQueueCapacity(queueCapacity);
+		executor.setThreadNamePrefix("order-");
+		//a full queue fails the request with 503 instead of piling up more work
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		return executor;
+	}
+
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(orderExecutor());
+		configurer.setDefaultTimeout(requestTimeoutMillis);
+	}
+}
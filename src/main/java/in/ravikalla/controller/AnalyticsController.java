@@ -0,0 +1,30 @@
+package in.ravikalla.controller;
+
+import javax.inject.Inject;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import in.ravikalla.analytics.DeliveryAnalytics;
+import in.ravikalla.analytics.DeliveryReport;
+
+/**
+ * Breakdowns of the delivered orders by {@link DeliveryAnalytics}.
+ *
+ * @author - Ravi Kalla
+ */
+@RestController
+public class AnalyticsController {
+
+	@Inject
+	private DeliveryAnalytics deliveryAnalytics;
+
+	@GetMapping("/analytics/deliveries")
+	public DeliveryReport deliveries(@RequestParam(name = "refresh", defaultValue = "true") boolean refresh) {
+		if (refresh) {
+			deliveryAnalytics.refresh();
+		}
+		return deliveryAnalytics.getReport();
+	}
+}
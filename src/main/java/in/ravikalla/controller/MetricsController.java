@@ -0,0 +1,50 @@
+package in.ravikalla.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.inject.Inject;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import in.ravikalla.external.service.impl.CachingOrderStorageServiceImpl;
+import in.ravikalla.metrics.OrderMetrics;
+
+/**
+ * Actuator-style endpoint serving the {@link OrderMetrics}, latencies in microseconds, and the
+ * order storage cache statistics when the cache is enabled.
+ *
+ * @author - Ravi Kalla
+ */
+@RestController
+public class MetricsController {
+
+	@Inject
+	private OrderMetrics orderMetrics;
+
+	@Inject
+	private Optional<CachingOrderStorageServiceImpl> orderStorageCache;
+
+	@GetMapping("/metrics/orders")
+	public Map<String, Object> orders() {
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("operations", orderMetrics.getOperations());
+		metrics.put("downstreams", orderMetrics.getDownstreams());
+		metrics.put("exceptions", orderMetrics.getExceptions());
+		orderStorageCache.ifPresent(cache -> metrics.put("storageCache", cacheStatistics(cache)));
+		return metrics;
+	}
+
+	private static Map<String, Long> cacheStatistics(CachingOrderStorageServiceImpl cache) {
+		Map<String, Long> statistics = new LinkedHashMap<>();
+		statistics.put("hits", cache.getHits());
+		statistics.put("misses", cache.getMisses());
+		statistics.put("filteredOut", cache.getFilteredOut());
+		statistics.put("evictions", cache.getEvictions());
+		statistics.put("expirations", cache.getExpirations());
+		statistics.put("size", (long) cache.getSize());
+		return statistics;
+	}
+}
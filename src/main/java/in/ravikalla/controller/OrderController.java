@@ -0,0 +1,308 @@
+package in.ravikalla.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import in.ravikalla.config.OrderExecutionConfiguration;
+import in.ravikalla.exception.OrderAlreadyExistsException;
+import in.ravikalla.exception.OrderException;
+import in.ravikalla.exception.OrderRejectedException;
+import in.ravikalla.exception.OrderRejectedException.Reason;
+import in.ravikalla.external.service.DeliveryScoreService;
+import in.ravikalla.external.service.OrderStorageService;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+import in.ravikalla.model.OrderState;
+import in.ravikalla.service.AmazonDeliveryService;
+import in.ravikalla.service.DiscountCatalogService;
+
+/**
+ * REST API of the order lifecycle.
+ * Every handler runs on the order executor and returns a {@link CompletableFuture}, which frees the
+ * Tomcat thread. Changes answer once they are durable: the response is chained on
+ * {@link OrderStorageService#whenDurable(long)}, so no thread waits for the storage while a store
+ * that returns before its writes are durable forces them. Notifications are sent by their own
+ * pipeline and not waited for. Bulk reads are streamed.
+ *
+ * @author - Ravi Kalla
+ */
+@RestController
+public class OrderController {
+
+	//Header of the key a client sends a transition and its retries with, so that retries get the first outcome
+	public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+	private static final int STREAM_FLUSH_EVERY = 256;
+
+	@Inject
+	private AmazonDeliveryService amazonDeliveryService;
+
+	@Inject
+	private DeliveryScoreService deliveryScoreService;
+
+	@Inject
+	private OrderStorageService orderStorageService;
+
+	@Inject
+	private DiscountCatalogService discountCatalogService;
+
+	@Inject
+	private ObjectMapper objectMapper;
+
+	@Inject
+	@Qualifier(OrderExecutionConfiguration.ORDER_EXECUTOR)
+	private Executor orderExecutor;
+
+	@PostMapping("/orders")
+	public CompletableFuture<ResponseEntity<Object>> create(@RequestBody OrderRequest request) {
+		return async(() -> {
+			Order order = amazonDeliveryService.initOrder(request.getDescription(), request.getBasePrice(),
+					request.isPremium());
+			return durable(order, ResponseEntity.status(HttpStatus.CREATED).body(order));
+		});
+	}
+
+	@GetMapping("/orders/{description:.+}")
+	public CompletableFuture<ResponseEntity<Object>> get(@PathVariable String description) {
+		return async(() -> {
+			Order order = amazonDeliveryService.find(description);
+			return done(order == null ? notFound(description) : ResponseEntity.ok(order));
+		});
+	}
+
+	/**
+	 * Looks the order up on whichever node holds it, also among orders sharing a description, of which
+	 * the endpoints by description only reach the last one.
+	 */
+	@GetMapping("/orders/by-id/{id}")
+	public CompletableFuture<ResponseEntity<Object>> getById(@PathVariable long id) {
+		return async(() -> {
+			Order order = amazonDeliveryService.findById(id);
+			return done(order == null ? notFound(Long.toString(id)) : ResponseEntity.ok(order));
+		});
+	}
+
+	@PostMapping("/orders/{description}/discounts")
+	public CompletableFuture<ResponseEntity<Object>> addDiscount(@PathVariable String description,
+			@RequestBody Discount discount) {
+		return async(change(() -> amazonDeliveryService.find(description), description,
+				order -> amazonDeliveryService.addDiscount(order, discount)));
+	}
+
+	@PostMapping("/orders/by-id/{id}/discounts")
+	public CompletableFuture<ResponseEntity<Object>> addDiscountById(@PathVariable long id,
+			@RequestBody Discount discount) {
+		return async(change(() -> amazonDeliveryService.findById(id), Long.toString(id),
+				order -> amazonDeliveryService.addDiscount(order, discount)));
+	}
+
+	@PostMapping("/orders/{description}/discounts/{code}")
+	public CompletableFuture<ResponseEntity<Object>> addCatalogDiscount(@PathVariable String description,
+			@PathVariable String code) {
+		return async(catalogDiscount(() -> amazonDeliveryService.find(description), description, code));
+	}
+
+	@PostMapping("/orders/by-id/{id}/discounts/{code}")
+	public CompletableFuture<ResponseEntity<Object>> addCatalogDiscountById(@PathVariable long id,
+			@PathVariable String code) {
+		return async(catalogDiscount(() -> amazonDeliveryService.findById(id), Long.toString(id), code));
+	}
+
+	@PostMapping("/orders/{description}/send")
+	public CompletableFuture<ResponseEntity<Object>> send(@PathVariable String description,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date date,
+			@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+		return async(change(() -> amazonDeliveryService.find(description), description,
+				order -> amazonDeliveryService.markSent(order, date == null ? new Date() : date, idempotencyKey)));
+	}
+
+	@PostMapping("/orders/by-id/{id}/send")
+	public CompletableFuture<ResponseEntity<Object>> sendById(@PathVariable long id,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date date,
+			@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+		return async(change(() -> amazonDeliveryService.findById(id), Long.toString(id),
+				order -> amazonDeliveryService.markSent(order, date == null ? new Date() : date, idempotencyKey)));
+	}
+
+	@PostMapping("/orders/{description}/deliver")
+	public CompletableFuture<ResponseEntity<Object>> deliver(@PathVariable String description,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date date,
+			@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+		return async(change(() -> amazonDeliveryService.find(description), description,
+				order -> amazonDeliveryService.markDelivered(order, date == null ? new Date() : date, idempotencyKey)));
+	}
+
+	@PostMapping("/orders/by-id/{id}/deliver")
+	public CompletableFuture<ResponseEntity<Object>> deliverById(@PathVariable long id,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date date,
+			@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+		return async(change(() -> amazonDeliveryService.findById(id), Long.toString(id),
+				order -> amazonDeliveryService.markDelivered(order, date == null ? new Date() : date, idempotencyKey)));
+	}
+
+	/**
+	 * Streams the orders in the given state as a JSON array, without building the response in memory.
+	 */
+	@GetMapping("/orders")
+	public ResponseEntity<StreamingResponseBody> findByState(@RequestParam OrderState state) {
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON_UTF8)
+				.body(out -> writeOrders(orderStorageService.findByState(state), out));
+	}
+
+	@GetMapping("/score")
+	public CompletableFuture<ResponseEntity<Object>> score() {
+		return async(() -> {
+			Map<String, Long> score = new LinkedHashMap<>();
+			score.put("current", deliveryScoreService.getCurrentScore());
+			score.put("lastMinute", deliveryScoreService.getScoreLastMinute());
+			score.put("lastHour", deliveryScoreService.getScoreLastHour());
+			score.put("minDeliveryPoints", deliveryScoreService.getMinDeliveryPoints());
+			score.put("maxDeliveryPoints", deliveryScoreService.getMaxDeliveryPoints());
+			score.put("p99DeliveryPoints", deliveryScoreService.getDeliveryPointsPercentile(99));
+			return done(ResponseEntity.ok(score));
+		});
+	}
+
+	private void writeOrders(Collection<Order> orders, OutputStream out) throws IOException {
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+			generator.writeStartArray();
+			int written = 0;
+			for (Order order : orders) {
+				generator.writeObject(order);
+				if (++written % STREAM_FLUSH_EVERY == 0) {
+					generator.flush();
+				}
+			}
+			generator.writeEndArray();
+		}
+	}
+
+	/**
+	 * @param lookup Finds the order, null when there is none
+	 * @param key Description or identifier the order is looked up by
+	 * @return Call applying the change to the order and answering it once durable
+	 */
+	private OrderCall change(Supplier<Order> lookup, String key, OrderChange change) {
+		return () -> {
+			Order order = lookup.get();
+			if (order == null) {
+				return done(notFound(key));
+			}
+			change.apply(order);
+			return durable(order, ResponseEntity.ok(order));
+		};
+	}
+
+	private OrderCall catalogDiscount(Supplier<Order> lookup, String key, String code) {
+		return () -> {
+			Discount discount = discountCatalogService.find(code);
+			if (discount == null) {
+				return done(error(HttpStatus.NOT_FOUND, "Discount " + code + " not found"));
+			}
+			return change(lookup, key, order -> amazonDeliveryService.addDiscount(order, discount)).call();
+		};
+	}
+
+	private CompletableFuture<ResponseEntity<Object>> async(OrderCall call) {
+		CompletableFuture<ResponseEntity<Object>> result = new CompletableFuture<>();
+		try {
+			orderExecutor.execute(() -> {
+				try {
+					call.call().whenComplete((response, e) -> {
+						if (e == null) {
+							result.complete(response);
+						} else {
+							result.completeExceptionally(e);
+						}
+					});
+				} catch (OrderAlreadyExistsException e) {
+					result.complete(error(HttpStatus.CONFLICT, "Order already exists"));
+				} catch (OrderException e) {
+					result.complete(error(HttpStatus.CONFLICT, e.getMessage()));
+				} catch (OrderRejectedException e) {
+					result.complete(rejected(e));
+				} catch (IllegalArgumentException e) {
+					result.complete(error(HttpStatus.BAD_REQUEST, e.getMessage()));
+				} catch (Throwable e) {
+					result.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.complete(error(HttpStatus.SERVICE_UNAVAILABLE, "Too many requests in progress"));
+		}
+		return result;
+	}
+
+	/**
+	 * @return Completes with the response once the changes to the order are durable
+	 */
+	private CompletableFuture<ResponseEntity<Object>> durable(Order order, ResponseEntity<Object> response) {
+		return orderStorageService.whenDurable(order.getId()).thenApply(written -> response);
+	}
+
+	private static CompletableFuture<ResponseEntity<Object>> done(ResponseEntity<Object> response) {
+		return CompletableFuture.completedFuture(response);
+	}
+
+	/**
+	 * 429 for a customer class over its rate, 503 for an overloaded node, both with the hinted
+	 * delay as Retry-After in whole seconds.
+	 */
+	private static ResponseEntity<Object> rejected(OrderRejectedException e) {
+		HttpStatus status = e.getReason() == Reason.RATE_LIMITED ? HttpStatus.TOO_MANY_REQUESTS
+				: HttpStatus.SERVICE_UNAVAILABLE;
+		long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(e.getRetryAfterMillis() + 999));
+		return ResponseEntity.status(status).header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+				.body(Collections.singletonMap("error", e.getMessage()));
+	}
+
+	private static ResponseEntity<Object> notFound(String key) {
+		return error(HttpStatus.NOT_FOUND, "Order " + key + " not found");
+	}
+
+	private static ResponseEntity<Object> error(HttpStatus status, String message) {
+		return ResponseEntity.status(status).body(Collections.singletonMap("error", message));
+	}
+
+	@FunctionalInterface
+	private interface OrderCall {
+		CompletableFuture<ResponseEntity<Object>> call() throws OrderException, OrderAlreadyExistsException;
+	}
+
+	@FunctionalInterface
+	private interface OrderChange {
+		void apply(Order order) throws OrderException;
+	}
+}
@@ -1,6 +1,7 @@
 package in.ravikalla.controller;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
@@ -21,6 +22,8 @@ import in.ravikalla.service.AmazonDeliveryService;
 @Controller
 public class SampleController {
 
+	private final AtomicLong sampleOrders = new AtomicLong();
+
 	@Inject
 	private AmazonDeliveryService amazonDeliveryService;
 
@@ -33,7 +36,7 @@ public class SampleController {
 
 		final Date now = new Date();
 
-		Order order = amazonDeliveryService.initOrder("Soaps", 90.25, true);
+		Order order = amazonDeliveryService.initOrder("Soaps #" + sampleOrders.incrementAndGet(), 90.25, true);
 		amazonDeliveryService.addDiscount(order, new Discount("Promo of new year", 5.0));
 		amazonDeliveryService.markSent(order, now);
 		amazonDeliveryService.markDelivered(order, now);
@@ -0,0 +1,98 @@
+package in.ravikalla.controller;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.shard.HttpShardTransport;
+import in.ravikalla.shard.LocalShard;
+import in.ravikalla.shard.ShardMessages;
+
+/**
+ * Endpoints the {@link HttpShardTransport} of the other nodes posts {@link ShardMessages} to, they
+ * run on the {@link LocalShard} of this node.
+ *
+ * @author - Ravi Kalla
+ */
+@RestController
+@ConditionalOnProperty(name = "shard.enabled", havingValue = "true")
+public class ShardController {
+
+	@Inject
+	private LocalShard localShard;
+
+	@PostMapping(value = "/shard/orders", consumes = ShardMessages.CONTENT_TYPE, produces = ShardMessages.CONTENT_TYPE)
+	public byte[] initOrders(@RequestBody byte[] message) {
+		ShardMessages.Reader reader = new ShardMessages.Reader(message);
+		return new ShardMessages.Writer().writeResult(localShard.initOrders(reader.readRequests())).toByteArray();
+	}
+
+	@PostMapping(value = "/shard/discounts", consumes = ShardMessages.CONTENT_TYPE,
+			produces = ShardMessages.CONTENT_TYPE)
+	public byte[] addDiscounts(@RequestBody byte[] message) {
+		ShardMessages.Reader reader = new ShardMessages.Reader(message);
+		List<String> descriptions = reader.readDescriptions();
+		Discount discount = reader.readDiscount();
+		return new ShardMessages.Writer()
+				.writeResult(localShard.addDiscounts(descriptions, reader.readIds(), discount))
+				.toByteArray();
+	}
+
+	@PostMapping(value = "/shard/sent", consumes = ShardMessages.CONTENT_TYPE, produces = ShardMessages.CONTENT_TYPE)
+	public byte[] markSentAll(@RequestBody byte[] message) {
+		ShardMessages.Reader reader = new ShardMessages.Reader(message);
+		List<String> descriptions = reader.readDescriptions();
+		Date date = reader.readDate();
+		List<String> idempotencyKeys = reader.readIdempotencyKeys();
+		return new ShardMessages.Writer()
+				.writeResult(localShard.markSentAll(descriptions, reader.readIds(), date, idempotencyKeys))
+				.toByteArray();
+	}
+
+	@PostMapping(value = "/shard/delivered", consumes = ShardMessages.CONTENT_TYPE,
+			produces = ShardMessages.CONTENT_TYPE)
+	public byte[] markDeliveredAll(@RequestBody byte[] message) {
+		ShardMessages.Reader reader = new ShardMessages.Reader(message);
+		List<String> descriptions = reader.readDescriptions();
+		Date date = reader.readDate();
+		List<String> idempotencyKeys = reader.readIdempotencyKeys();
+		return new ShardMessages.Writer()
+				.writeResult(localShard.markDeliveredAll(descriptions, reader.readIds(), date, idempotencyKeys))
+				.toByteArray();
+	}
+
+	@PostMapping(value = "/shard/find", consumes = ShardMessages.CONTENT_TYPE, produces = ShardMessages.CONTENT_TYPE)
+	public byte[] find(@RequestBody byte[] message) {
+		String description = new ShardMessages.Reader(message).readDescriptions().get(0);
+		return new ShardMessages.Writer().writeOrder(localShard.find(description)).toByteArray();
+	}
+
+	@PostMapping(value = "/shard/find-by-id", consumes = ShardMessages.CONTENT_TYPE,
+			produces = ShardMessages.CONTENT_TYPE)
+	public byte[] findById(@RequestBody byte[] message) {
+		long id = new ShardMessages.Reader(message).readIds().get(0);
+		return new ShardMessages.Writer().writeOrder(localShard.findById(id)).toByteArray();
+	}
+
+	@PostMapping(value = "/shard/transfer", consumes = ShardMessages.CONTENT_TYPE,
+			produces = ShardMessages.CONTENT_TYPE)
+	public byte[] transfer(@RequestBody byte[] message) {
+		int stored = localShard.transfer(new ShardMessages.Reader(message).readOrders());
+		return new ShardMessages.Writer().writeCount(stored).toByteArray();
+	}
+
+	@PostMapping(value = "/shard/handed-over", consumes = ShardMessages.CONTENT_TYPE,
+			produces = ShardMessages.CONTENT_TYPE)
+	public byte[] handedOver(@RequestBody byte[] message) {
+		List<String> nodes = new ShardMessages.Reader(message).readDescriptions();
+		localShard.handedOver(nodes.get(0), nodes.subList(1, nodes.size()));
+		return new byte[0];
+	}
+}
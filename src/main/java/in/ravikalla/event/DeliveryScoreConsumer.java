@@ -0,0 +1,42 @@
+package in.ravikalla.event;
+
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import in.ravikalla.external.service.DeliveryScoreService;
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.metrics.OrderMetrics.Downstream;
+
+/**
+ * Submits the delivery points of every delivered order.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ConditionalOnProperty(name = "orders.events.enabled", havingValue = "true", matchIfMissing = true)
+public class DeliveryScoreConsumer implements OrderEventConsumer {
+
+	@Inject
+	private DeliveryScoreService deliveryScoreService;
+
+	@Inject
+	private OrderMetrics orderMetrics;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onEvents(List<OrderEvent> events) {
+		for (OrderEvent event : events) {
+			if (event.getType() == OrderEvent.Type.DELIVERED) {
+				final long start = System.nanoTime();
+				deliveryScoreService.submitDeliveryPoints(((OrderDelivered) event).getDeliveryPoints());
+				orderMetrics.record(Downstream.SCORE, System.nanoTime() - start);
+			}
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package in.ravikalla.event;
+
+import in.ravikalla.model.Discount;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class DiscountAdded extends OrderEvent {
+
+	private final Discount discount;
+	private final long finalPriceCents;
+
+	public DiscountAdded(String description, Discount discount, long finalPriceCents) {
+		super(description);
+		this.discount = discount;
+		this.finalPriceCents = finalPriceCents;
+	}
+
+	@Override
+	public Type getType() {
+		return Type.DISCOUNT_ADDED;
+	}
+
+	/**
+	 * Getter for property 'discount'.
+	 *
+	 * @return Value for property 'discount', null when only the price was recalculated.
+	 */
+	public Discount getDiscount() {
+		return discount;
+	}
+
+	/**
+	 * Getter for property 'finalPriceCents'.
+	 *
+	 * @return Value for property 'finalPriceCents'.
+	 */
+	public long getFinalPriceCents() {
+		return finalPriceCents;
+	}
+}
@@ -0,0 +1,42 @@
+package in.ravikalla.event;
+
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.metrics.OrderMetrics.Downstream;
+import in.ravikalla.service.NotificationService;
+
+/**
+ * Queues the email notification of every delivered order.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ConditionalOnProperty(name = "orders.events.enabled", havingValue = "true", matchIfMissing = true)
+public class NotificationConsumer implements OrderEventConsumer {
+
+	@Inject
+	private NotificationService notificationService;
+
+	@Inject
+	private OrderMetrics orderMetrics;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onEvents(List<OrderEvent> events) {
+		for (OrderEvent event : events) {
+			if (event.getType() == OrderEvent.Type.DELIVERED) {
+				final long start = System.nanoTime();
+				notificationService.notifyDelivered(((OrderDelivered) event).toOrder());
+				orderMetrics.record(Downstream.NOTIFICATION, System.nanoTime() - start);
+			}
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package in.ravikalla.event;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class OrderCreated extends OrderEvent {
+
+	private final long basePriceCents;
+	private final long finalPriceCents;
+	private final boolean premium;
+	private final String region;
+
+	public OrderCreated(String description, long basePriceCents, long finalPriceCents, boolean premium,
+			String region) {
+		super(description);
+		this.basePriceCents = basePriceCents;
+		this.finalPriceCents = finalPriceCents;
+		this.premium = premium;
+		this.region = region;
+	}
+
+	@Override
+	public Type getType() {
+		return Type.CREATED;
+	}
+
+	/**
+	 * Getter for property 'basePriceCents'.
+	 *
+	 * @return Value for property 'basePriceCents'.
+	 */
+	public long getBasePriceCents() {
+		return basePriceCents;
+	}
+
+	/**
+	 * Getter for property 'finalPriceCents'.
+	 *
+	 * @return Value for property 'finalPriceCents'.
+	 */
+	public long getFinalPriceCents() {
+		return finalPriceCents;
+	}
+
+	/**
+	 * Getter for property 'premium'.
+	 *
+	 * @return Value for property 'premium'.
+	 */
+	public boolean isPremium() {
+		return premium;
+	}
+
+	/**
+	 * Getter for property 'region'.
+	 *
+	 * @return Value for property 'region'.
+	 */
+	public String getRegion() {
+		return region;
+	}
+}
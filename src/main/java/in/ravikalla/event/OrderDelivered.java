@@ -0,0 +1,128 @@
+package in.ravikalla.event;
+
+import in.ravikalla.model.Order;
+
+/**
+ * Copies what its consumers need of the delivered order, the event does not keep the order, which
+ * can still change and would be retained by the event log.
+ *
+ * @author - Ravi Kalla
+ */
+public class OrderDelivered extends OrderEvent {
+
+	private final long id;
+	private final boolean premium;
+	private final long basePriceCents;
+	private final long finalPriceCents;
+	private final long sendMillis;
+	private final long estimatedDeliveryMillis;
+	private final long realDeliveryMillis;
+	private final long deliveryPoints;
+
+	public OrderDelivered(Order order, long deliveryPoints) {
+		super(order.getDescription());
+		this.id = order.getId();
+		this.premium = order.isPremium();
+		this.basePriceCents = order.getBasePriceCents();
+		this.finalPriceCents = order.getFinalPriceCents();
+		this.sendMillis = order.getSendMillis();
+		this.estimatedDeliveryMillis = order.getEstimatedDeliveryMillis();
+		this.realDeliveryMillis = order.getRealDeliveryMillis();
+		this.deliveryPoints = deliveryPoints;
+	}
+
+	@Override
+	public Type getType() {
+		return Type.DELIVERED;
+	}
+
+	/**
+	 * @return Detached order with the fields of the event, for services taking an order
+	 */
+	public Order toOrder() {
+		Order order = new Order();
+		order.setId(id);
+		order.setDescription(getDescription());
+		order.setPremium(premium);
+		order.setBasePriceCents(basePriceCents);
+		order.setFinalPriceCents(finalPriceCents);
+		order.setSent(true);
+		order.setSendMillis(sendMillis);
+		order.setEstimatedDeliveryMillis(estimatedDeliveryMillis);
+		order.setDelivered(true);
+		order.setRealDeliveryMillis(realDeliveryMillis);
+		return order;
+	}
+
+	/**
+	 * Getter for property 'id'.
+	 *
+	 * @return Value for property 'id'.
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Getter for property 'premium'.
+	 *
+	 * @return Value for property 'premium'.
+	 */
+	public boolean isPremium() {
+		return premium;
+	}
+
+	/**
+	 * Getter for property 'basePriceCents'.
+	 *
+	 * @return Value for property 'basePriceCents'.
+	 */
+	public long getBasePriceCents() {
+		return basePriceCents;
+	}
+
+	/**
+	 * Getter for property 'finalPriceCents'.
+	 *
+	 * @return Value for property 'finalPriceCents'.
+	 */
+	public long getFinalPriceCents() {
+		return finalPriceCents;
+	}
+
+	/**
+	 * Getter for property 'sendMillis'.
+	 *
+	 * @return Value for property 'sendMillis'.
+	 */
+	public long getSendMillis() {
+		return sendMillis;
+	}
+
+	/**
+	 * Getter for property 'estimatedDeliveryMillis'.
+	 *
+	 * @return Value for property 'estimatedDeliveryMillis'.
+	 */
+	public long getEstimatedDeliveryMillis() {
+		return estimatedDeliveryMillis;
+	}
+
+	/**
+	 * Getter for property 'realDeliveryMillis'.
+	 *
+	 * @return Value for property 'realDeliveryMillis'.
+	 */
+	public long getRealDeliveryMillis() {
+		return realDeliveryMillis;
+	}
+
+	/**
+	 * Getter for property 'deliveryPoints'.
+	 *
+	 * @return Value for property 'deliveryPoints', hours delivered ahead of the estimate.
+	 */
+	public long getDeliveryPoints() {
+		return deliveryPoints;
+	}
+}
@@ -0,0 +1,58 @@
+package in.ravikalla.event;
+
+/**
+ * Fact about the lifecycle of an order, published once the change it records is applied.
+ * Events carry everything their consumers need, so replaying them never runs business logic again.
+ *
+ * @author - Ravi Kalla
+ */
+public abstract class OrderEvent {
+
+	public enum Type {
+		CREATED,
+		DISCOUNT_ADDED,
+		SENT,
+		DELIVERED
+	}
+
+	private final String description;
+
+	//Position in the event stream, assigned when the event is published
+	private volatile long offset = -1;
+
+	protected OrderEvent(String description) {
+		this.description = description;
+	}
+
+	/**
+	 * @return Type of the event
+	 */
+	public abstract Type getType();
+
+	/**
+	 * Getter for property 'description'.
+	 *
+	 * @return Value for property 'description'.
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Getter for property 'offset'.
+	 *
+	 * @return Value for property 'offset', -1 until the event is published.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	void setOffset(long offset) {
+		this.offset = offset;
+	}
+
+	@Override
+	public String toString() {
+		return getType() + "[" + offset + ", " + description + "]";
+	}
+}
@@ -0,0 +1,18 @@
+package in.ravikalla.event;
+
+import java.util.List;
+
+/**
+ * Subscriber of the order event stream. Each consumer gets every event in offset order, on a
+ * thread of its own. A batch it fails on is handed to it again, later ones too once redelivered as
+ * dead letters, so events handled before the failure may come again.
+ *
+ * @author - Ravi Kalla
+ */
+public interface OrderEventConsumer {
+
+	/**
+	 * @param events Consecutive events, only valid during the call
+	 */
+	void onEvents(List<OrderEvent> events);
+}
@@ -0,0 +1,472 @@
+package in.ravikalla.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands the published order events to the consumers through a ring buffer, in the style of the
+ * LMAX Disruptor: publishers claim the next sequence and write the event into its slot, and every
+ * consumer follows the published sequences on a thread of its own, taking all the events available
+ * at once as a batch. A publisher only waits when the ring is full, until the slowest consumer frees
+ * the slot; nothing is locked on the way.
+ * <p>
+ * Changes to orders publish through a {@link Publication}, begun before the change is stored so
+ * that a stopped dispatcher fails the change rather than losing its events. Its events are claimed
+ * while the lock ordering them is held and written once it is released, so waiting for room in the
+ * ring never holds a lock.
+ * <p>
+ * A batch a consumer fails on is retried on its thread, with a growing backoff, and then put aside
+ * as a dead letter; {@link #redeliverDeadLetters()} hands the dead letters to their consumers again,
+ * after the events published since.
+ * <p>
+ * Every event is also appended to an {@link OrderEventLog}, the first consumer, from which consumers
+ * can be rebuilt with {@link #replay(long, OrderEventConsumer)}.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ConditionalOnProperty(name = "orders.events.enabled", havingValue = "true", matchIfMissing = true)
+@ManagedResource(objectName = "in.ravikalla:type=OrderEventDispatcher", description = "Order event dispatcher")
+public class OrderEventDispatcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(OrderEventDispatcher.class);
+
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 200;
+	private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final OrderEvent[] ring;
+	private final int mask;
+	//Sequence last published in each slot, read before the slot so the event is visible
+	private final AtomicLongArray published;
+	private final AtomicLong claimed = new AtomicLong(-1);
+	//Publications begun and not finished, consumers only stop once there are none
+	private final AtomicInteger publications = new AtomicInteger();
+	//Lowest sequence all consumers are done with, as last seen by a publisher
+	private volatile long cachedGatingSequence = -1;
+
+	private final int batchSize;
+	private final int retryMaxAttempts;
+	private final long retryBackoffMillis;
+	private final int deadLetterCapacity;
+	private final OrderEventLog log;
+	private final List<Subscription> subscriptions = new ArrayList<>();
+	private volatile boolean running;
+
+	private final LongAdder retriedBatches = new LongAdder();
+	private final LongAdder failedBatches = new LongAdder();
+	private final LongAdder lostBatches = new LongAdder();
+
+	public OrderEventDispatcher(List<OrderEventConsumer> consumers, int ringSize, int batchSize, long logRetention) {
+		this(consumers, ringSize, batchSize, logRetention, 3, 100, 1024);
+	}
+
+	@Inject
+	public OrderEventDispatcher(List<OrderEventConsumer> consumers,
+			@Value("${orders.events.ring-size:8192}") int ringSize,
+			@Value("${orders.events.batch-size:256}") int batchSize,
+			@Value("${orders.events.log-retention:1000000}") long logRetention,
+			@Value("${orders.events.retry.max-attempts:3}") int retryMaxAttempts,
+			@Value("${orders.events.retry.backoff-ms:100}") long retryBackoffMillis,
+			@Value("${orders.events.dead-letter-capacity:1024}") int deadLetterCapacity) {
+		if (Integer.bitCount(ringSize) != 1) {
+			throw new IllegalArgumentException("ring size must be a power of two");
+		}
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batch size must be positive");
+		}
+		if (retryMaxAttempts <= 0) {
+			throw new IllegalArgumentException("retry max attempts must be positive");
+		}
+		if (deadLetterCapacity <= 0) {
+			throw new IllegalArgumentException("dead letter capacity must be positive");
+		}
+		this.retryMaxAttempts = retryMaxAttempts;
+		this.retryBackoffMillis = retryBackoffMillis;
+		this.deadLetterCapacity = deadLetterCapacity;
+		this.ring = new OrderEvent[ringSize];
+		this.mask = ringSize - 1;
+		this.published = new AtomicLongArray(ringSize);
+		for (int i = 0; i < ringSize; i++) {
+			published.set(i, -1);
+		}
+		this.batchSize = batchSize;
+		this.log = new OrderEventLog(logRetention);
+		subscriptions.add(new Subscription(log, "order-event-log"));
+		for (OrderEventConsumer consumer : consumers) {
+			subscriptions.add(new Subscription(consumer, "order-event-" + consumer.getClass().getSimpleName()));
+		}
+	}
+
+	@PostConstruct
+	public void start() {
+		running = true;
+		for (Subscription subscription : subscriptions) {
+			subscription.thread.start();
+		}
+	}
+
+	/**
+	 * Stops accepting events after the consumers have handled everything already published.
+	 */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		for (Subscription subscription : subscriptions) {
+			subscription.thread.join(TimeUnit.SECONDS.toMillis(30));
+			if (subscription.thread.isAlive()) {
+				logger.warn("OrderEventDispatcher - {} stopped behind at sequence {}", subscription.thread.getName(),
+						subscription.sequence.get());
+				subscription.thread.interrupt();
+			}
+			if (!subscription.deadLetters.isEmpty()) {
+				logger.warn("OrderEventDispatcher - {} stopped with {} dead letters", subscription.thread.getName(),
+						subscription.deadLetters.size());
+			}
+		}
+	}
+
+	/**
+	 * Publishes the event to all consumers, waiting while the ring is full.
+	 *
+	 * @param event Event to publish, not published before
+	 * @return Offset of the event
+	 * @throws IllegalStateException When the dispatcher is not running
+	 */
+	public long publish(OrderEvent event) {
+		Publication publication = begin();
+		publication.claim(event);
+		publication.publish();
+		return event.getOffset();
+	}
+
+	/**
+	 * Begins the publication of the events of a change, before the change is stored.
+	 *
+	 * @return Publication to finish with {@link Publication#publish()}, also when the change fails
+	 * @throws IllegalStateException When the dispatcher is not running
+	 */
+	public Publication begin() {
+		publications.incrementAndGet();
+		if (!running) {
+			publications.decrementAndGet();
+			throw new IllegalStateException("Order event dispatcher is not running");
+		}
+		return new Publication();
+	}
+
+	/**
+	 * Hands the logged events from the given offset on to the consumer, in batches on the calling
+	 * thread, up to the end of the log at the time of the call. Business logic is not run again.
+	 *
+	 * @param fromOffset Offset of the first event to replay
+	 * @param consumer Consumer to rebuild
+	 * @return Offset following the last replayed event, to continue from
+	 */
+	public long replay(long fromOffset, OrderEventConsumer consumer) {
+		long endOffset = log.getEndOffset();
+		List<OrderEvent> batch = new ArrayList<>(batchSize);
+		long offset = fromOffset;
+		while (offset < endOffset) {
+			offset += log.read(offset, (int) Math.min(batchSize, endOffset - offset), batch);
+			consumer.onEvents(batch);
+			batch.clear();
+		}
+		return offset;
+	}
+
+	/**
+	 * Getter for property 'log'.
+	 *
+	 * @return Value for property 'log'.
+	 */
+	public OrderEventLog getLog() {
+		return log;
+	}
+
+	/**
+	 * @return Offset of the last event published, -1 before the first
+	 */
+	@ManagedAttribute(description = "Offset of the last event claimed by a publisher")
+	public long getPublishedOffset() {
+		return claimed.get();
+	}
+
+	/**
+	 * @return Events published but not yet handled by the slowest consumer
+	 */
+	@ManagedAttribute(description = "Events published but not yet handled by the slowest consumer")
+	public long getBacklog() {
+		return claimed.get() - gatingSequence();
+	}
+
+	/**
+	 * Hands the dead letters of every consumer to it again, on its thread. A batch failing again
+	 * goes back to the dead letters.
+	 *
+	 * @return Dead letters to redeliver
+	 */
+	@ManagedOperation(description = "Hands the batches the consumers failed on to them again")
+	public int redeliverDeadLetters() {
+		int deadLetters = 0;
+		for (Subscription subscription : subscriptions) {
+			deadLetters += subscription.deadLetters.size();
+			subscription.redeliver.set(true);
+		}
+		return deadLetters;
+	}
+
+	/**
+	 * @return Batches a consumer failed on but handled on a retry
+	 */
+	@ManagedAttribute(description = "Batches a consumer handled on a retry")
+	public long getRetriedBatches() {
+		return retriedBatches.sum();
+	}
+
+	/**
+	 * @return Batches a consumer failed on every attempt, put aside as dead letters
+	 */
+	@ManagedAttribute(description = "Batches a consumer failed on every attempt")
+	public long getFailedBatches() {
+		return failedBatches.sum();
+	}
+
+	/**
+	 * @return Batches dropped because the dead letters of their consumer were full
+	 */
+	@ManagedAttribute(description = "Failed batches dropped because the dead letters were full")
+	public long getLostBatches() {
+		return lostBatches.sum();
+	}
+
+	/**
+	 * @return Batches waiting for {@link #redeliverDeadLetters()}
+	 */
+	@ManagedAttribute(description = "Failed batches waiting to be redelivered")
+	public int getDeadLetters() {
+		int deadLetters = 0;
+		for (Subscription subscription : subscriptions) {
+			deadLetters += subscription.deadLetters.size();
+		}
+		return deadLetters;
+	}
+
+	private long gatingSequence() {
+		long minimum = Long.MAX_VALUE;
+		for (Subscription subscription : subscriptions) {
+			minimum = Math.min(minimum, subscription.sequence.get());
+		}
+		return minimum;
+	}
+
+	private void consume(Subscription subscription) {
+		List<OrderEvent> batch = new ArrayList<>(batchSize);
+		long next = subscription.sequence.get() + 1;
+		int idle = 0;
+		while (true) {
+			if (subscription.redeliver.getAndSet(false)) {
+				redeliver(subscription);
+			}
+			int slot = (int) next & mask;
+			while (batch.size() < batchSize && published.get(slot) == next) {
+				batch.add(ring[slot]);
+				slot = (int) ++next & mask;
+			}
+			if (batch.isEmpty()) {
+				//claimed events are published by now or soon, the ring is drained once they are handled
+				if (!running && publications.get() == 0 && !subscription.redeliver.get()
+						&& (next > claimed.get() || Thread.currentThread().isInterrupted())) {
+					return;
+				}
+				idle = idle(idle);
+				continue;
+			}
+			idle = 0;
+
+			deliver(subscription, batch);
+			batch.clear();
+			//frees the slots for the publishers
+			subscription.sequence.lazySet(next - 1);
+		}
+	}
+
+	/**
+	 * Hands the batch to the consumer, retrying it with a growing backoff and putting it aside as a
+	 * dead letter when every attempt failed. Publishers may wait for the ring meanwhile.
+	 */
+	private void deliver(Subscription subscription, List<OrderEvent> batch) {
+		for (int attempt = 1;; attempt++) {
+			try {
+				subscription.consumer.onEvents(batch);
+				if (attempt > 1) {
+					retriedBatches.increment();
+				}
+				return;
+			} catch (RuntimeException e) {
+				if (attempt >= retryMaxAttempts || !backOff(attempt)) {
+					deadLetter(subscription, batch, e);
+					return;
+				}
+				logger.warn("OrderEventDispatcher - {} failed on {} events from offset {}, attempt {}",
+						subscription.thread.getName(), batch.size(), batch.get(0).getOffset(), attempt, e);
+			}
+		}
+	}
+
+	/**
+	 * @return False when interrupted, the interrupt is kept for the consumer loop to stop on
+	 */
+	private boolean backOff(int attempt) {
+		try {
+			Thread.sleep(retryBackoffMillis << Math.min(attempt - 1, 10));
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void deadLetter(Subscription subscription, List<OrderEvent> batch, RuntimeException e) {
+		failedBatches.increment();
+		if (subscription.deadLetters.offer(new ArrayList<>(batch))) {
+			logger.error("OrderEventDispatcher - {} failed on {} events from offset {}, kept as a dead letter",
+					subscription.thread.getName(), batch.size(), batch.get(0).getOffset(), e);
+		} else {
+			lostBatches.increment();
+			logger.error("OrderEventDispatcher - {} failed on {} events from offset {}, dead letters full",
+					subscription.thread.getName(), batch.size(), batch.get(0).getOffset(), e);
+		}
+	}
+
+	/**
+	 * Must be called on the thread of the subscription. Batches failing again are dead-lettered again,
+	 * after the ones taken here.
+	 */
+	private void redeliver(Subscription subscription) {
+		List<List<OrderEvent>> deadLetters = new ArrayList<>();
+		subscription.deadLetters.drainTo(deadLetters);
+		for (List<OrderEvent> deadLetter : deadLetters) {
+			deliver(subscription, deadLetter);
+		}
+	}
+
+	/**
+	 * Writes the event into the slot of its claimed sequence, waiting until the slowest consumer
+	 * freed it.
+	 */
+	private void write(long sequence, OrderEvent event) {
+		long wrapSequence = sequence - ring.length;
+		if (wrapSequence > cachedGatingSequence) {
+			long gatingSequence;
+			int idle = 0;
+			while (wrapSequence > (gatingSequence = gatingSequence())) {
+				idle = idle(idle);
+			}
+			cachedGatingSequence = gatingSequence;
+		}
+
+		int slot = (int) sequence & mask;
+		ring[slot] = event;
+		published.lazySet(slot, sequence);
+	}
+
+	/**
+	 * Spins, then yields, then parks briefly, so an idle wait costs little CPU.
+	 */
+	private static int idle(int idle) {
+		if (idle < SPIN_TRIES) {
+			return idle + 1;
+		}
+		if (idle < YIELD_TRIES) {
+			Thread.yield();
+			return idle + 1;
+		}
+		LockSupport.parkNanos(PARK_NANOS);
+		return idle;
+	}
+
+	/**
+	 * Events of one change, claimed in the order of the change and published together. Not thread-safe,
+	 * a publication belongs to the thread making the change.
+	 */
+	public final class Publication {
+
+		private final List<OrderEvent> events = new ArrayList<>(1);
+		private boolean finished;
+
+		private Publication() {
+		}
+
+		/**
+		 * Gives the event the next offset without waiting. Call it while holding the lock ordering
+		 * the events: events claimed one after the other reach the consumers in that order.
+		 *
+		 * @param event Event to publish, not published before
+		 */
+		public void claim(OrderEvent event) {
+			if (finished) {
+				throw new IllegalStateException("Publication of " + event + " is finished");
+			}
+			event.setOffset(claimed.incrementAndGet());
+			events.add(event);
+		}
+
+		/**
+		 * Writes the claimed events into the ring, waiting while it is full, and finishes the
+		 * publication. Call it once the locks are released; consumers wait for every claimed event.
+		 */
+		public void publish() {
+			if (finished) {
+				return;
+			}
+			finished = true;
+			try {
+				for (OrderEvent event : events) {
+					write(event.getOffset(), event);
+				}
+			} finally {
+				publications.decrementAndGet();
+			}
+		}
+	}
+
+	private final class Subscription {
+
+		private final OrderEventConsumer consumer;
+		//Sequence of the last event handled by the consumer
+		private final AtomicLong sequence = new AtomicLong(-1);
+		//Batches the consumer failed on every attempt
+		private final BlockingQueue<List<OrderEvent>> deadLetters = new ArrayBlockingQueue<>(deadLetterCapacity);
+		private final AtomicBoolean redeliver = new AtomicBoolean();
+		private final Thread thread;
+
+		private Subscription(OrderEventConsumer consumer, String name) {
+			this.consumer = consumer;
+			this.thread = new Thread(() -> consume(this), name);
+			this.thread.setDaemon(true);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package in.ravikalla.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only log of the published order events, kept in memory in chunks. Only the latest
+ * {@code retention} events are guaranteed to be kept, older chunks are dropped as the log grows.
+ * <p>
+ * The dispatcher appends to the log as one of its consumers, so events are appended in offset order
+ * by a single thread; reads may come from any thread.
+ *
+ * @author - Ravi Kalla
+ */
+public class OrderEventLog implements OrderEventConsumer {
+
+	private static final int CHUNK_SIZE = 4096;
+
+	private final long retention;
+
+	private final List<OrderEvent[]> chunks = new ArrayList<>();
+	//Offset of the first event of the first chunk
+	private long startOffset;
+	//Offset the next appended event gets
+	private long endOffset;
+
+	public OrderEventLog(long retention) {
+		if (retention <= 0) {
+			throw new IllegalArgumentException("retention must be positive");
+		}
+		this.retention = retention;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void onEvents(List<OrderEvent> events) {
+		for (OrderEvent event : events) {
+			if (event.getOffset() != endOffset) {
+				throw new IllegalStateException("Event " + event + " appended at offset " + endOffset);
+			}
+			int index = (int) (endOffset % CHUNK_SIZE);
+			if (index == 0) {
+				chunks.add(new OrderEvent[CHUNK_SIZE]);
+			}
+			chunks.get(chunks.size() - 1)[index] = event;
+			endOffset++;
+		}
+		while (endOffset - startOffset - CHUNK_SIZE >= retention) {
+			chunks.remove(0);
+			startOffset += CHUNK_SIZE;
+		}
+	}
+
+	/**
+	 * Copies consecutive events into the given list.
+	 *
+	 * @param fromOffset Offset of the first event to read
+	 * @param maxEvents Most events to read
+	 * @param events List the events are added to
+	 * @return Number of events read, 0 when the log ends before fromOffset
+	 */
+	public synchronized int read(long fromOffset, int maxEvents, List<OrderEvent> events) {
+		if (fromOffset < startOffset) {
+			throw new IllegalArgumentException("Offset " + fromOffset + " is no longer retained, the log starts at "
+					+ startOffset);
+		}
+		int read = 0;
+		for (long offset = fromOffset; read < maxEvents && offset < endOffset; offset++, read++) {
+			long index = offset - startOffset;
+			events.add(chunks.get((int) (index / CHUNK_SIZE))[(int) (index % CHUNK_SIZE)]);
+		}
+		return read;
+	}
+
+	/**
+	 * Getter for property 'startOffset'.
+	 *
+	 * @return Value for property 'startOffset', the oldest offset that can still be read.
+	 */
+	public synchronized long getStartOffset() {
+		return startOffset;
+	}
+
+	/**
+	 * Getter for property 'endOffset'.
+	 *
+	 * @return Value for property 'endOffset', the offset the next appended event gets.
+	 */
+	public synchronized long getEndOffset() {
+		return endOffset;
+	}
+}
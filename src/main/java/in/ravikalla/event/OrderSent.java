@@ -0,0 +1,39 @@
+package in.ravikalla.event;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class OrderSent extends OrderEvent {
+
+	private final long sendMillis;
+	private final long estimatedDeliveryMillis;
+
+	public OrderSent(String description, long sendMillis, long estimatedDeliveryMillis) {
+		super(description);
+		this.sendMillis = sendMillis;
+		this.estimatedDeliveryMillis = estimatedDeliveryMillis;
+	}
+
+	@Override
+	public Type getType() {
+		return Type.SENT;
+	}
+
+	/**
+	 * Getter for property 'sendMillis'.
+	 *
+	 * @return Value for property 'sendMillis'.
+	 */
+	public long getSendMillis() {
+		return sendMillis;
+	}
+
+	/**
+	 * Getter for property 'estimatedDeliveryMillis'.
+	 *
+	 * @return Value for property 'estimatedDeliveryMillis'.
+	 */
+	public long getEstimatedDeliveryMillis() {
+		return estimatedDeliveryMillis;
+	}
+}
@@ -0,0 +1,45 @@
+package in.ravikalla.exception;
+
+/**
+ * Thrown instead of accepting an order operation the node has no capacity for. Unchecked, the
+ * operation did not start and can be retried as is once the hinted delay has passed.
+ *
+ * @author - Ravi Kalla
+ */
+public class OrderRejectedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public enum Reason {
+		//The customer class sent more orders than its rate allows
+		RATE_LIMITED,
+		//The node has as many operations in progress as it currently admits
+		OVERLOADED
+	}
+
+	private final Reason reason;
+	private final long retryAfterMillis;
+
+	public OrderRejectedException(Reason reason, long retryAfterMillis) {
+		super(reason == Reason.RATE_LIMITED ? "Order rate exceeded" : "Too many orders in progress", null, false,
+				false);
+		this.reason = reason;
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	/**
+	 * Getter for property 'reason'.
+	 *
+	 * @return Value for property 'reason'.
+	 */
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * @return Milliseconds after which a retry is expected to be admitted
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+}
@@ -6,4 +6,30 @@ package in.ravikalla.external.service;
 public interface DeliveryScoreService {
 	void submitDeliveryPoints(long points);
 	long getCurrentScore();
+
+	/**
+	 * @return Sum of the points submitted during the last minute
+	 */
+	long getScoreLastMinute();
+
+	/**
+	 * @return Sum of the points submitted during the last hour
+	 */
+	long getScoreLastHour();
+
+	/**
+	 * @return Lowest points submitted for a single order, 0 if nothing was submitted
+	 */
+	long getMinDeliveryPoints();
+
+	/**
+	 * @return Highest points submitted for a single order, 0 if nothing was submitted
+	 */
+	long getMaxDeliveryPoints();
+
+	/**
+	 * @param percentile Value between 0 and 100
+	 * @return Points of a single order at the given percentile, 0 if nothing was submitted
+	 */
+	long getDeliveryPointsPercentile(double percentile);
 }
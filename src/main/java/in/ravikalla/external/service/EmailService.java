@@ -1,25 +1,44 @@
 package in.ravikalla.external.service;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import in.ravikalla.model.Order;
 
 /**
+ * Stateless email sender, a single instance is shared by all orders.
+ *
  * @author - Ravi Kalla
  */
 public class EmailService {
 
-	private Order order;
-
 	private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
 
-	public EmailService(Order order) {
-		this.order = order;
+	/**
+	 * @param order
+	 */
+	public void sendDeliveryNotification(Order order) {
+		logger.info("EmailService - sendDeliveryNotification - {}", order.getDescription());
 	}
 
-	public void sendDeliveryNotification() {
-		logger.info("EmailService - sendDeliveryNotification - " + order.getDescription());
+	/**
+	 * Sends without holding the calling thread while the mail server answers, for senders that can;
+	 * this one sends on the calling thread with {@link #sendDeliveryNotification(Order)}.
+	 *
+	 * @param order
+	 * @return Completes once the notification is sent, exceptionally when it cannot be
+	 */
+	public CompletableFuture<Void> sendDeliveryNotificationAsync(Order order) {
+		CompletableFuture<Void> sent = new CompletableFuture<>();
+		try {
+			sendDeliveryNotification(order);
+			sent.complete(null);
+		} catch (RuntimeException e) {
+			sent.completeExceptionally(e);
+		}
+		return sent;
 	}
 
 }
@@ -1,8 +1,15 @@
 package in.ravikalla.external.service;
 
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
 import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
 
 /**
+ * Orders are identified by their generated identifier. Descriptions are unique unless
+ * {@code orders.unique-descriptions} is false.
+ *
  * @author - Ravi Kalla
  */
 public interface OrderStorageService {
@@ -12,9 +19,71 @@ public interface OrderStorageService {
 	 */
 	void store(Order order);
 
+	/**
+	 * Stores all orders in one call.
+	 *
+	 * @param orders
+	 */
+	void storeAll(Collection<Order> orders);
+
+	/**
+	 * Atomically stores the order only when no order with the same identifier is stored and, with
+	 * unique descriptions, no order with the same description.
+	 *
+	 * @param order
+	 * @return true when the order was stored, false when the identifier or description is already taken
+	 */
+	boolean storeIfAbsent(Order order);
+
+	/**
+	 * Batched {@link #storeIfAbsent(Order)}, each order is checked and stored atomically on its own.
+	 *
+	 * @param orders
+	 * @return Orders that were not stored because their identifier or description is already taken
+	 */
+	Collection<Order> storeAllIfAbsent(Collection<Order> orders);
+
 	/**
 	 * @param description
 	 * @return
 	 */
 	boolean exists(String description);
+
+	/**
+	 * @param description
+	 * @return Stored order or null, the last one stored when descriptions are not unique
+	 */
+	Order find(String description);
+
+	/**
+	 * @param id
+	 * @return Stored order or null
+	 */
+	Order findById(long id);
+
+	/**
+	 * @param state
+	 * @return Stored orders currently in the given lifecycle state
+	 */
+	Collection<Order> findByState(OrderState state);
+
+	/**
+	 * Lets callers of a store that returns before its writes are durable wait for them without
+	 * holding a thread.
+	 *
+	 * @param id
+	 * @return Completes once the last write of the order is durable, right away for stores whose
+	 *         writes are durable when they return
+	 */
+	default CompletableFuture<Void> whenDurable(long id) {
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Forgets the order, e.g. once another node owns it.
+	 *
+	 * @param description
+	 * @return true when an order was removed
+	 */
+	boolean remove(String description);
 }
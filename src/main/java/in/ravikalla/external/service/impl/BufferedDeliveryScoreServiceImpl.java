@@ -0,0 +1,276 @@
+package in.ravikalla.external.service.impl;
+
+import java.time.Clock;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import in.ravikalla.external.service.DeliveryScoreService;
+import in.ravikalla.util.CircuitBreaker;
+import in.ravikalla.util.LinearHistogram;
+
+/**
+ * Client of the score service that never makes a delivery wait for it. Submitted points are
+ * summed in memory and a flusher thread sends the sum of each flush interval as a single call,
+ * retrying failed calls with exponential backoff behind a {@link CircuitBreaker}. Points that
+ * cannot be sent are kept and added to the next call; whatever is left is sent on shutdown.
+ * <p>
+ * Coalesced calls hide the points of single deliveries from the score service, so their minimum,
+ * maximum and percentiles are tracked here. The current score includes the points not sent yet,
+ * the windowed scores of the score service see them once sent.
+ *
+ * @author - Ravi Kalla
+ */
+@Service
+@Primary
+@Qualifier("BufferedDeliveryScoreService")
+@ConditionalOnProperty(name = "score.client.enabled", havingValue = "true", matchIfMissing = true)
+@ManagedResource(objectName = "in.ravikalla:type=DeliveryScoreClient", description = "Buffered delivery score client")
+public class BufferedDeliveryScoreServiceImpl implements DeliveryScoreService {
+
+	private static final Logger logger = LoggerFactory.getLogger(BufferedDeliveryScoreServiceImpl.class);
+
+	//Per-order points are hours early (positive) or late (negative), tracked within +/- 60 days
+	private static final long POINTS_HISTOGRAM_RANGE = TimeUnit.DAYS.toHours(60);
+
+	private final DeliveryScoreService delegate;
+	private final long flushIntervalMillis;
+	private final int maxAttempts;
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+	private final CircuitBreaker circuitBreaker;
+
+	private final LongAdder pending = new LongAdder();
+	//points taken from pending but not sent yet, only changed by the flusher
+	private volatile long unsent;
+	private final Object flushLock = new Object();
+
+	private final LongAdder submissions = new LongAdder();
+	private final LongAccumulator minPoints = new LongAccumulator(Math::min, Long.MAX_VALUE);
+	private final LongAccumulator maxPoints = new LongAccumulator(Math::max, Long.MIN_VALUE);
+	private final LinearHistogram pointsHistogram =
+			new LinearHistogram(-POINTS_HISTOGRAM_RANGE, POINTS_HISTOGRAM_RANGE);
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder shortCircuited = new LongAdder();
+
+	private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "delivery-score-flusher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	@Inject
+	public BufferedDeliveryScoreServiceImpl(@Qualifier("DeliveryScoreService") DeliveryScoreService delegate,
+			Clock clock,
+			@Value("${score.client.flush-interval-ms:100}") long flushIntervalMillis,
+			@Value("${score.client.retry.max-attempts:3}") int maxAttempts,
+			@Value("${score.client.retry.initial-backoff-ms:50}") long initialBackoffMillis,
+			@Value("${score.client.retry.max-backoff-ms:1000}") long maxBackoffMillis,
+			@Value("${score.client.circuit-breaker.failure-threshold:5}") int failureThreshold,
+			@Value("${score.client.circuit-breaker.open-ms:5000}") long openMillis) {
+		this.delegate = delegate;
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.circuitBreaker = new CircuitBreaker(clock, failureThreshold, openMillis);
+	}
+
+	@PostConstruct
+	public void start() {
+		flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the flusher and sends the points left, even with the circuit open.
+	 */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		flusher.shutdown();
+		if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+			flusher.shutdownNow();
+		}
+		synchronized (flushLock) {
+			unsent += pending.sumThenReset();
+			if (unsent != 0 && !send(unsent, true)) {
+				logger.warn("DeliveryScoreClient - stopped with {} points not sent", unsent);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void submitDeliveryPoints(long points) {
+		pending.add(points);
+		submissions.increment();
+		minPoints.accumulate(points);
+		maxPoints.accumulate(points);
+		pointsHistogram.record(points);
+	}
+
+	/**
+	 * Sends the points submitted since the last call, with those not sent before.
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			unsent += pending.sumThenReset();
+			if (unsent == 0) {
+				return;
+			}
+			if (!circuitBreaker.allowRequest()) {
+				shortCircuited.increment();
+				return;
+			}
+			send(unsent, false);
+		}
+	}
+
+	/**
+	 * @return True when the points were sent, they are then no longer unsent
+	 */
+	private boolean send(long points, boolean ignoreCircuit) {
+		long backoffMillis = initialBackoffMillis;
+		for (int attempt = 1; ; attempt++) {
+			try {
+				calls.increment();
+				delegate.submitDeliveryPoints(points);
+				circuitBreaker.onSuccess();
+				unsent -= points;
+				return true;
+			} catch (RuntimeException e) {
+				failures.increment();
+				circuitBreaker.onFailure();
+				if (attempt >= maxAttempts || !(ignoreCircuit || circuitBreaker.allowRequest())) {
+					logger.warn("DeliveryScoreClient - {} points not sent after {} attempts, kept for the next flush",
+							points, attempt, e);
+					return false;
+				}
+			}
+			retries.increment();
+			try {
+				Thread.sleep(backoffMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			backoffMillis = Math.min(maxBackoffMillis, backoffMillis * 2);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getCurrentScore() {
+		return delegate.getCurrentScore() + unsent + pending.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getScoreLastMinute() {
+		return delegate.getScoreLastMinute();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getScoreLastHour() {
+		return delegate.getScoreLastHour();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getMinDeliveryPoints() {
+		return submissions.sum() == 0 ? 0 : minPoints.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getMaxDeliveryPoints() {
+		return submissions.sum() == 0 ? 0 : maxPoints.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getDeliveryPointsPercentile(double percentile) {
+		return pointsHistogram.percentile(percentile);
+	}
+
+	/**
+	 * @return Points submitted but not yet sent to the score service
+	 */
+	@ManagedAttribute(description = "Points submitted but not yet sent to the score service")
+	public long getPendingPoints() {
+		return unsent + pending.sum();
+	}
+
+	/**
+	 * @return Calls made to the score service, retries included
+	 */
+	@ManagedAttribute(description = "Calls made to the score service, retries included")
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	/**
+	 * @return Calls to the score service that failed
+	 */
+	@ManagedAttribute(description = "Calls to the score service that failed")
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	/**
+	 * @return Calls retried after a failure
+	 */
+	@ManagedAttribute(description = "Calls retried after a failure")
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	/**
+	 * @return Flushes skipped because the circuit was open
+	 */
+	@ManagedAttribute(description = "Flushes skipped because the circuit was open")
+	public long getShortCircuited() {
+		return shortCircuited.sum();
+	}
+
+	/**
+	 * @return State of the circuit breaker
+	 */
+	@ManagedAttribute(description = "State of the circuit breaker")
+	public String getCircuitState() {
+		return circuitBreaker.getState().name();
+	}
+}
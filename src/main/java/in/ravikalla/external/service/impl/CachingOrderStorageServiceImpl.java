@@ -0,0 +1,347 @@
+package in.ravikalla.external.service.impl;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import in.ravikalla.external.service.OrderStorageService;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+import in.ravikalla.util.BloomFilter;
+
+/**
+ * Read-through, write-through cache in front of the configured order store.
+ * <p>
+ * Known descriptions live in a segmented LRU bounded in size, and entries expire a fixed time
+ * after they were written. A Bloom filter of every description stored answers most
+ * {@link #exists(String)} and {@link #find(String)} calls for new orders without a round trip.
+ * It is warmed from the store on startup and filled before each write reaches the store, so it
+ * never hides a stored order as long as this node is the only writer. Negative answers are never
+ * cached, and {@link #storeIfAbsent(Order)} always goes to the store, so concurrent
+ * {@code initOrder} calls are still resolved by the store.
+ *
+ * @author - Ravi Kalla
+ */
+@Service
+@Primary
+@Qualifier("CachingOrderStorageService")
+@ConditionalOnProperty(name = "order.storage.cache.enabled", havingValue = "true")
+@ManagedResource(objectName = "in.ravikalla:type=OrderStorageCache", description = "Order storage cache")
+public class CachingOrderStorageServiceImpl implements OrderStorageService {
+
+	private static final Logger logger = LoggerFactory.getLogger(CachingOrderStorageServiceImpl.class);
+
+	private final OrderStorageService delegate;
+	private final Clock clock;
+	private final long ttlMillis;
+	private final Segment[] segments;
+	private final BloomFilter knownDescriptions;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder filteredOut = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+
+	@Inject
+	public CachingOrderStorageServiceImpl(@Qualifier("OrderStorageService") OrderStorageService delegate, Clock clock,
+			@Value("${order.storage.cache.max-size:100000}") int maxSize,
+			@Value("${order.storage.cache.ttl-ms:600000}") long ttlMillis,
+			@Value("${order.storage.cache.segments:16}") int segmentCount,
+			@Value("${order.storage.cache.bloom-filter.expected-insertions:1000000}") long expectedInsertions,
+			@Value("${order.storage.cache.bloom-filter.false-positive-probability:0.01}") double falsePositiveProbability) {
+		this.delegate = delegate;
+		this.clock = clock;
+		this.ttlMillis = ttlMillis;
+
+		int segmentsPowerOfTwo = Integer.highestOneBit(Math.max(1, segmentCount));
+		this.segments = new Segment[segmentsPowerOfTwo];
+		int segmentSize = Math.max(1, maxSize / segmentsPowerOfTwo);
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment(segmentSize);
+		}
+		this.knownDescriptions = expectedInsertions > 0
+				? new BloomFilter(expectedInsertions, falsePositiveProbability)
+				: null;
+	}
+
+	/**
+	 * Puts the descriptions already in the store into the Bloom filter.
+	 */
+	@PostConstruct
+	public void start() {
+		if (knownDescriptions == null) {
+			return;
+		}
+		long count = 0;
+		for (OrderState state : OrderState.values()) {
+			for (Order order : delegate.findByState(state)) {
+				knownDescriptions.put(order.getDescription());
+				count++;
+			}
+		}
+		logger.info("CachingOrderStorageService - {} stored descriptions loaded into the Bloom filter", count);
+	}
+
+	@Override
+	public void store(Order order) {
+		remember(order.getDescription());
+		delegate.store(order);
+		segment(order.getDescription()).put(order.getDescription(), order, expiry());
+	}
+
+	@Override
+	public void storeAll(Collection<Order> orders) {
+		for (Order order : orders) {
+			remember(order.getDescription());
+		}
+		delegate.storeAll(orders);
+		long expiresAt = expiry();
+		for (Order order : orders) {
+			segment(order.getDescription()).put(order.getDescription(), order, expiresAt);
+		}
+	}
+
+	@Override
+	public boolean storeIfAbsent(Order order) {
+		remember(order.getDescription());
+		boolean stored = delegate.storeIfAbsent(order);
+		cacheIfAbsentResult(order, stored, expiry());
+		return stored;
+	}
+
+	@Override
+	public Collection<Order> storeAllIfAbsent(Collection<Order> orders) {
+		for (Order order : orders) {
+			remember(order.getDescription());
+		}
+		Collection<Order> rejected = delegate.storeAllIfAbsent(orders);
+		Set<Order> rejectedOrders = Collections.newSetFromMap(new IdentityHashMap<>());
+		rejectedOrders.addAll(rejected);
+		long expiresAt = expiry();
+		for (Order order : orders) {
+			cacheIfAbsentResult(order, !rejectedOrders.contains(order), expiresAt);
+		}
+		return rejected;
+	}
+
+	@Override
+	public boolean exists(String description) {
+		if (knownDescriptions != null && !knownDescriptions.mightContain(description)) {
+			filteredOut.increment();
+			return false;
+		}
+		if (segment(description).get(description, clock.millis()) != null) {
+			hits.increment();
+			return true;
+		}
+		misses.increment();
+		boolean exists = delegate.exists(description);
+		if (exists) {
+			segment(description).putIfAbsent(description, null, expiry());
+		}
+		return exists;
+	}
+
+	@Override
+	public Order find(String description) {
+		if (knownDescriptions != null && !knownDescriptions.mightContain(description)) {
+			filteredOut.increment();
+			return null;
+		}
+		Entry entry = segment(description).get(description, clock.millis());
+		if (entry != null && entry.order != null) {
+			hits.increment();
+			return entry.order;
+		}
+		misses.increment();
+		Order order = delegate.find(description);
+		if (order != null) {
+			segment(description).put(description, order, expiry());
+		}
+		return order;
+	}
+
+	/**
+	 * {@inheritDoc} Not cached, the store looks identifiers up without hashing a string.
+	 */
+	@Override
+	public Order findById(long id) {
+		return delegate.findById(id);
+	}
+
+	@Override
+	public Collection<Order> findByState(OrderState state) {
+		return delegate.findByState(state);
+	}
+
+	@Override
+	public CompletableFuture<Void> whenDurable(long id) {
+		return delegate.whenDurable(id);
+	}
+
+	/**
+	 * The Bloom filter cannot forget the description, it only costs a lookup of the store.
+	 */
+	@Override
+	public boolean remove(String description) {
+		boolean removed = delegate.remove(description);
+		segment(description).remove(description);
+		return removed;
+	}
+
+	/**
+	 * @return Lookups answered from the cache
+	 */
+	@ManagedAttribute(description = "Lookups answered from the cache")
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return Lookups that went to the store
+	 */
+	@ManagedAttribute(description = "Lookups that went to the store")
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return Lookups of unknown descriptions answered by the Bloom filter
+	 */
+	@ManagedAttribute(description = "Lookups of unknown descriptions answered by the Bloom filter")
+	public long getFilteredOut() {
+		return filteredOut.sum();
+	}
+
+	/**
+	 * @return Entries evicted because their segment was full
+	 */
+	@ManagedAttribute(description = "Entries evicted because their segment was full")
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return Entries dropped because they outlived the time to live
+	 */
+	@ManagedAttribute(description = "Entries dropped because they outlived the time to live")
+	public long getExpirations() {
+		return expirations.sum();
+	}
+
+	/**
+	 * @return Number of cached entries, expired ones included until they are looked up
+	 */
+	@ManagedAttribute(description = "Number of cached entries")
+	public int getSize() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	private void remember(String description) {
+		if (knownDescriptions != null) {
+			knownDescriptions.put(description);
+		}
+	}
+
+	private void cacheIfAbsentResult(Order order, boolean stored, long expiresAt) {
+		if (stored) {
+			segment(order.getDescription()).put(order.getDescription(), order, expiresAt);
+		} else {
+			//another order holds the description, only its existence is known
+			segment(order.getDescription()).putIfAbsent(order.getDescription(), null, expiresAt);
+		}
+	}
+
+	private long expiry() {
+		return clock.millis() + ttlMillis;
+	}
+
+	private Segment segment(String description) {
+		int hash = description.hashCode();
+		hash ^= hash >>> 16;
+		return segments[hash & (segments.length - 1)];
+	}
+
+	private final class Segment {
+		private final LinkedHashMap<String, Entry> entries;
+
+		private Segment(int capacity) {
+			this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+					if (size() > capacity) {
+						evictions.increment();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		private synchronized Entry get(String description, long now) {
+			Entry entry = entries.get(description);
+			if (entry != null && entry.expiresAt <= now) {
+				entries.remove(description);
+				expirations.increment();
+				return null;
+			}
+			return entry;
+		}
+
+		private synchronized void put(String description, Order order, long expiresAt) {
+			entries.put(description, new Entry(order, expiresAt));
+		}
+
+		private synchronized void putIfAbsent(String description, Order order, long expiresAt) {
+			//keeps a cached order rather than replacing it with a presence-only entry, unless expired
+			Entry entry = entries.get(description);
+			if (entry == null || entry.expiresAt <= expiresAt - ttlMillis) {
+				entries.put(description, new Entry(order, expiresAt));
+			}
+		}
+
+		private synchronized void remove(String description) {
+			entries.remove(description);
+		}
+
+		private synchronized int size() {
+			return entries.size();
+		}
+	}
+
+	private static final class Entry {
+		private final Order order;
+		private final long expiresAt;
+
+		private Entry(Order order, long expiresAt) {
+			this.order = order;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -1,29 +1,96 @@
 package in.ravikalla.external.service.impl;
 
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import in.ravikalla.external.service.DeliveryScoreService;
+import in.ravikalla.util.LinearHistogram;
+import in.ravikalla.util.RollingWindowCounter;
 
 /**
+ * Score aggregation built on striped accumulators, so concurrent deliveries neither lose updates
+ * nor contend on a single lock. Nothing is allocated when points are submitted.
+ *
  * @author - Ravi Kalla
  */
 @Service
 @Qualifier("DeliveryScoreService")
 public class DeliveryScoreServiceImpl implements DeliveryScoreService {
 
-	private long totalPoints;
+	//Per-order points are hours early (positive) or late (negative), tracked within +/- 60 days
+	private static final long POINTS_HISTOGRAM_RANGE = TimeUnit.DAYS.toHours(60);
 
 	private static final Logger logger = LoggerFactory.getLogger(DeliveryScoreServiceImpl.class);
 
+	private final Clock clock;
+
+	private final LongAdder totalPoints = new LongAdder();
+	private final LongAdder submissions = new LongAdder();
+	private final LongAccumulator minPoints = new LongAccumulator(Math::min, Long.MAX_VALUE);
+	private final LongAccumulator maxPoints = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+	private final RollingWindowCounter lastMinute = new RollingWindowCounter(TimeUnit.SECONDS.toMillis(1), 60);
+	private final RollingWindowCounter lastHour = new RollingWindowCounter(TimeUnit.MINUTES.toMillis(1), 60);
+	private final LinearHistogram pointsHistogram =
+			new LinearHistogram(-POINTS_HISTOGRAM_RANGE, POINTS_HISTOGRAM_RANGE);
+
+	public DeliveryScoreServiceImpl() {
+		this(Clock.systemUTC());
+	}
+
+	public DeliveryScoreServiceImpl(Clock clock) {
+		this.clock = clock;
+	}
+
 	public void submitDeliveryPoints(long points) {
-		logger.info("DeliveryScoreService - Sum : " + points + " points!");
-		totalPoints += points;
+		//guarded, the parameterized form would still box the points
+		if (logger.isDebugEnabled()) {
+			logger.debug("DeliveryScoreService - Sum : {} points!", points);
+		}
+		final long now = clock.millis();
+
+		totalPoints.add(points);
+		submissions.increment();
+		minPoints.accumulate(points);
+		maxPoints.accumulate(points);
+		lastMinute.add(now, points);
+		lastHour.add(now, points);
+		pointsHistogram.record(points);
 	}
 
 	public long getCurrentScore() {
-		return totalPoints;
+		return totalPoints.sum();
+	}
+
+	@Override
+	public long getScoreLastMinute() {
+		return lastMinute.sum(clock.millis());
+	}
+
+	@Override
+	public long getScoreLastHour() {
+		return lastHour.sum(clock.millis());
+	}
+
+	@Override
+	public long getMinDeliveryPoints() {
+		return submissions.sum() == 0 ? 0 : minPoints.get();
+	}
+
+	@Override
+	public long getMaxDeliveryPoints() {
+		return submissions.sum() == 0 ? 0 : maxPoints.get();
+	}
+
+	@Override
+	public long getDeliveryPointsPercentile(double percentile) {
+		return pointsHistogram.percentile(percentile);
 	}
 }
@@ -0,0 +1,158 @@
+package in.ravikalla.external.service.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import in.ravikalla.journal.FsyncPolicy;
+import in.ravikalla.journal.OrderJournal;
+import in.ravikalla.model.Order;
+import in.ravikalla.util.SnowflakeIdGenerator;
+
+/**
+ * Durable order store: the in-memory store backed by a write-ahead {@link OrderJournal}.
+ * Every write is journaled before it returns, removals as tombstones, and the journal is replayed
+ * into memory on startup.
+ * With {@link FsyncPolicy#ASYNC} writes return before they are forced to disk, callers wait for
+ * them with {@link #whenDurable(long)}.
+ *
+ * @author - Ravi Kalla
+ */
+@Service
+@Qualifier("OrderStorageService")
+@ConditionalOnProperty(name = "order.storage.type", havingValue = "journal")
+public class JournalOrderStorageServiceImpl extends OrderStorageServiceImpl {
+
+	private static final Logger logger = LoggerFactory.getLogger(JournalOrderStorageServiceImpl.class);
+
+	private final OrderJournal journal;
+	private final long compactionIntervalMillis;
+	private final int compactionMinSegments;
+
+	private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "order-journal-compactor");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private volatile boolean replaying;
+
+	public JournalOrderStorageServiceImpl(String directory, int segmentSize, FsyncPolicy fsyncPolicy,
+			long groupCommitMillis, long compactionIntervalMillis, int compactionMinSegments) throws IOException {
+		this(new SnowflakeIdGenerator(Clock.systemUTC(), 0), true, directory, segmentSize, fsyncPolicy,
+				groupCommitMillis, compactionIntervalMillis, compactionMinSegments);
+	}
+
+	@Inject
+	public JournalOrderStorageServiceImpl(SnowflakeIdGenerator idGenerator,
+			@Value("${orders.unique-descriptions:true}") boolean uniqueDescriptions,
+			@Value("${order.storage.journal.dir:order-journal}") String directory,
+			@Value("${order.storage.journal.segment-size:67108864}") int segmentSize,
+			@Value("${order.storage.journal.fsync:GROUP}") FsyncPolicy fsyncPolicy,
+			@Value("${order.storage.journal.group-commit-ms:5}") long groupCommitMillis,
+			@Value("${order.storage.journal.compaction-interval-ms:60000}") long compactionIntervalMillis,
+			@Value("${order.storage.journal.compaction-min-segments:4}") int compactionMinSegments)
+			throws IOException {
+		super(idGenerator, uniqueDescriptions);
+		this.journal = new OrderJournal(new File(directory), segmentSize, fsyncPolicy, groupCommitMillis);
+		this.compactionIntervalMillis = compactionIntervalMillis;
+		this.compactionMinSegments = compactionMinSegments;
+	}
+
+	/**
+	 * Restores the orders journaled by previous runs and schedules the compaction.
+	 */
+	@PostConstruct
+	public void start() throws IOException {
+		long start = System.nanoTime();
+		int[] count = new int[1];
+		replaying = true;
+		try {
+			journal.replay(order -> {
+				store(order);
+				count[0]++;
+			}, order -> {
+				//orders journaled before identifiers got new ones when replayed
+				if (!removeById(order.getId())) {
+					remove(order.getDescription());
+				}
+				count[0]++;
+			});
+		} finally {
+			replaying = false;
+		}
+		logger.info("JournalOrderStorageService - replayed {} records in {} ms", count[0],
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+		if (compactionIntervalMillis > 0) {
+			compactor.scheduleWithFixedDelay(this::compact, compactionIntervalMillis, compactionIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void stop() throws IOException {
+		compactor.shutdownNow();
+		journal.close();
+	}
+
+	@Override
+	protected long indexed(Order order) {
+		return replaying ? 0 : journal.write(order);
+	}
+
+	@Override
+	protected long unindexed(Order order) {
+		return replaying ? 0 : journal.writeTombstone(order);
+	}
+
+	/**
+	 * Waits for the records of the caller's own operation only, the fsync happening outside of the
+	 * store's locks.
+	 */
+	@Override
+	protected void written(long position) {
+		if (position > 0) {
+			journal.sync(position);
+		}
+	}
+
+	@Override
+	protected CompletableFuture<Void> durable(long position) {
+		return position > 0 ? journal.whenDurable(position) : CompletableFuture.completedFuture(null);
+	}
+
+	private void compact() {
+		if (journal.getSegmentCount() <= compactionMinSegments) {
+			return;
+		}
+		try {
+			journal.compact();
+		} catch (IOException | RuntimeException e) {
+			logger.error("JournalOrderStorageService - compaction failed", e);
+		}
+	}
+
+	/**
+	 * Getter for property 'journal'.
+	 *
+	 * @return Value for property 'journal'.
+	 */
+	public OrderJournal getJournal() {
+		return journal;
+	}
+}
@@ -0,0 +1,256 @@
+package in.ravikalla.external.service.impl;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import in.ravikalla.external.service.OrderStorageService;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+import in.ravikalla.offheap.OffHeapOrderTable;
+import in.ravikalla.util.SnowflakeIdGenerator;
+
+/**
+ * Order store keeping the orders off heap in an {@link OffHeapOrderTable}, for millions of active
+ * orders without the garbage collection pauses of as many object graphs.
+ * <p>
+ * Orders are copied in on store and out on find, so changes to a found order are only seen by
+ * others once it is stored again. Reads share a read lock and writes take the write lock. Orders
+ * stored without an identifier get one, an order stored under a taken description keeps the
+ * identifier of the row, so descriptions have to be unique.
+ *
+ * @author - Ravi Kalla
+ */
+@Service
+@Qualifier("OrderStorageService")
+@ConditionalOnProperty(name = "order.storage.type", havingValue = "offheap")
+@ManagedResource(objectName = "in.ravikalla:type=OffHeapOrderStorage", description = "Off-heap order storage")
+public class OffHeapOrderStorageServiceImpl implements OrderStorageService {
+
+	private static final Logger logger = LoggerFactory.getLogger(OffHeapOrderStorageServiceImpl.class);
+
+	private final OffHeapOrderTable table;
+
+	private final SnowflakeIdGenerator idGenerator;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public OffHeapOrderStorageServiceImpl(int expectedOrders) {
+		this(new SnowflakeIdGenerator(Clock.systemUTC(), 0), true, expectedOrders);
+	}
+
+	@Inject
+	public OffHeapOrderStorageServiceImpl(SnowflakeIdGenerator idGenerator,
+			@Value("${orders.unique-descriptions:true}") boolean uniqueDescriptions,
+			@Value("${order.storage.offheap.expected-orders:1048576}") int expectedOrders) {
+		if (!uniqueDescriptions) {
+			throw new IllegalStateException("Off-heap order storage needs orders.unique-descriptions");
+		}
+		this.idGenerator = idGenerator;
+		this.table = new OffHeapOrderTable(expectedOrders);
+	}
+
+	@Override
+	public void store(Order order) {
+		logger.debug("OffHeapOrderStorageService - order description {}", order.getDescription());
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			put(order);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void storeAll(Collection<Order> orders) {
+		logger.debug("OffHeapOrderStorageService - store all {} orders", orders.size());
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			for (Order order : orders) {
+				put(order);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean storeIfAbsent(Order order) {
+		logger.debug("OffHeapOrderStorageService - order store if absent {}", order.getDescription());
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			if (table.find(order.getDescription()) >= 0) {
+				return false;
+			}
+			insert(order);
+			return true;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public Collection<Order> storeAllIfAbsent(Collection<Order> orders) {
+		logger.debug("OffHeapOrderStorageService - store all if absent {} orders", orders.size());
+		Collection<Order> rejected = new ArrayList<>();
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			for (Order order : orders) {
+				if (table.find(order.getDescription()) >= 0) {
+					rejected.add(order);
+				} else {
+					insert(order);
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+		return rejected;
+	}
+
+	@Override
+	public boolean exists(String description) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return table.find(description) >= 0;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public Order find(String description) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			int row = table.find(description);
+			return row < 0 ? null : table.get(row);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public Order findById(long id) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			int row = table.findById(id);
+			return row < 0 ? null : table.get(row);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public Collection<Order> findByState(OrderState state) {
+		Collection<Order> result = new ArrayList<>();
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			for (int row = 0; row < table.getRowCount(); row++) {
+				if (!table.isFree(row) && table.getState(row) == state) {
+					result.add(table.get(row));
+				}
+			}
+		} finally {
+			readLock.unlock();
+		}
+		return result;
+	}
+
+	@Override
+	public boolean remove(String description) {
+		logger.debug("OffHeapOrderStorageService - remove {}", description);
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			int row = table.find(description);
+			if (row < 0) {
+				return false;
+			}
+			table.remove(row);
+			return true;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * @return Number of orders stored
+	 */
+	@ManagedAttribute(description = "Number of orders stored")
+	public int getSize() {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return table.size();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * @return Bytes of direct memory allocated for the orders
+	 */
+	@ManagedAttribute(description = "Bytes of direct memory allocated for the orders")
+	public long getOffHeapBytes() {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return table.getOffHeapBytes();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * @return Bytes of discounts left behind by orders whose discounts changed
+	 */
+	@ManagedAttribute(description = "Bytes of discounts left behind by orders whose discounts changed")
+	public long getGarbageBytes() {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return table.getGarbageBytes();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	private void put(Order order) {
+		int row = table.find(order.getDescription());
+		if (row < 0) {
+			insert(order);
+		} else {
+			order.setId(table.getId(row));
+			table.update(row, order);
+		}
+	}
+
+	private void insert(Order order) {
+		if (order.getId() == 0) {
+			order.setId(idGenerator.nextId());
+		}
+		table.insert(order);
+	}
+}
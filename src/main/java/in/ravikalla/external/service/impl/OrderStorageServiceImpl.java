@@ -1,30 +1,367 @@
 package in.ravikalla.external.service.impl;
 
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+import javax.inject.Inject;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import in.ravikalla.external.service.OrderStorageService;
 import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+import in.ravikalla.util.LongIndex;
+import in.ravikalla.util.SnowflakeIdGenerator;
 
 /**
+ * In-memory order store keyed by identifier, in segments of {@link LongIndex} each guarded by a
+ * {@link StampedLock}: lookups by identifier are optimistic reads that neither hash a string nor
+ * box the key, and per order updates run under the write lock of its segment, so the state
+ * indexes are kept consistent without a global lock. Orders stored without an identifier get one.
+ * <p>
+ * Descriptions map to identifiers. Unique, they are claimed before the order is stored and an
+ * order stored under a taken description replaces the order holding it. Not unique, they map to
+ * the last order stored with the description, which links to the previous one.
+ *
  * @author - Ravi Kalla
  */
 @Service
 @Qualifier("OrderStorageService")
+@ConditionalOnProperty(name = "order.storage.type", havingValue = "memory", matchIfMissing = true)
 public class OrderStorageServiceImpl implements OrderStorageService {
 
 	private static final Logger logger = LoggerFactory.getLogger(OrderStorageServiceImpl.class);
 
+	private static final int SEGMENT_BITS = 6;
+	private static final int EXPECTED_ORDERS_PER_SEGMENT = 64;
+
+	private final SnowflakeIdGenerator idGenerator;
+	private final boolean uniqueDescriptions;
+
+	private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+	private final ConcurrentHashMap<String, Long> descriptions = new ConcurrentHashMap<>();
+
+	private final Map<OrderState, Set<Long>> stateIndex = new EnumMap<>(OrderState.class);
+
+	public OrderStorageServiceImpl() {
+		this(new SnowflakeIdGenerator(Clock.systemUTC(), 0), true);
+	}
+
+	@Inject
+	public OrderStorageServiceImpl(SnowflakeIdGenerator idGenerator,
+			@Value("${orders.unique-descriptions:true}") boolean uniqueDescriptions) {
+		this.idGenerator = idGenerator;
+		this.uniqueDescriptions = uniqueDescriptions;
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment();
+		}
+		for (OrderState state : OrderState.values()) {
+			stateIndex.put(state, ConcurrentHashMap.newKeySet());
+		}
+	}
+
 	@Override
 	public void store(Order order) {
-		logger.info("OrderStorageService - order description " + order.getDescription());
+		logger.info("OrderStorageService - order description {}", order.getDescription());
+		written(put(order));
+	}
+
+	@Override
+	public void storeAll(Collection<Order> orders) {
+		logger.info("OrderStorageService - store all {} orders", orders.size());
+		long position = 0;
+		for (Order order : orders) {
+			position = Math.max(position, put(order));
+		}
+		written(position);
+	}
+
+	@Override
+	public boolean storeIfAbsent(Order order) {
+		logger.info("OrderStorageService - order store if absent {}", order.getDescription());
+		long position = putIfAbsent(order);
+		written(Math.max(position, 0));
+		return position >= 0;
+	}
+
+	@Override
+	public Collection<Order> storeAllIfAbsent(Collection<Order> orders) {
+		logger.info("OrderStorageService - store all if absent {} orders", orders.size());
+		Collection<Order> rejected = new ArrayList<>();
+		long position = 0;
+		for (Order order : orders) {
+			long stored = putIfAbsent(order);
+			if (stored < 0) {
+				rejected.add(order);
+			}
+			position = Math.max(position, stored);
+		}
+		written(position);
+		return rejected;
 	}
 
 	@Override
 	public boolean exists(String description) {
-		logger.info("OrderStorageService - order exists " + description);
-		return false;
+		logger.info("OrderStorageService - order exists {}", description);
+		return descriptions.containsKey(description);
+	}
+
+	@Override
+	public Order find(String description) {
+		Long id = descriptions.get(description);
+		return id == null ? null : findById(id);
+	}
+
+	@Override
+	public Order findById(long id) {
+		Entry entry = entry(id);
+		return entry == null ? null : entry.order;
+	}
+
+	@Override
+	public CompletableFuture<Void> whenDurable(long id) {
+		Entry entry = entry(id);
+		return durable(entry == null ? 0 : entry.position);
+	}
+
+	@Override
+	public Collection<Order> findByState(OrderState state) {
+		Collection<Order> result = new ArrayList<>();
+		for (Long id : stateIndex.get(state)) {
+			Order order = findById(id);
+			if (order != null && OrderState.of(order) == state) {
+				result.add(order);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} Every order stored with the description is removed.
+	 */
+	@Override
+	public boolean remove(String description) {
+		logger.info("OrderStorageService - remove {}", description);
+		Long id = descriptions.remove(description);
+		boolean removed = false;
+		long position = 0;
+		for (long next = id == null ? 0 : id; next != 0;) {
+			Segment segment = segment(next);
+			long stamp = segment.lock.writeLock();
+			try {
+				Entry entry = segment.entries.remove(next);
+				if (entry == null) {
+					break;
+				}
+				stateIndex.get(entry.state).remove(next);
+				position = Math.max(position, unindexed(entry.order));
+				removed = true;
+				next = entry.sameDescription;
+			} finally {
+				segment.lock.unlockWrite(stamp);
+			}
+		}
+		written(position);
+		return removed;
+	}
+
+	/**
+	 * Removes the one order with the identifier. Its description goes to the previous order with
+	 * the description, if any.
+	 *
+	 * @param id
+	 * @return true when an order was removed
+	 */
+	protected boolean removeById(long id) {
+		Segment segment = segment(id);
+		long position;
+		long stamp = segment.lock.writeLock();
+		try {
+			Entry entry = segment.entries.remove(id);
+			if (entry == null) {
+				return false;
+			}
+			stateIndex.get(entry.state).remove(id);
+			if (entry.sameDescription == 0) {
+				descriptions.remove(entry.order.getDescription(), id);
+			} else {
+				descriptions.replace(entry.order.getDescription(), id, entry.sameDescription);
+			}
+			position = unindexed(entry.order);
+		} finally {
+			segment.lock.unlockWrite(stamp);
+		}
+		written(position);
+		return true;
+	}
+
+	/**
+	 * @return Position of the write, see {@link #indexed(Order)}
+	 */
+	private long put(Order order) {
+		long id;
+		if (uniqueDescriptions) {
+			long proposed = order.getId() != 0 ? order.getId() : idGenerator.nextId();
+			id = descriptions.computeIfAbsent(order.getDescription(), description -> proposed);
+		} else {
+			id = order.getId() != 0 ? order.getId() : idGenerator.nextId();
+		}
+		order.setId(id);
+
+		Segment segment = segment(id);
+		long stamp = segment.lock.writeLock();
+		try {
+			Entry previous = segment.entries.get(id);
+			long sameDescription = previous != null ? previous.sameDescription : link(order);
+			long position = indexed(order);
+			segment.entries.put(id, index(id, previous, order, sameDescription, position));
+			return position;
+		} finally {
+			segment.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @return Position of the write, see {@link #indexed(Order)}; -1 when the order was not stored
+	 */
+	private long putIfAbsent(Order order) {
+		long id = order.getId() != 0 ? order.getId() : idGenerator.nextId();
+		if (uniqueDescriptions && descriptions.putIfAbsent(order.getDescription(), id) != null) {
+			return -1;
+		}
+
+		Segment segment = segment(id);
+		long stamp = segment.lock.writeLock();
+		try {
+			if (segment.entries.get(id) != null) {
+				if (uniqueDescriptions) {
+					descriptions.remove(order.getDescription(), id);
+				}
+				return -1;
+			}
+			order.setId(id);
+			long position = indexed(order);
+			segment.entries.put(id, index(id, null, order, link(order), position));
+			return position;
+		} finally {
+			segment.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Points the description of a new order at it when descriptions are not unique, while holding
+	 * the lock of its identifier.
+	 *
+	 * @return Identifier of the previous order with the description, 0 for none
+	 */
+	private long link(Order order) {
+		if (uniqueDescriptions) {
+			return 0;
+		}
+		Long previous = descriptions.put(order.getDescription(), order.getId());
+		return previous == null ? 0 : previous;
+	}
+
+	/**
+	 * Must be called while holding the lock of the identifier.
+	 */
+	private Entry index(long id, Entry previous, Order order, long sameDescription, long position) {
+		OrderState state = OrderState.of(order);
+		if (previous != null && previous.state != state) {
+			stateIndex.get(previous.state).remove(id);
+		}
+		stateIndex.get(state).add(id);
+		return new Entry(order, state, sameDescription, position);
+	}
+
+	private Entry entry(long id) {
+		Segment segment = segment(id);
+		long stamp = segment.lock.tryOptimisticRead();
+		Entry entry = segment.entries.get(id);
+		if (!segment.lock.validate(stamp)) {
+			stamp = segment.lock.readLock();
+			try {
+				entry = segment.entries.get(id);
+			} finally {
+				segment.lock.unlockRead(stamp);
+			}
+		}
+		return entry;
+	}
+
+	private Segment segment(long id) {
+		return segments[(int) (LongIndex.mix(id) >>> (Long.SIZE - SEGMENT_BITS))];
+	}
+
+	/**
+	 * Called for every order stored, while holding the lock of its identifier.
+	 * Subclasses persisting orders hook in here so that writes of the same order are ordered.
+	 *
+	 * @param order
+	 * @return Position of the write, passed on to {@link #written(long)}; 0 when nothing was written
+	 */
+	protected long indexed(Order order) {
+		return 0;
+	}
+
+	/**
+	 * Called for every order removed, while holding the lock of its identifier.
+	 *
+	 * @param order
+	 * @return Position of the write, like {@link #indexed(Order)}
+	 */
+	protected long unindexed(Order order) {
+		return 0;
+	}
+
+	/**
+	 * Called at the end of every write operation, outside of any lock.
+	 *
+	 * @param position Highest position returned by {@link #indexed(Order)} or {@link #unindexed(Order)}
+	 *            for the operation, 0 for none
+	 */
+	protected void written(long position) {
+	}
+
+	/**
+	 * @param position Position returned by {@link #indexed(Order)}, 0 for none
+	 * @return Completes once the write at the position is durable
+	 */
+	protected CompletableFuture<Void> durable(long position) {
+		return CompletableFuture.completedFuture(null);
+	}
+
+	private static final class Segment {
+		private final StampedLock lock = new StampedLock();
+		private final LongIndex<Entry> entries = new LongIndex<>(EXPECTED_ORDERS_PER_SEGMENT);
+	}
+
+	private static final class Entry {
+		private final Order order;
+		private final OrderState state;
+		//Identifier of the previous order with the same description, 0 for none
+		private final long sameDescription;
+		//Position of the last write of the order, see indexed
+		private final long position;
+
+		private Entry(Order order, OrderState state, long sameDescription, long position) {
+			this.order = order;
+			this.state = state;
+			this.sameDescription = sameDescription;
+			this.position = position;
+		}
 	}
 }
@@ -3,7 +3,6 @@ package in.ravikalla.factory;
 import org.springframework.stereotype.Component;
 
 import in.ravikalla.external.service.EmailService;
-import in.ravikalla.model.Order;
 
 /**
  * @author - Ravi Kalla
@@ -11,12 +10,24 @@ import in.ravikalla.model.Order;
 @Component
 public class EmailServiceFactory {
 
+	private final EmailService emailService;
+
+	public EmailServiceFactory() {
+		this(new EmailService());
+	}
+
+	/**
+	 * @param emailService Sender to share, e.g. a stand-in of the mail server
+	 */
+	public EmailServiceFactory(EmailService emailService) {
+		this.emailService = emailService;
+	}
+
 	/**
-	 * @param order
-	 * @return
+	 * @return Shared stateless email service
 	 */
-	public EmailService buildEmailService(Order order) {
-		return new EmailService(order);
+	public EmailService getEmailService() {
+		return emailService;
 	}
 
 }
@@ -0,0 +1,220 @@
+package in.ravikalla.idempotency;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import in.ravikalla.exception.OrderException;
+import in.ravikalla.util.TimingWheel;
+
+/**
+ * Outcomes of the order operations run under an idempotency key, so that a client retrying an
+ * operation it does not know the outcome of gets the outcome of the first run instead of running
+ * it again. A retry arriving while the first run is in progress waits for its outcome.
+ * <p>
+ * Success and {@link OrderException}s are outcomes, a failure replayed as the exception of the
+ * first run; an operation that failed otherwise, e.g. on storage, is forgotten and runs again on
+ * retry. Outcomes are kept for the time to live, expired
+ * by a {@link TimingWheel}, and the oldest are dropped early when the table is full.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ConditionalOnProperty(name = "idempotency.enabled", havingValue = "true", matchIfMissing = true)
+@ManagedResource(objectName = "in.ravikalla:type=IdempotencyTable", description = "Outcomes of idempotent order operations")
+public class IdempotencyTable {
+
+	private final ConcurrentHashMap<String, Outcome> outcomes = new ConcurrentHashMap<>();
+	private final TimingWheel<Outcome> expiry;
+	private final int ttlTicks;
+	private final long tickMillis;
+	private final int maxKeys;
+
+	private final LongAdder replays = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "idempotency-expiry");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * @param ttlMillis Time an outcome is kept for, rounded up to ticks
+	 * @param tickMillis Expiry granularity
+	 * @param maxKeys Outcomes kept at most
+	 */
+	@Inject
+	public IdempotencyTable(@Value("${idempotency.ttl-ms:600000}") long ttlMillis,
+			@Value("${idempotency.tick-ms:1000}") long tickMillis,
+			@Value("${idempotency.max-keys:1000000}") int maxKeys) {
+		if (ttlMillis <= 0 || tickMillis <= 0 || maxKeys < 1) {
+			throw new IllegalArgumentException("Time to live, tick and max keys must be positive");
+		}
+		this.ttlTicks = (int) Math.min(Integer.MAX_VALUE, (ttlMillis + tickMillis - 1) / tickMillis);
+		this.tickMillis = tickMillis;
+		this.maxKeys = maxKeys;
+		this.expiry = new TimingWheel<>(ttlTicks);
+	}
+
+	@PostConstruct
+	public void start() {
+		ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		ticker.shutdownNow();
+	}
+
+	/**
+	 * Runs the operation once per key: a key seen before gives the outcome of the first run.
+	 *
+	 * @param key Idempotency key chosen by the client
+	 * @param operation What the key is used for, e.g. the operation and the order
+	 * @param call
+	 * @throws OrderException The one of the first run
+	 * @throws IllegalArgumentException When the key was used for another operation
+	 */
+	public void run(String key, String operation, Operation call) throws OrderException {
+		Outcome outcome = new Outcome(key, operation);
+		while (true) {
+			Outcome first = outcomes.putIfAbsent(key, outcome);
+			if (first == null) {
+				break;
+			}
+			if (!first.operation.equals(operation)) {
+				throw new IllegalArgumentException("Idempotency key " + key + " was used for " + first.operation);
+			}
+			if (first.await()) {
+				replays.increment();
+				first.replay();
+				return;
+			}
+			//the first run failed without an outcome, this one runs instead
+		}
+
+		if (outcomes.size() > maxKeys) {
+			evictions.add(expiry.expireNext(this::forget));
+		}
+		try {
+			call.run();
+			outcome.complete(null);
+		} catch (OrderException e) {
+			outcome.complete(e);
+			throw e;
+		} catch (RuntimeException | Error e) {
+			outcomes.remove(key, outcome);
+			outcome.abandon();
+			throw e;
+		} finally {
+			if (outcome.completed) {
+				expiry.add(outcome, ttlTicks);
+			}
+		}
+	}
+
+	/**
+	 * Expires the outcomes that lived their time to live.
+	 */
+	void tick() {
+		expiry.tick(this::forget);
+	}
+
+	private void forget(Outcome outcome) {
+		outcomes.remove(outcome.key, outcome);
+	}
+
+	/**
+	 * @return Number of keys with an outcome or a run in progress
+	 */
+	@ManagedAttribute(description = "Number of keys with an outcome or a run in progress")
+	public int getSize() {
+		return outcomes.size();
+	}
+
+	/**
+	 * @return Number of retries given the outcome of the first run
+	 */
+	@ManagedAttribute(description = "Number of retries given the outcome of the first run")
+	public long getReplays() {
+		return replays.sum();
+	}
+
+	/**
+	 * @return Number of outcomes dropped before their time to live because the table was full
+	 */
+	@ManagedAttribute(description = "Number of outcomes dropped before their time to live because the table was full")
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	@FunctionalInterface
+	public interface Operation {
+		void run() throws OrderException;
+	}
+
+	private static final class Outcome {
+
+		private final String key;
+		private final String operation;
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		//Published by the count down of done
+		private boolean completed;
+		private OrderException failure;
+
+		private Outcome(String key, String operation) {
+			this.key = key;
+			this.operation = operation;
+		}
+
+		private void complete(OrderException e) {
+			completed = true;
+			failure = e;
+			done.countDown();
+		}
+
+		private void abandon() {
+			done.countDown();
+		}
+
+		/**
+		 * @return Whether the run completed with an outcome
+		 */
+		private boolean await() {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					done.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			return completed;
+		}
+
+		private void replay() throws OrderException {
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+}
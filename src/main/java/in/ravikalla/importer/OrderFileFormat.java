@@ -0,0 +1,66 @@
+package in.ravikalla.importer;
+
+import java.io.File;
+
+import in.ravikalla.model.OrderRequest;
+
+/**
+ * Formats of order files, one record per line.
+ *
+ * @author - Ravi Kalla
+ */
+public enum OrderFileFormat {
+
+	/**
+	 * {@code description,basePrice,premium}, the description quoted when it holds commas or quotes,
+	 * with an optional header line.
+	 */
+	CSV {
+		@Override
+		public OrderRequest parse(byte[] bytes, int start, int end) {
+			return OrderRecordParser.parseCsv(bytes, start, end);
+		}
+
+		@Override
+		public boolean isHeader(byte[] bytes, int start, int end) {
+			return OrderRecordParser.isCsvHeader(bytes, start, end);
+		}
+	},
+
+	/**
+	 * One JSON object per line, {@code {"description": "Soaps", "basePrice": 90.25, "premium": true}}.
+	 */
+	NDJSON {
+		@Override
+		public OrderRequest parse(byte[] bytes, int start, int end) {
+			return OrderRecordParser.parseNdjson(bytes, start, end);
+		}
+
+		@Override
+		public boolean isHeader(byte[] bytes, int start, int end) {
+			return false;
+		}
+	};
+
+	/**
+	 * @param bytes Bytes of the file
+	 * @param start Offset of the first byte of the record
+	 * @param end Offset following the last byte of the record, without the line break
+	 * @return Parsed record
+	 * @throws IllegalArgumentException when the record is malformed
+	 */
+	public abstract OrderRequest parse(byte[] bytes, int start, int end);
+
+	/**
+	 * @return True when the first line of a file is a header, not a record
+	 */
+	public abstract boolean isHeader(byte[] bytes, int start, int end);
+
+	/**
+	 * @return Format of the file by its extension, CSV unless it ends with .ndjson, .jsonl or .json
+	 */
+	public static OrderFileFormat of(File file) {
+		String name = file.getName().toLowerCase();
+		return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json") ? NDJSON : CSV;
+	}
+}
@@ -0,0 +1,555 @@
+package in.ravikalla.importer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import in.ravikalla.exception.OrderAlreadyExistsException;
+import in.ravikalla.exception.OrderRejectedException;
+import in.ravikalla.model.BatchResult;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+import in.ravikalla.service.AmazonDeliveryService;
+
+/**
+ * Imports orders from CSV or NDJSON files of any size with bounded memory.
+ * <p>
+ * A reader thread streams the file through a fixed buffer, parses the records in place and hands
+ * them in batches to worker threads calling {@link AmazonDeliveryService#initOrders(List)}; it waits
+ * while too many batches are in flight. Rows that cannot be parsed or are rejected, duplicates
+ * included, are written to {@code <file>.rejected} as {@code line, reason, row} separated by tabs,
+ * batch after batch in file order. Rows admission control turns away are submitted again once the
+ * hinted delay has passed.
+ * <p>
+ * {@code <file>.checkpoint} records the committed offset, up to which the batches are done in file
+ * order, with the length of the dead letters written for them, and the offset up to which batches
+ * were handed to the workers. It is written before every batch is handed over: an interrupted import
+ * resumes from the committed offset, cuts the dead letters back to the committed ones and skips the
+ * rows of the batches handed over after it that were already imported, the orders stored with the
+ * same price and premium flag. Once the whole file is imported the checkpoint is at its end; delete it
+ * to import the file again.
+ *
+ * @author - Ravi Kalla
+ */
+@Service
+@ManagedResource(objectName = "in.ravikalla:type=OrderFileImporter", description = "Order file importer")
+public class OrderFileImporter {
+
+	private static final Logger logger = LoggerFactory.getLogger(OrderFileImporter.class);
+
+	static final String DEAD_LETTER_SUFFIX = ".rejected";
+	static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+	private static final String OFFSET = "offset";
+	private static final String LINE = "line";
+	private static final String IMPORTED = "imported";
+	private static final String REJECTED = "rejected";
+	private static final String DEAD_LETTERS_LENGTH = "deadLettersLength";
+	private static final String SUBMITTED_OFFSET = "submittedOffset";
+
+	private final AmazonDeliveryService amazonDeliveryService;
+	private final int batchSize;
+	private final int workers;
+	private final int bufferSize;
+	private final long progressIntervalMillis;
+
+	private final AtomicInteger importCount = new AtomicInteger();
+	private volatile OrderImportProgress lastProgress;
+
+	@Inject
+	public OrderFileImporter(AmazonDeliveryService amazonDeliveryService,
+			@Value("${orders.import.batch-size:1000}") int batchSize,
+			@Value("${orders.import.workers:4}") int workers,
+			@Value("${orders.import.buffer-size:1048576}") int bufferSize,
+			@Value("${orders.import.progress-interval-ms:10000}") long progressIntervalMillis) {
+		this.amazonDeliveryService = amazonDeliveryService;
+		this.batchSize = batchSize;
+		this.workers = workers;
+		this.bufferSize = bufferSize;
+		this.progressIntervalMillis = progressIntervalMillis;
+	}
+
+	/**
+	 * Imports the file in the format given by its extension.
+	 *
+	 * @param path Path of the file
+	 * @return Summary of the import
+	 */
+	@ManagedOperation(description = "Imports an order file, resuming from its checkpoint")
+	public String importFile(String path) throws IOException, InterruptedException {
+		File file = new File(path);
+		return importFile(file, OrderFileFormat.of(file)).toString();
+	}
+
+	/**
+	 * Imports the file, resuming from its checkpoint when there is one.
+	 *
+	 * @param file File to import
+	 * @param format Format of the file
+	 * @return Progress of the finished import
+	 * @throws IOException When the file cannot be read or the dead letters or checkpoint written
+	 * @throws InterruptedException When interrupted, the import can be resumed from the last checkpoint
+	 */
+	public OrderImportProgress importFile(File file, OrderFileFormat format) throws IOException,
+			InterruptedException {
+		File checkpointFile = new File(file.getPath() + CHECKPOINT_SUFFIX);
+		Properties checkpoint = readCheckpoint(checkpointFile);
+		long startOffset = Long.parseLong(checkpoint.getProperty(OFFSET, "0"));
+		long startLine = Long.parseLong(checkpoint.getProperty(LINE, "0"));
+		long submittedOffset = Long.parseLong(checkpoint.getProperty(SUBMITTED_OFFSET, Long.toString(startOffset)));
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+				DeadLetters deadLetters = new DeadLetters(new File(file.getPath() + DEAD_LETTER_SUFFIX),
+						Long.parseLong(checkpoint.getProperty(DEAD_LETTERS_LENGTH, "0")))) {
+			OrderImportProgress progress = new OrderImportProgress(file, channel.size(), startOffset,
+					Long.parseLong(checkpoint.getProperty(IMPORTED, "0")),
+					Long.parseLong(checkpoint.getProperty(REJECTED, "0")));
+			lastProgress = progress;
+			if (startOffset > 0) {
+				logger.info("OrderFileImporter - resuming {} at line {}", file, startLine + 1);
+			}
+			channel.position(startOffset);
+
+			Import run = new Import(format, progress, deadLetters, checkpointFile, startOffset, startLine,
+					submittedOffset);
+			run.read(channel);
+			progress.done();
+			logger.info("OrderFileImporter - {}", progress);
+			return progress;
+		}
+	}
+
+	/**
+	 * @return Progress of the running or last import
+	 */
+	@ManagedAttribute(description = "Progress of the running or last import")
+	public String getProgress() {
+		OrderImportProgress progress = lastProgress;
+		return progress == null ? "none" : progress.toString();
+	}
+
+	private static Properties readCheckpoint(File checkpointFile) throws IOException {
+		Properties checkpoint = new Properties();
+		if (checkpointFile.exists()) {
+			try (InputStream in = new FileInputStream(checkpointFile)) {
+				checkpoint.load(in);
+			}
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * State of one import.
+	 */
+	private final class Import {
+
+		private final OrderFileFormat format;
+		private final OrderImportProgress progress;
+		private final DeadLetters deadLetters;
+		private final File checkpointFile;
+		//end of the batches handed to the workers by the interrupted import, their rows may be imported
+		private final long resumedSubmittedOffset;
+		private long submittedOffset;
+
+		private final ExecutorService executor;
+		private final Semaphore inFlight;
+		private volatile RuntimeException failure;
+
+		//batches done, waiting for the ones before them
+		private final TreeMap<Long, Batch> done = new TreeMap<>();
+		private long nextToCommit;
+		private long committedOffset;
+		private long committedLine;
+		private long committedImported;
+		private long committedRejected;
+
+		private Import(OrderFileFormat format, OrderImportProgress progress, DeadLetters deadLetters,
+				File checkpointFile, long startOffset, long startLine, long resumedSubmittedOffset) {
+			this.format = format;
+			this.progress = progress;
+			this.deadLetters = deadLetters;
+			this.checkpointFile = checkpointFile;
+			this.resumedSubmittedOffset = resumedSubmittedOffset;
+			this.submittedOffset = Math.max(startOffset, resumedSubmittedOffset);
+			this.committedOffset = startOffset;
+			this.committedLine = startLine;
+			this.committedImported = progress.getImported();
+			this.committedRejected = progress.getRejected();
+			int id = importCount.incrementAndGet();
+			AtomicInteger threads = new AtomicInteger();
+			this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+				Thread thread = new Thread(runnable, "order-import-" + id + "-" + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.inFlight = new Semaphore(workers * 2);
+		}
+
+		private void read(FileChannel channel) throws IOException, InterruptedException {
+			ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+			byte[] bytes = buffer.array();
+			long bufferOffset = committedOffset;
+			long line = committedLine;
+			long sequence = 0;
+			boolean skippingLongLine = false;
+			long lastProgress = System.nanoTime();
+			Batch batch = new Batch(sequence++, bufferOffset);
+
+			try {
+				boolean endOfFile = false;
+				while (!endOfFile) {
+					endOfFile = channel.read(buffer) < 0;
+					int limit = buffer.position();
+					int lineStart = 0;
+					int scan = 0;
+					while (true) {
+						while (scan < limit && bytes[scan] != '\n') {
+							scan++;
+						}
+						boolean lastLine = scan == limit;
+						if (lastLine && !(endOfFile && lineStart < limit)) {
+							break;
+						}
+						line++;
+						int lineEnd = scan > lineStart && bytes[scan - 1] == '\r' ? scan - 1 : scan;
+						if (skippingLongLine) {
+							skippingLongLine = false;
+						} else {
+							record(batch, bytes, lineStart, lineEnd, line);
+						}
+						lineStart = lastLine ? limit : scan + 1;
+						scan = lineStart;
+
+						if (batch.size() == batchSize) {
+							batch.endOffset = bufferOffset + lineStart;
+							batch.endLine = line;
+							submit(batch);
+							batch = new Batch(sequence++, batch.endOffset);
+						}
+					}
+
+					if (lineStart == 0 && limit == bytes.length) {
+						//a single row fills the buffer, reject it and drop the rest of it
+						if (!skippingLongLine) {
+							batch.reject(line + 1, "Row longer than " + bytes.length + " bytes", bytes, 0,
+									Math.min(limit, 256));
+							batch.malformed++;
+							progress.addRejected(1);
+						}
+						skippingLongLine = true;
+						lineStart = limit;
+					}
+					System.arraycopy(bytes, lineStart, bytes, 0, limit - lineStart);
+					bufferOffset += lineStart;
+					buffer.position(limit - lineStart);
+					progress.setBytesRead(bufferOffset);
+
+					long now = System.nanoTime();
+					if (now - lastProgress >= TimeUnit.MILLISECONDS.toNanos(progressIntervalMillis)) {
+						logger.info("OrderFileImporter - {}", progress);
+						lastProgress = now;
+					}
+				}
+
+				//the last batch may be empty, it moves the checkpoint to the end of the file
+				batch.endOffset = bufferOffset + buffer.position();
+				batch.endLine = line;
+				submit(batch);
+				inFlight.acquire(workers * 2);
+				inFlight.release(workers * 2);
+				if (failure != null) {
+					throw failure;
+				}
+			} finally {
+				executor.shutdownNow();
+				writeCheckpoint();
+			}
+		}
+
+		private void record(Batch batch, byte[] bytes, int start, int end, long line) {
+			if (start == end || line == 1 && format.isHeader(bytes, start, end)) {
+				return;
+			}
+			OrderRequest request;
+			try {
+				request = format.parse(bytes, start, end);
+			} catch (IllegalArgumentException e) {
+				batch.reject(line, e.getMessage(), bytes, start, end - start);
+				batch.malformed++;
+				progress.addRejected(1);
+				return;
+			}
+			batch.add(request, bytes, start, end, line);
+		}
+
+		/**
+		 * Records the end of the batch in the checkpoint before handing it over, so a resumed import
+		 * knows which rows may already be imported.
+		 */
+		private void submit(Batch batch) throws IOException, InterruptedException {
+			if (failure != null) {
+				throw failure;
+			}
+			inFlight.acquire();
+			try {
+				submittedOffset = Math.max(submittedOffset, batch.endOffset);
+				writeCheckpoint();
+			} catch (IOException | RuntimeException e) {
+				inFlight.release();
+				throw e;
+			}
+			try {
+				executor.execute(() -> {
+					try {
+						process(batch);
+					} catch (RuntimeException e) {
+						//the checkpoint stays before the batch, so it is imported again on resume
+						logger.error("OrderFileImporter - batch ending at line {} failed", batch.endLine, e);
+						failure = e;
+					} finally {
+						inFlight.release();
+					}
+				});
+			} catch (RuntimeException e) {
+				inFlight.release();
+				throw e;
+			}
+		}
+
+		private void process(Batch batch) {
+			List<Integer> pending = new ArrayList<>(batch.size());
+			for (int i = 0; i < batch.size(); i++) {
+				pending.add(i);
+			}
+			while (!pending.isEmpty()) {
+				List<OrderRequest> requests = new ArrayList<>(pending.size());
+				for (int i : pending) {
+					requests.add(batch.requests.get(i));
+				}
+				BatchResult result = amazonDeliveryService.initOrders(requests);
+				List<BatchResult.Item> items = result.getItems();
+				List<Integer> turnedAway = new ArrayList<>();
+				long retryAfterMillis = 0;
+				for (int item = 0; item < items.size(); item++) {
+					int i = pending.get(item);
+					Throwable itemFailure = items.get(item).getFailure();
+					if (itemFailure instanceof OrderRejectedException) {
+						//not a verdict on the row, admission control asks to come back later
+						turnedAway.add(i);
+						retryAfterMillis = Math.max(retryAfterMillis,
+								((OrderRejectedException) itemFailure).getRetryAfterMillis());
+						continue;
+					}
+					if (itemFailure == null || itemFailure instanceof OrderAlreadyExistsException
+							&& batch.startOffset < resumedSubmittedOffset && imported(batch.requests.get(i))) {
+						batch.imported++;
+						continue;
+					}
+					String reason = itemFailure.getMessage() == null ? itemFailure.getClass().getSimpleName()
+							: itemFailure.getClass().getSimpleName() + ": " + itemFailure.getMessage();
+					batch.reject(batch.lines[i], reason, batch.rows, batch.rowStart(i),
+							batch.rowEnds[i] - batch.rowStart(i));
+					batch.rejected++;
+				}
+				if (!turnedAway.isEmpty()) {
+					pause(retryAfterMillis);
+				}
+				pending = turnedAway;
+			}
+			if (batch.size() > 0) {
+				progress.addImported(batch.imported);
+				progress.addRejected(batch.rejected);
+			}
+			commit(batch);
+		}
+
+		private void pause(long millis) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting to be admitted", e);
+			}
+		}
+
+		/**
+		 * @return True when the row was imported by the interrupted import, its order stored as read
+		 */
+		private boolean imported(OrderRequest request) {
+			Order order = amazonDeliveryService.find(request.getDescription());
+			return order != null && order.getBasePriceCents() == Math.round(request.getBasePrice() * 100)
+					&& order.isPremium() == request.isPremium();
+		}
+
+		private synchronized void commit(Batch batch) {
+			done.put(batch.sequence, batch);
+			while (!done.isEmpty() && done.firstKey() == nextToCommit) {
+				Batch next = done.pollFirstEntry().getValue();
+				nextToCommit++;
+				try {
+					deadLetters.write(next.deadLetters);
+				} catch (IOException e) {
+					throw new IllegalStateException("Cannot write dead letters of the batch ending at line "
+							+ next.endLine, e);
+				}
+				committedOffset = next.endOffset;
+				committedLine = next.endLine;
+				committedImported += next.imported;
+				committedRejected += next.rejected + next.malformed;
+			}
+		}
+
+		/**
+		 * Writes the checkpoint after the dead letters it covers, through a temporary file moved over it.
+		 */
+		private void writeCheckpoint() throws IOException {
+			Properties checkpoint = new Properties();
+			synchronized (this) {
+				checkpoint.setProperty(OFFSET, Long.toString(committedOffset));
+				checkpoint.setProperty(LINE, Long.toString(committedLine));
+				checkpoint.setProperty(IMPORTED, Long.toString(committedImported));
+				checkpoint.setProperty(REJECTED, Long.toString(committedRejected));
+				checkpoint.setProperty(DEAD_LETTERS_LENGTH, Long.toString(deadLetters.length));
+				checkpoint.setProperty(SUBMITTED_OFFSET, Long.toString(submittedOffset));
+			}
+			deadLetters.flush();
+			File temporary = new File(checkpointFile.getPath() + ".tmp");
+			try (OutputStream out = new FileOutputStream(temporary)) {
+				checkpoint.store(out, null);
+			}
+			Files.move(temporary.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+
+	/**
+	 * Records of one call to initOrders, with their rows kept for the dead-letter file.
+	 */
+	private final class Batch {
+
+		private final long sequence;
+		//file offset the batch starts at
+		private final long startOffset;
+		private final List<OrderRequest> requests = new ArrayList<>(batchSize);
+		private final long[] lines = new long[batchSize];
+		private final int[] rowEnds = new int[batchSize];
+		private byte[] rows = new byte[batchSize * 64];
+		private int rowsLength;
+
+		//file offset and line the batch ends with
+		private long endOffset;
+		private long endLine;
+
+		private int imported;
+		private int rejected;
+		//rows of the batch rejected by the reader
+		private int malformed;
+		//rejected rows, written once the batches before are done
+		private final ByteArrayOutputStream deadLetters = new ByteArrayOutputStream(0);
+
+		private Batch(long sequence, long startOffset) {
+			this.sequence = sequence;
+			this.startOffset = startOffset;
+		}
+
+		private int size() {
+			return requests.size();
+		}
+
+		private void add(OrderRequest request, byte[] bytes, int start, int end, long line) {
+			int length = end - start;
+			if (rowsLength + length > rows.length) {
+				rows = Arrays.copyOf(rows, Math.max(rows.length * 2, rowsLength + length));
+			}
+			System.arraycopy(bytes, start, rows, rowsLength, length);
+			rowsLength += length;
+			lines[requests.size()] = line;
+			rowEnds[requests.size()] = rowsLength;
+			requests.add(request);
+		}
+
+		private int rowStart(int index) {
+			return index == 0 ? 0 : rowEnds[index - 1];
+		}
+
+		private void reject(long line, String reason, byte[] row, int start, int length) {
+			byte[] prefix = (line + "\t" + String.valueOf(reason).replace('\t', ' ').replace('\n', ' ') + "\t")
+					.getBytes(StandardCharsets.UTF_8);
+			deadLetters.write(prefix, 0, prefix.length);
+			deadLetters.write(row, start, length);
+			deadLetters.write('\n');
+		}
+	}
+
+	/**
+	 * Rejected rows of the committed batches.
+	 */
+	private static final class DeadLetters implements Closeable {
+
+		private final OutputStream out;
+		private long length;
+
+		/**
+		 * @param length Length of the dead letters of the batches committed before, the rest is cut off
+		 */
+		private DeadLetters(File file, long length) throws IOException {
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			try {
+				this.length = Math.min(length, channel.size());
+				channel.truncate(this.length);
+				channel.position(this.length);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			this.out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+		}
+
+		private synchronized void write(ByteArrayOutputStream rows) throws IOException {
+			rows.writeTo(out);
+			length += rows.size();
+		}
+
+		private synchronized void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			out.close();
+		}
+	}
+}
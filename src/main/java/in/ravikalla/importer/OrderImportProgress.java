@@ -0,0 +1,118 @@
+package in.ravikalla.importer;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of the import of an order file, updated while the import runs.
+ *
+ * @author - Ravi Kalla
+ */
+public class OrderImportProgress {
+
+	private final File file;
+	private final long totalBytes;
+	private final long startOffset;
+	private final long startNanos = System.nanoTime();
+
+	private volatile long bytesRead;
+	private final AtomicLong imported = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private volatile long elapsedNanos = -1;
+
+	OrderImportProgress(File file, long totalBytes, long startOffset, long imported, long rejected) {
+		this.file = file;
+		this.totalBytes = totalBytes;
+		this.startOffset = startOffset;
+		this.bytesRead = startOffset;
+		this.imported.set(imported);
+		this.rejected.set(rejected);
+	}
+
+	/**
+	 * Getter for property 'file'.
+	 *
+	 * @return Value for property 'file'.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Getter for property 'totalBytes'.
+	 *
+	 * @return Value for property 'totalBytes'.
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * Getter for property 'startOffset'.
+	 *
+	 * @return Value for property 'startOffset', where the import resumed, 0 for a fresh import.
+	 */
+	public long getStartOffset() {
+		return startOffset;
+	}
+
+	/**
+	 * Getter for property 'bytesRead'.
+	 *
+	 * @return Value for property 'bytesRead', including the bytes imported before resuming.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Getter for property 'imported'.
+	 *
+	 * @return Value for property 'imported', including the orders imported before resuming.
+	 */
+	public long getImported() {
+		return imported.get();
+	}
+
+	/**
+	 * Getter for property 'rejected'.
+	 *
+	 * @return Value for property 'rejected', rows written to the dead-letter file.
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return True once the whole file was imported
+	 */
+	public boolean isDone() {
+		return elapsedNanos >= 0;
+	}
+
+	void setBytesRead(long bytesRead) {
+		this.bytesRead = bytesRead;
+	}
+
+	void addImported(long count) {
+		imported.addAndGet(count);
+	}
+
+	void addRejected(long count) {
+		rejected.addAndGet(count);
+	}
+
+	void done() {
+		elapsedNanos = System.nanoTime() - startNanos;
+	}
+
+	@Override
+	public String toString() {
+		long nanos = isDone() ? elapsedNanos : System.nanoTime() - startNanos;
+		long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(nanos));
+		return String.format("%s: %d%% (%d of %d MB, %d MB/s), %d imported, %d rejected%s", file.getName(),
+				totalBytes == 0 ? 100 : bytesRead * 100 / totalBytes, bytesRead >> 20, totalBytes >> 20,
+				(bytesRead - startOffset) / seconds >> 20, getImported(), getRejected(), isDone() ? ", done" : "");
+	}
+}
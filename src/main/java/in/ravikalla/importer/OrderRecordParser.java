@@ -0,0 +1,405 @@
+package in.ravikalla.importer;
+
+import java.nio.charset.StandardCharsets;
+
+import in.ravikalla.model.OrderRequest;
+
+/**
+ * Parses order records straight from the bytes of a file. Prices and flags are read without
+ * creating strings, the description is the only string of a record.
+ *
+ * @author - Ravi Kalla
+ */
+final class OrderRecordParser {
+
+	private static final byte[] DESCRIPTION = "description".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] BASE_PRICE = "basePrice".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] PREMIUM = "premium".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+	//exactly representable powers of ten, dividing by them rounds once like Double.parseDouble
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18 };
+	private static final long MAX_EXACT_DIGITS = 1L << 53;
+
+	private OrderRecordParser() {
+	}
+
+	static boolean isCsvHeader(byte[] bytes, int start, int end) {
+		int fieldEnd = start;
+		while (fieldEnd < end && bytes[fieldEnd] != ',') {
+			fieldEnd++;
+		}
+		return equalsIgnoreCase(bytes, trimStart(bytes, start, fieldEnd), trimEnd(bytes, start, fieldEnd),
+				DESCRIPTION);
+	}
+
+	static OrderRequest parseCsv(byte[] bytes, int start, int end) {
+		String description;
+		int position;
+		if (start < end && bytes[start] == '"') {
+			StringBuilder unquoted = new StringBuilder();
+			int chunkStart = start + 1;
+			position = chunkStart;
+			while (true) {
+				if (position >= end) {
+					throw new IllegalArgumentException("Unterminated quoted description");
+				}
+				if (bytes[position] == '"') {
+					unquoted.append(new String(bytes, chunkStart, position - chunkStart, StandardCharsets.UTF_8));
+					if (position + 1 < end && bytes[position + 1] == '"') {
+						unquoted.append('"');
+						position += 2;
+						chunkStart = position;
+						continue;
+					}
+					position++;
+					break;
+				}
+				position++;
+			}
+			description = unquoted.toString();
+		} else {
+			position = start;
+			while (position < end && bytes[position] != ',') {
+				position++;
+			}
+			description = new String(bytes, start, position - start, StandardCharsets.UTF_8);
+		}
+		if (description.isEmpty()) {
+			throw new IllegalArgumentException("Missing description");
+		}
+		if (position >= end || bytes[position] != ',') {
+			throw new IllegalArgumentException("Missing basePrice");
+		}
+
+		int priceStart = position + 1;
+		int priceEnd = priceStart;
+		while (priceEnd < end && bytes[priceEnd] != ',') {
+			priceEnd++;
+		}
+		double basePrice = parsePrice(bytes, trimStart(bytes, priceStart, priceEnd), trimEnd(bytes, priceStart, priceEnd));
+
+		boolean premium = false;
+		if (priceEnd < end) {
+			int premiumStart = trimStart(bytes, priceEnd + 1, end);
+			int premiumEnd = trimEnd(bytes, priceEnd + 1, end);
+			premium = parseFlag(bytes, premiumStart, premiumEnd);
+		}
+		return new OrderRequest(description, basePrice, premium);
+	}
+
+	static OrderRequest parseNdjson(byte[] bytes, int start, int end) {
+		Cursor cursor = new Cursor(bytes, end);
+		cursor.position = start;
+		cursor.skipWhitespace();
+		cursor.expect('{');
+
+		String description = null;
+		double basePrice = Double.NaN;
+		boolean premium = false;
+		cursor.skipWhitespace();
+		if (cursor.peek() == '}') {
+			cursor.position++;
+		} else {
+			while (true) {
+				cursor.skipWhitespace();
+				cursor.expect('"');
+				int keyStart = cursor.position;
+				int keyEnd = cursor.skipString();
+				cursor.skipWhitespace();
+				cursor.expect(':');
+				cursor.skipWhitespace();
+
+				if (equals(bytes, keyStart, keyEnd, DESCRIPTION)) {
+					description = cursor.readString();
+				} else if (equals(bytes, keyStart, keyEnd, BASE_PRICE)) {
+					int numberStart = cursor.position;
+					cursor.skipLiteral();
+					basePrice = parsePrice(bytes, numberStart, cursor.position);
+				} else if (equals(bytes, keyStart, keyEnd, PREMIUM)) {
+					int flagStart = cursor.position;
+					cursor.skipLiteral();
+					premium = parseFlag(bytes, flagStart, cursor.position);
+				} else {
+					cursor.skipValue();
+				}
+
+				cursor.skipWhitespace();
+				if (cursor.peek() == ',') {
+					cursor.position++;
+					continue;
+				}
+				cursor.expect('}');
+				break;
+			}
+		}
+		cursor.skipWhitespace();
+		if (cursor.position != end) {
+			throw new IllegalArgumentException("Unexpected content after the object at " + (cursor.position - start));
+		}
+		if (description == null || description.isEmpty()) {
+			throw new IllegalArgumentException("Missing description");
+		}
+		if (Double.isNaN(basePrice)) {
+			throw new IllegalArgumentException("Missing basePrice");
+		}
+		return new OrderRequest(description, basePrice, premium);
+	}
+
+	/**
+	 * Reads a plain decimal without allocating, other notations go through Double.parseDouble.
+	 *
+	 * @throws IllegalArgumentException When the price is not a number, negative, NaN or infinite
+	 */
+	static double parsePrice(byte[] bytes, int start, int end) {
+		int position = start;
+		boolean negative = position < end && bytes[position] == '-';
+		if (negative) {
+			position++;
+		}
+		long digits = 0;
+		int scale = -1;
+		int digitCount = 0;
+		for (; position < end; position++) {
+			byte b = bytes[position];
+			if (b >= '0' && b <= '9') {
+				digits = digits * 10 + (b - '0');
+				digitCount++;
+				if (scale >= 0) {
+					scale++;
+				}
+				if (digits >= MAX_EXACT_DIGITS || scale >= POWERS_OF_TEN.length) {
+					return parsePriceSlowly(bytes, start, end);
+				}
+			} else if (b == '.' && scale < 0) {
+				scale = 0;
+			} else {
+				return parsePriceSlowly(bytes, start, end);
+			}
+		}
+		if (digitCount == 0) {
+			throw new IllegalArgumentException("Missing basePrice");
+		}
+		if (negative && digits != 0) {
+			throw new IllegalArgumentException("Negative basePrice " + price(bytes, start, end));
+		}
+		return scale > 0 ? digits / POWERS_OF_TEN[scale] : digits;
+	}
+
+	private static double parsePriceSlowly(byte[] bytes, int start, int end) {
+		String price = price(bytes, start, end);
+		double value;
+		try {
+			value = Double.parseDouble(price);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid basePrice " + price);
+		}
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			throw new IllegalArgumentException("Invalid basePrice " + price);
+		}
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative basePrice " + price);
+		}
+		return value;
+	}
+
+	private static String price(byte[] bytes, int start, int end) {
+		return new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+	}
+
+	private static boolean parseFlag(byte[] bytes, int start, int end) {
+		if (start == end || equalsIgnoreCase(bytes, start, end, FALSE) || (end - start == 1 && bytes[start] == '0')
+				|| equals(bytes, start, end, NULL)) {
+			return false;
+		}
+		if (equalsIgnoreCase(bytes, start, end, TRUE) || (end - start == 1 && bytes[start] == '1')) {
+			return true;
+		}
+		throw new IllegalArgumentException("Invalid premium "
+				+ new String(bytes, start, end - start, StandardCharsets.UTF_8));
+	}
+
+	private static int trimStart(byte[] bytes, int start, int end) {
+		while (start < end && (bytes[start] == ' ' || bytes[start] == '\t')) {
+			start++;
+		}
+		return start;
+	}
+
+	private static int trimEnd(byte[] bytes, int start, int end) {
+		while (end > start && (bytes[end - 1] == ' ' || bytes[end - 1] == '\t')) {
+			end--;
+		}
+		return end;
+	}
+
+	private static boolean equals(byte[] bytes, int start, int end, byte[] expected) {
+		if (end - start != expected.length) {
+			return false;
+		}
+		for (int i = 0; i < expected.length; i++) {
+			if (bytes[start + i] != expected[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean equalsIgnoreCase(byte[] bytes, int start, int end, byte[] expected) {
+		if (end - start != expected.length) {
+			return false;
+		}
+		for (int i = 0; i < expected.length; i++) {
+			if (Character.toLowerCase(bytes[start + i]) != Character.toLowerCase(expected[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Position within the JSON object of a record.
+	 */
+	private static final class Cursor {
+
+		private final byte[] bytes;
+		private final int end;
+		private int position;
+
+		private Cursor(byte[] bytes, int end) {
+			this.bytes = bytes;
+			this.end = end;
+		}
+
+		private int peek() {
+			return position < end ? bytes[position] : -1;
+		}
+
+		private void expect(char expected) {
+			if (peek() != expected) {
+				throw new IllegalArgumentException("Expected '" + expected + "' at " + position);
+			}
+			position++;
+		}
+
+		private void skipWhitespace() {
+			while (position < end && (bytes[position] == ' ' || bytes[position] == '\t' || bytes[position] == '\r')) {
+				position++;
+			}
+		}
+
+		/**
+		 * Skips the rest of a string whose opening quote was read.
+		 *
+		 * @return Offset of the closing quote
+		 */
+		private int skipString() {
+			while (position < end) {
+				byte b = bytes[position++];
+				if (b == '\\') {
+					position++;
+				} else if (b == '"') {
+					return position - 1;
+				}
+			}
+			throw new IllegalArgumentException("Unterminated string");
+		}
+
+		private String readString() {
+			expect('"');
+			int start = position;
+			int close = skipString();
+			for (int i = start; i < close; i++) {
+				if (bytes[i] == '\\') {
+					return unescape(start, close);
+				}
+			}
+			return new String(bytes, start, close - start, StandardCharsets.UTF_8);
+		}
+
+		private String unescape(int start, int close) {
+			StringBuilder value = new StringBuilder(close - start);
+			int chunkStart = start;
+			for (int i = start; i < close; i++) {
+				if (bytes[i] != '\\') {
+					continue;
+				}
+				value.append(new String(bytes, chunkStart, i - chunkStart, StandardCharsets.UTF_8));
+				byte escaped = bytes[++i];
+				switch (escaped) {
+					case 'n':
+						value.append('\n');
+						break;
+					case 't':
+						value.append('\t');
+						break;
+					case 'r':
+						value.append('\r');
+						break;
+					case 'b':
+						value.append('\b');
+						break;
+					case 'f':
+						value.append('\f');
+						break;
+					case 'u':
+						if (i + 4 >= close) {
+							throw new IllegalArgumentException("Invalid unicode escape");
+						}
+						value.append((char) Integer.parseInt(new String(bytes, i + 1, 4, StandardCharsets.US_ASCII), 16));
+						i += 4;
+						break;
+					default:
+						value.append((char) escaped);
+				}
+				chunkStart = i + 1;
+			}
+			value.append(new String(bytes, chunkStart, close - chunkStart, StandardCharsets.UTF_8));
+			return value.toString();
+		}
+
+		/**
+		 * Skips a number, true, false or null.
+		 */
+		private void skipLiteral() {
+			int start = position;
+			while (position < end && bytes[position] != ',' && bytes[position] != '}' && bytes[position] != ' '
+					&& bytes[position] != '\t' && bytes[position] != ']') {
+				position++;
+			}
+			if (position == start) {
+				throw new IllegalArgumentException("Missing value at " + position);
+			}
+		}
+
+		private void skipValue() {
+			int depth = 0;
+			do {
+				int b = peek();
+				if (b == '"') {
+					position++;
+					skipString();
+				} else if (b == '{' || b == '[') {
+					depth++;
+					position++;
+				} else if (b == '}' || b == ']') {
+					if (depth == 0) {
+						throw new IllegalArgumentException("Unexpected '" + (char) b + "' at " + position);
+					}
+					depth--;
+					position++;
+				} else if (depth > 0) {
+					if (b < 0) {
+						throw new IllegalArgumentException("Unterminated value");
+					}
+					position++;
+				} else {
+					skipLiteral();
+				}
+			} while (depth > 0);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package in.ravikalla.journal;
+
+/**
+ * When journal appends are forced to disk.
+ *
+ * @author - Ravi Kalla
+ */
+public enum FsyncPolicy {
+
+	//Every append is forced before it returns
+	SYNC,
+	//Appends are forced together by the flusher, writers wait for their group to be forced
+	GROUP,
+	//Appends are forced together by the flusher, writers do not wait
+	ASYNC
+}
@@ -0,0 +1,567 @@
+package in.ravikalla.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import in.ravikalla.codec.OrderCodec;
+import in.ravikalla.model.Order;
+
+/**
+ * Append-only journal of order snapshots stored in memory-mapped segment files.
+ * <p>
+ * Each record is {@code [int length][int crc32][payload]}, the payload being the {@link OrderCodec}
+ * encoding of the order, or the tombstone of a removed order: a zero byte, which no encoding
+ * starts with, then its identifier and its UTF-8 description. A zero length marks the end of the
+ * data of a segment. A torn or corrupted
+ * record ends the replay of its segment, which is what a crash in the middle of an append leaves
+ * behind. An open carries on appending to the last segment where its data ends, unless that
+ * segment ends in a torn record or was mapped with another size, in which case it starts a new
+ * one. Sealed segments are never written again and can be compacted in the background: compaction
+ * keeps the last snapshot of each order not removed since and replaces all sealed segments with a
+ * single one.
+ *
+ * @author - Ravi Kalla
+ */
+public class OrderJournal implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(OrderJournal.class);
+
+	private static final int HEADER = 8;
+	private static final byte TOMBSTONE = 0;
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String COMPACTION_SUFFIX = ".compact";
+
+	private final File directory;
+	private final int segmentSize;
+	private final FsyncPolicy fsyncPolicy;
+
+	private final ReentrantLock appendLock = new ReentrantLock();
+	private final OrderCodec codec = new OrderCodec();
+	private final CRC32 crc = new CRC32();
+	private final List<Long> sealedSegments = new ArrayList<>();
+	private long activeSegment;
+	private volatile MappedByteBuffer active;
+	//Segment reopened for appends and where its data ended, replayed up to there
+	private final long reopenedSegment;
+	private final int reopenedLength;
+
+	private volatile long appendedSequence;
+	private long durableSequence;
+	private final Object durableMonitor = new Object();
+	//Futures of whenDurable by sequence number, guarded by the durable monitor
+	private final TreeMap<Long, CompletableFuture<Void>> durableFutures = new TreeMap<>();
+	private final Object forceMonitor = new Object();
+
+	private final Object compactionMonitor = new Object();
+	private final Thread flusher;
+	private volatile boolean closed;
+
+	public OrderJournal(File directory, int segmentSize, FsyncPolicy fsyncPolicy, long groupCommitMillis)
+			throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create journal directory " + directory);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.fsyncPolicy = fsyncPolicy;
+
+		long lastSegment = -1;
+		File[] files = directory.listFiles();
+		for (File file : files == null ? new File[0] : files) {
+			String name = file.getName();
+			if (name.endsWith(COMPACTION_SUFFIX)) {
+				//left over by a compaction that did not complete
+				Files.delete(file.toPath());
+			} else if (name.endsWith(SEGMENT_SUFFIX)) {
+				long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+				sealedSegments.add(id);
+				lastSegment = Math.max(lastSegment, id);
+			}
+		}
+		sealedSegments.sort(null);
+		int length = lastSegment < 0 ? -1 : reopenableLength(lastSegment);
+		if (length >= 0) {
+			sealedSegments.remove(Long.valueOf(lastSegment));
+			openActive(lastSegment, length);
+			reopenedSegment = lastSegment;
+			reopenedLength = length;
+		} else {
+			openActive(lastSegment + 1, 0);
+			reopenedSegment = -1;
+			reopenedLength = 0;
+		}
+
+		flusher = new Thread(() -> flushLoop(groupCommitMillis), "order-journal-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Replays every record written before this journal was opened, oldest first.
+	 *
+	 * @param consumer Gets the snapshots of the orders
+	 * @param removed Gets the orders removed, with their identifier and description only
+	 */
+	public void replay(Consumer<Order> consumer, Consumer<Order> removed) throws IOException {
+		List<Long> segments;
+		synchronized (compactionMonitor) {
+			appendLock.lock();
+			try {
+				segments = new ArrayList<>(sealedSegments);
+			} finally {
+				appendLock.unlock();
+			}
+			OrderCodec decoder = new OrderCodec();
+			Consumer<ByteBuffer> decode = payload -> {
+				if (isTombstone(payload)) {
+					removed.accept(tombstone(payload));
+				} else {
+					decoder.reset();
+					consumer.accept(decoder.decode(payload));
+				}
+			};
+			for (long segment : segments) {
+				read(segment, Integer.MAX_VALUE, decode);
+			}
+			if (reopenedLength > 0 && !segments.contains(reopenedSegment)) {
+				read(reopenedSegment, reopenedLength, decode);
+			}
+		}
+	}
+
+	/**
+	 * Appends a snapshot of the order. Depending on the {@link FsyncPolicy} it returns once the
+	 * record is on disk, or as soon as it is in the mapped segment.
+	 *
+	 * @param order
+	 * @return Sequence number of the record
+	 */
+	public long append(Order order) {
+		long sequence = write(order);
+		sync(sequence);
+		return sequence;
+	}
+
+	/**
+	 * Writes a snapshot of the order to the mapped segment without forcing it or waiting for a group
+	 * commit, {@link #sync(long)} does that outside of the caller's locks.
+	 *
+	 * @param order
+	 * @return Sequence number of the record
+	 */
+	public long write(Order order) {
+		return write(order, false);
+	}
+
+	/**
+	 * Writes the tombstone of a removed order, the way {@link #write(Order)} writes a snapshot.
+	 *
+	 * @param order
+	 * @return Sequence number of the record
+	 */
+	public long writeTombstone(Order order) {
+		return write(order, true);
+	}
+
+	private long write(Order order, boolean tombstone) {
+		long sequence;
+		appendLock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("Journal is closed");
+			}
+			if (!put(order, tombstone)) {
+				roll();
+				if (!put(order, tombstone)) {
+					throw new IllegalArgumentException("Order " + order.getDescription() + " does not fit in a journal segment");
+				}
+			}
+			sequence = ++appendedSequence;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			appendLock.unlock();
+		}
+		return sequence;
+	}
+
+	/**
+	 * Makes the given record durable as the policy asks: {@link FsyncPolicy#SYNC} forces the active
+	 * segment unless a concurrent force already covered the record, {@link FsyncPolicy#GROUP} waits
+	 * for the group commit.
+	 *
+	 * @param sequence
+	 */
+	public void sync(long sequence) {
+		if (fsyncPolicy == FsyncPolicy.SYNC) {
+			force(sequence);
+		} else if (fsyncPolicy == FsyncPolicy.GROUP) {
+			awaitDurable(sequence);
+		}
+	}
+
+	/**
+	 * @return Sequence number of the last record written
+	 */
+	public long getWrittenSequence() {
+		return appendedSequence;
+	}
+
+	/**
+	 * Waits until the record with the given sequence number has been forced to disk. An interrupt
+	 * does not cut the wait short, the record is not durable yet; the interrupt flag is restored
+	 * once it is.
+	 *
+	 * @param sequence
+	 */
+	public void awaitDurable(long sequence) {
+		boolean interrupted = false;
+		synchronized (durableMonitor) {
+			while (durableSequence < sequence && !closed) {
+				try {
+					durableMonitor.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits for the record without holding the calling thread: the future is completed by the
+	 * thread forcing the record to disk.
+	 *
+	 * @param sequence
+	 * @return Completes once the record with the given sequence number has been forced to disk
+	 */
+	public CompletableFuture<Void> whenDurable(long sequence) {
+		synchronized (durableMonitor) {
+			if (durableSequence < sequence && !closed) {
+				return durableFutures.computeIfAbsent(sequence, pending -> new CompletableFuture<>());
+			}
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Rewrites all sealed segments into one holding the last snapshot of each order not removed
+	 * since. Tombstones are dropped with the snapshots they remove, all of them being compacted.
+	 *
+	 * @return Number of segment files removed
+	 */
+	public int compact() throws IOException {
+		synchronized (compactionMonitor) {
+			List<Long> segments;
+			appendLock.lock();
+			try {
+				if (active.position() > 0) {
+					roll();
+				}
+				segments = new ArrayList<>(sealedSegments);
+			} finally {
+				appendLock.unlock();
+			}
+			if (segments.size() < 2) {
+				return 0;
+			}
+
+			//orders are told apart by identifier, records written before identifiers by description
+			Map<Object, ByteBuffer> latest = new LinkedHashMap<>();
+			OrderCodec decoder = new OrderCodec();
+			for (long segment : segments) {
+				read(segment, Integer.MAX_VALUE, payload -> {
+					if (isTombstone(payload)) {
+						Order removed = tombstone(payload);
+						latest.remove(removed.getId());
+						latest.remove(removed.getDescription());
+						return;
+					}
+					ByteBuffer copy = ByteBuffer.allocate(payload.remaining());
+					copy.put(payload.duplicate()).flip();
+					long id = decoder.decodeId(copy);
+					Object key = id != 0 ? Long.valueOf(id) : decoder.decodeDescription(copy);
+					latest.remove(key);
+					latest.put(key, copy);
+				});
+			}
+
+			long target = segments.get(segments.size() - 1);
+			File compacted = new File(directory, name(target) + COMPACTION_SUFFIX);
+			try (FileChannel channel = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.WRITE)) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER);
+				CRC32 crc = new CRC32();
+				for (ByteBuffer payload : latest.values()) {
+					crc.reset();
+					crc.update(payload.duplicate());
+					header.clear();
+					header.putInt(payload.remaining()).putInt((int) crc.getValue()).flip();
+					while (header.hasRemaining()) {
+						channel.write(header);
+					}
+					while (payload.hasRemaining()) {
+						channel.write(payload);
+					}
+				}
+				channel.force(true);
+			}
+			Files.move(compacted.toPath(), segmentFile(target).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+
+			for (long segment : segments.subList(0, segments.size() - 1)) {
+				Files.deleteIfExists(segmentFile(segment).toPath());
+			}
+			appendLock.lock();
+			try {
+				sealedSegments.removeAll(segments.subList(0, segments.size() - 1));
+			} finally {
+				appendLock.unlock();
+			}
+			logger.info("OrderJournal - compacted {} segments into {} records", segments.size(), latest.size());
+			return segments.size() - 1;
+		}
+	}
+
+	/**
+	 * @return Number of segment files, the active one included
+	 */
+	public int getSegmentCount() {
+		appendLock.lock();
+		try {
+			return sealedSegments.size() + 1;
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * Forces everything appended so far and stops the flusher.
+	 */
+	@Override
+	public void close() throws IOException {
+		appendLock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			active.force();
+			markDurable(appendedSequence);
+			closed = true;
+		} finally {
+			appendLock.unlock();
+		}
+		flusher.interrupt();
+		synchronized (durableMonitor) {
+			durableMonitor.notifyAll();
+		}
+	}
+
+	private void flushLoop(long groupCommitMillis) {
+		while (!closed) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(groupCommitMillis);
+			} catch (InterruptedException e) {
+				return;
+			}
+			long sequence = appendedSequence;
+			synchronized (durableMonitor) {
+				if (durableSequence >= sequence) {
+					continue;
+				}
+			}
+			//segments are forced when rolled, so forcing the active one covers the sequence read above
+			active.force();
+			markDurable(sequence);
+		}
+	}
+
+	private void force(long sequence) {
+		synchronized (forceMonitor) {
+			long appended = appendedSequence;
+			synchronized (durableMonitor) {
+				if (durableSequence >= sequence) {
+					return;
+				}
+			}
+			//segments are forced when rolled, so forcing the active one covers the sequence read above
+			active.force();
+			markDurable(appended);
+		}
+	}
+
+	private void markDurable(long sequence) {
+		List<CompletableFuture<Void>> completed;
+		synchronized (durableMonitor) {
+			if (sequence <= durableSequence) {
+				return;
+			}
+			durableSequence = sequence;
+			durableMonitor.notifyAll();
+			Map<Long, CompletableFuture<Void>> durable = durableFutures.headMap(sequence, true);
+			completed = new ArrayList<>(durable.values());
+			durable.clear();
+		}
+		//outside the monitor, the futures run their dependent stages on this thread
+		for (CompletableFuture<Void> future : completed) {
+			future.complete(null);
+		}
+	}
+
+	/**
+	 * Encodes the order or its tombstone straight into the active segment, the header goes last so
+	 * that a record cut short never looks complete. Must be called holding the append lock.
+	 *
+	 * @return False when the active segment is full
+	 */
+	private boolean put(Order order, boolean tombstone) {
+		int start = active.position();
+		if (active.remaining() <= HEADER) {
+			return false;
+		}
+		active.position(start + HEADER);
+		try {
+			if (tombstone) {
+				active.put(TOMBSTONE).putLong(order.getId())
+						.put(order.getDescription().getBytes(StandardCharsets.UTF_8));
+			} else {
+				codec.reset();
+				codec.encode(order, active);
+			}
+		} catch (BufferOverflowException e) {
+			active.position(start);
+			return false;
+		}
+		int end = active.position();
+
+		ByteBuffer payload = active.duplicate();
+		payload.position(start + HEADER).limit(end);
+		crc.reset();
+		crc.update(payload);
+		active.putInt(start, end - start - HEADER);
+		active.putInt(start + 4, (int) crc.getValue());
+		return true;
+	}
+
+	/**
+	 * Must be called holding the append lock.
+	 */
+	private void roll() throws IOException {
+		active.force();
+		sealedSegments.add(activeSegment);
+		openActive(activeSegment + 1, 0);
+	}
+
+	private void openActive(long segment, int position) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(segmentFile(segment), "rw")) {
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			buffer.position(position);
+			active = buffer;
+		}
+		activeSegment = segment;
+	}
+
+	/**
+	 * @return Where appends to the segment can carry on, -1 when it was mapped with another size or
+	 * its data does not end cleanly
+	 */
+	private int reopenableLength(long segment) throws IOException {
+		if (segmentFile(segment).length() != segmentSize) {
+			return -1;
+		}
+		return read(segment, Integer.MAX_VALUE, payload -> {
+		});
+	}
+
+	/**
+	 * Reads the records of a segment up to the limit, stopping at the end of its data.
+	 *
+	 * @return End of the last record read, -1 when the data ends in a torn or corrupted record
+	 */
+	private int read(long segment, int limit, Consumer<ByteBuffer> consumer) throws IOException {
+		File file = segmentFile(segment);
+		if (!file.exists()) {
+			return 0;
+		}
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), limit));
+		}
+		CRC32 crc = new CRC32();
+		while (buffer.remaining() >= HEADER) {
+			int start = buffer.position();
+			int length = buffer.getInt();
+			if (length == 0) {
+				return start;
+			}
+			int checksum = buffer.getInt();
+			if (length < 0 || length > buffer.remaining()) {
+				logger.warn("OrderJournal - torn record in segment {} at {}", segment, start);
+				return -1;
+			}
+			ByteBuffer payload = buffer.slice();
+			payload.limit(length);
+			crc.reset();
+			crc.update(payload.duplicate());
+			if ((int) crc.getValue() != checksum) {
+				logger.warn("OrderJournal - corrupted record in segment {} at {}", segment, start);
+				return -1;
+			}
+			consumer.accept(payload);
+			buffer.position(buffer.position() + length);
+		}
+		return buffer.position();
+	}
+
+	private static boolean isTombstone(ByteBuffer payload) {
+		return payload.get(payload.position()) == TOMBSTONE;
+	}
+
+	/**
+	 * @return Order with the identifier and description of the tombstone
+	 */
+	private static Order tombstone(ByteBuffer payload) {
+		ByteBuffer tombstone = payload.duplicate();
+		tombstone.position(tombstone.position() + 1);
+		Order order = new Order();
+		order.setId(tombstone.getLong());
+		byte[] description = new byte[tombstone.remaining()];
+		tombstone.get(description);
+		order.setDescription(new String(description, StandardCharsets.UTF_8));
+		return order;
+	}
+
+	private File segmentFile(long segment) {
+		return new File(directory, name(segment) + SEGMENT_SUFFIX);
+	}
+
+	private static String name(long segment) {
+		return String.format("%020d", segment);
+	}
+}
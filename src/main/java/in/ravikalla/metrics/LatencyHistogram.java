@@ -0,0 +1,103 @@
+package in.ravikalla.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HDR-style log-linear histogram of non-negative values such as latencies in nanoseconds.
+ * Each power of two is split into {@value #SUB_BUCKETS} sub-buckets, so any recorded value is
+ * reported within about 3% of its real value. Recording never allocates or locks.
+ *
+ * @author - Ravi Kalla
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * @param value Negative values are recorded as 0
+	 */
+	public void record(long value) {
+		long recorded = Math.max(0, value);
+		counts.incrementAndGet(indexOf(recorded));
+		count.increment();
+		sum.add(recorded);
+		max.accumulate(recorded);
+	}
+
+	/**
+	 * @return Number of recorded values
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return Mean of the recorded values, 0 if empty
+	 */
+	public long getMean() {
+		long recorded = count.sum();
+		return recorded == 0 ? 0 : sum.sum() / recorded;
+	}
+
+	/**
+	 * @return Highest recorded value, 0 if empty
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile Value between 0 and 100
+	 * @return Upper bound of the bucket holding the given percentile, 0 if empty
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100 : " + percentile);
+		}
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += counts.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+	static long upperBoundOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		long lowerBound = (SUB_BUCKETS + subBucket) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,172 @@
+package in.ravikalla.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latencies and failures of the order operations and of the services they call.
+ * Recording is a couple of atomic increments, so it stays on in production. The figures are
+ * served as JSON by the metrics endpoint and exported over JMX.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ManagedResource(objectName = "in.ravikalla:type=OrderMetrics", description = "Order operation metrics")
+public class OrderMetrics {
+
+	public enum Operation {
+		INIT_ORDER("initOrder"),
+		ADD_DISCOUNT("addDiscount"),
+		MARK_SENT("markSent"),
+		MARK_DELIVERED("markDelivered"),
+		INIT_ORDERS("initOrders"),
+		ADD_DISCOUNTS("addDiscounts"),
+		MARK_SENT_ALL("markSentAll"),
+		MARK_DELIVERED_ALL("markDeliveredAll");
+
+		private final String metricName;
+
+		Operation(String metricName) {
+			this.metricName = metricName;
+		}
+	}
+
+	public enum Downstream {
+		STORAGE("storage"),
+		SCORE("score"),
+		NOTIFICATION("notification"),
+		EMAIL("email");
+
+		private final String metricName;
+
+		Downstream(String metricName) {
+			this.metricName = metricName;
+		}
+	}
+
+	private final LatencyHistogram[] operations = new LatencyHistogram[Operation.values().length];
+	private final LatencyHistogram[] downstreams = new LatencyHistogram[Downstream.values().length];
+	private final ConcurrentHashMap<Class<?>, LongAdder> exceptions = new ConcurrentHashMap<>();
+
+	public OrderMetrics() {
+		for (int i = 0; i < operations.length; i++) {
+			operations[i] = new LatencyHistogram();
+		}
+		for (int i = 0; i < downstreams.length; i++) {
+			downstreams[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * @param operation
+	 * @param elapsedNanos
+	 */
+	public void record(Operation operation, long elapsedNanos) {
+		operations[operation.ordinal()].record(elapsedNanos);
+	}
+
+	/**
+	 * @param downstream
+	 * @param elapsedNanos
+	 */
+	public void record(Downstream downstream, long elapsedNanos) {
+		downstreams[downstream.ordinal()].record(elapsedNanos);
+	}
+
+	/**
+	 * Counts a failure by exception type.
+	 *
+	 * @param failure
+	 */
+	public void failed(Throwable failure) {
+		LongAdder counter = exceptions.get(failure.getClass());
+		if (counter == null) {
+			counter = exceptions.computeIfAbsent(failure.getClass(), type -> new LongAdder());
+		}
+		counter.increment();
+	}
+
+	/**
+	 * @param operation
+	 * @return Latency of the operation in nanoseconds
+	 */
+	public LatencyHistogram getLatency(Operation operation) {
+		return operations[operation.ordinal()];
+	}
+
+	/**
+	 * @param downstream
+	 * @return Latency of the calls to the downstream service in nanoseconds
+	 */
+	public LatencyHistogram getLatency(Downstream downstream) {
+		return downstreams[downstream.ordinal()];
+	}
+
+	/**
+	 * @param type
+	 * @return Number of failures of the given exception type
+	 */
+	public long getFailures(Class<? extends Throwable> type) {
+		LongAdder counter = exceptions.get(type);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	/**
+	 * @return Latency summary of each operation, latencies in microseconds
+	 */
+	@ManagedAttribute(description = "Latency of the order operations in microseconds")
+	public Map<String, Map<String, Long>> getOperations() {
+		Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+		for (Operation operation : Operation.values()) {
+			result.put(operation.metricName, summary(getLatency(operation)));
+		}
+		return result;
+	}
+
+	/**
+	 * @return Latency summary of the calls to each downstream service, latencies in microseconds
+	 */
+	@ManagedAttribute(description = "Latency of the downstream calls in microseconds")
+	public Map<String, Map<String, Long>> getDownstreams() {
+		Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+		for (Downstream downstream : Downstream.values()) {
+			result.put(downstream.metricName, summary(getLatency(downstream)));
+		}
+		return result;
+	}
+
+	/**
+	 * @return Number of failures by exception class name
+	 */
+	@ManagedAttribute(description = "Failures by exception type")
+	public Map<String, Long> getExceptions() {
+		Map<String, Long> result = new TreeMap<>();
+		for (Map.Entry<Class<?>, LongAdder> entry : exceptions.entrySet()) {
+			result.put(entry.getKey().getName(), entry.getValue().sum());
+		}
+		return result;
+	}
+
+	private static Map<String, Long> summary(LatencyHistogram histogram) {
+		Map<String, Long> summary = new LinkedHashMap<>();
+		summary.put("count", histogram.getCount());
+		summary.put("mean", micros(histogram.getMean()));
+		summary.put("p50", micros(histogram.getPercentile(50)));
+		summary.put("p99", micros(histogram.getPercentile(99)));
+		summary.put("p999", micros(histogram.getPercentile(99.9)));
+		summary.put("max", micros(histogram.getMax()));
+		return summary;
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+}
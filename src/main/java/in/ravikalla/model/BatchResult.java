@@ -0,0 +1,141 @@
+package in.ravikalla.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-item outcome of a batch operation, in the order the items were submitted.
+ *
+ * @author - Ravi Kalla
+ */
+public class BatchResult {
+
+	private final List<Item> items;
+
+	public BatchResult(int expectedSize) {
+		items = new ArrayList<>(expectedSize);
+	}
+
+	/**
+	 * @param order
+	 */
+	public void succeeded(Order order) {
+		items.add(new Item(order, null, null));
+	}
+
+	/**
+	 * @param order Order the failure belongs to, null when only its description is known
+	 * @param failure
+	 */
+	public void failed(Order order, Throwable failure) {
+		items.add(new Item(order, null, failure));
+	}
+
+	/**
+	 * @param request Request of the order that could not be created
+	 * @param failure
+	 */
+	public void failed(OrderRequest request, Throwable failure) {
+		items.add(new Item(null, request, failure));
+	}
+
+	/**
+	 * @param item Item of another batch result
+	 */
+	public void add(Item item) {
+		items.add(item);
+	}
+
+	/**
+	 * @return All items of the batch
+	 */
+	public List<Item> getItems() {
+		return Collections.unmodifiableList(items);
+	}
+
+	/**
+	 * @return Orders of the successful items
+	 */
+	public List<Order> getSucceeded() {
+		List<Order> succeeded = new ArrayList<>();
+		for (Item item : items) {
+			if (item.isSucceeded()) {
+				succeeded.add(item.getOrder());
+			}
+		}
+		return succeeded;
+	}
+
+	/**
+	 * @return Items that failed
+	 */
+	public List<Item> getFailed() {
+		List<Item> failed = new ArrayList<>();
+		for (Item item : items) {
+			if (!item.isSucceeded()) {
+				failed.add(item);
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * @return true when no item failed
+	 */
+	public boolean isAllSucceeded() {
+		for (Item item : items) {
+			if (!item.isSucceeded()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static class Item {
+
+		private final Order order;
+		private final OrderRequest request;
+		private final Throwable failure;
+
+		Item(Order order, OrderRequest request, Throwable failure) {
+			this.order = order;
+			this.request = request;
+			this.failure = failure;
+		}
+
+		/**
+		 * Getter for property 'order'.
+		 *
+		 * @return Value for property 'order'.
+		 */
+		public Order getOrder() {
+			return order;
+		}
+
+		/**
+		 * Getter for property 'request'.
+		 *
+		 * @return Value for property 'request', set when the item failed to create an order.
+		 */
+		public OrderRequest getRequest() {
+			return request;
+		}
+
+		/**
+		 * Getter for property 'failure'.
+		 *
+		 * @return Value for property 'failure', null when the item succeeded.
+		 */
+		public Throwable getFailure() {
+			return failure;
+		}
+
+		/**
+		 * @return true when the item did not fail
+		 */
+		public boolean isSucceeded() {
+			return failure == null;
+		}
+	}
+}
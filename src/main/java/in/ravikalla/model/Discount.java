@@ -1,15 +1,42 @@
 package in.ravikalla.model;
 
+import java.io.Serializable;
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
+ * Immutable, so that one instance of a definition can be shared by every order given it, see
+ * {@link in.ravikalla.service.DiscountCatalogService}. Equal when the definitions are.
+ *
  * @author - Ravi Kalla
  */
-public class Discount {
-	public String description;
-	public double percent;
+public class Discount implements Serializable {
+
+	private static final long serialVersionUID = 2L;
+
+	private final String description;
+	private final double percent;
+
+	//Applied on the price left by the other discounts instead of being summed with them
+	private final boolean compounding;
+
+	//Never combined with other discounts, the order gets the better of this one or the others
+	private final boolean exclusive;
 
 	public Discount(String description, double percent) {
-		this.percent = percent;
+		this(description, percent, false, false);
+	}
+
+	@JsonCreator
+	public Discount(@JsonProperty("description") String description, @JsonProperty("percent") double percent,
+			@JsonProperty("compounding") boolean compounding, @JsonProperty("exclusive") boolean exclusive) {
 		this.description = description;
+		this.percent = percent;
+		this.compounding = compounding;
+		this.exclusive = exclusive;
 	}
 
 	/**
@@ -22,29 +49,55 @@ public class Discount {
 	}
 
 	/**
-	 * Setter for property 'description'.
+	 * Getter for property 'percent'.
 	 *
-	 * @param description Value to set for property 'description'.
+	 * @return Value for property 'percent'.
 	 */
-	public void setDescription(String description) {
-		this.description = description;
+	public double getPercent() {
+		return percent;
 	}
 
 	/**
-	 * Getter for property 'percent'.
+	 * @return Percent in hundredths of a percent
+	 */
+	@JsonIgnore
+	public long getBasisPoints() {
+		return Math.round(percent * 100);
+	}
+
+	/**
+	 * Getter for property 'compounding'.
 	 *
-	 * @return Value for property 'percent'.
+	 * @return Value for property 'compounding'.
 	 */
-	public double getPercent() {
-		return percent;
+	public boolean isCompounding() {
+		return compounding;
 	}
 
 	/**
-	 * Setter for property 'percent'.
+	 * Getter for property 'exclusive'.
 	 *
-	 * @param percent Value to set for property 'percent'.
+	 * @return Value for property 'exclusive'.
 	 */
-	public void setPercent(double percent) {
-		this.percent = percent;
+	public boolean isExclusive() {
+		return exclusive;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof Discount)) {
+			return false;
+		}
+		Discount discount = (Discount) other;
+		return Double.compare(percent, discount.percent) == 0 && compounding == discount.compounding
+				&& exclusive == discount.exclusive && Objects.equals(description, discount.description);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(description, percent, compounding, exclusive);
 	}
 }
@@ -1,28 +1,81 @@
 package in.ravikalla.model;
 
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
 /**
+ * The lifecycle state and the premium flag are packed into one int, so an order cannot be
+ * delivered without being sent, and dates are kept as epoch millis. The boolean and {@link Date}
+ * accessors are a view over those fields; the dates they return are copies.
+ *
  * @author - Ravi Kalla
  */
-public class Order {
+public class Order implements Serializable {
+
+	private static final long serialVersionUID = 5L;
+
+	//Epoch millis of a date that is not set
+	public static final long NO_DATE = Long.MIN_VALUE;
+
+	//Bits of the packed flags, the lifecycle state is stored as its ordinal
+	private static final int STATE_MASK = 0b11;
+	private static final int PREMIUM = 1 << 2;
+	private static final OrderState[] STATES = OrderState.values();
+	private static final Discount[] NO_DISCOUNTS = new Discount[0];
 
+	//Fixed-point scale of the remaining price fractions
+	public static final long REMAINING_SCALE = 1_000_000_000L;
+	public static final long BASIS_POINTS = 10_000L;
+
+	//Generated identifier, 0 until the order is created or stored
+	private long id;
 	private String description;
-	private double basePrice;
-	private List<Discount> discounts;
-	private double finalPrice;
+	private long basePriceCents;
+	//The first discountCount are the discounts, usually instances shared with other orders. Grown
+	//geometrically; an array shared with a copy of the order is full, so that neither appends to it
+	private Discount[] discounts = NO_DISCOUNTS;
+	private int discountCount;
+	private long finalPriceCents;
+
+	//Running totals of the discounts, kept up to date by addDiscount
+	private long additiveDiscountBasisPoints;
+	private long compoundedRemaining = REMAINING_SCALE;
+	private long exclusiveDiscountBasisPoints;
 
-	private boolean sent;
-	private Date sendDate;
-	private Date estimatedDelivery;
-	private boolean delivered;
-	private Date realDelivery;
-	private boolean premium;
+	private int flags;
+	private long sendMillis = NO_DATE;
+	private long estimatedDeliveryMillis = NO_DATE;
+	private long realDeliveryMillis = NO_DATE;
+	private String region;
 
 	public Order() {
-		discounts = new ArrayList<>();
+	}
+
+	/**
+	 * Getter for property 'id'.
+	 *
+	 * @return Value for property 'id', written to JSON as a string since it does not fit a double.
+	 */
+	@JsonSerialize(using = ToStringSerializer.class)
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Setter for property 'id'.
+	 *
+	 * @param id Value to set for property 'id'.
+	 */
+	public void setId(long id) {
+		this.id = id;
 	}
 
 	/**
@@ -49,7 +102,7 @@ public class Order {
 	 * @return Value for property 'basePrice'.
 	 */
 	public double getBasePrice() {
-		return basePrice;
+		return basePriceCents / 100.0;
 	}
 
 	/**
@@ -58,16 +111,35 @@ public class Order {
 	 * @param basePrice Value to set for property 'basePrice'.
 	 */
 	public void setBasePrice(double basePrice) {
-		this.basePrice = basePrice;
+		this.basePriceCents = Math.round(basePrice * 100);
+	}
+
+	/**
+	 * Getter for property 'basePriceCents'.
+	 *
+	 * @return Value for property 'basePriceCents'.
+	 */
+	public long getBasePriceCents() {
+		return basePriceCents;
+	}
+
+	/**
+	 * Setter for property 'basePriceCents'.
+	 *
+	 * @param basePriceCents Value to set for property 'basePriceCents'.
+	 */
+	public void setBasePriceCents(long basePriceCents) {
+		this.basePriceCents = basePriceCents;
 	}
 
 	/**
 	 * Getter for property 'discounts'.
 	 *
-	 * @return Value for property 'discounts'.
+	 * @return Value for property 'discounts', changes to the list are changes to the discounts of
+	 *         the order and keep its discount totals up to date.
 	 */
 	public List<Discount> getDiscounts() {
-		return discounts;
+		return new DiscountList();
 	}
 
 	/**
@@ -76,7 +148,53 @@ public class Order {
 	 * @param discounts Value to set for property 'discounts'.
 	 */
 	public void setDiscounts(List<Discount> discounts) {
-		this.discounts = discounts;
+		replaceDiscounts(discounts.toArray(NO_DISCOUNTS));
+	}
+
+	/**
+	 * Adds the discount and updates the running discount totals.
+	 *
+	 * @param discount
+	 */
+	public void addDiscount(Discount discount) {
+		if (discountCount == discounts.length) {
+			discounts = Arrays.copyOf(discounts, discountCount + Math.max(1, discountCount >> 1));
+		}
+		discounts[discountCount++] = discount;
+
+		long basisPoints = discount.getBasisPoints();
+		if (discount.isExclusive()) {
+			exclusiveDiscountBasisPoints = Math.max(exclusiveDiscountBasisPoints, basisPoints);
+		} else if (discount.isCompounding()) {
+			compoundedRemaining = Math.floorDiv(compoundedRemaining * (BASIS_POINTS - basisPoints) + BASIS_POINTS / 2,
+					BASIS_POINTS);
+		} else {
+			additiveDiscountBasisPoints += basisPoints;
+		}
+	}
+
+	/**
+	 * @return Sum of the additive discounts in hundredths of a percent
+	 */
+	@JsonIgnore
+	public long getAdditiveDiscountBasisPoints() {
+		return additiveDiscountBasisPoints;
+	}
+
+	/**
+	 * @return Fraction of the price left by the compounding discounts, scaled by {@link #REMAINING_SCALE}
+	 */
+	@JsonIgnore
+	public long getCompoundedRemaining() {
+		return compoundedRemaining;
+	}
+
+	/**
+	 * @return Best exclusive discount in hundredths of a percent
+	 */
+	@JsonIgnore
+	public long getExclusiveDiscountBasisPoints() {
+		return exclusiveDiscountBasisPoints;
 	}
 
 	/**
@@ -85,7 +203,7 @@ public class Order {
 	 * @return Value for property 'finalPrice'.
 	 */
 	public double getFinalPrice() {
-		return finalPrice;
+		return finalPriceCents / 100.0;
 	}
 
 	/**
@@ -94,25 +212,66 @@ public class Order {
 	 * @param finalPrice Value to set for property 'finalPrice'.
 	 */
 	public void setFinalPrice(double finalPrice) {
-		this.finalPrice = finalPrice;
+		this.finalPriceCents = Math.round(finalPrice * 100);
+	}
+
+	/**
+	 * Getter for property 'finalPriceCents'.
+	 *
+	 * @return Value for property 'finalPriceCents'.
+	 */
+	public long getFinalPriceCents() {
+		return finalPriceCents;
+	}
+
+	/**
+	 * Setter for property 'finalPriceCents'.
+	 *
+	 * @param finalPriceCents Value to set for property 'finalPriceCents'.
+	 */
+	public void setFinalPriceCents(long finalPriceCents) {
+		this.finalPriceCents = finalPriceCents;
+	}
+
+	/**
+	 * Getter for property 'state'.
+	 *
+	 * @return Value for property 'state'.
+	 */
+	@JsonIgnore
+	public OrderState getState() {
+		return STATES[flags & STATE_MASK];
+	}
+
+	/**
+	 * Setter for property 'state'.
+	 *
+	 * @param state Value to set for property 'state'.
+	 */
+	public void setState(OrderState state) {
+		this.flags = (flags & ~STATE_MASK) | state.ordinal();
 	}
 
 	/**
 	 * Getter for property 'sent'.
 	 *
-	 * @return Value for property 'sent'.
+	 * @return True once the order is sent, delivered orders included.
 	 */
 	public boolean isSent() {
-		return sent;
+		return getState() != OrderState.CREATED;
 	}
 
 	/**
-	 * Setter for property 'sent'.
+	 * Setter for property 'sent', unsending an order also undelivers it.
 	 *
 	 * @param sent Value to set for property 'sent'.
 	 */
 	public void setSent(boolean sent) {
-		this.sent = sent;
+		if (!sent) {
+			setState(OrderState.CREATED);
+		} else if (getState() == OrderState.CREATED) {
+			setState(OrderState.SENT);
+		}
 	}
 
 	/**
@@ -121,7 +280,7 @@ public class Order {
 	 * @return Value for property 'sendDate'.
 	 */
 	public Date getSendDate() {
-		return sendDate;
+		return toDate(sendMillis);
 	}
 
 	/**
@@ -130,7 +289,22 @@ public class Order {
 	 * @param sendDate Value to set for property 'sendDate'.
 	 */
 	public void setSendDate(Date sendDate) {
-		this.sendDate = sendDate;
+		this.sendMillis = toMillis(sendDate);
+	}
+
+	/**
+	 * @return Send date in epoch millis, {@link #NO_DATE} when not set
+	 */
+	@JsonIgnore
+	public long getSendMillis() {
+		return sendMillis;
+	}
+
+	/**
+	 * @param sendMillis Send date in epoch millis, {@link #NO_DATE} to clear it
+	 */
+	public void setSendMillis(long sendMillis) {
+		this.sendMillis = sendMillis;
 	}
 
 	/**
@@ -139,7 +313,7 @@ public class Order {
 	 * @return Value for property 'estimatedDelivery'.
 	 */
 	public Date getEstimatedDelivery() {
-		return estimatedDelivery;
+		return toDate(estimatedDeliveryMillis);
 	}
 
 	/**
@@ -148,7 +322,22 @@ public class Order {
 	 * @param estimatedDelivery Value to set for property 'estimatedDelivery'.
 	 */
 	public void setEstimatedDelivery(Date estimatedDelivery) {
-		this.estimatedDelivery = estimatedDelivery;
+		this.estimatedDeliveryMillis = toMillis(estimatedDelivery);
+	}
+
+	/**
+	 * @return Estimated delivery date in epoch millis, {@link #NO_DATE} when not set
+	 */
+	@JsonIgnore
+	public long getEstimatedDeliveryMillis() {
+		return estimatedDeliveryMillis;
+	}
+
+	/**
+	 * @param estimatedDeliveryMillis Estimated delivery date in epoch millis, {@link #NO_DATE} to clear it
+	 */
+	public void setEstimatedDeliveryMillis(long estimatedDeliveryMillis) {
+		this.estimatedDeliveryMillis = estimatedDeliveryMillis;
 	}
 
 	/**
@@ -157,16 +346,20 @@ public class Order {
 	 * @return Value for property 'delivered'.
 	 */
 	public boolean isDelivered() {
-		return delivered;
+		return getState() == OrderState.DELIVERED;
 	}
 
 	/**
-	 * Setter for property 'delivered'.
+	 * Setter for property 'delivered', delivering an order also sends it.
 	 *
 	 * @param delivered Value to set for property 'delivered'.
 	 */
 	public void setDelivered(boolean delivered) {
-		this.delivered = delivered;
+		if (delivered) {
+			setState(OrderState.DELIVERED);
+		} else if (getState() == OrderState.DELIVERED) {
+			setState(OrderState.SENT);
+		}
 	}
 
 	/**
@@ -175,7 +368,7 @@ public class Order {
 	 * @return Value for property 'realDelivery'.
 	 */
 	public Date getRealDelivery() {
-		return realDelivery;
+		return toDate(realDeliveryMillis);
 	}
 
 	/**
@@ -184,7 +377,22 @@ public class Order {
 	 * @param realDelivery Value to set for property 'realDelivery'.
 	 */
 	public void setRealDelivery(Date realDelivery) {
-		this.realDelivery = realDelivery;
+		this.realDeliveryMillis = toMillis(realDelivery);
+	}
+
+	/**
+	 * @return Real delivery date in epoch millis, {@link #NO_DATE} when not set
+	 */
+	@JsonIgnore
+	public long getRealDeliveryMillis() {
+		return realDeliveryMillis;
+	}
+
+	/**
+	 * @param realDeliveryMillis Real delivery date in epoch millis, {@link #NO_DATE} to clear it
+	 */
+	public void setRealDeliveryMillis(long realDeliveryMillis) {
+		this.realDeliveryMillis = realDeliveryMillis;
 	}
 
 	/**
@@ -193,7 +401,7 @@ public class Order {
 	 * @return Value for property 'premium'.
 	 */
 	public boolean isPremium() {
-		return premium;
+		return (flags & PREMIUM) != 0;
 	}
 
 	/**
@@ -202,6 +410,118 @@ public class Order {
 	 * @param premium Value to set for property 'premium'.
 	 */
 	public void setPremium(boolean premium) {
-		this.premium = premium;
+		this.flags = premium ? flags | PREMIUM : flags & ~PREMIUM;
+	}
+
+	/**
+	 * Getter for property 'region'.
+	 *
+	 * @return Value for property 'region', null for the default delivery SLA.
+	 */
+	public String getRegion() {
+		return region;
+	}
+
+	/**
+	 * Setter for property 'region'.
+	 *
+	 * @param region Value to set for property 'region'.
+	 */
+	public void setRegion(String region) {
+		this.region = region;
+	}
+
+	/**
+	 * Copies the prices, discounts, lifecycle state, dates and region of the other order into this
+	 * one, the identifier and description are kept.
+	 *
+	 * @param other
+	 */
+	public void copyStateFrom(Order other) {
+		basePriceCents = other.basePriceCents;
+		discounts = other.discountCount == other.discounts.length ? other.discounts
+				: Arrays.copyOf(other.discounts, other.discountCount);
+		discountCount = other.discountCount;
+		finalPriceCents = other.finalPriceCents;
+		additiveDiscountBasisPoints = other.additiveDiscountBasisPoints;
+		compoundedRemaining = other.compoundedRemaining;
+		exclusiveDiscountBasisPoints = other.exclusiveDiscountBasisPoints;
+		flags = other.flags;
+		sendMillis = other.sendMillis;
+		estimatedDeliveryMillis = other.estimatedDeliveryMillis;
+		realDeliveryMillis = other.realDeliveryMillis;
+		region = other.region;
+	}
+
+	/**
+	 * Sets the discounts and computes their totals again.
+	 */
+	private void replaceDiscounts(Discount[] replacing) {
+		discounts = NO_DISCOUNTS;
+		discountCount = 0;
+		additiveDiscountBasisPoints = 0;
+		compoundedRemaining = REMAINING_SCALE;
+		exclusiveDiscountBasisPoints = 0;
+		for (Discount discount : replacing) {
+			addDiscount(discount);
+		}
+	}
+
+	private static Date toDate(long millis) {
+		return millis == NO_DATE ? null : new Date(millis);
+	}
+
+	private static long toMillis(Date date) {
+		return date == null ? NO_DATE : date.getTime();
+	}
+
+	/**
+	 * View of the discounts of the order. Only appends change the array in place, other changes
+	 * replace it.
+	 */
+	private final class DiscountList extends AbstractList<Discount> {
+
+		@Override
+		public Discount get(int index) {
+			if (index >= discountCount) {
+				throw new IndexOutOfBoundsException("Index " + index + ", size " + discountCount);
+			}
+			return discounts[index];
+		}
+
+		@Override
+		public int size() {
+			return discountCount;
+		}
+
+		@Override
+		public void add(int index, Discount discount) {
+			if (index == discountCount) {
+				addDiscount(discount);
+			} else {
+				List<Discount> changed = new ArrayList<>(this);
+				changed.add(index, discount);
+				replaceDiscounts(changed.toArray(NO_DISCOUNTS));
+			}
+			modCount++;
+		}
+
+		@Override
+		public Discount set(int index, Discount discount) {
+			Discount previous = get(index);
+			Discount[] changed = Arrays.copyOf(discounts, discountCount);
+			changed[index] = discount;
+			replaceDiscounts(changed);
+			return previous;
+		}
+
+		@Override
+		public Discount remove(int index) {
+			List<Discount> changed = new ArrayList<>(this);
+			Discount removed = changed.remove(index);
+			replaceDiscounts(changed.toArray(NO_DISCOUNTS));
+			modCount++;
+			return removed;
+		}
 	}
 }
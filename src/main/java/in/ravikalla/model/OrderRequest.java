@@ -0,0 +1,51 @@
+package in.ravikalla.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Input of a single order creation, within a batch or through the REST API.
+ *
+ * @author - Ravi Kalla
+ */
+public class OrderRequest {
+
+	private final String description;
+	private final double basePrice;
+	private final boolean premium;
+
+	@JsonCreator
+	public OrderRequest(@JsonProperty("description") String description, @JsonProperty("basePrice") double basePrice,
+			@JsonProperty("premium") boolean premium) {
+		this.description = description;
+		this.basePrice = basePrice;
+		this.premium = premium;
+	}
+
+	/**
+	 * Getter for property 'description'.
+	 *
+	 * @return Value for property 'description'.
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Getter for property 'basePrice'.
+	 *
+	 * @return Value for property 'basePrice'.
+	 */
+	public double getBasePrice() {
+		return basePrice;
+	}
+
+	/**
+	 * Getter for property 'premium'.
+	 *
+	 * @return Value for property 'premium'.
+	 */
+	public boolean isPremium() {
+		return premium;
+	}
+}
@@ -0,0 +1,19 @@
+package in.ravikalla.model;
+
+/**
+ * @author - Ravi Kalla
+ */
+public enum OrderState {
+
+	CREATED,
+	SENT,
+	DELIVERED;
+
+	/**
+	 * @param order
+	 * @return Lifecycle state of the order
+	 */
+	public static OrderState of(Order order) {
+		return order.getState();
+	}
+}
@@ -0,0 +1,514 @@
+package in.ravikalla.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+import in.ravikalla.util.LongIndex;
+
+/**
+ * Orders stored column by column in direct buffers, so millions of them add almost nothing for
+ * the garbage collector to trace.
+ * <p>
+ * Rows live in chunks of {@value #ROWS_PER_CHUNK}; each chunk is one direct buffer holding one
+ * primitive column after the other. Descriptions are copied to an off-heap {@link StringSlab},
+ * regions and discount descriptions are dictionary encoded, and the discounts of all orders share
+ * one slab of fixed-size records in which each order owns a contiguous run. Lookups by description
+ * go through an open-addressing index made of two int arrays, lookups by identifier through one
+ * made of a long and an int array.
+ * <p>
+ * Orders are copied in and out: {@link #get(int)} materializes a new {@link Order} every time.
+ * Discounts appended to an order whose run ends the slab are written in place, any other change of
+ * the discounts moves the run to the end of the slab and leaves the old one as garbage.
+ * <p>
+ * A removed order frees its row, which the next insert reuses, and leaves its entries out of the
+ * indexes; its description and discounts are left behind as garbage.
+ * <p>
+ * Not thread-safe for writes; reads use absolute buffer accessors only, so they can run
+ * concurrently with each other.
+ *
+ * @author - Ravi Kalla
+ */
+public class OffHeapOrderTable {
+
+	static final int ROWS_PER_CHUNK = 1 << 16;
+	private static final int ROW_SHIFT = 16;
+	private static final int ROW_MASK = ROWS_PER_CHUNK - 1;
+
+	//Columns of a row chunk, each ROWS_PER_CHUNK values wide
+	private static final int BASE_PRICE = 0;
+	private static final int FINAL_PRICE = BASE_PRICE + 8 * ROWS_PER_CHUNK;
+	private static final int SEND_DATE = FINAL_PRICE + 8 * ROWS_PER_CHUNK;
+	private static final int ESTIMATED_DELIVERY = SEND_DATE + 8 * ROWS_PER_CHUNK;
+	private static final int REAL_DELIVERY = ESTIMATED_DELIVERY + 8 * ROWS_PER_CHUNK;
+	private static final int ID = REAL_DELIVERY + 8 * ROWS_PER_CHUNK;
+	private static final int DESCRIPTION = ID + 8 * ROWS_PER_CHUNK;
+	private static final int DISCOUNTS_START = DESCRIPTION + 8 * ROWS_PER_CHUNK;
+	private static final int DISCOUNT_COUNT = DISCOUNTS_START + 8 * ROWS_PER_CHUNK;
+	private static final int REGION = DISCOUNT_COUNT + 4 * ROWS_PER_CHUNK;
+	private static final int FLAGS = REGION + 4 * ROWS_PER_CHUNK;
+	private static final int ROW_CHUNK_SIZE = FLAGS + 4 * ROWS_PER_CHUNK;
+
+	//Bits of the flags column, the lifecycle state is stored as its ordinal
+	private static final int STATE_MASK = 0b11;
+	private static final int PREMIUM = 1 << 2;
+	private static final int FREE = 1 << 3;
+	private static final OrderState[] STATES = OrderState.values();
+
+	//Discount records: int description id, int flags, double percent
+	private static final int DISCOUNT_RECORD = 16;
+	private static final int DISCOUNT_SHIFT = 16;
+	private static final int DISCOUNTS_PER_CHUNK = 1 << DISCOUNT_SHIFT;
+	private static final int DISCOUNT_MASK = DISCOUNTS_PER_CHUNK - 1;
+	private static final int COMPOUNDING = 1;
+	private static final int EXCLUSIVE = 1 << 1;
+
+	private static final int STRING_CHUNK_SIZE = 1 << 20;
+	private static final int EMPTY = 0;
+
+	private final List<ByteBuffer> rowChunks = new ArrayList<>();
+	private int rows;
+	//Stack of the rows of removed orders
+	private int[] freeRows = new int[16];
+	private int freeCount;
+
+	private final StringSlab descriptions = new StringSlab(STRING_CHUNK_SIZE);
+	private final Dictionary regions = new Dictionary();
+	private final Dictionary discountDescriptions = new Dictionary();
+
+	private final List<ByteBuffer> discountChunks = new ArrayList<>();
+	private long discountRecords;
+	private long garbageDiscountRecords;
+
+	//Open addressing with linear probing, slots hold row + 1 and EMPTY
+	private int[] slots;
+	private int[] hashes;
+	//Same for identifiers, idSlots hold the identifier of the row in idRows and EMPTY
+	private long[] idSlots;
+	private int[] idRows;
+
+	/**
+	 * @param expectedOrders Number of orders the index is sized for before it grows
+	 */
+	public OffHeapOrderTable(int expectedOrders) {
+		int capacity = Integer.highestOneBit(Math.max(16, expectedOrders * 2 - 1)) << 1;
+		this.slots = new int[capacity];
+		this.hashes = new int[capacity];
+		this.idSlots = new long[capacity];
+		this.idRows = new int[capacity];
+	}
+
+	/**
+	 * @param description
+	 * @return Row of the order, negative when there is none
+	 */
+	public int find(String description) {
+		int hash = hash(description);
+		int mask = slots.length - 1;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			int entry = slots[slot];
+			if (entry == EMPTY) {
+				return -1;
+			}
+			if (hashes[slot] == hash && descriptions.equals(chunk(entry - 1).getLong(DESCRIPTION
+					+ 8 * ((entry - 1) & ROW_MASK)), description)) {
+				return entry - 1;
+			}
+		}
+	}
+
+	/**
+	 * @param id
+	 * @return Row of the order, negative when there is none
+	 */
+	public int findById(long id) {
+		int mask = idSlots.length - 1;
+		for (int slot = idSlot(id, mask);; slot = (slot + 1) & mask) {
+			long entry = idSlots[slot];
+			if (entry == id && id != EMPTY) {
+				return idRows[slot];
+			}
+			if (entry == EMPTY) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Adds an order whose description and identifier are not in the table yet. An order without
+	 * identifier cannot be found by identifier.
+	 *
+	 * @param order
+	 * @return Row of the order
+	 */
+	public int insert(Order order) {
+		if ((size() + 1) * 2L > slots.length) {
+			rehash(slots.length * 2);
+		}
+		int row;
+		if (freeCount > 0) {
+			row = freeRows[--freeCount];
+		} else {
+			row = rows++;
+			if ((row >>> ROW_SHIFT) == rowChunks.size()) {
+				rowChunks.add(ByteBuffer.allocateDirect(ROW_CHUNK_SIZE));
+			}
+		}
+		ByteBuffer chunk = chunk(row);
+		int index = row & ROW_MASK;
+		chunk.putLong(ID + 8 * index, order.getId());
+		chunk.putLong(DESCRIPTION + 8 * index, descriptions.add(order.getDescription()));
+		chunk.putLong(DISCOUNTS_START + 8 * index, discountRecords);
+		chunk.putInt(DISCOUNT_COUNT + 4 * index, 0);
+		write(row, order);
+
+		int hash = hash(order.getDescription());
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		while (slots[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		hashes[slot] = hash;
+		slots[slot] = row + 1;
+
+		if (order.getId() != EMPTY) {
+			slot = idSlot(order.getId(), mask);
+			while (idSlots[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			idRows[slot] = row;
+			idSlots[slot] = order.getId();
+		}
+		return row;
+	}
+
+	/**
+	 * Overwrites the row with the order, which must have the description of the row. The row keeps
+	 * its identifier.
+	 *
+	 * @param row
+	 * @param order
+	 */
+	public void update(int row, Order order) {
+		write(row, order);
+	}
+
+	/**
+	 * Frees the row of an order and deletes its index entries, the row is reused by a later insert.
+	 *
+	 * @param row Row of an order, not a free one
+	 */
+	public void remove(int row) {
+		ByteBuffer chunk = chunk(row);
+		int index = row & ROW_MASK;
+		int hash = hash(descriptions.get(chunk.getLong(DESCRIPTION + 8 * index)));
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		while (slots[slot] != row + 1) {
+			slot = (slot + 1) & mask;
+		}
+		deleteSlot(slot);
+
+		long id = chunk.getLong(ID + 8 * index);
+		if (id != EMPTY) {
+			slot = idSlot(id, mask);
+			while (idSlots[slot] != id) {
+				slot = (slot + 1) & mask;
+			}
+			deleteIdSlot(slot);
+		}
+
+		garbageDiscountRecords += chunk.getInt(DISCOUNT_COUNT + 4 * index);
+		chunk.putInt(DISCOUNT_COUNT + 4 * index, 0);
+		chunk.putInt(FLAGS + 4 * index, FREE);
+		if (freeCount == freeRows.length) {
+			freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+		}
+		freeRows[freeCount++] = row;
+	}
+
+	/**
+	 * @param row
+	 * @return New order with the content of the row
+	 */
+	public Order get(int row) {
+		ByteBuffer chunk = chunk(row);
+		int index = row & ROW_MASK;
+		Order order = new Order();
+		order.setId(chunk.getLong(ID + 8 * index));
+		order.setDescription(descriptions.get(chunk.getLong(DESCRIPTION + 8 * index)));
+		order.setRegion(regions.get(chunk.getInt(REGION + 4 * index)));
+		order.setBasePriceCents(chunk.getLong(BASE_PRICE + 8 * index));
+		int flags = chunk.getInt(FLAGS + 4 * index);
+		order.setState(STATES[flags & STATE_MASK]);
+		order.setPremium((flags & PREMIUM) != 0);
+		order.setSendMillis(chunk.getLong(SEND_DATE + 8 * index));
+		order.setEstimatedDeliveryMillis(chunk.getLong(ESTIMATED_DELIVERY + 8 * index));
+		order.setRealDeliveryMillis(chunk.getLong(REAL_DELIVERY + 8 * index));
+
+		long start = chunk.getLong(DISCOUNTS_START + 8 * index);
+		int count = chunk.getInt(DISCOUNT_COUNT + 4 * index);
+		for (long record = start; record < start + count; record++) {
+			ByteBuffer discountChunk = discountChunk(record);
+			int offset = DISCOUNT_RECORD * (int) (record & DISCOUNT_MASK);
+			int discountFlags = discountChunk.getInt(offset + 4);
+			order.addDiscount(new Discount(discountDescriptions.get(discountChunk.getInt(offset)),
+					discountChunk.getDouble(offset + 8), (discountFlags & COMPOUNDING) != 0,
+					(discountFlags & EXCLUSIVE) != 0));
+		}
+		//the price may have been computed with rules that changed since, keep it as it was
+		order.setFinalPriceCents(chunk.getLong(FINAL_PRICE + 8 * index));
+		return order;
+	}
+
+	/**
+	 * @param row
+	 * @return Identifier of the order of the row
+	 */
+	public long getId(int row) {
+		return chunk(row).getLong(ID + 8 * (row & ROW_MASK));
+	}
+
+	/**
+	 * @param row
+	 * @return Lifecycle state of the order of the row, read without materializing it
+	 */
+	public OrderState getState(int row) {
+		return STATES[chunk(row).getInt(FLAGS + 4 * (row & ROW_MASK)) & STATE_MASK];
+	}
+
+	/**
+	 * @param row
+	 * @return True when the row holds no order, its order having been removed
+	 */
+	public boolean isFree(int row) {
+		return (chunk(row).getInt(FLAGS + 4 * (row & ROW_MASK)) & FREE) != 0;
+	}
+
+	/**
+	 * @return Number of orders
+	 */
+	public int size() {
+		return rows - freeCount;
+	}
+
+	/**
+	 * @return Number of rows, free ones included; rows are numbered from 0
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * @return Bytes of direct memory allocated for the rows, descriptions and discounts
+	 */
+	public long getOffHeapBytes() {
+		return (long) rowChunks.size() * ROW_CHUNK_SIZE + descriptions.getAllocatedBytes()
+				+ (long) discountChunks.size() * DISCOUNTS_PER_CHUNK * DISCOUNT_RECORD;
+	}
+
+	/**
+	 * @return Bytes of discount records no order points to anymore
+	 */
+	public long getGarbageBytes() {
+		return garbageDiscountRecords * DISCOUNT_RECORD;
+	}
+
+	private void write(int row, Order order) {
+		ByteBuffer chunk = chunk(row);
+		int index = row & ROW_MASK;
+		chunk.putLong(BASE_PRICE + 8 * index, order.getBasePriceCents());
+		chunk.putLong(FINAL_PRICE + 8 * index, order.getFinalPriceCents());
+		chunk.putLong(SEND_DATE + 8 * index, order.getSendMillis());
+		chunk.putLong(ESTIMATED_DELIVERY + 8 * index, order.getEstimatedDeliveryMillis());
+		chunk.putLong(REAL_DELIVERY + 8 * index, order.getRealDeliveryMillis());
+		chunk.putInt(REGION + 4 * index, regions.id(order.getRegion()));
+		chunk.putInt(FLAGS + 4 * index, order.getState().ordinal() | (order.isPremium() ? PREMIUM : 0));
+		writeDiscounts(chunk, index, order.getDiscounts());
+	}
+
+	private void writeDiscounts(ByteBuffer chunk, int index, List<Discount> orderDiscounts) {
+		long start = chunk.getLong(DISCOUNTS_START + 8 * index);
+		int count = chunk.getInt(DISCOUNT_COUNT + 4 * index);
+
+		int unchanged = 0;
+		while (unchanged < count && unchanged < orderDiscounts.size()
+				&& isStored(start + unchanged, orderDiscounts.get(unchanged))) {
+			unchanged++;
+		}
+		if (unchanged == count && unchanged == orderDiscounts.size()) {
+			return;
+		}
+
+		int from;
+		if (unchanged == count && (count == 0 || start + count == discountRecords)) {
+			//only appended to, and nothing was stored after the run
+			from = count;
+			if (count == 0) {
+				start = discountRecords;
+			}
+		} else {
+			garbageDiscountRecords += count;
+			start = discountRecords;
+			from = 0;
+		}
+		for (int i = from; i < orderDiscounts.size(); i++) {
+			append(orderDiscounts.get(i));
+		}
+		chunk.putLong(DISCOUNTS_START + 8 * index, start);
+		chunk.putInt(DISCOUNT_COUNT + 4 * index, orderDiscounts.size());
+	}
+
+	private boolean isStored(long record, Discount discount) {
+		ByteBuffer discountChunk = discountChunk(record);
+		int offset = DISCOUNT_RECORD * (int) (record & DISCOUNT_MASK);
+		return discountChunk.getInt(offset) == discountDescriptions.find(discount.getDescription())
+				&& discountChunk.getInt(offset + 4) == discountFlags(discount)
+				&& Double.doubleToLongBits(discountChunk.getDouble(offset + 8))
+						== Double.doubleToLongBits(discount.getPercent());
+	}
+
+	private void append(Discount discount) {
+		if ((discountRecords >>> DISCOUNT_SHIFT) == discountChunks.size()) {
+			discountChunks.add(ByteBuffer.allocateDirect(DISCOUNTS_PER_CHUNK * DISCOUNT_RECORD));
+		}
+		ByteBuffer discountChunk = discountChunk(discountRecords);
+		int offset = DISCOUNT_RECORD * (int) (discountRecords & DISCOUNT_MASK);
+		discountChunk.putInt(offset, discountDescriptions.id(discount.getDescription()));
+		discountChunk.putInt(offset + 4, discountFlags(discount));
+		discountChunk.putDouble(offset + 8, discount.getPercent());
+		discountRecords++;
+	}
+
+	private static int discountFlags(Discount discount) {
+		return (discount.isCompounding() ? COMPOUNDING : 0) | (discount.isExclusive() ? EXCLUSIVE : 0);
+	}
+
+	private void rehash(int capacity) {
+		int[] oldSlots = slots;
+		int[] oldHashes = hashes;
+		slots = new int[capacity];
+		hashes = new int[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldSlots.length; i++) {
+			if (oldSlots[i] != EMPTY) {
+				int slot = oldHashes[i] & mask;
+				while (slots[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = oldSlots[i];
+				hashes[slot] = oldHashes[i];
+			}
+		}
+
+		long[] oldIdSlots = idSlots;
+		int[] oldIdRows = idRows;
+		idSlots = new long[capacity];
+		idRows = new int[capacity];
+		for (int i = 0; i < oldIdSlots.length; i++) {
+			if (oldIdSlots[i] != EMPTY) {
+				int slot = idSlot(oldIdSlots[i], mask);
+				while (idSlots[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				idSlots[slot] = oldIdSlots[i];
+				idRows[slot] = oldIdRows[i];
+			}
+		}
+	}
+
+	/**
+	 * Empties the slot of the description index, shifting back the entries probed past it so that
+	 * lookups still find them.
+	 */
+	private void deleteSlot(int hole) {
+		int mask = slots.length - 1;
+		for (int slot = (hole + 1) & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+			//the entry may fill the hole unless its probe starts after the hole
+			if (((slot - hashes[slot]) & mask) >= ((slot - hole) & mask)) {
+				slots[hole] = slots[slot];
+				hashes[hole] = hashes[slot];
+				hole = slot;
+			}
+		}
+		slots[hole] = EMPTY;
+	}
+
+	/**
+	 * Same as {@link #deleteSlot(int)} for the identifier index.
+	 */
+	private void deleteIdSlot(int hole) {
+		int mask = idSlots.length - 1;
+		for (int slot = (hole + 1) & mask; idSlots[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if (((slot - idSlot(idSlots[slot], mask)) & mask) >= ((slot - hole) & mask)) {
+				idSlots[hole] = idSlots[slot];
+				idRows[hole] = idRows[slot];
+				hole = slot;
+			}
+		}
+		idSlots[hole] = EMPTY;
+	}
+
+	private ByteBuffer chunk(int row) {
+		return rowChunks.get(row >>> ROW_SHIFT);
+	}
+
+	private ByteBuffer discountChunk(long record) {
+		return discountChunks.get((int) (record >>> DISCOUNT_SHIFT));
+	}
+
+	private static int idSlot(long id, int mask) {
+		return (int) LongIndex.mix(id) & mask;
+	}
+
+	private static int hash(String description) {
+		int hash = description.hashCode() * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Ids of a small set of repeated strings, 0 standing for null.
+	 */
+	private static final class Dictionary {
+		private final Map<String, Integer> ids = new HashMap<>();
+		private final List<String> values = new ArrayList<>();
+
+		private Dictionary() {
+			values.add(null);
+		}
+
+		private int id(String value) {
+			if (value == null) {
+				return 0;
+			}
+			Integer id = ids.get(value);
+			if (id == null) {
+				id = values.size();
+				values.add(value);
+				ids.put(value, id);
+			}
+			return id;
+		}
+
+		/**
+		 * @return Id of the value, -1 when it has none yet
+		 */
+		private int find(String value) {
+			if (value == null) {
+				return 0;
+			}
+			Integer id = ids.get(value);
+			return id == null ? -1 : id;
+		}
+
+		private String get(int id) {
+			return values.get(id);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package in.ravikalla.offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only store of strings in direct buffers, addressed by {@code chunk << 32 | offset}.
+ * A string is an int header {@code length << 1 | latin1} followed by one byte per char when every
+ * char fits in Latin-1, two bytes per char otherwise. Strings never span chunks.
+ * <p>
+ * Not thread-safe for writes; reads use absolute accessors only, so they can run concurrently
+ * with each other.
+ *
+ * @author - Ravi Kalla
+ */
+class StringSlab {
+
+	private static final int HEADER = 4;
+
+	private final int chunkSize;
+	private final List<ByteBuffer> chunks = new ArrayList<>();
+	private ByteBuffer current;
+	private long allocatedBytes;
+
+	StringSlab(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param value
+	 * @return Address of the copy of the value
+	 */
+	long add(String value) {
+		boolean latin1 = isLatin1(value);
+		int size = HEADER + (latin1 ? value.length() : value.length() * 2);
+		if (current == null || current.remaining() < size) {
+			current = ByteBuffer.allocateDirect(Math.max(chunkSize, size));
+			chunks.add(current);
+			allocatedBytes += current.capacity();
+		}
+		int offset = current.position();
+		current.putInt(value.length() << 1 | (latin1 ? 1 : 0));
+		if (latin1) {
+			for (int i = 0; i < value.length(); i++) {
+				current.put((byte) value.charAt(i));
+			}
+		} else {
+			for (int i = 0; i < value.length(); i++) {
+				current.putChar(value.charAt(i));
+			}
+		}
+		return (long) (chunks.size() - 1) << 32 | offset;
+	}
+
+	/**
+	 * @param address
+	 * @param value
+	 * @return True when the string at the address equals the value
+	 */
+	boolean equals(long address, String value) {
+		ByteBuffer chunk = chunks.get((int) (address >>> 32));
+		int offset = (int) address;
+		int header = chunk.getInt(offset);
+		int length = header >>> 1;
+		if (length != value.length()) {
+			return false;
+		}
+		offset += HEADER;
+		if ((header & 1) != 0) {
+			for (int i = 0; i < length; i++) {
+				if ((char) (chunk.get(offset + i) & 0xFF) != value.charAt(i)) {
+					return false;
+				}
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				if (chunk.getChar(offset + i * 2) != value.charAt(i)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param address
+	 * @return Copy of the string at the address
+	 */
+	String get(long address) {
+		ByteBuffer chunk = chunks.get((int) (address >>> 32));
+		int offset = (int) address;
+		int header = chunk.getInt(offset);
+		int length = header >>> 1;
+		offset += HEADER;
+		if ((header & 1) != 0) {
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++) {
+				bytes[i] = chunk.get(offset + i);
+			}
+			return new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = chunk.getChar(offset + i * 2);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * @return Bytes of direct memory allocated
+	 */
+	long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	private static boolean isLatin1(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) > 0xFF) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,11 +1,15 @@
 package in.ravikalla.service;
 
 import java.util.Date;
+import java.util.List;
 
 import in.ravikalla.exception.OrderAlreadyExistsException;
 import in.ravikalla.exception.OrderException;
+import in.ravikalla.exception.OrderRejectedException;
+import in.ravikalla.model.BatchResult;
 import in.ravikalla.model.Discount;
 import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
 
 /**
  * @author - Ravi Kalla
@@ -22,12 +26,29 @@ public interface AmazonDeliveryService {
 	 * @param basePrice
 	 * @param premiumCustomer
 	 * @return
+	 * @throws OrderRejectedException When admission control turns the order away, before anything is stored
 	 */
 	Order initOrder(String description, double basePrice, boolean premiumCustomer) throws OrderAlreadyExistsException;
 
+	/**
+	 * @param description
+	 * @return Stored order or null
+	 */
+	Order find(String description);
+
+	/**
+	 * Finds one order of a description that is not unique.
+	 *
+	 * @param id
+	 * @return Stored order or null
+	 */
+	Order findById(long id);
+
 	/**
 	 * @param order
-	 * @param discount
+	 * @param discount Replaced by the catalog instance of the same definition, if any
+	 * @throws IllegalArgumentException When the discount is over 100% or would take the additive
+	 *         discounts of the order past 100%
 	 */
 	void addDiscount(Order order, Discount discount);
 
@@ -37,10 +58,75 @@ public interface AmazonDeliveryService {
 	 */
 	void markSent(Order order, Date sendDate) throws OrderException;
 
+	/**
+	 * {@link #markSent(Order, Date)} to be retried: a key used before gives the outcome of the first
+	 * call with it instead of sending the order again.
+	 *
+	 * @param order
+	 * @param sendDate
+	 * @param idempotencyKey Chosen by the client for a call and its retries, null for none
+	 * @throws OrderException Of the first call with the key
+	 * @throws IllegalArgumentException When the key was used for another call
+	 */
+	void markSent(Order order, Date sendDate, String idempotencyKey) throws OrderException;
+
 	/**
 	 * @param order
 	 * @throws OrderException
+	 * @throws OrderRejectedException When admission control turns the delivery away, before anything is stored
 	 */
 	void markDelivered(Order order, Date deliverDate) throws OrderException;
 
+	/**
+	 * {@link #markDelivered(Order, Date)} to be retried: a key used before gives the outcome of the
+	 * first call with it instead of delivering the order again, so score and notification happen once.
+	 *
+	 * @param order
+	 * @param deliverDate
+	 * @param idempotencyKey Chosen by the client for a call and its retries, null for none
+	 * @throws OrderException Of the first call with the key
+	 * @throws IllegalArgumentException When the key was used for another call
+	 */
+	void markDelivered(Order order, Date deliverDate, String idempotencyKey) throws OrderException;
+
+	/**
+	 * Batched {@link #initOrder(String, double, boolean)}, duplicated descriptions fail with
+	 * {@link OrderAlreadyExistsException} on their own item, orders admission control turns away
+	 * with {@link OrderRejectedException}.
+	 *
+	 * @param requests
+	 * @return
+	 */
+	BatchResult initOrders(List<OrderRequest> requests);
+
+	/**
+	 * Batched {@link #addDiscount(Order, Discount)}, orders the discount is not valid for fail with
+	 * {@link IllegalArgumentException} on their own item.
+	 *
+	 * @param orders
+	 * @param discount
+	 * @return
+	 */
+	BatchResult addDiscounts(List<Order> orders, Discount discount);
+
+	/**
+	 * Batched {@link #markSent(Order, Date)}, orders already sent fail with {@link OrderException} on their own item.
+	 *
+	 * @param orders
+	 * @param sendDate
+	 * @return
+	 */
+	BatchResult markSentAll(List<Order> orders, Date sendDate);
+
+	/**
+	 * Batched {@link #markDelivered(Order, Date)}, orders not sent or already delivered fail with
+	 * {@link OrderException} on their own item, orders admission control turns away with
+	 * {@link OrderRejectedException}.
+	 *
+	 * @param orders
+	 * @param deliverDate
+	 * @return
+	 */
+	BatchResult markDeliveredAll(List<Order> orders, Date deliverDate);
+
 }
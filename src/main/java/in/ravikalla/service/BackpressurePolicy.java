@@ -0,0 +1,16 @@
+package in.ravikalla.service;
+
+/**
+ * What a bounded queue does when it is full.
+ *
+ * @author - Ravi Kalla
+ */
+public enum BackpressurePolicy {
+
+	//Caller waits for free space
+	BLOCK,
+	//Item is discarded and counted
+	DROP,
+	//Item is written to disk and queued again once there is room
+	SPILL
+}
@@ -0,0 +1,20 @@
+package in.ravikalla.service;
+
+/**
+ * @author - Ravi Kalla
+ */
+public interface DeliveryEstimationService {
+
+	/**
+	 * @param sendMillis Epoch millis the order was sent at
+	 * @param premiumCustomer
+	 * @param region Delivery region, null for the default SLA
+	 * @return Estimated delivery in epoch millis
+	 */
+	long estimateDeliveryMillis(long sendMillis, boolean premiumCustomer, String region);
+
+	/**
+	 * @return Current epoch millis of the clock estimations are based on
+	 */
+	long currentMillis();
+}
@@ -0,0 +1,23 @@
+package in.ravikalla.service;
+
+import in.ravikalla.model.Discount;
+
+/**
+ * Discount definitions known by code, one instance each, shared by every order given them.
+ *
+ * @author - Ravi Kalla
+ */
+public interface DiscountCatalogService {
+
+	/**
+	 * @param code
+	 * @return Discount of the code, null when the catalog has none
+	 */
+	Discount find(String code);
+
+	/**
+	 * @param discount
+	 * @return The catalog instance of the same definition, or the discount itself when it is not in the catalog
+	 */
+	Discount intern(Discount discount);
+}
@@ -0,0 +1,16 @@
+package in.ravikalla.service;
+
+import in.ravikalla.model.Order;
+
+/**
+ * @author - Ravi Kalla
+ */
+public interface NotificationService {
+
+	/**
+	 * Queues the delivery notification of the order, sending happens asynchronously.
+	 *
+	 * @param order
+	 */
+	void notifyDelivered(Order order);
+}
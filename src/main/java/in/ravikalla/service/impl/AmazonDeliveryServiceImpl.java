@@ -1,30 +1,68 @@
 package in.ravikalla.service.impl;
 
-import java.util.Calendar;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 import javax.inject.Inject;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import in.ravikalla.admission.AdmissionControl;
+import in.ravikalla.event.DiscountAdded;
+import in.ravikalla.event.OrderCreated;
+import in.ravikalla.event.OrderDelivered;
+import in.ravikalla.event.OrderEvent;
+import in.ravikalla.event.OrderEventDispatcher;
+import in.ravikalla.event.OrderEventDispatcher.Publication;
+import in.ravikalla.event.OrderSent;
 import in.ravikalla.exception.OrderAlreadyExistsException;
 import in.ravikalla.exception.OrderException;
+import in.ravikalla.exception.OrderRejectedException;
 import in.ravikalla.external.service.DeliveryScoreService;
-import in.ravikalla.external.service.EmailService;
 import in.ravikalla.external.service.OrderStorageService;
-import in.ravikalla.factory.EmailServiceFactory;
+import in.ravikalla.idempotency.IdempotencyTable;
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.metrics.OrderMetrics.Downstream;
+import in.ravikalla.metrics.OrderMetrics.Operation;
+import in.ravikalla.model.BatchResult;
 import in.ravikalla.model.Discount;
 import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
 import in.ravikalla.service.AmazonDeliveryService;
+import in.ravikalla.service.DeliveryEstimationService;
+import in.ravikalla.service.DiscountCatalogService;
+import in.ravikalla.service.NotificationService;
+import in.ravikalla.util.SnowflakeIdGenerator;
+import in.ravikalla.util.StripedLock;
 
 /**
+ * Every change to an order is stored and its {@link OrderEvent} claimed while the order lock is held,
+ * so the events of an order are in the order of its transitions; the events are published once the
+ * change is stored and the lock released. Scoring and notification subscribe to the events; without
+ * an {@link OrderEventDispatcher} they are called directly.
+ * <p>
+ * Batches hold the locks of all their orders until they are stored. Orders whose change cannot
+ * be stored are put back as they were before the call.
+ *
  * @author - Ravi Kalla
  */
 @Service
 @Qualifier("AmazonDeliveryService")
 public class AmazonDeliveryServiceImpl implements AmazonDeliveryService {
 
+	private static final int ORDER_LOCK_STRIPES = 1024;
+
 	@Inject
 	private DeliveryScoreService deliveryScoreService;
 
@@ -32,64 +70,588 @@ public class AmazonDeliveryServiceImpl implements AmazonDeliveryService {
 	private OrderStorageService orderStorageService;
 
 	@Inject
-	private EmailServiceFactory emailServiceFactory;
+	private NotificationService notificationService;
+
+	@Inject
+	private DeliveryEstimationService deliveryEstimationService;
+
+	@Inject
+	private OrderMetrics orderMetrics;
+
+	@Inject
+	private Optional<OrderEventDispatcher> orderEventDispatcher = Optional.empty();
+
+	@Inject
+	private Optional<AdmissionControl> admissionControl = Optional.empty();
+
+	@Inject
+	private Optional<IdempotencyTable> idempotencyTable = Optional.empty();
+
+	@Inject
+	private SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(Clock.systemUTC(), 0);
+
+	@Inject
+	private DiscountCatalogService discountCatalogService = new DiscountCatalogServiceImpl("", 0);
+
+	//Whether an order can only be created under a description no other order has
+	@Value("${orders.unique-descriptions:true}")
+	private boolean uniqueDescriptions = true;
+
+	//Highest total discount of an order in percent, negative for no cap
+	@Value("${pricing.max-discount-percent:-1}")
+	private double maxDiscountPercent = -1;
+
+	//Serializes the changes to an order, keyed by description, so each transition happens exactly once
+	private final StripedLock orderLocks = new StripedLock(ORDER_LOCK_STRIPES);
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public Order initOrder(String description, double basePrice, boolean premiumCustomer)
 			throws OrderAlreadyExistsException {
+		final long start = System.nanoTime();
+		boolean admitted = false;
+		try {
+			admitted = admit(premiumCustomer);
+			if (uniqueDescriptions && exists(description)) {
+				throw new OrderAlreadyExistsException();
+			}
+
+			Order order = buildOrder(description, basePrice, premiumCustomer);
+
+			Publication publication = beginPublication();
+			try {
+				Lock lock = orderLocks.get(description);
+				lock.lock();
+				try {
+					//exists() above is only a fast path, concurrent initOrder calls are resolved here
+					if (!storeIfAbsent(order)) {
+						throw new OrderAlreadyExistsException();
+					}
+					claim(publication, created(order));
+				} finally {
+					lock.unlock();
+				}
+			} finally {
+				publish(publication);
+			}
+			return order;
+		} catch (OrderAlreadyExistsException | RuntimeException e) {
+			orderMetrics.failed(e);
+			throw e;
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			if (admitted) {
+				admissionControl.get().release(elapsed);
+			}
+			orderMetrics.record(Operation.INIT_ORDER, elapsed);
+		}
+	}
 
-		if (orderStorageService.exists(description)) {
-			throw new OrderAlreadyExistsException();
+	/**
+	 * {@inheritDoc}
+	 */
+	public Order find(String description) {
+		final long start = System.nanoTime();
+		try {
+			return orderStorageService.find(description);
+		} finally {
+			orderMetrics.record(Downstream.STORAGE, System.nanoTime() - start);
 		}
+	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public Order findById(long id) {
+		final long start = System.nanoTime();
+		try {
+			return orderStorageService.findById(id);
+		} finally {
+			orderMetrics.record(Downstream.STORAGE, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void addDiscount(Order order, Discount discount) {
+		final long start = System.nanoTime();
+		try {
+			Publication publication = beginPublication();
+			try {
+				Lock lock = orderLocks.get(order.getDescription());
+				lock.lock();
+				try {
+					Order previous = snapshot(order);
+					applyDiscount(order, discount);
+
+					store(order, previous);
+					claim(publication, new DiscountAdded(order.getDescription(), discount, order.getFinalPriceCents()));
+				} finally {
+					lock.unlock();
+				}
+			} finally {
+				publish(publication);
+			}
+		} catch (RuntimeException e) {
+			orderMetrics.failed(e);
+			throw e;
+		} finally {
+			orderMetrics.record(Operation.ADD_DISCOUNT, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void markSent(Order order, Date sendDate) throws OrderException {
+		final long start = System.nanoTime();
+		try {
+			Publication publication = beginPublication();
+			try {
+				Lock lock = orderLocks.get(order.getDescription());
+				lock.lock();
+				try {
+					Order previous = snapshot(order);
+					applySent(order, sendDate);
+
+					store(order, previous);
+					claim(publication, sent(order));
+				} finally {
+					lock.unlock();
+				}
+			} finally {
+				publish(publication);
+			}
+		} catch (OrderException | RuntimeException e) {
+			orderMetrics.failed(e);
+			throw e;
+		} finally {
+			orderMetrics.record(Operation.MARK_SENT, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void markSent(Order order, Date sendDate, String idempotencyKey) throws OrderException {
+		if (idempotencyKey == null || !idempotencyTable.isPresent()) {
+			markSent(order, sendDate);
+			return;
+		}
+		idempotencyTable.get().run(idempotencyKey, "send " + order.getId(), () -> markSent(order, sendDate));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void markDelivered(Order order, Date deliverDate) throws OrderException {
+		final long start = System.nanoTime();
+		boolean admitted = false;
+		try {
+			admitted = admit(order.isPremium());
+			Publication publication = beginPublication();
+			try {
+				Lock lock = orderLocks.get(order.getDescription());
+				lock.lock();
+				try {
+					Order previous = snapshot(order);
+					applyDelivered(order, deliverDate);
+
+					store(order, previous);
+					claim(publication, delivered(order));
+				} finally {
+					lock.unlock();
+				}
+			} finally {
+				publish(publication);
+			}
+
+			//only the thread that delivered the order gets here
+			if (publication == null) {
+				notifyDelivered(order);
+			}
+		} catch (OrderException | RuntimeException e) {
+			orderMetrics.failed(e);
+			throw e;
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			if (admitted) {
+				admissionControl.get().release(elapsed);
+			}
+			orderMetrics.record(Operation.MARK_DELIVERED, elapsed);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void markDelivered(Order order, Date deliverDate, String idempotencyKey) throws OrderException {
+		if (idempotencyKey == null || !idempotencyTable.isPresent()) {
+			markDelivered(order, deliverDate);
+			return;
+		}
+		idempotencyTable.get().run(idempotencyKey, "deliver " + order.getId(),
+				() -> markDelivered(order, deliverDate));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BatchResult initOrders(List<OrderRequest> requests) {
+		final long start = System.nanoTime();
+		OrderRejectedException[] rejections = null;
+		try {
+			boolean[] premium = new boolean[requests.size()];
+			for (int i = 0; i < premium.length; i++) {
+				premium[i] = requests.get(i).isPremium();
+			}
+			rejections = admitAll(premium);
+			return initOrdersTimed(requests, rejections);
+		} catch (RuntimeException e) {
+			orderMetrics.failed(e);
+			throw e;
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			releaseAll(rejections, elapsed);
+			orderMetrics.record(Operation.INIT_ORDERS, elapsed);
+		}
+	}
+
+	private BatchResult initOrdersTimed(List<OrderRequest> requests, OrderRejectedException[] rejections) {
+		Object[] outcomes = new Object[requests.size()];
+		Map<Order, Integer> slots = new IdentityHashMap<>();
+		Set<String> descriptions = new HashSet<>();
+
+		for (int i = 0; i < requests.size(); i++) {
+			OrderRequest request = requests.get(i);
+			if (rejections != null && rejections[i] != null) {
+				outcomes[i] = rejections[i];
+				continue;
+			}
+			if (uniqueDescriptions && !descriptions.add(request.getDescription())) {
+				outcomes[i] = new OrderAlreadyExistsException();
+				continue;
+			}
+			Order order = buildOrder(request.getDescription(), request.getBasePrice(), request.isPremium());
+			outcomes[i] = order;
+			slots.put(order, i);
+		}
+
+		BatchResult result = new BatchResult(outcomes.length);
+		Publication publication = beginPublication();
+		try {
+			for (Order rejected : storeAllIfAbsent(slots.keySet())) {
+				outcomes[slots.get(rejected)] = new OrderAlreadyExistsException();
+			}
+
+			for (int i = 0; i < outcomes.length; i++) {
+				Object outcome = outcomes[i];
+				if (outcome instanceof Order) {
+					//the orders are already visible, a transition of one could be claimed before its creation
+					Lock lock = orderLocks.get(((Order) outcome).getDescription());
+					lock.lock();
+					try {
+						claim(publication, created((Order) outcome));
+					} finally {
+						lock.unlock();
+					}
+					result.succeeded((Order) outcome);
+				} else {
+					orderMetrics.failed((Throwable) outcome);
+					result.failed(requests.get(i), (Throwable) outcome);
+				}
+			}
+		} finally {
+			publish(publication);
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BatchResult addDiscounts(List<Order> orders, Discount discount) {
+		final long start = System.nanoTime();
+		try {
+			BatchResult result = new BatchResult(orders.size());
+			List<Order> discounted = new ArrayList<>(orders.size());
+			List<Order> previous = new ArrayList<>(orders.size());
+			List<OrderEvent> events = new ArrayList<>(orders.size());
+			Publication publication = beginPublication();
+			try {
+				List<Lock> locks = lockAll(orders);
+				try {
+					for (Order order : orders) {
+						Order before = snapshot(order);
+						try {
+							applyDiscount(order, discount);
+							events.add(new DiscountAdded(order.getDescription(), discount, order.getFinalPriceCents()));
+							discounted.add(order);
+							previous.add(before);
+							result.succeeded(order);
+						} catch (IllegalArgumentException e) {
+							orderMetrics.failed(e);
+							result.failed(order, e);
+						}
+					}
+
+					storeAll(discounted, previous);
+					for (OrderEvent event : events) {
+						claim(publication, event);
+					}
+				} finally {
+					unlockAll(locks);
+				}
+			} finally {
+				publish(publication);
+			}
+			return result;
+		} catch (RuntimeException e) {
+			orderMetrics.failed(e);
+			throw e;
+		} finally {
+			orderMetrics.record(Operation.ADD_DISCOUNTS, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BatchResult markSentAll(List<Order> orders, Date sendDate) {
+		final long start = System.nanoTime();
+		try {
+			BatchResult result = new BatchResult(orders.size());
+			List<Order> sent = new ArrayList<>(orders.size());
+			List<Order> previous = new ArrayList<>(orders.size());
+			List<OrderEvent> events = new ArrayList<>(orders.size());
+			Publication publication = beginPublication();
+			try {
+				List<Lock> locks = lockAll(orders);
+				try {
+					for (Order order : orders) {
+						Order before = snapshot(order);
+						try {
+							applySent(order, sendDate);
+							events.add(sent(order));
+							sent.add(order);
+							previous.add(before);
+							result.succeeded(order);
+						} catch (OrderException e) {
+							orderMetrics.failed(e);
+							result.failed(order, e);
+						}
+					}
+
+					storeAll(sent, previous);
+					for (OrderEvent event : events) {
+						claim(publication, event);
+					}
+				} finally {
+					unlockAll(locks);
+				}
+			} finally {
+				publish(publication);
+			}
+			return result;
+		} catch (RuntimeException e) {
+			orderMetrics.failed(e);
+			throw e;
+		} finally {
+			orderMetrics.record(Operation.MARK_SENT_ALL, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BatchResult markDeliveredAll(List<Order> orders, Date deliverDate) {
+		final long start = System.nanoTime();
+		OrderRejectedException[] rejections = null;
+		try {
+			boolean[] premium = new boolean[orders.size()];
+			for (int i = 0; i < premium.length; i++) {
+				premium[i] = orders.get(i).isPremium();
+			}
+			rejections = admitAll(premium);
+			BatchResult result = new BatchResult(orders.size());
+			List<Order> delivered = new ArrayList<>(orders.size());
+			List<Order> previous = new ArrayList<>(orders.size());
+			List<OrderEvent> events = new ArrayList<>(orders.size());
+			Publication publication = beginPublication();
+			try {
+				List<Lock> locks = lockAll(orders);
+				try {
+					for (int i = 0; i < orders.size(); i++) {
+						Order order = orders.get(i);
+						if (rejections != null && rejections[i] != null) {
+							orderMetrics.failed(rejections[i]);
+							result.failed(order, rejections[i]);
+							continue;
+						}
+						Order before = snapshot(order);
+						try {
+							applyDelivered(order, deliverDate);
+							events.add(delivered(order));
+							delivered.add(order);
+							previous.add(before);
+							result.succeeded(order);
+						} catch (OrderException e) {
+							orderMetrics.failed(e);
+							result.failed(order, e);
+						}
+					}
+
+					storeAll(delivered, previous);
+					for (OrderEvent event : events) {
+						claim(publication, event);
+					}
+				} finally {
+					unlockAll(locks);
+				}
+			} finally {
+				publish(publication);
+			}
+
+			if (publication == null) {
+				for (Order order : delivered) {
+					notifyDelivered(order);
+				}
+			}
+			return result;
+		} catch (RuntimeException e) {
+			orderMetrics.failed(e);
+			throw e;
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			releaseAll(rejections, elapsed);
+			orderMetrics.record(Operation.MARK_DELIVERED_ALL, elapsed);
+		}
+	}
+
+	/**
+	 * Locks all the orders, in the order of the stripes so that batches cannot deadlock.
+	 *
+	 * @return Locks to release with {@link #unlockAll(List)}
+	 */
+	private List<Lock> lockAll(List<Order> orders) {
+		List<String> descriptions = new ArrayList<>(orders.size());
+		for (Order order : orders) {
+			descriptions.add(order.getDescription());
+		}
+		List<Lock> locks = orderLocks.getAll(descriptions);
+		for (Lock lock : locks) {
+			lock.lock();
+		}
+		return locks;
+	}
+
+	private static void unlockAll(List<Lock> locks) {
+		for (int i = locks.size() - 1; i >= 0; i--) {
+			locks.get(i).unlock();
+		}
+	}
+
+	/**
+	 * @return Copy of the state of the order, to put it back with {@link Order#copyStateFrom(Order)}
+	 */
+	private static Order snapshot(Order order) {
+		Order copy = new Order();
+		copy.copyStateFrom(order);
+		return copy;
+	}
+
+	/**
+	 * @return Whether the operation was admitted and has to be released, false without admission control
+	 * @throws OrderRejectedException When the operation is not admitted
+	 */
+	private boolean admit(boolean premium) {
+		if (!admissionControl.isPresent()) {
+			return false;
+		}
+		admissionControl.get().acquire(premium);
+		return true;
+	}
+
+	/**
+	 * @param premium Whether each order of the batch is of a premium customer
+	 * @return Rejection of each order, see {@link AdmissionControl#acquireAll(boolean[])}; null without
+	 *         admission control
+	 */
+	private OrderRejectedException[] admitAll(boolean[] premium) {
+		return admissionControl.isPresent() ? admissionControl.get().acquireAll(premium) : null;
+	}
+
+	/**
+	 * Releases a batch admitted by {@link #admitAll(boolean[])}, with the latency per admitted order.
+	 */
+	private void releaseAll(OrderRejectedException[] rejections, long elapsedNanos) {
+		if (rejections == null) {
+			return;
+		}
+		int admitted = 0;
+		for (OrderRejectedException rejection : rejections) {
+			if (rejection == null) {
+				admitted++;
+			}
+		}
+		if (admitted > 0) {
+			admissionControl.get().release(elapsedNanos / admitted);
+		}
+	}
+
+	private Order buildOrder(String description, double basePrice, boolean premiumCustomer) {
 		Order order = new Order();
+		order.setId(idGenerator.nextId());
 		order.setDescription(description);
 		order.setBasePrice(basePrice);
 		order.setDelivered(false);
 		order.setSent(false);
 		order.setPremium(premiumCustomer);
 		calcFinalPrice(order);
-
-		orderStorageService.store(order);
 		return order;
 	}
 
-
-	/**
-	 * {@inheritDoc}
+	/*
+	 * The apply methods check and change the order, callers hold the order lock so that
+	 * concurrent transitions of the same order cannot both pass the checks.
 	 */
-	public void addDiscount(Order order, Discount discount) {
+	private void applyDiscount(Order order, Discount discount) {
 		if (discount != null) {
-			order.getDiscounts().add(discount);
+			validate(order, discount);
+			order.addDiscount(discountCatalogService.intern(discount));
 		}
 		calcFinalPrice(order);
-
-		orderStorageService.store(order);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Rejects discounts over 100% and additive discounts taking the sum of those of the order past
+	 * 100%, which would make the price negative.
 	 */
-	public void markSent(Order order, Date sendDate) throws OrderException {
+	private static void validate(Order order, Discount discount) {
+		if (!(discount.getPercent() >= 0 && discount.getPercent() <= 100)) {
+			throw new IllegalArgumentException("Discount of " + discount.getPercent() + "% is not between 0% and 100%");
+		}
+		if (!discount.isCompounding() && !discount.isExclusive()
+				&& order.getAdditiveDiscountBasisPoints() + discount.getBasisPoints() > Order.BASIS_POINTS) {
+			throw new IllegalArgumentException("Discounts of order " + order.getDescription() + " would sum past 100%");
+		}
+	}
+
+	private void applySent(Order order, Date sendDate) throws OrderException {
 		if (order.isSent()) {
 			throw new OrderException("Order is sent exception");
 		}
 
 		order.setSendDate(sendDate);
-		Date estimatedDelivery = calcEstimatedDeliveryDate(order.isPremium());
+		Date estimatedDelivery = calcEstimatedDeliveryDate(order, sendDate);
 
 		order.setEstimatedDelivery(estimatedDelivery);
 		order.setSent(true);
-
-		orderStorageService.store(order);
 	}
 
-	/**
-	 * {@inheritDoc}
-	 */
-	public void markDelivered(Order order, Date deliverDate) throws OrderException {
+	private void applyDelivered(Order order, Date deliverDate) throws OrderException {
 		if (!order.isSent()) {
 			throw new OrderException("Order is not sent exception");
 		}
@@ -100,64 +662,179 @@ public class AmazonDeliveryServiceImpl implements AmazonDeliveryService {
 
 		order.setDelivered(true);
 		order.setRealDelivery(deliverDate);
+	}
 
-		orderStorageService.store(order);
+	/**
+	 * Begins publishing the events of a change before it is stored, so that a stopped dispatcher
+	 * fails the change instead of losing its events.
+	 *
+	 * @return Null when there is no dispatcher, the events are then dropped and callers notify directly
+	 */
+	private Publication beginPublication() {
+		return orderEventDispatcher.isPresent() ? orderEventDispatcher.get().begin() : null;
+	}
+
+	/**
+	 * Must be called holding the lock of the order, once its change is stored.
+	 */
+	private static void claim(Publication publication, OrderEvent event) {
+		if (publication != null) {
+			publication.claim(event);
+		}
+	}
 
+	/**
+	 * Publishes the claimed events, nothing when the change failed. Must be called once the order
+	 * locks are released, it waits while the ring is full.
+	 */
+	private static void publish(Publication publication) {
+		if (publication != null) {
+			publication.publish();
+		}
+	}
+
+	private static OrderCreated created(Order order) {
+		return new OrderCreated(order.getDescription(), order.getBasePriceCents(), order.getFinalPriceCents(),
+				order.isPremium(), order.getRegion());
+	}
+
+	private static OrderSent sent(Order order) {
+		return new OrderSent(order.getDescription(), order.getSendMillis(), order.getEstimatedDeliveryMillis());
+	}
+
+	private OrderDelivered delivered(Order order) {
+		return new OrderDelivered(order, calcDeliveryDateScore(order));
+	}
+
+	private void notifyDelivered(Order order) {
 		long deliveryScore = calcDeliveryDateScore(order);
 
 		//Submit score
+		long start = System.nanoTime();
 		deliveryScoreService.submitDeliveryPoints(deliveryScore);
+		orderMetrics.record(Downstream.SCORE, System.nanoTime() - start);
+
+		//Queue email notification
+		start = System.nanoTime();
+		notificationService.notifyDelivered(order);
+		orderMetrics.record(Downstream.NOTIFICATION, System.nanoTime() - start);
+	}
+
+	private boolean exists(String description) {
+		final long start = System.nanoTime();
+		try {
+			return orderStorageService.exists(description);
+		} finally {
+			orderMetrics.record(Downstream.STORAGE, System.nanoTime() - start);
+		}
+	}
+
+	private boolean storeIfAbsent(Order order) {
+		final long start = System.nanoTime();
+		try {
+			return orderStorageService.storeIfAbsent(order);
+		} finally {
+			orderMetrics.record(Downstream.STORAGE, System.nanoTime() - start);
+		}
+	}
 
-		//Send email notification
-		EmailService emailService = emailServiceFactory.buildEmailService(order);
+	private Collection<Order> storeAllIfAbsent(Collection<Order> orders) {
+		final long start = System.nanoTime();
+		try {
+			return orderStorageService.storeAllIfAbsent(orders);
+		} finally {
+			orderMetrics.record(Downstream.STORAGE, System.nanoTime() - start);
+		}
+	}
 
-		emailService.sendDeliveryNotification();
+	/**
+	 * Stores the changed order, or puts it back as it was when it cannot be stored.
+	 */
+	private void store(Order order, Order previous) {
+		final long start = System.nanoTime();
+		try {
+			orderStorageService.store(order);
+		} catch (RuntimeException e) {
+			order.copyStateFrom(previous);
+			throw e;
+		} finally {
+			orderMetrics.record(Downstream.STORAGE, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Stores the changed orders, or puts them all back as they were when they cannot be stored.
+	 *
+	 * @param previous State of each order before the change
+	 */
+	private void storeAll(List<Order> orders, List<Order> previous) {
+		final long start = System.nanoTime();
+		try {
+			orderStorageService.storeAll(orders);
+		} catch (RuntimeException e) {
+			//backwards, an order changed twice gets its first state back
+			for (int i = orders.size() - 1; i >= 0; i--) {
+				orders.get(i).copyStateFrom(previous.get(i));
+			}
+			throw e;
+		} finally {
+			orderMetrics.record(Downstream.STORAGE, System.nanoTime() - start);
+		}
 	}
 
 	/**
 	 * @param order
 	 * @return
+	 * @throws IllegalStateException When the estimated or real delivery date is not set
 	 */
-	private long calcDeliveryDateScore(Order order) {
-		final long diff = order.getEstimatedDelivery().getTime() - order.getRealDelivery().getTime();
+	long calcDeliveryDateScore(Order order) {
+		if (order.getEstimatedDeliveryMillis() == Order.NO_DATE || order.getRealDeliveryMillis() == Order.NO_DATE) {
+			throw new IllegalStateException("Order " + order.getDescription() + " has no estimated or real delivery date");
+		}
+		final long diff = order.getEstimatedDeliveryMillis() - order.getRealDeliveryMillis();
 		return diff / (60 * 60 * 1000);
 	}
 
 	/**
 	 * @param order
 	 */
-	private void calcFinalPrice(Order order) {
-		double totalDiscount = 0;
-
-		for (Discount discount : order.getDiscounts()) {
-			totalDiscount += discount.getPercent();
+	void calcFinalPrice(Order order) {
+		//fraction of the base price left by the additive and compounding discounts
+		long additiveRemaining = Order.REMAINING_SCALE
+				- order.getAdditiveDiscountBasisPoints() * (Order.REMAINING_SCALE / Order.BASIS_POINTS);
+		long remaining = multiplyRounded(additiveRemaining, order.getCompoundedRemaining());
+
+		//exclusive discounts do not stack, the better option wins
+		long exclusiveRemaining = Order.REMAINING_SCALE
+				- order.getExclusiveDiscountBasisPoints() * (Order.REMAINING_SCALE / Order.BASIS_POINTS);
+		remaining = Math.min(remaining, exclusiveRemaining);
+
+		if (maxDiscountPercent >= 0) {
+			long minRemaining = Order.REMAINING_SCALE - Math.round(maxDiscountPercent * Order.REMAINING_SCALE / 100.0);
+			remaining = Math.max(remaining, minRemaining);
 		}
 
-		//calc discount
-		double finalPrice = order.getBasePrice() - (order.getBasePrice() * totalDiscount / 100.0);
-
-		//round 2 decimals
-		finalPrice *= 100;
-		finalPrice = Math.round(finalPrice);
-		finalPrice /= 100;
+		//set final price, rounded half up to the cent
+		order.setFinalPriceCents(multiplyRounded(order.getBasePriceCents(), remaining));
+	}
 
-		//set final price
-		order.setFinalPrice(finalPrice);
+	/**
+	 * @return value * fraction / Order.REMAINING_SCALE rounded half up, without overflowing for value * fraction
+	 */
+	private static long multiplyRounded(long value, long fraction) {
+		long whole = Math.floorDiv(value, Order.REMAINING_SCALE);
+		long rest = Math.floorMod(value, Order.REMAINING_SCALE);
+		return whole * fraction + Math.floorDiv(rest * fraction + Order.REMAINING_SCALE / 2, Order.REMAINING_SCALE);
 	}
 
 	/**
-	 * @param premiumCustomer
+	 * @param order
+	 * @param sendDate
 	 * @return
 	 */
-	private Date calcEstimatedDeliveryDate(boolean premiumCustomer) {
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTime(new Date());
-
-		if (premiumCustomer) {
-			calendar.add(Calendar.DAY_OF_MONTH, ESTIMATED_DAYS_TO_DELIVER_PREMIUM);
-		} else {
-			calendar.add(Calendar.DAY_OF_MONTH, ESTIMATED_DAYS_TO_DELIVER_REGULAR);
-		}
-		return calendar.getTime();
+	Date calcEstimatedDeliveryDate(Order order, Date sendDate) {
+		final long sendMillis = sendDate != null ? sendDate.getTime() : deliveryEstimationService.currentMillis();
+		return new Date(deliveryEstimationService.estimateDeliveryMillis(sendMillis, order.isPremium(),
+				order.getRegion()));
 	}
 }
@@ -0,0 +1,153 @@
+package in.ravikalla.service.impl;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import in.ravikalla.config.DeliveryEstimationProperties;
+import in.ravikalla.service.DeliveryEstimationService;
+
+/**
+ * Delivery estimation on epoch-millis arithmetic over a business-day calendar.
+ * The business days around today are precomputed into two lookup tables, so an estimation within
+ * the horizon is a handful of array reads and never allocates. Dates outside the horizon are
+ * walked day by day, still without allocating.
+ *
+ * @author - Ravi Kalla
+ */
+@Service
+@Qualifier("DeliveryEstimationService")
+public class DeliveryEstimationServiceImpl implements DeliveryEstimationService {
+
+	private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	private final Clock clock;
+	private final long offsetMillis;
+	private final long cutoffMillis;
+	private final boolean[] businessDayOfWeek = new boolean[7];
+	private final long[] holidays;
+
+	private final int defaultPremiumDays;
+	private final int defaultRegularDays;
+	private final Map<String, int[]> regionDays = new HashMap<>();
+
+	//businessOrdinal[i] = business days in [firstDay, firstDay + i), businessDays[k] = epoch day of the k-th one
+	private final long firstDay;
+	private final int[] businessOrdinal;
+	private final long[] businessDays;
+
+	@Inject
+	public DeliveryEstimationServiceImpl(DeliveryEstimationProperties properties, Clock clock) {
+		this.clock = clock;
+		this.offsetMillis = TimeUnit.SECONDS.toMillis(ZoneOffset.of(properties.getZoneOffset()).getTotalSeconds());
+		this.cutoffMillis = properties.getCutoff() == null || properties.getCutoff().isEmpty()
+				? DAY_MILLIS
+				: TimeUnit.NANOSECONDS.toMillis(LocalTime.parse(properties.getCutoff()).toNanoOfDay());
+
+		if (properties.getBusinessDays().isEmpty()) {
+			Arrays.fill(businessDayOfWeek, true);
+		}
+		for (String day : properties.getBusinessDays()) {
+			businessDayOfWeek[DayOfWeek.valueOf(day.trim().toUpperCase()).ordinal()] = true;
+		}
+
+		holidays = new long[properties.getHolidays().size()];
+		for (int i = 0; i < holidays.length; i++) {
+			holidays[i] = LocalDate.parse(properties.getHolidays().get(i).trim()).toEpochDay();
+		}
+		Arrays.sort(holidays);
+
+		defaultPremiumDays = properties.getDefaultSla().getPremiumDays();
+		defaultRegularDays = properties.getDefaultSla().getRegularDays();
+		for (Map.Entry<String, DeliveryEstimationProperties.Sla> region : properties.getRegions().entrySet()) {
+			regionDays.put(region.getKey(), new int[] {region.getValue().getPremiumDays(),
+					region.getValue().getRegularDays()});
+		}
+
+		int horizon = properties.getHorizonDays();
+		firstDay = Math.floorDiv(clock.millis() + offsetMillis, DAY_MILLIS) - horizon;
+		businessOrdinal = new int[2 * horizon + 1];
+		long[] days = new long[businessOrdinal.length];
+		int ordinal = 0;
+		for (int i = 0; i < businessOrdinal.length; i++) {
+			businessOrdinal[i] = ordinal;
+			if (i < businessOrdinal.length - 1 && isBusinessDay(firstDay + i)) {
+				days[ordinal++] = firstDay + i;
+			}
+		}
+		businessDays = Arrays.copyOf(days, ordinal);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long estimateDeliveryMillis(long sendMillis, boolean premiumCustomer, String region) {
+		final long localMillis = sendMillis + offsetMillis;
+		final long sendDay = Math.floorDiv(localMillis, DAY_MILLIS);
+		final long timeOfDay = localMillis - sendDay * DAY_MILLIS;
+		final long processingDay = timeOfDay >= cutoffMillis ? sendDay + 1 : sendDay;
+
+		int[] days = region == null ? null : regionDays.get(region);
+		int slaDays;
+		if (days == null) {
+			slaDays = premiumCustomer ? defaultPremiumDays : defaultRegularDays;
+		} else {
+			slaDays = premiumCustomer ? days[0] : days[1];
+		}
+
+		final long deliveryDay = addBusinessDays(processingDay, slaDays);
+		return deliveryDay * DAY_MILLIS + timeOfDay - offsetMillis;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long currentMillis() {
+		return clock.millis();
+	}
+
+	/**
+	 * @return Epoch day of the n-th business day strictly after the given day
+	 */
+	private long addBusinessDays(long day, int businessDaysToAdd) {
+		if (businessDaysToAdd <= 0) {
+			return day;
+		}
+		long index = day + 1 - firstDay;
+		if (index >= 0 && index < businessOrdinal.length) {
+			int ordinal = businessOrdinal[(int) index] + businessDaysToAdd - 1;
+			if (ordinal < businessDays.length) {
+				return businessDays[ordinal];
+			}
+		}
+
+		long current = day;
+		int remaining = businessDaysToAdd;
+		while (remaining > 0) {
+			current++;
+			if (isBusinessDay(current)) {
+				remaining--;
+			}
+		}
+		return current;
+	}
+
+	private boolean isBusinessDay(long epochDay) {
+		//1970-01-01 was a Thursday, DayOfWeek ordinals start on Monday
+		int dayOfWeek = (int) Math.floorMod(epochDay + 3, 7L);
+		return businessDayOfWeek[dayOfWeek] && Arrays.binarySearch(holidays, epochDay) < 0;
+	}
+}
@@ -0,0 +1,231 @@
+package in.ravikalla.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.service.DiscountCatalogService;
+
+/**
+ * Discount catalog read from a JSON file mapping codes to discounts, in the format of the discounts
+ * of the order API, e.g. {@code {"NEWYEAR": {"description": "Promo of new year", "percent": 5.0}}}.
+ * <p>
+ * The file is checked for changes every reload interval and a valid new version replaces the
+ * catalog as a whole; definitions that did not change keep their instance, so orders holding
+ * it still share it with the new orders. An invalid version is logged and ignored, except on
+ * startup where it fails the service.
+ *
+ * @author - Ravi Kalla
+ */
+@Service
+@Qualifier("DiscountCatalogService")
+@ManagedResource(objectName = "in.ravikalla:type=DiscountCatalog", description = "Discount catalog")
+public class DiscountCatalogServiceImpl implements DiscountCatalogService {
+
+	private static final Logger logger = LoggerFactory.getLogger(DiscountCatalogServiceImpl.class);
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final TypeReference<LinkedHashMap<String, Discount>> CATALOG_TYPE =
+			new TypeReference<LinkedHashMap<String, Discount>>() {
+			};
+
+	private final Path file;
+	private final long reloadIntervalMillis;
+
+	private volatile Catalog catalog = new Catalog(Collections.emptyMap(), Collections.emptyMap(), null);
+
+	//Modification time of the last version of the file rejected, so that it is not read again
+	private FileTime rejectedModified;
+
+	private final LongAdder reloads = new LongAdder();
+	private final LongAdder rejectedReloads = new LongAdder();
+
+	private final ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "discount-catalog-reloader");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * @param file Catalog file, empty for an empty catalog
+	 * @param reloadIntervalMillis Interval of the checks for changes of the file, 0 to never reload
+	 */
+	@Inject
+	public DiscountCatalogServiceImpl(@Value("${discounts.catalog.file:}") String file,
+			@Value("${discounts.catalog.reload-interval-ms:10000}") long reloadIntervalMillis) {
+		this.file = file.isEmpty() ? null : Paths.get(file);
+		this.reloadIntervalMillis = reloadIntervalMillis;
+		if (this.file != null) {
+			catalog = load(catalog);
+			logger.info("DiscountCatalog - loaded {} discounts from {}", catalog.byCode.size(), file);
+		}
+	}
+
+	@PostConstruct
+	public void start() {
+		if (file != null && reloadIntervalMillis > 0) {
+			reloader.scheduleWithFixedDelay(this::reloadIfChanged, reloadIntervalMillis, reloadIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void stop() {
+		reloader.shutdownNow();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Discount find(String code) {
+		return catalog.byCode.get(code);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Discount intern(Discount discount) {
+		Discount interned = catalog.definitions.get(discount);
+		return interned != null ? interned : discount;
+	}
+
+	/**
+	 * Reads the catalog file again, whether it changed or not.
+	 *
+	 * @return true when the catalog was replaced, false when the file is not valid
+	 */
+	@ManagedOperation(description = "Reads the catalog file again, false when it is not valid")
+	public synchronized boolean reload() {
+		if (file == null) {
+			return false;
+		}
+		try {
+			catalog = load(catalog);
+			reloads.increment();
+			logger.info("DiscountCatalog - reloaded {} discounts from {}", catalog.byCode.size(), file);
+			return true;
+		} catch (IllegalArgumentException e) {
+			rejectedReloads.increment();
+			logger.error("DiscountCatalog - kept the current catalog, {} is not valid: {}", file, e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Reloads the catalog when the file was modified since it was loaded or last rejected.
+	 */
+	public synchronized void reloadIfChanged() {
+		try {
+			FileTime modified = Files.getLastModifiedTime(file);
+			if (!modified.equals(catalog.lastModified) && !modified.equals(rejectedModified) && !reload()) {
+				rejectedModified = modified;
+			}
+		} catch (IOException e) {
+			logger.warn("DiscountCatalog - cannot check {}", file, e);
+		}
+	}
+
+	/**
+	 * @return Number of discounts in the catalog
+	 */
+	@ManagedAttribute(description = "Number of discounts in the catalog")
+	public int getSize() {
+		return catalog.byCode.size();
+	}
+
+	/**
+	 * @return Number of times a new version of the catalog was loaded
+	 */
+	@ManagedAttribute(description = "Number of times a new version of the catalog was loaded")
+	public long getReloads() {
+		return reloads.sum();
+	}
+
+	/**
+	 * @return Number of versions of the catalog file rejected as not valid
+	 */
+	@ManagedAttribute(description = "Number of versions of the catalog file rejected as not valid")
+	public long getRejectedReloads() {
+		return rejectedReloads.sum();
+	}
+
+	private Catalog load(Catalog previous) {
+		try {
+			FileTime lastModified = Files.getLastModifiedTime(file);
+			Map<String, Discount> read = MAPPER.readValue(file.toFile(), CATALOG_TYPE);
+			if (read == null) {
+				throw new IllegalArgumentException("No discounts");
+			}
+			Map<String, Discount> byCode = new HashMap<>();
+			Map<Discount, Discount> definitions = new HashMap<>();
+			for (Map.Entry<String, Discount> entry : read.entrySet()) {
+				Discount discount = validate(entry.getKey(), entry.getValue());
+				Discount shared = definitions.computeIfAbsent(discount,
+						definition -> previous.definitions.getOrDefault(definition, definition));
+				byCode.put(entry.getKey(), shared);
+			}
+			return new Catalog(byCode, definitions, lastModified);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Cannot read " + file + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static Discount validate(String code, Discount discount) {
+		if (code.trim().isEmpty()) {
+			throw new IllegalArgumentException("Empty discount code");
+		}
+		if (discount == null || discount.getDescription() == null) {
+			throw new IllegalArgumentException("Discount " + code + " has no description");
+		}
+		if (!(discount.getPercent() > 0 && discount.getPercent() <= 100)) {
+			throw new IllegalArgumentException("Discount " + code + " of " + discount.getPercent()
+					+ "% is not above 0% and up to 100%");
+		}
+		return discount;
+	}
+
+	/**
+	 * Immutable version of the catalog, replaced as a whole.
+	 */
+	private static final class Catalog {
+		private final Map<String, Discount> byCode;
+		private final Map<Discount, Discount> definitions;
+		//Modification time of the file the catalog was read from
+		private final FileTime lastModified;
+
+		private Catalog(Map<String, Discount> byCode, Map<Discount, Discount> definitions, FileTime lastModified) {
+			this.byCode = byCode;
+			this.definitions = definitions;
+			this.lastModified = lastModified;
+		}
+	}
+}
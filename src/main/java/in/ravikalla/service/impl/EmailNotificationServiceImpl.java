@@ -0,0 +1,339 @@
+package in.ravikalla.service.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import in.ravikalla.external.service.EmailService;
+import in.ravikalla.external.service.OrderStorageService;
+import in.ravikalla.factory.EmailServiceFactory;
+import in.ravikalla.metrics.LatencyHistogram;
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.model.Order;
+import in.ravikalla.service.BackpressurePolicy;
+import in.ravikalla.service.NotificationService;
+
+/**
+ * Delivery notifications go through a bounded queue drained by a single dispatcher thread, which
+ * sends them in batches and retries failed batches with exponential backoff. The notifications of a
+ * batch are sent together without waiting for each other's answer, and a retry only sends the ones
+ * that failed, the orders of the batch already notified are not notified again.
+ * When the queue is full the configured {@link BackpressurePolicy} applies; spilled notifications
+ * are written to disk by order identifier and description and sent again once the queue has room.
+ *
+ * @author - Ravi Kalla
+ */
+@Service
+@Qualifier("NotificationService")
+public class EmailNotificationServiceImpl implements NotificationService {
+
+	private static final Logger logger = LoggerFactory.getLogger(EmailNotificationServiceImpl.class);
+
+	private static final long POLL_MILLIS = 100;
+
+	private final EmailService emailService;
+	private final OrderStorageService orderStorageService;
+
+	private final BlockingQueue<Order> queue;
+	private final int batchSize;
+	private final BackpressurePolicy backpressurePolicy;
+	private final int maxAttempts;
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+
+	private final File spillFile;
+	private final Object spillLock = new Object();
+	private volatile boolean spillPending;
+
+	private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "email-notification-dispatcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private volatile boolean running;
+
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder spilled = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LatencyHistogram sendLatency;
+
+	@Inject
+	public EmailNotificationServiceImpl(EmailServiceFactory emailServiceFactory,
+			OrderStorageService orderStorageService,
+			OrderMetrics orderMetrics,
+			@Value("${notification.queue.capacity:10000}") int capacity,
+			@Value("${notification.batch.size:100}") int batchSize,
+			@Value("${notification.backpressure:BLOCK}") BackpressurePolicy backpressurePolicy,
+			@Value("${notification.retry.max-attempts:5}") int maxAttempts,
+			@Value("${notification.retry.initial-backoff-ms:100}") long initialBackoffMillis,
+			@Value("${notification.retry.max-backoff-ms:10000}") long maxBackoffMillis,
+			@Value("${notification.spill.file:${java.io.tmpdir}/delivery-notifications.spill}") String spillFile) {
+		this.emailService = emailServiceFactory.getEmailService();
+		this.orderStorageService = orderStorageService;
+		this.sendLatency = orderMetrics.getLatency(OrderMetrics.Downstream.EMAIL);
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = batchSize;
+		this.backpressurePolicy = backpressurePolicy;
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.spillFile = new File(spillFile);
+	}
+
+	@PostConstruct
+	public void start() {
+		running = true;
+		spillPending = spillFile.exists();
+		dispatcher.execute(this::dispatch);
+	}
+
+	/**
+	 * Stops accepting work after sending everything already queued or spilled.
+	 */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		dispatcher.shutdown();
+		if (!dispatcher.awaitTermination(30, TimeUnit.SECONDS)) {
+			logger.warn("EmailNotificationService - stopped with {} notifications queued", queue.size());
+			dispatcher.shutdownNow();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void notifyDelivered(Order order) {
+		if (queue.offer(order)) {
+			return;
+		}
+		switch (backpressurePolicy) {
+			case BLOCK:
+				try {
+					queue.put(order);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					dropped.increment();
+				}
+				break;
+			case DROP:
+				dropped.increment();
+				break;
+			case SPILL:
+				spill(order);
+				break;
+		}
+	}
+
+	private void dispatch() {
+		List<Order> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty() || spillPending) {
+			try {
+				Order first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch, batchSize - 1);
+					send(batch);
+					batch.clear();
+				}
+				if (spillPending && queue.size() < batchSize) {
+					replaySpill();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				logger.error("EmailNotificationService - dispatcher error", e);
+				batch.clear();
+			}
+		}
+	}
+
+	private void send(List<Order> batch) throws InterruptedException {
+		long backoff = initialBackoffMillis;
+		//Orders of the batch not sent yet
+		List<Order> pending = batch;
+		for (int attempt = 1; ; attempt++) {
+			long start = System.nanoTime();
+			List<CompletableFuture<Void>> sends = new ArrayList<>(pending.size());
+			for (Order order : pending) {
+				sends.add(sendAsync(order));
+			}
+			List<Order> unsent = new ArrayList<>();
+			Throwable failure = null;
+			for (int i = 0; i < sends.size(); i++) {
+				try {
+					sends.get(i).get();
+					sent.increment();
+				} catch (ExecutionException e) {
+					unsent.add(pending.get(i));
+					failure = e.getCause();
+				}
+			}
+			sendLatency.record(System.nanoTime() - start);
+			if (unsent.isEmpty()) {
+				return;
+			}
+			if (attempt >= maxAttempts) {
+				logger.error("EmailNotificationService - giving up on {} notifications", unsent.size(), failure);
+				failed.add(unsent.size());
+				return;
+			}
+			retries.increment();
+			TimeUnit.MILLISECONDS.sleep(backoff);
+			backoff = Math.min(maxBackoffMillis, backoff * 2);
+			pending = unsent;
+		}
+	}
+
+	private CompletableFuture<Void> sendAsync(Order order) {
+		try {
+			return emailService.sendDeliveryNotificationAsync(order);
+		} catch (RuntimeException e) {
+			CompletableFuture<Void> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+	private void spill(Order order) {
+		synchronized (spillLock) {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(spillFile, true)))) {
+				out.writeLong(order.getId());
+				out.writeUTF(order.getDescription());
+				spilled.increment();
+				spillPending = true;
+			} catch (IOException e) {
+				logger.error("EmailNotificationService - cannot spill {}", order.getDescription(), e);
+				dropped.increment();
+			}
+		}
+	}
+
+	private void replaySpill() throws InterruptedException {
+		File replayFile = new File(spillFile.getPath() + ".replay");
+		synchronized (spillLock) {
+			spillPending = false;
+			if (!spillFile.exists()) {
+				return;
+			}
+			try {
+				Files.move(spillFile.toPath(), replayFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				logger.error("EmailNotificationService - cannot replay spill file {}", spillFile, e);
+				spillPending = true;
+				return;
+			}
+		}
+
+		List<Order> batch = new ArrayList<>(batchSize);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(replayFile)))) {
+			while (true) {
+				long id = in.readLong();
+				String description = in.readUTF();
+				Order order = id != 0 ? orderStorageService.findById(id) : orderStorageService.find(description);
+				if (order == null) {
+					logger.error("EmailNotificationService - spilled order not found {}", description);
+					failed.increment();
+					continue;
+				}
+				batch.add(order);
+				if (batch.size() == batchSize) {
+					send(batch);
+					batch.clear();
+				}
+			}
+		} catch (EOFException e) {
+			//end of spill file
+		} catch (IOException e) {
+			logger.error("EmailNotificationService - cannot read spill file {}", replayFile, e);
+		}
+		if (!batch.isEmpty()) {
+			send(batch);
+		}
+		if (!replayFile.delete()) {
+			logger.warn("EmailNotificationService - cannot delete {}", replayFile);
+		}
+	}
+
+	/**
+	 * @return Number of notifications waiting in the queue
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * @return Number of notifications sent
+	 */
+	public long getSent() {
+		return sent.sum();
+	}
+
+	/**
+	 * @return Number of notifications discarded because the queue was full
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * @return Number of notifications written to the spill file
+	 */
+	public long getSpilled() {
+		return spilled.sum();
+	}
+
+	/**
+	 * @return Number of notifications given up after the last retry
+	 */
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 * @return Number of batch retries
+	 */
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	/**
+	 * @return Latency of the batch send calls in nanoseconds
+	 */
+	public LatencyHistogram getSendLatency() {
+		return sendLatency;
+	}
+}
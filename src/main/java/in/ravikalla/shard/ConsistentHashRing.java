@@ -0,0 +1,147 @@
+package in.ravikalla.shard;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent hash ring mapping keys to the nodes that own them.
+ * Every node is placed on the ring at a number of virtual node tokens and a key belongs to the node
+ * of the first token at or after the hash of the key, wrapping around. Adding or removing a node
+ * only moves the keys between its tokens and the tokens before them, about 1/n of the keys.
+ * <p>
+ * Tokens are kept in a sorted array, so a lookup is a binary search without allocation.
+ *
+ * @author - Ravi Kalla
+ */
+public final class ConsistentHashRing {
+
+	private final int virtualNodes;
+	private final SortedSet<String> nodes;
+	private final long[] tokens;
+	private final String[] owners;
+
+	/**
+	 * @param nodes Identifiers of the nodes
+	 * @param virtualNodes Tokens per node, more tokens spread the keys more evenly
+	 */
+	public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+		if (virtualNodes < 1) {
+			throw new IllegalArgumentException("At least one virtual node per node is needed");
+		}
+		this.virtualNodes = virtualNodes;
+		this.nodes = Collections.unmodifiableSortedSet(new TreeSet<>(nodes));
+
+		Token[] ring = new Token[this.nodes.size() * virtualNodes];
+		int i = 0;
+		for (String node : this.nodes) {
+			for (int v = 0; v < virtualNodes; v++) {
+				ring[i++] = new Token(hash(node + '#' + v), node);
+			}
+		}
+		//equal tokens of different nodes are ordered by node, so every ring of the same nodes agrees
+		Arrays.sort(ring, Comparator.comparingLong((Token token) -> token.hash).thenComparing(token -> token.node));
+		tokens = new long[ring.length];
+		owners = new String[ring.length];
+		for (i = 0; i < ring.length; i++) {
+			tokens[i] = ring[i].hash;
+			owners[i] = ring[i].node;
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return Node owning the key
+	 * @throws IllegalStateException When the ring has no node
+	 */
+	public String owner(String key) {
+		if (tokens.length == 0) {
+			throw new IllegalStateException("No node in the ring");
+		}
+		int index = Arrays.binarySearch(tokens, hash(key));
+		if (index < 0) {
+			index = -index - 1;
+		} else {
+			//first of equal tokens
+			while (index > 0 && tokens[index - 1] == tokens[index]) {
+				index--;
+			}
+		}
+		return owners[index == tokens.length ? 0 : index];
+	}
+
+	/**
+	 * @param node
+	 * @return Ring with the node added, this ring when it is already in
+	 */
+	public ConsistentHashRing withNode(String node) {
+		if (nodes.contains(node)) {
+			return this;
+		}
+		SortedSet<String> changed = new TreeSet<>(nodes);
+		changed.add(node);
+		return new ConsistentHashRing(changed, virtualNodes);
+	}
+
+	/**
+	 * @param node
+	 * @return Ring with the node removed, this ring when it is not in
+	 */
+	public ConsistentHashRing withoutNode(String node) {
+		if (!nodes.contains(node)) {
+			return this;
+		}
+		SortedSet<String> changed = new TreeSet<>(nodes);
+		changed.remove(node);
+		return new ConsistentHashRing(changed, virtualNodes);
+	}
+
+	/**
+	 * Getter for property 'nodes'.
+	 *
+	 * @return Value for property 'nodes'.
+	 */
+	public SortedSet<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Getter for property 'virtualNodes'.
+	 *
+	 * @return Value for property 'virtualNodes'.
+	 */
+	public int getVirtualNodes() {
+		return virtualNodes;
+	}
+
+	/**
+	 * 64-bit FNV-1a over the chars of the key, finished with the MurmurHash3 mix so that similar
+	 * keys and tokens land far apart, which the 32 bits of {@link String#hashCode()} do not.
+	 */
+	static long hash(CharSequence key) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private static final class Token {
+		private final long hash;
+		private final String node;
+
+		private Token(long hash, String node) {
+			this.hash = hash;
+			this.node = node;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package in.ravikalla.shard;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import in.ravikalla.model.BatchResult;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+
+/**
+ * {@link ShardTransport} posting {@link ShardMessages} to the /shard endpoints of the other nodes,
+ * with the secret checked by their {@link ShardAuthentication}.
+ * Connections are kept alive by {@link HttpURLConnection}, so a node talks to another one over
+ * a few reused sockets.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ConditionalOnProperty(name = "shard.enabled", havingValue = "true")
+public class HttpShardTransport implements ShardTransport {
+
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	private final String secret;
+	private final int connectTimeoutMs;
+	private final int readTimeoutMs;
+
+	@Inject
+	public HttpShardTransport(@Value("${shard.secret}") String secret,
+			@Value("${shard.http.connect-timeout-ms:1000}") int connectTimeoutMs,
+			@Value("${shard.http.read-timeout-ms:30000}") int readTimeoutMs) {
+		this.secret = secret;
+		this.connectTimeoutMs = connectTimeoutMs;
+		this.readTimeoutMs = readTimeoutMs;
+	}
+
+	@Override
+	public BatchResult initOrders(String node, List<OrderRequest> requests) {
+		byte[] response = post(node, "orders", new ShardMessages.Writer().writeRequests(requests));
+		return new ShardMessages.Reader(response).readResult();
+	}
+
+	@Override
+	public BatchResult addDiscounts(String node, List<String> descriptions, List<Long> ids, Discount discount) {
+		byte[] response = post(node, "discounts",
+				new ShardMessages.Writer().writeDescriptions(descriptions).writeDiscount(discount).writeIds(ids));
+		return new ShardMessages.Reader(response).readResult();
+	}
+
+	@Override
+	public BatchResult markSentAll(String node, List<String> descriptions, List<Long> ids, Date sendDate,
+			List<String> idempotencyKeys) {
+		byte[] response = post(node, "sent",
+				new ShardMessages.Writer().writeDescriptions(descriptions).writeDate(sendDate)
+						.writeIdempotencyKeys(idempotencyKeys).writeIds(ids));
+		return new ShardMessages.Reader(response).readResult();
+	}
+
+	@Override
+	public BatchResult markDeliveredAll(String node, List<String> descriptions, List<Long> ids, Date deliverDate,
+			List<String> idempotencyKeys) {
+		byte[] response = post(node, "delivered",
+				new ShardMessages.Writer().writeDescriptions(descriptions).writeDate(deliverDate)
+						.writeIdempotencyKeys(idempotencyKeys).writeIds(ids));
+		return new ShardMessages.Reader(response).readResult();
+	}
+
+	@Override
+	public Order find(String node, String description) {
+		byte[] response = post(node, "find",
+				new ShardMessages.Writer().writeDescriptions(Collections.singletonList(description)));
+		return new ShardMessages.Reader(response).readOrder();
+	}
+
+	@Override
+	public Order findById(String node, long id) {
+		byte[] response = post(node, "find-by-id", new ShardMessages.Writer().writeIds(Collections.singletonList(id)));
+		return new ShardMessages.Reader(response).readOrder();
+	}
+
+	@Override
+	public int transfer(String node, Collection<Order> orders) {
+		byte[] response = post(node, "transfer", new ShardMessages.Writer().writeOrders(orders));
+		return new ShardMessages.Reader(response).readCount();
+	}
+
+	@Override
+	public void handedOver(String node, String from, Collection<String> ringNodes) {
+		List<String> descriptions = new ArrayList<>(ringNodes.size() + 1);
+		descriptions.add(from);
+		descriptions.addAll(ringNodes);
+		post(node, "handed-over", new ShardMessages.Writer().writeDescriptions(descriptions));
+	}
+
+	private byte[] post(String node, String endpoint, ShardMessages.Writer message) {
+		byte[] body = message.toByteArray();
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL(node + "/shard/" + endpoint).openConnection();
+			connection.setConnectTimeout(connectTimeoutMs);
+			connection.setReadTimeout(readTimeoutMs);
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setFixedLengthStreamingMode(body.length);
+			connection.setRequestProperty("Content-Type", ShardMessages.CONTENT_TYPE);
+			connection.setRequestProperty("Accept", ShardMessages.CONTENT_TYPE);
+			connection.setRequestProperty(ShardAuthentication.HEADER, secret);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body);
+			}
+			int status = connection.getResponseCode();
+			if (status != HttpURLConnection.HTTP_OK) {
+				//drained so that the connection can be reused
+				drain(connection.getErrorStream());
+				throw new IllegalStateException("Node " + node + " answered " + status + " to /shard/" + endpoint);
+			}
+			return drain(connection.getInputStream());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Node " + node + " unreachable", e);
+		}
+	}
+
+	private static byte[] drain(InputStream in) throws IOException {
+		if (in == null) {
+			return new byte[0];
+		}
+		try (InputStream stream = in) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[READ_BUFFER_SIZE];
+			int read;
+			while ((read = stream.read(buffer)) >= 0) {
+				bytes.write(buffer, 0, read);
+			}
+			return bytes.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,461 @@
+package in.ravikalla.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import in.ravikalla.exception.OrderAlreadyExistsException;
+import in.ravikalla.exception.OrderException;
+import in.ravikalla.external.service.OrderStorageService;
+import in.ravikalla.model.BatchResult;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+import in.ravikalla.model.OrderState;
+import in.ravikalla.service.AmazonDeliveryService;
+
+/**
+ * The orders this node owns, as seen by the other nodes: runs the calls they forward on the local
+ * {@link AmazonDeliveryService} and hands orders over when the ring changes.
+ * <p>
+ * Items of orders this node does not own fail with an {@link OrderException}, they come from a
+ * node whose ring is not up to date and changing the local copy would lose the change.
+ * <p>
+ * Orders are found by the identifier sent with their description, so that orders sharing a
+ * description stay apart.
+ * <p>
+ * After a ring change an order this node now owns may not be handed over yet: until its previous
+ * owner reports it is done, new orders with unique descriptions are checked against it, see
+ * {@link #initOwned(List)}.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ConditionalOnProperty(name = "shard.enabled", havingValue = "true")
+public class LocalShard {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalShard.class);
+
+	private final AmazonDeliveryService amazonDeliveryService;
+	private final OrderStorageService orderStorageService;
+	private final ShardMembership membership;
+	private final ShardTransport transport;
+	private final int transferBatchSize;
+
+	@Value("${orders.unique-descriptions:true}")
+	private boolean uniqueDescriptions = true;
+
+	@Inject
+	public LocalShard(@Qualifier("AmazonDeliveryService") AmazonDeliveryService amazonDeliveryService,
+			OrderStorageService orderStorageService, ShardMembership membership, ShardTransport transport,
+			@Value("${shard.transfer-batch-size:1000}") int transferBatchSize) {
+		this.amazonDeliveryService = amazonDeliveryService;
+		this.orderStorageService = orderStorageService;
+		this.membership = membership;
+		this.transport = transport;
+		this.transferBatchSize = transferBatchSize;
+	}
+
+	/**
+	 * @param requests
+	 * @return Outcome of {@link #initOwned(List)}
+	 */
+	public BatchResult initOrders(List<OrderRequest> requests) {
+		return owned(requests, OrderRequest::getDescription, this::initOwned);
+	}
+
+	/**
+	 * Creates orders this node owns, once their previous owner has none of them. Must be called
+	 * holding {@link ShardMembership#reading()}.
+	 *
+	 * @param requests
+	 * @return Outcome of {@link AmazonDeliveryService#initOrders(List)}; orders found on their
+	 *         previous owner are taken over and fail as existing, as do all when it cannot be reached
+	 */
+	public BatchResult initOwned(List<OrderRequest> requests) {
+		Throwable[] failures = new Throwable[requests.size()];
+		List<Integer> indexes = new ArrayList<>(requests.size());
+		for (int i = 0; i < failures.length; i++) {
+			failures[i] = handOverFailure(requests.get(i).getDescription());
+			indexes.add(i);
+		}
+		List<Boolean> keys = new ArrayList<>(2);
+		List<List<Integer>> groups = new ArrayList<>(2);
+		int[] parts = ShardBatches.group(indexes, i -> failures[i] == null, keys, groups);
+		List<BatchResult> results = new ArrayList<>(groups.size());
+		for (int part = 0; part < groups.size(); part++) {
+			List<OrderRequest> group = new ArrayList<>(groups.get(part).size());
+			for (int i : groups.get(part)) {
+				group.add(requests.get(i));
+			}
+			if (keys.get(part)) {
+				results.add(amazonDeliveryService.initOrders(group));
+			} else {
+				BatchResult failed = new BatchResult(group.size());
+				for (int i : groups.get(part)) {
+					ShardBatches.failed(failed, requests.get(i), failures[i]);
+				}
+				results.add(failed);
+			}
+		}
+		return ShardBatches.merge(requests.size(), parts, results);
+	}
+
+	/**
+	 * Single order {@link #initOwned(List)}, to check before creating it locally.
+	 *
+	 * @param description
+	 * @throws OrderAlreadyExistsException When the previous owner of the order has it
+	 */
+	public void checkHandedOver(String description) throws OrderAlreadyExistsException {
+		Throwable failure = handOverFailure(description);
+		if (failure instanceof OrderAlreadyExistsException) {
+			throw (OrderAlreadyExistsException) failure;
+		}
+		if (failure != null) {
+			throw (RuntimeException) failure;
+		}
+	}
+
+	/**
+	 * @return Failure of creating the order here, null when it is not on a node still handing orders over
+	 */
+	private Throwable handOverFailure(String description) {
+		if (!uniqueDescriptions) {
+			//another order with the description is no reason not to create this one
+			return null;
+		}
+		String previousOwner = membership.previousOwner(description);
+		if (previousOwner == null || orderStorageService.exists(description)) {
+			return null;
+		}
+		Order order;
+		try {
+			order = transport.find(previousOwner, description);
+		} catch (RuntimeException e) {
+			return e;
+		}
+		if (order == null) {
+			return null;
+		}
+		transfer(Collections.singletonList(order));
+		return new OrderAlreadyExistsException();
+	}
+
+	/**
+	 * @param descriptions
+	 * @param ids Identifiers of the orders of the descriptions, null to look them up by description
+	 * @param discount
+	 * @return Outcome of {@link AmazonDeliveryService#addDiscounts(List, Discount)}, orders not stored fail
+	 */
+	public BatchResult addDiscounts(List<String> descriptions, List<Long> ids, Discount discount) {
+		return stored(descriptions, ids, (orders, indexes) -> amazonDeliveryService.addDiscounts(orders, discount));
+	}
+
+	/**
+	 * @param descriptions
+	 * @param ids Identifiers of the orders of the descriptions, null to look them up by description
+	 * @param sendDate
+	 * @param idempotencyKeys Keys of the descriptions, null for none
+	 * @return Outcome of {@link AmazonDeliveryService#markSentAll(List, Date)}, or of
+	 *         {@link AmazonDeliveryService#markSent(Order, Date, String)} per order with keys; orders not
+	 *         stored fail
+	 */
+	public BatchResult markSentAll(List<String> descriptions, List<Long> ids, Date sendDate,
+			List<String> idempotencyKeys) {
+		if (idempotencyKeys == null) {
+			return stored(descriptions, ids, (orders, indexes) -> amazonDeliveryService.markSentAll(orders, sendDate));
+		}
+		checkAligned(descriptions, idempotencyKeys, "idempotency keys");
+		return stored(descriptions, ids, (orders, indexes) -> each(orders, indexes,
+				(order, i) -> amazonDeliveryService.markSent(order, sendDate, idempotencyKeys.get(i))));
+	}
+
+	/**
+	 * @param descriptions
+	 * @param ids Identifiers of the orders of the descriptions, null to look them up by description
+	 * @param deliverDate
+	 * @param idempotencyKeys Keys of the descriptions, null for none
+	 * @return Outcome of {@link AmazonDeliveryService#markDeliveredAll(List, Date)}, or of
+	 *         {@link AmazonDeliveryService#markDelivered(Order, Date, String)} per order with keys; orders not
+	 *         stored fail
+	 */
+	public BatchResult markDeliveredAll(List<String> descriptions, List<Long> ids, Date deliverDate,
+			List<String> idempotencyKeys) {
+		if (idempotencyKeys == null) {
+			return stored(descriptions, ids,
+					(orders, indexes) -> amazonDeliveryService.markDeliveredAll(orders, deliverDate));
+		}
+		checkAligned(descriptions, idempotencyKeys, "idempotency keys");
+		return stored(descriptions, ids, (orders, indexes) -> each(orders, indexes,
+				(order, i) -> amazonDeliveryService.markDelivered(order, deliverDate, idempotencyKeys.get(i))));
+	}
+
+	/**
+	 * @param description
+	 * @return Order stored on this node or null
+	 */
+	public Order find(String description) {
+		return amazonDeliveryService.find(description);
+	}
+
+	/**
+	 * @param id
+	 * @return Order stored on this node or null
+	 */
+	public Order findById(long id) {
+		return amazonDeliveryService.findById(id);
+	}
+
+	/**
+	 * Takes over orders from the node that owned them before. An order already stored here, left
+	 * from an earlier ring or fetched during the hand-over, is replaced when the incoming copy is
+	 * further along, see {@link #isNewer(Order, Order)}, and kept otherwise.
+	 *
+	 * @param orders
+	 * @return Orders stored or replaced
+	 */
+	public int transfer(Collection<Order> orders) {
+		Collection<Order> present = orderStorageService.storeAllIfAbsent(orders);
+		List<Order> replaced = new ArrayList<>();
+		for (Order incoming : present) {
+			Order local = find(incoming.getDescription(), incoming.getId());
+			if (local == null && uniqueDescriptions) {
+				//the description is stored under another identifier
+				local = orderStorageService.find(incoming.getDescription());
+			}
+			if (local != null && isNewer(incoming, local)) {
+				//in place, so callers holding the local order see the copy
+				local.copyStateFrom(incoming);
+				replaced.add(local);
+			}
+		}
+		if (!replaced.isEmpty()) {
+			orderStorageService.storeAll(replaced);
+		}
+		return orders.size() - present.size() + replaced.size();
+	}
+
+	/**
+	 * Orders only move forward, from {@link OrderState#CREATED} to {@link OrderState#DELIVERED},
+	 * and only gather discounts.
+	 *
+	 * @return True when the copy is further along the lifecycle than the order
+	 */
+	static boolean isNewer(Order copy, Order order) {
+		int states = copy.getState().compareTo(order.getState());
+		return states > 0 || states == 0 && copy.getDiscounts().size() > order.getDiscounts().size();
+	}
+
+	/**
+	 * @param node Node that handed over the orders it does not own
+	 * @param ringNodes Nodes of its ring
+	 */
+	public void handedOver(String node, Collection<String> ringNodes) {
+		membership.handedOver(node, ringNodes);
+	}
+
+	/**
+	 * Hands the stored orders this node no longer owns over to their owners, in batches, and
+	 * forgets them, then tells the other nodes it is done with them. Orders that cannot be handed
+	 * over stay here for the next rebalance.
+	 *
+	 * @return Orders handed over
+	 */
+	public int rebalance() {
+		Set<String> ringNodes = membership.getRing().getNodes();
+		Set<String> failed = new HashSet<>();
+		Map<String, List<Order>> moving = new LinkedHashMap<>();
+		for (OrderState state : OrderState.values()) {
+			for (Order order : orderStorageService.findByState(state)) {
+				String owner = membership.owner(order.getDescription());
+				if (!owner.equals(membership.getSelf())) {
+					moving.computeIfAbsent(owner, node -> new ArrayList<>()).add(order);
+				}
+			}
+		}
+
+		int moved = 0;
+		for (Map.Entry<String, List<Order>> entry : moving.entrySet()) {
+			List<Order> orders = entry.getValue();
+			try {
+				for (int from = 0; from < orders.size(); from += transferBatchSize) {
+					List<Order> batch = orders.subList(from, Math.min(orders.size(), from + transferBatchSize));
+					transport.transfer(entry.getKey(), batch);
+					moved += batch.size();
+				}
+				//once all are handed over, removing a description removes every order with it
+				forget(orders);
+			} catch (RuntimeException e) {
+				failed.add(entry.getKey());
+				logger.error("LocalShard - handing orders over to {} failed, kept for the next rebalance",
+						entry.getKey(), e);
+			}
+		}
+		logger.info("LocalShard - handed {} orders over to {} nodes", moved, moving.size());
+
+		for (String node : ringNodes) {
+			if (!node.equals(membership.getSelf()) && !failed.contains(node)) {
+				try {
+					transport.handedOver(node, membership.getSelf(), ringNodes);
+				} catch (RuntimeException e) {
+					logger.warn("LocalShard - telling {} the orders are handed over failed", node, e);
+				}
+			}
+		}
+		return moved;
+	}
+
+	private void forget(List<Order> orders) {
+		for (Order order : orders) {
+			orderStorageService.remove(order.getDescription());
+		}
+	}
+
+	/**
+	 * Applies the call to the items this node owns, while the ring cannot change.
+	 */
+	private <T> BatchResult owned(List<T> items, Function<T, String> description,
+			Function<List<T>, BatchResult> call) {
+		Lock lock = membership.reading();
+		lock.lock();
+		try {
+			List<Boolean> keys = new ArrayList<>(2);
+			List<List<T>> groups = new ArrayList<>(2);
+			int[] parts = ShardBatches.group(items, item -> membership.isLocal(description.apply(item)), keys, groups);
+			List<BatchResult> results = new ArrayList<>(groups.size());
+			for (int part = 0; part < groups.size(); part++) {
+				List<T> group = groups.get(part);
+				results.add(keys.get(part) ? call.apply(group) : notOwned(group, description));
+			}
+			return ShardBatches.merge(items.size(), parts, results);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private <T> BatchResult notOwned(List<T> items, Function<T, String> description) {
+		BatchResult result = new BatchResult(items.size());
+		for (T item : items) {
+			String itemDescription = description.apply(item);
+			ShardBatches.failed(result, item, new OrderException("Order " + itemDescription + " is owned by "
+					+ membership.owner(itemDescription)));
+		}
+		return result;
+	}
+
+	private static void checkAligned(List<String> descriptions, List<?> values, String name) {
+		if (values.size() != descriptions.size()) {
+			throw new IllegalArgumentException(values.size() + " " + name + " for " + descriptions.size() + " orders");
+		}
+	}
+
+	/**
+	 * Applies the transition to the orders one by one, each failing on its own.
+	 *
+	 * @param indexes Index of each order in the batch
+	 */
+	private BatchResult each(List<Order> orders, List<Integer> indexes, Transition transition) {
+		BatchResult result = new BatchResult(orders.size());
+		for (int i = 0; i < orders.size(); i++) {
+			Order order = orders.get(i);
+			try {
+				transition.apply(order, indexes.get(i));
+				result.succeeded(order);
+			} catch (OrderException | RuntimeException e) {
+				result.failed(order, e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Applies the call to the orders this node owns and stores, the others fail. Orders are looked
+	 * up by identifier, an order whose identifier is stored under another description is not found.
+	 */
+	private BatchResult stored(List<String> descriptions, List<Long> ids, StoredCall call) {
+		if (ids != null) {
+			checkAligned(descriptions, ids, "identifiers");
+		}
+		List<Integer> indexes = new ArrayList<>(descriptions.size());
+		for (int i = 0; i < descriptions.size(); i++) {
+			indexes.add(i);
+		}
+		return owned(indexes, descriptions::get, owned -> {
+			Order[] orders = new Order[owned.size()];
+			List<Integer> positions = new ArrayList<>(orders.length);
+			for (int position = 0; position < orders.length; position++) {
+				int i = owned.get(position);
+				orders[position] = find(descriptions.get(i), ids == null ? 0 : ids.get(i));
+				positions.add(position);
+			}
+			List<Boolean> keys = new ArrayList<>(2);
+			List<List<Integer>> groups = new ArrayList<>(2);
+			int[] parts = ShardBatches.group(positions, position -> orders[position] != null, keys, groups);
+			List<BatchResult> results = new ArrayList<>(groups.size());
+			for (int part = 0; part < groups.size(); part++) {
+				List<Integer> group = groups.get(part);
+				if (keys.get(part)) {
+					List<Order> found = new ArrayList<>(group.size());
+					List<Integer> foundIndexes = new ArrayList<>(group.size());
+					for (int position : group) {
+						found.add(orders[position]);
+						foundIndexes.add(owned.get(position));
+					}
+					results.add(call.apply(found, foundIndexes));
+				} else {
+					BatchResult missing = new BatchResult(group.size());
+					for (int position : group) {
+						String description = descriptions.get(owned.get(position));
+						ShardBatches.failed(missing, description,
+								new OrderException("Order " + description + " not found"));
+					}
+					results.add(missing);
+				}
+			}
+			return ShardBatches.merge(orders.length, parts, results);
+		});
+	}
+
+	/**
+	 * @param id Identifier of the order, 0 to look it up by description
+	 * @return Stored order or null
+	 */
+	private Order find(String description, long id) {
+		if (id == 0) {
+			return orderStorageService.find(description);
+		}
+		Order order = orderStorageService.findById(id);
+		return order != null && order.getDescription().equals(description) ? order : null;
+	}
+
+	@FunctionalInterface
+	private interface StoredCall {
+		/**
+		 * @param indexes Index of each order in the batch
+		 */
+		BatchResult apply(List<Order> orders, List<Integer> indexes);
+	}
+
+	@FunctionalInterface
+	private interface Transition {
+		void apply(Order order, int index) throws OrderException;
+	}
+}
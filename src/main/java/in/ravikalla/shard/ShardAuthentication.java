@@ -0,0 +1,70 @@
+package in.ravikalla.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Only lets the other nodes call the /shard endpoints: every call carries the secret shared by the
+ * nodes of the ring in the {@value #HEADER} header, calls without it are answered 401. The secret
+ * travels as it is, node URLs should be https when the network is not trusted.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ConditionalOnProperty(name = "shard.enabled", havingValue = "true")
+public class ShardAuthentication extends WebMvcConfigurerAdapter {
+
+	public static final String HEADER = "X-Shard-Secret";
+
+	private static final Logger logger = LoggerFactory.getLogger(ShardAuthentication.class);
+
+	private final byte[] secret;
+
+	@Inject
+	public ShardAuthentication(@Value("${shard.secret}") String secret) {
+		if (secret.isEmpty()) {
+			throw new IllegalArgumentException("shard.secret must be set when sharding is enabled");
+		}
+		this.secret = secret.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new HandlerInterceptorAdapter() {
+			@Override
+			public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+					throws Exception {
+				if (isAuthenticated(request.getHeader(HEADER))) {
+					return true;
+				}
+				logger.warn("ShardAuthentication - rejected {} from {}", request.getRequestURI(),
+						request.getRemoteAddr());
+				response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+				return false;
+			}
+		}).addPathPatterns("/shard/**");
+	}
+
+	/**
+	 * Compares in constant time, so the time taken does not tell how much of the secret matched.
+	 *
+	 * @param presented Secret sent with the call, null for none
+	 * @return True when it is the secret of the ring
+	 */
+	public boolean isAuthenticated(String presented) {
+		return presented != null && MessageDigest.isEqual(secret, presented.getBytes(StandardCharsets.UTF_8));
+	}
+}
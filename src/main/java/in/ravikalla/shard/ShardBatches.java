@@ -0,0 +1,115 @@
+package in.ravikalla.shard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import in.ravikalla.model.BatchResult;
+import in.ravikalla.model.BatchResult.Item;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+
+/**
+ * Splits batches into parts handled separately and merges the outcomes of the parts back into
+ * one {@link BatchResult}, in the order the items were submitted.
+ *
+ * @author - Ravi Kalla
+ */
+final class ShardBatches {
+
+	private ShardBatches() {
+	}
+
+	/**
+	 * Outcome of a batch split in parts.
+	 *
+	 * @param size Items of the batch
+	 * @param parts Part of each item, items of a part keep their order in it
+	 * @param partResults Outcome of each part, aligned with its items
+	 * @return Merged outcome
+	 */
+	static BatchResult merge(int size, int[] parts, List<BatchResult> partResults) {
+		List<List<Item>> items = new ArrayList<>(partResults.size());
+		for (BatchResult partResult : partResults) {
+			items.add(partResult.getItems());
+		}
+		int[] next = new int[partResults.size()];
+		BatchResult result = new BatchResult(size);
+		for (int i = 0; i < size; i++) {
+			int part = parts[i];
+			result.add(items.get(part).get(next[part]++));
+		}
+		return result;
+	}
+
+	/**
+	 * Groups the items by a key, keeping their order within each group.
+	 *
+	 * @param items
+	 * @param key
+	 * @param keys Filled with the key of each group
+	 * @param groups Filled with the items of each group
+	 * @return Group of each item
+	 */
+	static <T, K> int[] group(List<T> items, Function<T, K> key, List<K> keys, List<List<T>> groups) {
+		int[] parts = new int[items.size()];
+		for (int i = 0; i < parts.length; i++) {
+			K itemKey = key.apply(items.get(i));
+			int part = keys.indexOf(itemKey);
+			if (part < 0) {
+				part = keys.size();
+				keys.add(itemKey);
+				groups.add(new ArrayList<>());
+			}
+			groups.get(part).add(items.get(i));
+			parts[i] = part;
+		}
+		return parts;
+	}
+
+	/**
+	 * @param inputs Orders, order requests or descriptions of the batch
+	 * @param failure
+	 * @return Outcome of a batch whose items all failed the same way
+	 */
+	static BatchResult failed(List<?> inputs, Throwable failure) {
+		BatchResult result = new BatchResult(inputs.size());
+		for (Object input : inputs) {
+			failed(result, input, failure);
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a failed item carrying its input, an order or an order request; the order of a description is not known.
+	 */
+	static void failed(BatchResult result, Object input, Throwable failure) {
+		if (input instanceof OrderRequest) {
+			result.failed((OrderRequest) input, failure);
+		} else {
+			result.failed(input instanceof Order ? (Order) input : null, failure);
+		}
+	}
+
+	/**
+	 * Attaches the requests to the failed items of a result that lost them on the way, a forwarded
+	 * result carries no requests.
+	 *
+	 * @param requests Requests of the batch
+	 * @param forwarded Outcome of the requests, aligned with them
+	 * @return Outcome with the requests of the failed items
+	 */
+	static BatchResult withRequests(List<OrderRequest> requests, BatchResult forwarded) {
+		BatchResult result = new BatchResult(requests.size());
+		List<Item> items = forwarded.getItems();
+		for (int i = 0; i < requests.size(); i++) {
+			Item item = items.get(i);
+			if (item.isSucceeded() || item.getOrder() != null) {
+				result.add(item);
+			} else {
+				result.failed(requests.get(i), item.getFailure());
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,171 @@
+package in.ravikalla.shard;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+import javax.inject.Inject;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * This node and the ring of all nodes. Node identifiers are the base URLs the nodes are reached at.
+ * <p>
+ * Orders are changed locally only while holding {@link #reading()}, after checking that this node
+ * owns them. Changing the ring waits for those changes to finish, so once {@link #change} returns
+ * no order this node gave away is changed here anymore and it can be handed over as it is.
+ * <p>
+ * Until the nodes of the previous ring report they handed their orders over for the new ring, an
+ * order this node now owns may still be on its previous owner, see {@link #previousOwner(String)}.
+ *
+ * @author - Ravi Kalla
+ */
+@Component
+@ConditionalOnProperty(name = "shard.enabled", havingValue = "true")
+public class ShardMembership {
+
+	private final String self;
+	private final ReadWriteLock ringLock = new ReentrantReadWriteLock();
+	private volatile ConsistentHashRing ring;
+
+	//ring before the last change, null once every node of it handed its orders over
+	private volatile ConsistentHashRing previousRing;
+	private final Set<String> handingOver = ConcurrentHashMap.newKeySet();
+	//nodes of the ring each node last handed its orders over for, reported before this node changed
+	private final Map<String, Set<String>> handedOver = new ConcurrentHashMap<>();
+
+	@Inject
+	public ShardMembership(@Value("${shard.self}") String self, @Value("${shard.nodes:}") String[] nodes,
+			@Value("${shard.virtual-nodes:128}") int virtualNodes) {
+		this.self = self;
+		Set<String> members = new LinkedHashSet<>();
+		members.add(self);
+		for (String node : nodes) {
+			if (!node.trim().isEmpty()) {
+				members.add(node.trim());
+			}
+		}
+		this.ring = new ConsistentHashRing(members, virtualNodes);
+	}
+
+	/**
+	 * @param description
+	 * @return Node owning the order
+	 */
+	public String owner(String description) {
+		return ring.owner(description);
+	}
+
+	/**
+	 * @param description
+	 * @return True when this node owns the order
+	 */
+	public boolean isLocal(String description) {
+		return self.equals(ring.owner(description));
+	}
+
+	/**
+	 * @param description
+	 * @return Node that owned the order before the last ring change and may still hold it, null when
+	 *         it is this node or handed its orders over
+	 */
+	public String previousOwner(String description) {
+		ConsistentHashRing previous = previousRing;
+		if (previous == null) {
+			return null;
+		}
+		String owner = previous.owner(description);
+		return handingOver.contains(owner) ? owner : null;
+	}
+
+	/**
+	 * Records that the node handed over the orders it does not own on a ring of the given nodes.
+	 *
+	 * @param node
+	 * @param ringNodes Nodes of the ring of the node
+	 */
+	public void handedOver(String node, Collection<String> ringNodes) {
+		Lock lock = ringLock.writeLock();
+		lock.lock();
+		try {
+			Set<String> nodes = new TreeSet<>(ringNodes);
+			handedOver.put(node, nodes);
+			if (nodes.equals(ring.getNodes())) {
+				handingOver.remove(node);
+				if (handingOver.isEmpty()) {
+					previousRing = null;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Lock to hold while changing orders of this node
+	 */
+	public Lock reading() {
+		return ringLock.readLock();
+	}
+
+	/**
+	 * Replaces the ring once the local changes in progress are done.
+	 *
+	 * @param change
+	 * @return The new ring
+	 */
+	public ConsistentHashRing change(UnaryOperator<ConsistentHashRing> change) {
+		Lock lock = ringLock.writeLock();
+		lock.lock();
+		try {
+			ConsistentHashRing previous = ring;
+			ring = change.apply(previous);
+			if (ring != previous) {
+				handingOver.clear();
+				for (String node : previous.getNodes()) {
+					if (!node.equals(self) && !ring.getNodes().equals(handedOver.get(node))) {
+						handingOver.add(node);
+					}
+				}
+				previousRing = handingOver.isEmpty() ? null : previous;
+			}
+			return ring;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Nodes of the previous ring that have not handed their orders over yet
+	 */
+	public Set<String> getHandingOver() {
+		return new TreeSet<>(handingOver);
+	}
+
+	/**
+	 * Getter for property 'self'.
+	 *
+	 * @return Value for property 'self'.
+	 */
+	public String getSelf() {
+		return self;
+	}
+
+	/**
+	 * Getter for property 'ring'.
+	 *
+	 * @return Value for property 'ring'.
+	 */
+	public ConsistentHashRing getRing() {
+		return ring;
+	}
+}
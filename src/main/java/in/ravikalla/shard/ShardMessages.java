@@ -0,0 +1,411 @@
+package in.ravikalla.shard;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import in.ravikalla.codec.OrderCodec;
+import in.ravikalla.exception.OrderAlreadyExistsException;
+import in.ravikalla.exception.OrderException;
+import in.ravikalla.exception.OrderRejectedException;
+import in.ravikalla.exception.OrderRejectedException.Reason;
+import in.ravikalla.model.BatchResult;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+
+/**
+ * Binary messages exchanged between nodes. A message is a sequence of values written by a
+ * {@link Writer} and read back in the same sequence by a {@link Reader}; orders are encoded with
+ * an {@link OrderCodec} whose dictionary lives as long as the message.
+ * <p>
+ * Failures of batch items travel as their kind and message: {@link OrderAlreadyExistsException}s,
+ * {@link OrderException}s and {@link OrderRejectedException}s, with their retry-after hint, come
+ * back as such, anything else as an {@link IllegalStateException}.
+ *
+ * @author - Ravi Kalla
+ */
+public final class ShardMessages {
+
+	public static final String CONTENT_TYPE = "application/octet-stream";
+
+	private static final byte SUCCEEDED = 0;
+	private static final byte ALREADY_EXISTS = 1;
+	private static final byte ORDER_FAILURE = 2;
+	private static final byte OTHER_FAILURE = 3;
+	private static final byte INVALID = 4;
+	private static final byte REJECTED = 5;
+
+	private static final int INITIAL_ORDER_BUFFER = 256;
+
+	private ShardMessages() {
+	}
+
+	/**
+	 * Builds a message in memory.
+	 */
+	public static final class Writer {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final OrderCodec codec = new OrderCodec();
+		private ByteBuffer orderBuffer = ByteBuffer.allocate(INITIAL_ORDER_BUFFER);
+
+		public Writer writeRequests(List<OrderRequest> requests) {
+			try {
+				out.writeInt(requests.size());
+				for (OrderRequest request : requests) {
+					out.writeUTF(request.getDescription());
+					out.writeDouble(request.getBasePrice());
+					out.writeBoolean(request.isPremium());
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return this;
+		}
+
+		public Writer writeDescriptions(List<String> descriptions) {
+			try {
+				out.writeInt(descriptions.size());
+				for (String description : descriptions) {
+					out.writeUTF(description);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return this;
+		}
+
+		public Writer writeIds(List<Long> ids) {
+			try {
+				out.writeInt(ids.size());
+				for (long id : ids) {
+					out.writeLong(id);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return this;
+		}
+
+		/**
+		 * @param keys Keys, each null for none, or null for no keys at all
+		 */
+		public Writer writeIdempotencyKeys(List<String> keys) {
+			try {
+				out.writeInt(keys == null ? -1 : keys.size());
+				if (keys != null) {
+					for (String key : keys) {
+						out.writeBoolean(key != null);
+						if (key != null) {
+							out.writeUTF(key);
+						}
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return this;
+		}
+
+		public Writer writeDiscount(Discount discount) {
+			try {
+				out.writeUTF(discount.getDescription());
+				out.writeDouble(discount.getPercent());
+				out.writeBoolean(discount.isCompounding());
+				out.writeBoolean(discount.isExclusive());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return this;
+		}
+
+		public Writer writeDate(Date date) {
+			try {
+				out.writeLong(date.getTime());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return this;
+		}
+
+		public Writer writeCount(int count) {
+			try {
+				out.writeInt(count);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return this;
+		}
+
+		/**
+		 * @param order Order or null
+		 */
+		public Writer writeOrder(Order order) {
+			try {
+				out.writeBoolean(order != null);
+				if (order != null) {
+					encode(order);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return this;
+		}
+
+		public Writer writeOrders(Collection<Order> orders) {
+			writeCount(orders.size());
+			for (Order order : orders) {
+				writeOrder(order);
+			}
+			return this;
+		}
+
+		public Writer writeResult(BatchResult result) {
+			try {
+				out.writeInt(result.getItems().size());
+				for (BatchResult.Item item : result.getItems()) {
+					Throwable failure = item.getFailure();
+					if (item.isSucceeded()) {
+						out.writeByte(SUCCEEDED);
+					} else if (failure instanceof OrderAlreadyExistsException) {
+						out.writeByte(ALREADY_EXISTS);
+					} else if (failure instanceof OrderException) {
+						out.writeByte(ORDER_FAILURE);
+						out.writeUTF(String.valueOf(failure.getMessage()));
+					} else if (failure instanceof IllegalArgumentException) {
+						out.writeByte(INVALID);
+						out.writeUTF(String.valueOf(failure.getMessage()));
+					} else if (failure instanceof OrderRejectedException) {
+						out.writeByte(REJECTED);
+						out.writeByte(((OrderRejectedException) failure).getReason().ordinal());
+						out.writeLong(((OrderRejectedException) failure).getRetryAfterMillis());
+					} else {
+						out.writeByte(OTHER_FAILURE);
+						out.writeUTF(failure.getClass().getName() + ": " + failure.getMessage());
+					}
+					writeOrder(item.getOrder());
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return this;
+		}
+
+		public byte[] toByteArray() {
+			return bytes.toByteArray();
+		}
+
+		private void encode(Order order) throws IOException {
+			while (true) {
+				orderBuffer.clear();
+				try {
+					codec.encode(order, orderBuffer);
+					break;
+				} catch (BufferOverflowException e) {
+					orderBuffer = ByteBuffer.allocate(orderBuffer.capacity() * 2);
+				}
+			}
+			out.writeInt(orderBuffer.position());
+			out.write(orderBuffer.array(), 0, orderBuffer.position());
+		}
+	}
+
+	/**
+	 * Reads a message, values must be read in the sequence they were written.
+	 *
+	 * @throws IllegalArgumentException from every read when the message is malformed
+	 */
+	public static final class Reader {
+
+		private final DataInputStream in;
+		private final OrderCodec codec = new OrderCodec();
+
+		public Reader(byte[] message) {
+			this.in = new DataInputStream(new ByteArrayInputStream(message));
+		}
+
+		public List<OrderRequest> readRequests() {
+			try {
+				int size = in.readInt();
+				List<OrderRequest> requests = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					requests.add(new OrderRequest(in.readUTF(), in.readDouble(), in.readBoolean()));
+				}
+				return requests;
+			} catch (IOException e) {
+				throw malformed(e);
+			}
+		}
+
+		public List<String> readDescriptions() {
+			try {
+				int size = in.readInt();
+				List<String> descriptions = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					descriptions.add(in.readUTF());
+				}
+				return descriptions;
+			} catch (IOException e) {
+				throw malformed(e);
+			}
+		}
+
+		/**
+		 * @return Identifiers, or null when the message ends before them as the messages of nodes
+		 *         not sending identifiers do
+		 */
+		public List<Long> readIds() {
+			try {
+				if (in.available() == 0) {
+					return null;
+				}
+				int size = in.readInt();
+				List<Long> ids = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					ids.add(in.readLong());
+				}
+				return ids;
+			} catch (IOException e) {
+				throw malformed(e);
+			}
+		}
+
+		/**
+		 * @return Keys, each null for none, or null for no keys at all, also when the message ends
+		 *         before them as the messages of nodes not sending keys do
+		 */
+		public List<String> readIdempotencyKeys() {
+			try {
+				if (in.available() == 0) {
+					return null;
+				}
+				int size = in.readInt();
+				if (size < 0) {
+					return null;
+				}
+				List<String> keys = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					keys.add(in.readBoolean() ? in.readUTF() : null);
+				}
+				return keys;
+			} catch (IOException e) {
+				throw malformed(e);
+			}
+		}
+
+		public Discount readDiscount() {
+			try {
+				return new Discount(in.readUTF(), in.readDouble(), in.readBoolean(), in.readBoolean());
+			} catch (IOException e) {
+				throw malformed(e);
+			}
+		}
+
+		public Date readDate() {
+			try {
+				return new Date(in.readLong());
+			} catch (IOException e) {
+				throw malformed(e);
+			}
+		}
+
+		public int readCount() {
+			try {
+				return in.readInt();
+			} catch (IOException e) {
+				throw malformed(e);
+			}
+		}
+
+		/**
+		 * @return Order or null
+		 */
+		public Order readOrder() {
+			try {
+				if (!in.readBoolean()) {
+					return null;
+				}
+				byte[] encoded = new byte[in.readInt()];
+				in.readFully(encoded);
+				return codec.decode(ByteBuffer.wrap(encoded));
+			} catch (IOException | BufferUnderflowException e) {
+				throw malformed(e);
+			}
+		}
+
+		public List<Order> readOrders() {
+			int size = readCount();
+			List<Order> orders = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				orders.add(readOrder());
+			}
+			return orders;
+		}
+
+		public BatchResult readResult() {
+			try {
+				int size = in.readInt();
+				BatchResult result = new BatchResult(size);
+				for (int i = 0; i < size; i++) {
+					byte kind = in.readByte();
+					Throwable failure;
+					switch (kind) {
+					case SUCCEEDED:
+						failure = null;
+						break;
+					case ALREADY_EXISTS:
+						failure = new OrderAlreadyExistsException();
+						break;
+					case ORDER_FAILURE:
+						failure = new OrderException(in.readUTF());
+						break;
+					case OTHER_FAILURE:
+						failure = new IllegalStateException(in.readUTF());
+						break;
+					case INVALID:
+						failure = new IllegalArgumentException(in.readUTF());
+						break;
+					case REJECTED:
+						failure = new OrderRejectedException(reason(in.readByte()), in.readLong());
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown outcome " + kind);
+					}
+					Order order = readOrder();
+					if (failure == null) {
+						result.succeeded(order);
+					} else {
+						result.failed(order, failure);
+					}
+				}
+				return result;
+			} catch (IOException e) {
+				throw malformed(e);
+			}
+		}
+
+		private static Reason reason(byte ordinal) {
+			Reason[] reasons = Reason.values();
+			if (ordinal < 0 || ordinal >= reasons.length) {
+				throw new IllegalArgumentException("Unknown rejection " + ordinal);
+			}
+			return reasons[ordinal];
+		}
+
+		private static IllegalArgumentException malformed(Exception e) {
+			return new IllegalArgumentException("Malformed shard message", e);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package in.ravikalla.shard;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import in.ravikalla.model.BatchResult;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+
+/**
+ * Calls to the {@link LocalShard} of another node. Operations are batched, single orders are
+ * batches of one, and each item fails on its own as in {@link BatchResult}. Orders are sent as
+ * their description, which the owner is found by, and their identifier, which the owner looks
+ * them up by when descriptions are not unique. Orders returned are copies, changing them does not
+ * change the orders of the other node.
+ * <p>
+ * A failure to reach the node is thrown as an unchecked exception.
+ *
+ * @author - Ravi Kalla
+ */
+public interface ShardTransport {
+
+	/**
+	 * @param node
+	 * @param requests
+	 * @return Outcome of {@link LocalShard#initOrders(List)} on the node
+	 */
+	BatchResult initOrders(String node, List<OrderRequest> requests);
+
+	/**
+	 * @param node
+	 * @param descriptions
+	 * @param ids Identifiers of the orders of the descriptions
+	 * @param discount
+	 * @return Outcome of {@link LocalShard#addDiscounts(List, List, Discount)} on the node
+	 */
+	BatchResult addDiscounts(String node, List<String> descriptions, List<Long> ids, Discount discount);
+
+	/**
+	 * @param node
+	 * @param descriptions
+	 * @param ids Identifiers of the orders of the descriptions
+	 * @param sendDate
+	 * @param idempotencyKeys Keys of the descriptions, null for none
+	 * @return Outcome of {@link LocalShard#markSentAll(List, List, Date, List)} on the node
+	 */
+	BatchResult markSentAll(String node, List<String> descriptions, List<Long> ids, Date sendDate,
+			List<String> idempotencyKeys);
+
+	/**
+	 * @param node
+	 * @param descriptions
+	 * @param ids Identifiers of the orders of the descriptions
+	 * @param deliverDate
+	 * @param idempotencyKeys Keys of the descriptions, null for none
+	 * @return Outcome of {@link LocalShard#markDeliveredAll(List, List, Date, List)} on the node
+	 */
+	BatchResult markDeliveredAll(String node, List<String> descriptions, List<Long> ids, Date deliverDate,
+			List<String> idempotencyKeys);
+
+	/**
+	 * @param node
+	 * @param description
+	 * @return Order stored on the node or null
+	 */
+	Order find(String node, String description);
+
+	/**
+	 * @param node
+	 * @param id
+	 * @return Order stored on the node or null
+	 */
+	Order findById(String node, long id);
+
+	/**
+	 * Hands orders over to the node that now owns them.
+	 *
+	 * @param node
+	 * @param orders
+	 * @return Orders the node stored, or replaced when the copy it had was behind
+	 */
+	int transfer(String node, Collection<Order> orders);
+
+	/**
+	 * Tells the node that this node handed over all the orders it does not own.
+	 *
+	 * @param node
+	 * @param from This node
+	 * @param ringNodes Nodes of the ring of this node
+	 */
+	void handedOver(String node, String from, Collection<String> ringNodes);
+}
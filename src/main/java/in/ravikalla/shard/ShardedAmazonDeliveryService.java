@@ -0,0 +1,454 @@
+package in.ravikalla.shard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import in.ravikalla.exception.OrderAlreadyExistsException;
+import in.ravikalla.exception.OrderException;
+import in.ravikalla.model.BatchResult;
+import in.ravikalla.model.BatchResult.Item;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+import in.ravikalla.service.AmazonDeliveryService;
+
+/**
+ * Routes every order to the node owning its description on the {@link ConsistentHashRing}. Orders
+ * owned here go to the local {@link AmazonDeliveryService}, the others are forwarded through the
+ * {@link ShardTransport} and the outcome is copied into the order passed in, so callers see the
+ * same order changes as without sharding. Batches are split by owner, one call per node.
+ * <p>
+ * Nodes are added and removed through JMX on every node; each node then hands the orders it no
+ * longer owns over to their new owners, only the orders whose owner changed move. Until then new
+ * orders are checked against their previous owner, see {@link LocalShard#initOwned(List)}.
+ *
+ * @author - Ravi Kalla
+ */
+@Service
+@Primary
+@Qualifier("ShardedAmazonDeliveryService")
+@ConditionalOnProperty(name = "shard.enabled", havingValue = "true")
+@ManagedResource(objectName = "in.ravikalla:type=Shard", description = "Order ownership of the nodes")
+public class ShardedAmazonDeliveryService implements AmazonDeliveryService {
+
+	private static final Logger logger = LoggerFactory.getLogger(ShardedAmazonDeliveryService.class);
+
+	private final AmazonDeliveryService delegate;
+	private final ShardMembership membership;
+	private final ShardTransport transport;
+	private final LocalShard localShard;
+
+	private final LongAdder localOrders = new LongAdder();
+	private final LongAdder forwardedOrders = new LongAdder();
+	private final LongAdder forwardFailures = new LongAdder();
+
+	@Inject
+	public ShardedAmazonDeliveryService(@Qualifier("AmazonDeliveryService") AmazonDeliveryService delegate,
+			ShardMembership membership, ShardTransport transport, LocalShard localShard) {
+		this.delegate = delegate;
+		this.membership = membership;
+		this.transport = transport;
+		this.localShard = localShard;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Order initOrder(String description, double basePrice, boolean premiumCustomer)
+			throws OrderAlreadyExistsException {
+		Lock lock = membership.reading();
+		lock.lock();
+		try {
+			if (membership.isLocal(description)) {
+				localOrders.increment();
+				localShard.checkHandedOver(description);
+				return delegate.initOrder(description, basePrice, premiumCustomer);
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		Item item = forward(description, node -> transport.initOrders(node,
+				Collections.singletonList(new OrderRequest(description, basePrice, premiumCustomer))));
+		if (item.getFailure() instanceof OrderAlreadyExistsException) {
+			throw (OrderAlreadyExistsException) item.getFailure();
+		}
+		throwIfFailed(item);
+		return item.getOrder();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Order find(String description) {
+		if (membership.isLocal(description)) {
+			localOrders.increment();
+			return delegate.find(description);
+		}
+		forwardedOrders.increment();
+		try {
+			return transport.find(membership.owner(description), description);
+		} catch (RuntimeException e) {
+			forwardFailures.increment();
+			throw e;
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The owner of an identifier is not known, the nodes are asked one after the
+	 * other, those of the previous ring still handing orders over included.
+	 */
+	public Order findById(long id) {
+		Order order = delegate.findById(id);
+		if (order != null) {
+			localOrders.increment();
+			return order;
+		}
+		Set<String> nodes = new LinkedHashSet<>(membership.getRing().getNodes());
+		nodes.addAll(membership.getHandingOver());
+		nodes.remove(membership.getSelf());
+		RuntimeException unreachable = null;
+		for (String node : nodes) {
+			forwardedOrders.increment();
+			try {
+				order = transport.findById(node, id);
+			} catch (RuntimeException e) {
+				forwardFailures.increment();
+				unreachable = e;
+				continue;
+			}
+			if (order != null) {
+				return order;
+			}
+		}
+		//the order may be on the node that could not be asked
+		if (unreachable != null) {
+			throw unreachable;
+		}
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void addDiscount(Order order, Discount discount) {
+		Lock lock = membership.reading();
+		lock.lock();
+		try {
+			if (membership.isLocal(order.getDescription())) {
+				localOrders.increment();
+				delegate.addDiscount(order, discount);
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		Item item = forward(order.getDescription(), node -> transport.addDiscounts(node,
+				Collections.singletonList(order.getDescription()), Collections.singletonList(order.getId()), discount));
+		throwIfFailed(item);
+		order.copyStateFrom(item.getOrder());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void markSent(Order order, Date sendDate) throws OrderException {
+		markSent(order, sendDate, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void markSent(Order order, Date sendDate, String idempotencyKey) throws OrderException {
+		Lock lock = membership.reading();
+		lock.lock();
+		try {
+			if (membership.isLocal(order.getDescription())) {
+				localOrders.increment();
+				delegate.markSent(order, sendDate, idempotencyKey);
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		Item item = forward(order.getDescription(), node -> transport.markSentAll(node,
+				Collections.singletonList(order.getDescription()), Collections.singletonList(order.getId()), sendDate,
+				Collections.singletonList(idempotencyKey)));
+		throwIfOrderFailed(item);
+		order.copyStateFrom(item.getOrder());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void markDelivered(Order order, Date deliverDate) throws OrderException {
+		markDelivered(order, deliverDate, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void markDelivered(Order order, Date deliverDate, String idempotencyKey) throws OrderException {
+		Lock lock = membership.reading();
+		lock.lock();
+		try {
+			if (membership.isLocal(order.getDescription())) {
+				localOrders.increment();
+				delegate.markDelivered(order, deliverDate, idempotencyKey);
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		Item item = forward(order.getDescription(), node -> transport.markDeliveredAll(node,
+				Collections.singletonList(order.getDescription()), Collections.singletonList(order.getId()), deliverDate,
+				Collections.singletonList(idempotencyKey)));
+		throwIfOrderFailed(item);
+		order.copyStateFrom(item.getOrder());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BatchResult initOrders(List<OrderRequest> requests) {
+		return route(requests, OrderRequest::getDescription, localShard::initOwned,
+				(node, forwarded) -> ShardBatches.withRequests(forwarded, transport.initOrders(node, forwarded)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BatchResult addDiscounts(List<Order> orders, Discount discount) {
+		return route(orders, Order::getDescription, owned -> delegate.addDiscounts(owned, discount),
+				(node, forwarded) -> adopt(forwarded,
+						transport.addDiscounts(node, descriptions(forwarded), ids(forwarded), discount)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BatchResult markSentAll(List<Order> orders, Date sendDate) {
+		return route(orders, Order::getDescription, owned -> delegate.markSentAll(owned, sendDate),
+				(node, forwarded) -> adopt(forwarded,
+						transport.markSentAll(node, descriptions(forwarded), ids(forwarded), sendDate, null)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BatchResult markDeliveredAll(List<Order> orders, Date deliverDate) {
+		return route(orders, Order::getDescription, owned -> delegate.markDeliveredAll(owned, deliverDate),
+				(node, forwarded) -> adopt(forwarded,
+						transport.markDeliveredAll(node, descriptions(forwarded), ids(forwarded), deliverDate, null)));
+	}
+
+	/**
+	 * Adds the node to the ring of this node and hands over the orders it now owns. To be called
+	 * on every node, the new one included.
+	 *
+	 * @param node Base URL of the node
+	 * @return Orders handed over
+	 */
+	@ManagedOperation(description = "Adds a node to the ring and hands over the orders it now owns")
+	public int addNode(String node) {
+		membership.change(ring -> ring.withNode(node));
+		logger.info("Shard - added node {}", node);
+		return localShard.rebalance();
+	}
+
+	/**
+	 * Removes the node from the ring of this node and hands over the orders other nodes now own.
+	 * To be called on every node, the node removed included, before it stops.
+	 *
+	 * @param node Base URL of the node
+	 * @return Orders handed over
+	 */
+	@ManagedOperation(description = "Removes a node from the ring and hands over the orders other nodes now own")
+	public int removeNode(String node) {
+		membership.change(ring -> ring.withoutNode(node));
+		logger.info("Shard - removed node {}", node);
+		return localShard.rebalance();
+	}
+
+	/**
+	 * @return Orders handed over
+	 */
+	@ManagedOperation(description = "Hands over the orders this node does not own, after failed hand-overs")
+	public int rebalance() {
+		return localShard.rebalance();
+	}
+
+	/**
+	 * Stops checking new orders against a node of the previous ring, for a node that is gone
+	 * without handing its orders over.
+	 *
+	 * @param node Base URL of the node
+	 */
+	@ManagedOperation(description = "Stops waiting for a node of the previous ring to hand its orders over")
+	public void handedOver(String node) {
+		membership.handedOver(node, membership.getRing().getNodes());
+		logger.info("Shard - {} marked as handed over", node);
+	}
+
+	@ManagedAttribute(description = "Nodes of the previous ring that have not handed their orders over yet")
+	public String[] getHandingOver() {
+		return membership.getHandingOver().toArray(new String[0]);
+	}
+
+	@ManagedAttribute(description = "Nodes of the ring")
+	public String[] getNodes() {
+		return membership.getRing().getNodes().toArray(new String[0]);
+	}
+
+	@ManagedAttribute(description = "This node")
+	public String getSelf() {
+		return membership.getSelf();
+	}
+
+	@ManagedAttribute(description = "Orders handled by this node")
+	public long getLocalOrders() {
+		return localOrders.sum();
+	}
+
+	@ManagedAttribute(description = "Orders forwarded to their owner")
+	public long getForwardedOrders() {
+		return forwardedOrders.sum();
+	}
+
+	@ManagedAttribute(description = "Forwarded calls that could not reach the owner")
+	public long getForwardFailures() {
+		return forwardFailures.sum();
+	}
+
+	/**
+	 * Runs the items owned here locally while the ring cannot change and forwards the others, one
+	 * call per owner. Items of an owner that cannot be reached fail with the transport failure.
+	 */
+	private <T> BatchResult route(List<T> items, Function<T, String> description,
+			Function<List<T>, BatchResult> local, BiFunction<String, List<T>, BatchResult> remote) {
+		List<String> owners = new ArrayList<>();
+		List<List<T>> groups = new ArrayList<>();
+		List<BatchResult> results = new ArrayList<>();
+		int[] parts;
+
+		Lock lock = membership.reading();
+		lock.lock();
+		try {
+			parts = ShardBatches.group(items, item -> membership.owner(description.apply(item)), owners, groups);
+			for (int part = 0; part < groups.size(); part++) {
+				boolean owned = owners.get(part).equals(membership.getSelf());
+				if (owned) {
+					localOrders.add(groups.get(part).size());
+				}
+				results.add(owned ? local.apply(groups.get(part)) : null);
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		for (int part = 0; part < groups.size(); part++) {
+			if (results.get(part) == null) {
+				List<T> group = groups.get(part);
+				forwardedOrders.add(group.size());
+				try {
+					results.set(part, remote.apply(owners.get(part), group));
+				} catch (RuntimeException e) {
+					forwardFailures.increment();
+					logger.error("Shard - forwarding {} orders to {} failed", group.size(), owners.get(part), e);
+					results.set(part, ShardBatches.failed(group, e));
+				}
+			}
+		}
+		return ShardBatches.merge(items.size(), parts, results);
+	}
+
+	private Item forward(String description, Function<String, BatchResult> call) {
+		forwardedOrders.increment();
+		try {
+			return call.apply(membership.owner(description)).getItems().get(0);
+		} catch (RuntimeException e) {
+			forwardFailures.increment();
+			throw e;
+		}
+	}
+
+	/**
+	 * Copies the outcome of forwarded orders into the orders passed in.
+	 */
+	private static BatchResult adopt(List<Order> orders, BatchResult forwarded) {
+		BatchResult result = new BatchResult(orders.size());
+		List<Item> items = forwarded.getItems();
+		for (int i = 0; i < orders.size(); i++) {
+			Item item = items.get(i);
+			Order order = orders.get(i);
+			if (item.getOrder() != null) {
+				order.copyStateFrom(item.getOrder());
+			}
+			if (item.isSucceeded()) {
+				result.succeeded(order);
+			} else {
+				result.failed(order, item.getFailure());
+			}
+		}
+		return result;
+	}
+
+	private static List<String> descriptions(List<Order> orders) {
+		List<String> descriptions = new ArrayList<>(orders.size());
+		for (Order order : orders) {
+			descriptions.add(order.getDescription());
+		}
+		return descriptions;
+	}
+
+	private static List<Long> ids(List<Order> orders) {
+		List<Long> ids = new ArrayList<>(orders.size());
+		for (Order order : orders) {
+			ids.add(order.getId());
+		}
+		return ids;
+	}
+
+	private static void throwIfOrderFailed(Item item) throws OrderException {
+		if (item.getFailure() instanceof OrderException) {
+			throw (OrderException) item.getFailure();
+		}
+		throwIfFailed(item);
+	}
+
+	/**
+	 * Failures the calls do not declare are thrown unchecked.
+	 */
+	private static void throwIfFailed(Item item) {
+		Throwable failure = item.getFailure();
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure != null) {
+			throw new IllegalStateException(failure.getMessage(), failure);
+		}
+	}
+}
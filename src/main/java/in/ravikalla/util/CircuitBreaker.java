@@ -0,0 +1,78 @@
+package in.ravikalla.util;
+
+import java.time.Clock;
+
+/**
+ * Stops calls to a failing dependency for a while. After {@code failureThreshold} consecutive
+ * failures the breaker opens and refuses calls for {@code openMillis}; it then lets a single trial
+ * call through, which closes it again on success or reopens it on failure.
+ *
+ * @author - Ravi Kalla
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	private final Clock clock;
+	private final int failureThreshold;
+	private final long openMillis;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private long opened;
+
+	public CircuitBreaker(Clock clock, int failureThreshold, long openMillis) {
+		if (failureThreshold <= 0) {
+			throw new IllegalArgumentException("failure threshold must be positive");
+		}
+		this.clock = clock;
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * @return True when a call may go through, the trial call once the open time is over
+	 */
+	public synchronized boolean allowRequest() {
+		if (state == State.OPEN && clock.millis() - openedAt >= openMillis) {
+			state = State.HALF_OPEN;
+			return true;
+		}
+		return state == State.CLOSED;
+	}
+
+	public synchronized void onSuccess() {
+		consecutiveFailures = 0;
+		state = State.CLOSED;
+	}
+
+	public synchronized void onFailure() {
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			state = State.OPEN;
+			openedAt = clock.millis();
+			opened++;
+		}
+	}
+
+	/**
+	 * Getter for property 'state'.
+	 *
+	 * @return Value for property 'state'.
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return Number of times the breaker opened
+	 */
+	public synchronized long getOpened() {
+		return opened;
+	}
+}
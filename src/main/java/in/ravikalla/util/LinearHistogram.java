@@ -0,0 +1,67 @@
+package in.ravikalla.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-width histogram over the range [min, max]. Values outside the range are clamped to the edge buckets.
+ * Recording is a single atomic increment and never allocates.
+ *
+ * @author - Ravi Kalla
+ */
+public class LinearHistogram {
+
+	private final long min;
+	private final long max;
+	private final AtomicLongArray counts;
+
+	public LinearHistogram(long min, long max) {
+		if (max < min || max - min >= Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Unsupported histogram range [" + min + ", " + max + "]");
+		}
+		this.min = min;
+		this.max = max;
+		this.counts = new AtomicLongArray((int) (max - min + 1));
+	}
+
+	/**
+	 * @param value
+	 */
+	public void record(long value) {
+		long clamped = Math.max(min, Math.min(max, value));
+		counts.incrementAndGet((int) (clamped - min));
+	}
+
+	/**
+	 * @return Number of recorded values
+	 */
+	public long count() {
+		long count = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * @param percentile Value between 0 and 100
+	 * @return Smallest recorded value such that the given percentage of values is lower or equal, 0 if empty
+	 */
+	public long percentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100 : " + percentile);
+		}
+		long total = count();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return min + i;
+			}
+		}
+		return max;
+	}
+}
@@ -0,0 +1,172 @@
+package in.ravikalla.util;
+
+/**
+ * Map from primitive long keys to values, with open addressing and linear probing in two parallel
+ * arrays, so lookups neither box the key nor follow a node per entry. Removals shift the following
+ * entries back instead of leaving tombstones. Key 0 marks empty slots and cannot be used.
+ * <p>
+ * Not thread-safe. {@link #get(long)} never fails while another thread writes, it may then
+ * answer wrongly, which lets it run under an optimistic read that is validated afterwards.
+ *
+ * @param <V> Type of the values
+ * @author - Ravi Kalla
+ */
+public class LongIndex<V> {
+
+	private static final long EMPTY = 0;
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+
+	/**
+	 * @param expectedSize Number of entries the index is sized for before it grows
+	 */
+	public LongIndex(int expectedSize) {
+		int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize * 2 - 1)) << 1);
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+	}
+
+	/**
+	 * @param key
+	 * @return Value of the key or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		long[] keys = this.keys;
+		Object[] values = this.values;
+		if (keys.length != values.length) {
+			//arrays of two generations, only seen by optimistic readers
+			return null;
+		}
+		int mask = keys.length - 1;
+		int slot = slot(key, mask);
+		for (int probes = 0; probes < keys.length; probes++, slot = (slot + 1) & mask) {
+			long candidate = keys[slot];
+			if (candidate == key) {
+				return (V) values[slot];
+			}
+			if (candidate == EMPTY) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param key Not 0
+	 * @param value Not null
+	 * @return Previous value of the key or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (key == EMPTY) {
+			throw new IllegalArgumentException("Key 0 is reserved");
+		}
+		if (value == null) {
+			throw new IllegalArgumentException("Null value for key " + key);
+		}
+		int mask = keys.length - 1;
+		int slot = slot(key, mask);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if ((size + 1) * 2 > keys.length) {
+			grow();
+			return put(key, value);
+		}
+		values[slot] = value;
+		keys[slot] = key;
+		size++;
+		return null;
+	}
+
+	/**
+	 * @param key
+	 * @return Value removed or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		if (key == EMPTY) {
+			return null;
+		}
+		int mask = keys.length - 1;
+		int slot = slot(key, mask);
+		while (keys[slot] != key) {
+			if (keys[slot] == EMPTY) {
+				return null;
+			}
+			slot = (slot + 1) & mask;
+		}
+		V removed = (V) values[slot];
+
+		//shift back the entries of the run that would no longer be found past the hole
+		int hole = slot;
+		for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+			int home = slot(keys[next], mask);
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+		}
+		keys[hole] = EMPTY;
+		values[hole] = null;
+		size--;
+		return removed;
+	}
+
+	/**
+	 * Getter for property 'size'.
+	 *
+	 * @return Value for property 'size'.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @param key
+	 * @return Hash of the key spread over all bits, so sequential keys do not cluster
+	 */
+	public static long mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	private static int slot(long key, int mask) {
+		return (int) mix(key) & mask;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		long[] newKeys = new long[oldKeys.length * 2];
+		Object[] newValues = new Object[oldKeys.length * 2];
+		int mask = newKeys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = slot(oldKeys[i], mask);
+				while (newKeys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				newKeys[slot] = oldKeys[i];
+				newValues[slot] = oldValues[i];
+			}
+		}
+		//values first, an optimistic reader seeing the new keys with the old values gives up
+		values = newValues;
+		keys = newKeys;
+	}
+}
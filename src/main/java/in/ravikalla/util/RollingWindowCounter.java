@@ -0,0 +1,70 @@
+package in.ravikalla.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sum of the values added during the last {@code buckets * bucketMillis} milliseconds.
+ * Values land in a ring of time buckets, so adding is a couple of atomic operations and never allocates.
+ * A bucket being recycled at rollover may lose the values added concurrently with its reset.
+ *
+ * @author - Ravi Kalla
+ */
+public class RollingWindowCounter {
+
+	private final long bucketMillis;
+	private final int buckets;
+	private final AtomicLongArray sums;
+	private final AtomicLongArray epochs;
+
+	public RollingWindowCounter(long bucketMillis, int buckets) {
+		if (bucketMillis <= 0 || buckets <= 0) {
+			throw new IllegalArgumentException("bucketMillis and buckets must be positive");
+		}
+		this.bucketMillis = bucketMillis;
+		this.buckets = buckets;
+		this.sums = new AtomicLongArray(buckets);
+		this.epochs = new AtomicLongArray(buckets);
+		for (int i = 0; i < buckets; i++) {
+			epochs.set(i, Long.MIN_VALUE);
+		}
+	}
+
+	/**
+	 * @param nowMillis
+	 * @param value
+	 */
+	public void add(long nowMillis, long value) {
+		final long epoch = Math.floorDiv(nowMillis, bucketMillis);
+		final int slot = (int) Math.floorMod(epoch, (long) buckets);
+
+		long current = epochs.get(slot);
+		while (current != epoch) {
+			if (current > epoch) {
+				//value older than the window kept by this slot
+				return;
+			}
+			if (epochs.compareAndSet(slot, current, epoch)) {
+				sums.set(slot, 0);
+				break;
+			}
+			current = epochs.get(slot);
+		}
+		sums.addAndGet(slot, value);
+	}
+
+	/**
+	 * @param nowMillis
+	 * @return Sum of the values added within the window ending at nowMillis
+	 */
+	public long sum(long nowMillis) {
+		final long epoch = Math.floorDiv(nowMillis, bucketMillis);
+		long sum = 0;
+		for (int slot = 0; slot < buckets; slot++) {
+			long slotEpoch = epochs.get(slot);
+			if (slotEpoch <= epoch && slotEpoch > epoch - buckets) {
+				sum += sums.get(slot);
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,92 @@
+package in.ravikalla.util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates unique, time-ordered 64-bit identifiers without coordinating with other nodes:
+ * {@value #TIMESTAMP_BITS} bits of milliseconds since {@link #EPOCH}, {@value #NODE_BITS} bits of
+ * node and {@value #SEQUENCE_BITS} bits of sequence within the millisecond. Nodes only have to be
+ * given distinct node numbers.
+ * <p>
+ * Identifiers are taken with a compare-and-set on the last one handed out, never below it: when
+ * the sequence of a millisecond runs out or the clock goes back, the following identifiers are
+ * borrowed from the next milliseconds instead of waiting for the clock. Identifiers are never 0.
+ *
+ * @author - Ravi Kalla
+ */
+public class SnowflakeIdGenerator {
+
+	public static final Instant EPOCH = Instant.parse("2026-01-01T00:00:00Z");
+
+	static final int TIMESTAMP_BITS = 41;
+	static final int NODE_BITS = 10;
+	static final int SEQUENCE_BITS = 12;
+
+	public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+	private final Clock clock;
+	private final long epochMillis = EPOCH.toEpochMilli();
+	private final long node;
+
+	//Milliseconds since the epoch and sequence of the last identifier, node bits left out
+	private final AtomicLong last = new AtomicLong();
+
+	/**
+	 * @param clock
+	 * @param node Number of this node, 0 to {@link #MAX_NODE}
+	 */
+	public SnowflakeIdGenerator(Clock clock, int node) {
+		if (node < 0 || node > MAX_NODE) {
+			throw new IllegalArgumentException("Node " + node + " is not between 0 and " + MAX_NODE);
+		}
+		this.clock = clock;
+		this.node = node;
+	}
+
+	/**
+	 * @return A new identifier
+	 */
+	public long nextId() {
+		long now = Math.max(0, clock.millis() - epochMillis) << SEQUENCE_BITS;
+		long previous;
+		long next;
+		do {
+			previous = last.get();
+			next = Math.max(previous + 1, now);
+		} while (!last.compareAndSet(previous, next));
+		return compose(next >>> SEQUENCE_BITS, node, next & SEQUENCE_MASK);
+	}
+
+	/**
+	 * @param id
+	 * @return Node number the identifier was generated on
+	 */
+	public static int nodeOf(long id) {
+		return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE);
+	}
+
+	/**
+	 * @param id
+	 * @return When the identifier was generated, up to the identifiers borrowed ahead of the clock
+	 */
+	public static Instant timestampOf(long id) {
+		return EPOCH.plusMillis(id >>> (NODE_BITS + SEQUENCE_BITS));
+	}
+
+	private static long compose(long millis, long node, long sequence) {
+		return millis << (NODE_BITS + SEQUENCE_BITS) | node << SEQUENCE_BITS | sequence;
+	}
+
+	/**
+	 * Getter for property 'node'.
+	 *
+	 * @return Value for property 'node'.
+	 */
+	public int getNode() {
+		return (int) node;
+	}
+}
@@ -0,0 +1,75 @@
+package in.ravikalla.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed table of locks shared by keys with the same hash stripe. Threads working on the same key
+ * always serialize, while unrelated keys rarely contend and no lock is ever allocated per key.
+ *
+ * @author - Ravi Kalla
+ */
+public class StripedLock {
+
+	private final Lock[] locks;
+
+	/**
+	 * @param stripes Number of locks, rounded up to a power of two
+	 */
+	public StripedLock(int stripes) {
+		if (stripes <= 0 || stripes > 1 << 30) {
+			throw new IllegalArgumentException("Unsupported number of stripes " + stripes);
+		}
+		int size = Integer.highestOneBit(stripes - 1) << 1;
+		this.locks = new Lock[Math.max(1, size)];
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return Lock guarding the key
+	 */
+	public Lock get(Object key) {
+		return locks[stripe(key)];
+	}
+
+	/**
+	 * Threads holding several of the locks at once must take them in the order given here, so that
+	 * they cannot deadlock.
+	 *
+	 * @param keys
+	 * @return Locks guarding the keys, each once, in stripe order
+	 */
+	public List<Lock> getAll(Collection<?> keys) {
+		BitSet stripes = new BitSet(locks.length);
+		for (Object key : keys) {
+			stripes.set(stripe(key));
+		}
+		List<Lock> guarding = new ArrayList<>(stripes.cardinality());
+		for (int stripe = stripes.nextSetBit(0); stripe >= 0; stripe = stripes.nextSetBit(stripe + 1)) {
+			guarding.add(locks[stripe]);
+		}
+		return guarding;
+	}
+
+	/**
+	 * Getter for property 'stripes'.
+	 *
+	 * @return Value for property 'stripes'.
+	 */
+	public int getStripes() {
+		return locks.length;
+	}
+
+	private int stripe(Object key) {
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		return hash & (locks.length - 1);
+	}
+}
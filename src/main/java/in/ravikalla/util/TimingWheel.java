@@ -0,0 +1,85 @@
+package in.ravikalla.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Expires items after a number of ticks. Items land in the slot of a ring the cursor reaches
+ * after that many ticks, so adding is a lock-free queue offer and each tick only looks at the
+ * items of one slot, however many are waiting. The caller ticks the wheel at its own pace.
+ * <p>
+ * An item expires up to a tick early, or a turn late when it is added as its slot expires.
+ *
+ * @author - Ravi Kalla
+ */
+public class TimingWheel<T> {
+
+	private final Queue<T>[] slots;
+	private volatile int cursor;
+
+	/**
+	 * @param slots Longest delay in ticks, at least 1
+	 */
+	@SuppressWarnings("unchecked")
+	public TimingWheel(int slots) {
+		if (slots < 1) {
+			throw new IllegalArgumentException("slots must be positive");
+		}
+		this.slots = new Queue[slots];
+		for (int i = 0; i < slots; i++) {
+			this.slots[i] = new ConcurrentLinkedQueue<>();
+		}
+	}
+
+	/**
+	 * @param item
+	 * @param ticks Ticks before the item expires, between 1 and the number of slots
+	 */
+	public void add(T item, int ticks) {
+		if (ticks < 1 || ticks > slots.length) {
+			throw new IllegalArgumentException("ticks " + ticks + " not between 1 and " + slots.length);
+		}
+		slots[(cursor + ticks) % slots.length].offer(item);
+	}
+
+	/**
+	 * Moves the cursor one slot on and expires the items of that slot.
+	 *
+	 * @param expired Called with each expired item
+	 * @return Number of items expired
+	 */
+	public synchronized int tick(Consumer<T> expired) {
+		int next = (cursor + 1) % slots.length;
+		//drained before the cursor moves on, items added meanwhile for a whole turn land in the previous slot
+		int drained = drain(slots[next], expired);
+		cursor = next;
+		return drained;
+	}
+
+	/**
+	 * Expires the items closest to expiry ahead of time, without moving the cursor.
+	 *
+	 * @param expired Called with each expired item
+	 * @return Number of items expired, 0 when the wheel is empty
+	 */
+	public synchronized int expireNext(Consumer<T> expired) {
+		for (int i = 1; i <= slots.length; i++) {
+			int drained = drain(slots[(cursor + i) % slots.length], expired);
+			if (drained > 0) {
+				return drained;
+			}
+		}
+		return 0;
+	}
+
+	private static <T> int drain(Queue<T> slot, Consumer<T> expired) {
+		int drained = 0;
+		T item;
+		while ((item = slot.poll()) != null) {
+			expired.accept(item);
+			drained++;
+		}
+		return drained;
+	}
+}
@@ -0,0 +1,207 @@
+package in.ravikalla.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import in.ravikalla.exception.OrderRejectedException;
+import in.ravikalla.exception.OrderRejectedException.Reason;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class AdmissionControlTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private Clock clock;
+
+	@Before
+	public void setUp() {
+		clock = Mockito.mock(Clock.class);
+		Mockito.when(clock.millis()).thenReturn(1_000_000L);
+	}
+
+	@Test
+	public void tokenBucketShouldAllowBurstThenTellWaitForNextToken() {
+		//Given
+		TokenBucket bucket = new TokenBucket(clock, 100, 3);
+
+		//When - then
+		assertEquals(0, bucket.tryAcquire());
+		assertEquals(0, bucket.tryAcquire());
+		assertEquals(0, bucket.tryAcquire());
+		assertEquals(10, bucket.tryAcquire());
+
+		//When - half a token later
+		Mockito.when(clock.millis()).thenReturn(1_000_005L);
+
+		//Then
+		assertEquals(5, bucket.tryAcquire());
+		Mockito.when(clock.millis()).thenReturn(1_000_010L);
+		assertEquals(0, bucket.tryAcquire());
+		Mockito.when(clock.millis()).thenReturn(2_000_000L);
+		assertEquals(3.0, bucket.getTokens(), 0.0);
+	}
+
+	@Test
+	public void acquireShouldRejectCustomerClassOverItsRate() {
+		//Given
+		AdmissionControl admissionControl = new AdmissionControl(new TokenBucket(clock, 1, 1),
+				new TokenBucket(clock, 2, 1), new AdaptiveConcurrencyLimit(10, 1, 10, 2.0, 0.9, 100), 0.2);
+		admissionControl.acquire(true);
+		admissionControl.acquire(false);
+
+		//When - then
+		assertRejected(admissionControl, true, Reason.RATE_LIMITED, 1000);
+		assertRejected(admissionControl, false, Reason.RATE_LIMITED, 500);
+		assertEquals(2, admissionControl.getAdmitted());
+		assertEquals(2, admissionControl.getRateLimited());
+		assertEquals(2, admissionControl.getInFlight());
+	}
+
+	@Test
+	public void premiumCustomersShouldHaveReservedShareOfLimit() {
+		//Given
+		AdmissionControl admissionControl = new AdmissionControl(new TokenBucket(clock, 1000, 100),
+				new TokenBucket(clock, 1000, 100), new AdaptiveConcurrencyLimit(10, 1, 10, 2.0, 0.9, 100), 0.2);
+		for (int i = 0; i < 8; i++) {
+			admissionControl.acquire(false);
+		}
+		admissionControl.release(SLOW);
+		admissionControl.acquire(false);
+
+		//When - then
+		assertRejected(admissionControl, false, Reason.OVERLOADED, 10);
+		admissionControl.acquire(true);
+		admissionControl.acquire(true);
+		assertRejected(admissionControl, true, Reason.OVERLOADED, 10);
+		assertEquals(2, admissionControl.getOverloaded());
+		assertEquals(10, admissionControl.getInFlight());
+	}
+
+	@Test
+	public void overloadedCallShouldGiveItsTokenBack() {
+		//Given
+		TokenBucket premiumRate = new TokenBucket(clock, 1, 2);
+		AdmissionControl admissionControl = new AdmissionControl(premiumRate, new TokenBucket(clock, 1, 2),
+				new AdaptiveConcurrencyLimit(1, 1, 1, 2.0, 0.9, 100), 0.2);
+		admissionControl.acquire(true);
+
+		//When
+		assertRejected(admissionControl, true, Reason.OVERLOADED, 1);
+
+		//Then
+		assertEquals(1.0, premiumRate.getTokens(), 0.0);
+		admissionControl.release(FAST);
+		admissionControl.acquire(true);
+		assertEquals(0.0, premiumRate.getTokens(), 0.0);
+		assertEquals(2, admissionControl.getAdmitted());
+		assertEquals(0, admissionControl.getRateLimited());
+	}
+
+	@Test
+	public void batchShouldTakeTokenPerOrderAndOneSlot() {
+		//Given
+		TokenBucket premiumRate = new TokenBucket(clock, 1, 3);
+		TokenBucket regularRate = new TokenBucket(clock, 1, 1);
+		AdmissionControl admissionControl = new AdmissionControl(premiumRate, regularRate,
+				new AdaptiveConcurrencyLimit(2, 1, 2, 2.0, 0.9, 100), 0.5);
+
+		//When
+		OrderRejectedException[] rejections = admissionControl.acquireAll(new boolean[] { false, false, true });
+
+		//Then - the second regular order is over its rate, the batch holds one slot
+		assertNull(rejections[0]);
+		assertEquals(Reason.RATE_LIMITED, rejections[1].getReason());
+		assertNull(rejections[2]);
+		assertEquals(1, admissionControl.getInFlight());
+
+		//When - the premium batch gets the last slot, then nothing is left
+		assertNull(admissionControl.acquireAll(new boolean[] { true })[0]);
+		rejections = admissionControl.acquireAll(new boolean[] { true });
+
+		//Then
+		assertEquals(Reason.OVERLOADED, rejections[0].getReason());
+		assertEquals(1.0, premiumRate.getTokens(), 0.0);
+		assertEquals(3, admissionControl.getAdmitted());
+		assertEquals(1, admissionControl.getRateLimited());
+		assertEquals(1, admissionControl.getOverloaded());
+	}
+
+	@Test
+	public void limitShouldShrinkOncePerWindowAndGrowBackUnderLoad() {
+		//Given
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 2, 40, 2.0, 0.5, 30);
+		acquireAndRelease(limit, 20, FAST);
+
+		//When - latency rises well above the latency without queueing
+		acquireAndRelease(limit, 3, SLOW);
+
+		//Then - the calls queued together shrink it once
+		assertEquals(10, limit.getLimit());
+
+		//When - still queued in the next window
+		acquireAndRelease(limit, 7, FAST);
+		acquireAndRelease(limit, 3, SLOW);
+
+		//Then
+		assertEquals(5, limit.getLimit());
+
+		//When - fast calls using the whole limit
+		for (int i = 0; i < 200; i++) {
+			acquireAndRelease(limit, limit.getLimit(), FAST);
+		}
+
+		//Then
+		assertTrue(String.valueOf(limit.getLimit()), limit.getLimit() > 10);
+		assertEquals(0, limit.getInFlight());
+	}
+
+	@Test
+	public void limitShouldNotGrowWhenMostlyIdle() {
+		//Given
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 2, 40, 2.0, 0.5, 100);
+
+		//When
+		for (int i = 0; i < 1000; i++) {
+			acquireAndRelease(limit, 1, FAST);
+		}
+
+		//Then
+		assertEquals(20, limit.getLimit());
+		//a share of nothing still admits one call
+		assertTrue(limit.tryAcquire(0.0));
+		assertFalse(limit.tryAcquire(0.0));
+	}
+
+	private static void acquireAndRelease(AdaptiveConcurrencyLimit limit, int calls, long latencyNanos) {
+		for (int i = 0; i < calls; i++) {
+			assertTrue(limit.tryAcquire(1));
+		}
+		for (int i = 0; i < calls; i++) {
+			limit.release(latencyNanos);
+		}
+	}
+
+	private static void assertRejected(AdmissionControl admissionControl, boolean premium, Reason reason,
+			long retryAfterMillis) {
+		try {
+			admissionControl.acquire(premium);
+			fail("Expected " + reason);
+		} catch (OrderRejectedException e) {
+			assertEquals(reason, e.getReason());
+			assertEquals(retryAfterMillis, e.getRetryAfterMillis());
+		}
+	}
+}
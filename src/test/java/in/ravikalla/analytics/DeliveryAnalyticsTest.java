@@ -0,0 +1,162 @@
+package in.ravikalla.analytics;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import in.ravikalla.event.OrderDelivered;
+import in.ravikalla.event.OrderEvent;
+import in.ravikalla.external.service.OrderStorageService;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class DeliveryAnalyticsTest {
+
+	//Monday 2026-10-12 00:00 UTC
+	private static final long MONDAY = 1_791_763_200_000L;
+	private static final long HOUR = 3_600_000L;
+
+	private OrderStorageService orderStorageService;
+	private DeliveryAnalytics deliveryAnalytics;
+
+	@Before
+	public void setUp() {
+		orderStorageService = mock(OrderStorageService.class);
+		when(orderStorageService.findByState(OrderState.DELIVERED)).thenReturn(Arrays.asList(
+				delivered("Order 1", true, MONDAY, 48, 50, 10_000, 10_000),
+				delivered("Order 2", true, MONDAY + 24 * HOUR, 48, 40, 10_000, 9_500),
+				delivered("Order 3", false, MONDAY, 96, 96, 10_000, 8_000),
+				delivered("Order 4", false, MONDAY - HOUR, 96, 120, 10_000, 4_000)));
+		deliveryAnalytics = new DeliveryAnalytics(orderStorageService, "Z", 2, true);
+		deliveryAnalytics.start();
+	}
+
+	@After
+	public void tearDown() {
+		deliveryAnalytics.stop();
+	}
+
+	@Test
+	public void reportShouldBreakDownStoredDeliveredOrders() {
+		//When
+		DeliveryReport report = deliveryAnalytics.getReport();
+
+		//Then
+		assertStatistics(report.getAll(), 4, 1, 2, -8, 24);
+		assertEquals(4.5, report.getAll().getMeanHoursLate(), 0.0);
+		assertStatistics(report.getByCustomer().get("premium"), 2, 1, 1, -8, 2);
+		assertStatistics(report.getByCustomer().get("regular"), 2, 0, 1, 0, 24);
+		assertStatistics(report.getBySendDay().get("MONDAY"), 2, 0, 1, 0, 2);
+		assertStatistics(report.getBySendDay().get("TUESDAY"), 1, 1, 0, -8, -8);
+		assertStatistics(report.getBySendDay().get("SUNDAY"), 1, 0, 1, 24, 24);
+		assertStatistics(report.getByDiscountBand().get("none"), 1, 0, 1, 2, 2);
+		assertStatistics(report.getByDiscountBand().get("0-10%"), 1, 1, 0, -8, -8);
+		assertStatistics(report.getByDiscountBand().get("10-25%"), 1, 0, 0, 0, 0);
+		assertStatistics(report.getByDiscountBand().get("50%+"), 1, 0, 1, 24, 24);
+		assertEquals(0, report.getByDiscountBand().get("25-50%").getCount());
+	}
+
+	@Test
+	public void refreshShouldAggregateOnlyNewlyDeliveredOrders() {
+		//Given
+		List<OrderEvent> events = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			Order order = delivered("New " + i, false, MONDAY, 48, 48 + i, 10_000, 10_000);
+			events.add(new OrderDelivered(order, -i));
+			//later changes to the order do not reach its event
+			order.setPremium(true);
+		}
+
+		//When
+		deliveryAnalytics.onEvents(events);
+		long countBeforeRefresh = deliveryAnalytics.getReport().getAll().getCount();
+		int added = deliveryAnalytics.refresh();
+
+		//Then
+		assertEquals(4, countBeforeRefresh);
+		assertEquals(10, added);
+		assertEquals(0, deliveryAnalytics.refresh());
+		assertStatistics(deliveryAnalytics.getReport().getByCustomer().get("regular"), 12, 0, 10, 0, 24);
+		assertEquals(14, deliveryAnalytics.getAggregatedOrders());
+	}
+
+	@Test
+	public void parallelAggregationShouldMatchSequentialAndExactQuantiles() {
+		//Given - enough rows for several fork-join leaves
+		DeliveryColumns columns = new DeliveryColumns(16);
+		Random random = new Random(42);
+		List<Integer> premiumHoursLate = new ArrayList<>();
+		for (int i = 0; i < 1_000_000; i++) {
+			boolean premium = random.nextBoolean();
+			int hoursLate = (int) Math.round(random.nextGaussian() * 30);
+			columns.add(premium, MONDAY + random.nextInt(7) * 24 * HOUR, MONDAY, MONDAY + hoursLate * HOUR,
+					random.nextInt(60));
+			if (premium) {
+				premiumHoursLate.add(hoursLate);
+			}
+		}
+		ForkJoinPool sequential = new ForkJoinPool(1);
+		ForkJoinPool parallel = new ForkJoinPool(4);
+
+		//When
+		DeliveryAggregate one = columns.aggregate(0, columns.size(), sequential);
+		DeliveryAggregate many = columns.aggregate(0, 400_000, parallel)
+				.merge(columns.aggregate(400_000, columns.size(), parallel));
+		sequential.shutdown();
+		parallel.shutdown();
+
+		//Then
+		for (int group = 0; group < DeliveryColumns.GROUPS; group++) {
+			final int expected = group;
+			DeliveryStatistics fromOne = one.statistics(g -> g == expected);
+			DeliveryStatistics fromMany = many.statistics(g -> g == expected);
+			assertEquals(fromOne.getCount(), fromMany.getCount());
+			assertEquals(fromOne.getMeanHoursLate(), fromMany.getMeanHoursLate(), 1e-9);
+			assertEquals(fromOne.getP99HoursLate(), fromMany.getP99HoursLate());
+		}
+		Collections.sort(premiumHoursLate);
+		DeliveryStatistics premium = many.statistics(DeliveryColumns::isPremium);
+		int size = premiumHoursLate.size();
+		assertEquals(size, premium.getCount());
+		assertEquals((long) premiumHoursLate.get((int) Math.ceil(size * 0.5) - 1), premium.getP50HoursLate());
+		assertEquals((long) premiumHoursLate.get((int) Math.ceil(size * 0.99) - 1), premium.getP99HoursLate());
+		assertEquals((long) premiumHoursLate.get(0), premium.getMinHoursLate());
+	}
+
+	private static void assertStatistics(DeliveryStatistics statistics, long count, long early, long late,
+			long minHoursLate, long maxHoursLate) {
+		assertEquals(count, statistics.getCount());
+		assertEquals(early, statistics.getEarly());
+		assertEquals(late, statistics.getLate());
+		assertEquals(minHoursLate, statistics.getMinHoursLate());
+		assertEquals(maxHoursLate, statistics.getMaxHoursLate());
+	}
+
+	private static Order delivered(String description, boolean premium, long sendMillis, long estimatedHours,
+			long realHours, long basePriceCents, long finalPriceCents) {
+		Order order = new Order();
+		order.setDescription(description);
+		order.setPremium(premium);
+		order.setBasePriceCents(basePriceCents);
+		order.setFinalPriceCents(finalPriceCents);
+		order.setSendMillis(sendMillis);
+		order.setEstimatedDeliveryMillis(sendMillis + estimatedHours * HOUR);
+		order.setRealDeliveryMillis(sendMillis + realHours * HOUR);
+		order.setDelivered(true);
+		return order;
+	}
+}
@@ -0,0 +1,317 @@
+package in.ravikalla.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class OrderCodecTest {
+
+	private static final int SAMPLES = 20_000;
+
+	private static final String[] DISCOUNTS = {"Black Friday", "Prime", "Coupon", "Bulk", "Réduction été", "割引"};
+
+	@Test
+	public void decodeShouldRestoreRandomOrders() {
+		//Given
+		Random random = new Random(42);
+		OrderCodec encoder = new OrderCodec();
+		OrderCodec decoder = new OrderCodec();
+		ByteBuffer heap = ByteBuffer.allocate(64 * 1024);
+		ByteBuffer direct = ByteBuffer.allocateDirect(64 * 1024);
+
+		for (int i = 0; i < SAMPLES; i++) {
+			Order order = randomOrder(random);
+			ByteBuffer buffer = i % 2 == 0 ? heap : direct;
+			buffer.clear();
+
+			//When
+			encoder.encode(order, buffer);
+			buffer.flip();
+			String description = decoder.decodeDescription(buffer);
+			Order decoded = decoder.decode(buffer);
+
+			//Then
+			assertEquals(0, buffer.remaining());
+			assertEquals(order.getDescription(), description);
+			assertOrderEquals(order, decoded);
+		}
+	}
+
+	@Test
+	public void decodeShouldRejectTruncatedOrders() {
+		//Given
+		Random random = new Random(7);
+		for (int i = 0; i < 1_000; i++) {
+			Order order = randomOrder(random);
+			OrderCodec encoder = new OrderCodec();
+			ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+			encoder.encode(order, buffer);
+			buffer.flip();
+			buffer.limit(random.nextInt(buffer.limit()));
+
+			//When
+			try {
+				new OrderCodec().decode(buffer);
+				fail("Truncated order decoded");
+			} catch (RuntimeException e) {
+				//Then
+				assertTrue(e.getClass().getName(), e instanceof BufferUnderflowException
+						|| e instanceof IllegalArgumentException);
+			}
+		}
+	}
+
+	@Test
+	public void encodeShouldReferenceRepeatedStrings() {
+		//Given
+		OrderCodec codec = new OrderCodec();
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		Order first = new Order();
+		first.setDescription("Soaps #1");
+		first.setRegion("EU");
+		first.addDiscount(new Discount("Black Friday", 10.0));
+		Order second = new Order();
+		second.setDescription("Soaps #2");
+		second.setRegion("EU");
+		second.addDiscount(new Discount("Black Friday", 10.0));
+
+		//When
+		codec.encode(first, buffer);
+		int firstSize = buffer.position();
+		codec.encode(second, buffer);
+		int secondSize = buffer.position() - firstSize;
+
+		//Then
+		assertEquals(firstSize - "EU".length() - "Black Friday".length() - 2, secondSize);
+		buffer.flip();
+		OrderCodec decoder = new OrderCodec();
+		assertOrderEquals(first, decoder.decode(buffer));
+		assertOrderEquals(second, decoder.decode(buffer));
+	}
+
+	@Test
+	public void encodedOrderShouldBeSmallerThanJavaSerialization() throws IOException {
+		for (int discounts : new int[] { 0, 3, 20 }) {
+			//Given
+			Order order = new Order();
+			order.setDescription("Soaps #1234567");
+			order.setRegion("EU");
+			order.setBasePrice(90.25);
+			order.setPremium(true);
+			order.setSent(true);
+			order.setSendDate(new Date(1_792_000_000_000L));
+			order.setEstimatedDelivery(new Date(1_792_000_000_000L + TimeUnit.DAYS.toMillis(3)));
+			for (int i = 0; i < discounts; i++) {
+				order.addDiscount(new Discount(DISCOUNTS[i % 3], 5 + i % 3));
+			}
+			order.setFinalPrice(80.5);
+			ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+			//When
+			new OrderCodec().encode(order, buffer);
+			ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+			try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+				out.writeObject(order);
+			}
+
+			//Then
+			assertTrue(discounts + " discounts: " + buffer.position() + " bytes encoded, " + serialized.size()
+					+ " serialized", buffer.position() * 4 < serialized.size());
+		}
+	}
+
+	@Test
+	public void encodeShouldKeepStreamsInSyncAfterOverflow() {
+		//Given
+		OrderCodec encoder = new OrderCodec();
+		Order order = new Order();
+		order.setDescription("Soaps");
+		order.addDiscount(new Discount("Black Friday", 10.0));
+
+		//When
+		try {
+			encoder.encode(order, ByteBuffer.allocate(10));
+			fail("Order encoded into a too small buffer");
+		} catch (BufferOverflowException e) {
+			//expected
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		encoder.encode(order, buffer);
+		buffer.flip();
+
+		//Then
+		assertOrderEquals(order, new OrderCodec().decode(buffer));
+	}
+
+	@Test
+	public void decodeShouldReadRecordsWithoutIdentifier() {
+		//Given - a version 1 record is a version 2 record without the identifier after the flags
+		Order order = new Order();
+		order.setId(42);
+		order.setDescription("Soaps");
+		order.setSent(true);
+		order.addDiscount(new Discount("Black Friday", 10.0));
+		ByteBuffer encoded = ByteBuffer.allocate(1024);
+		new OrderCodec().encode(order, encoded);
+		encoded.flip();
+		ByteBuffer legacy = ByteBuffer.allocate(1024);
+		legacy.put((byte) 1).put(encoded.get(1));
+		encoded.position(2 + Long.BYTES);
+		legacy.put(encoded).flip();
+
+		//When
+		long id = new OrderCodec().decodeId(legacy.duplicate());
+		String description = new OrderCodec().decodeDescription(legacy.duplicate());
+		Order decoded = new OrderCodec().decode(legacy);
+
+		//Then
+		assertEquals(0, id);
+		assertEquals("Soaps", description);
+		order.setId(0);
+		assertOrderEquals(order, decoded);
+	}
+
+	@Test
+	public void varLongsShouldRoundTrip() {
+		//Given
+		Random random = new Random(3);
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		long[] edges = {0, 1, -1, 63, 64, -64, -65, 127, 128, Long.MAX_VALUE, Long.MIN_VALUE};
+		for (int i = 0; i < SAMPLES; i++) {
+			long value = i < edges.length ? edges[i] : random.nextLong() >> random.nextInt(64);
+			buffer.clear();
+
+			//When
+			VarInts.putSignedVarLong(buffer, value);
+			buffer.flip();
+
+			//Then
+			assertEquals(value, VarInts.getSignedVarLong(buffer));
+			assertEquals(VarInts.sizeOfVarLong((value << 1) ^ (value >> 63)), buffer.position());
+		}
+	}
+
+	private static Order randomOrder(Random random) {
+		Order order = new Order();
+		order.setId(random.nextInt(10) == 0 ? 0 : random.nextLong());
+		order.setDescription(random.nextInt(10) == 0 ? null : randomString(random));
+		order.setRegion(random.nextBoolean() ? null : random.nextBoolean() ? "EU" : randomString(random));
+		order.setBasePriceCents(randomLong(random));
+		order.setPremium(random.nextBoolean());
+		order.setSent(random.nextBoolean());
+		order.setDelivered(random.nextBoolean());
+		if (random.nextBoolean()) {
+			order.setSendDate(new Date(randomLong(random)));
+		}
+		if (random.nextBoolean()) {
+			order.setEstimatedDelivery(new Date(randomLong(random)));
+		}
+		if (random.nextBoolean()) {
+			order.setRealDelivery(new Date(randomLong(random)));
+		}
+		int discounts = random.nextInt(4) == 0 ? random.nextInt(200) : random.nextInt(4);
+		for (int i = 0; i < discounts; i++) {
+			String description = random.nextInt(8) == 0 ? null
+					: random.nextBoolean() ? DISCOUNTS[random.nextInt(DISCOUNTS.length)] : randomString(random);
+			double percent;
+			switch (random.nextInt(4)) {
+				case 0:
+					percent = random.nextInt(10_001) / 100.0;
+					break;
+				case 1:
+					percent = random.nextDouble() * 100;
+					break;
+				case 2:
+					percent = Double.longBitsToDouble(random.nextLong());
+					break;
+				default:
+					percent = -0.0;
+			}
+			order.addDiscount(new Discount(description, percent, random.nextBoolean(), random.nextBoolean()));
+		}
+		order.setFinalPriceCents(randomLong(random));
+		return order;
+	}
+
+	private static long randomLong(Random random) {
+		switch (random.nextInt(4)) {
+			case 0:
+				return random.nextLong();
+			case 1:
+				return random.nextInt(100_000);
+			case 2:
+				return 1_700_000_000_000L + random.nextInt();
+			default:
+				return random.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+	}
+
+	private static String randomString(Random random) {
+		int length = random.nextInt(40);
+		StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			switch (random.nextInt(4)) {
+				case 0:
+					builder.appendCodePoint(0x20 + random.nextInt(0x5F));
+					break;
+				case 1:
+					builder.appendCodePoint(0x80 + random.nextInt(0x780));
+					break;
+				case 2:
+					builder.appendCodePoint(0x800 + random.nextInt(0xD000));
+					break;
+				default:
+					builder.appendCodePoint(0x10000 + random.nextInt(0x100000));
+			}
+		}
+		return builder.toString();
+	}
+
+	private static void assertOrderEquals(Order expected, Order actual) {
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getDescription(), actual.getDescription());
+		assertEquals(expected.getRegion(), actual.getRegion());
+		assertEquals(expected.getBasePriceCents(), actual.getBasePriceCents());
+		assertEquals(expected.getFinalPriceCents(), actual.getFinalPriceCents());
+		assertEquals(expected.isPremium(), actual.isPremium());
+		assertEquals(expected.isSent(), actual.isSent());
+		assertEquals(expected.isDelivered(), actual.isDelivered());
+		assertEquals(expected.getSendDate(), actual.getSendDate());
+		assertEquals(expected.getEstimatedDelivery(), actual.getEstimatedDelivery());
+		assertEquals(expected.getRealDelivery(), actual.getRealDelivery());
+		assertEquals(expected.getAdditiveDiscountBasisPoints(), actual.getAdditiveDiscountBasisPoints());
+		assertEquals(expected.getCompoundedRemaining(), actual.getCompoundedRemaining());
+		assertEquals(expected.getExclusiveDiscountBasisPoints(), actual.getExclusiveDiscountBasisPoints());
+		List<Discount> expectedDiscounts = new ArrayList<>(expected.getDiscounts());
+		List<Discount> actualDiscounts = actual.getDiscounts();
+		assertEquals(expectedDiscounts.size(), actualDiscounts.size());
+		for (int i = 0; i < expectedDiscounts.size(); i++) {
+			Discount discount = expectedDiscounts.get(i);
+			assertEquals(discount.getDescription(), actualDiscounts.get(i).getDescription());
+			assertEquals(Double.doubleToLongBits(discount.getPercent()),
+					Double.doubleToLongBits(actualDiscounts.get(i).getPercent()));
+			assertEquals(discount.isCompounding(), actualDiscounts.get(i).isCompounding());
+			assertEquals(discount.isExclusive(), actualDiscounts.get(i).isExclusive());
+		}
+	}
+}
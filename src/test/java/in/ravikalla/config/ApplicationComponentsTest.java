@@ -0,0 +1,49 @@
+package in.ravikalla.config;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
+import org.springframework.stereotype.Component;
+
+import in.ravikalla.SampleApplication;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class ApplicationComponentsTest {
+
+	@Test
+	public void testIndexListsEveryComponent() throws IOException {
+		//Given the components on the classpath, whatever their conditions
+		MetadataReaderFactory readers = new SimpleMetadataReaderFactory();
+		Set<String> components = new TreeSet<>();
+		for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath*:in/ravikalla/**/*.class")) {
+			AnnotationMetadata metadata = readers.getMetadataReader(resource).getAnnotationMetadata();
+			if (metadata.isConcrete() && metadata.isIndependent() && (metadata.hasAnnotation(Component.class.getName())
+					|| metadata.hasMetaAnnotation(Component.class.getName()))) {
+				components.add(metadata.getClassName());
+			}
+		}
+		components.remove(SampleApplication.class.getName());
+		components.remove(ApplicationComponents.class.getName());
+
+		//When
+		Set<String> indexed = new TreeSet<>();
+		Arrays.stream(ApplicationComponents.class.getAnnotation(Import.class).value())
+				.forEach(component -> indexed.add(component.getName()));
+
+		//Then
+		assertEquals(components, indexed);
+	}
+}
@@ -0,0 +1,53 @@
+package in.ravikalla.config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.AnnotatedGenericBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class LazyInitializationBeanFactoryPostProcessorTest {
+
+	@Test
+	public void testBeansBecomeLazyUnlessExempted() {
+		//Given
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerBeanDefinition("plain", new AnnotatedGenericBeanDefinition(Plain.class));
+		beanFactory.registerBeanDefinition("eager", new AnnotatedGenericBeanDefinition(Eager.class));
+		RootBeanDefinition infrastructure = new RootBeanDefinition(Plain.class);
+		infrastructure.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+		beanFactory.registerBeanDefinition("infrastructure", infrastructure);
+		beanFactory.registerBeanDefinition("exporter", new AnnotatedGenericBeanDefinition(Exporter.class));
+
+		//When
+		new LazyInitializationBeanFactoryPostProcessor().postProcessBeanFactory(beanFactory);
+
+		//Then
+		assertTrue(beanFactory.getBeanDefinition("plain").isLazyInit());
+		assertFalse(beanFactory.getBeanDefinition("eager").isLazyInit());
+		assertFalse(beanFactory.getBeanDefinition("infrastructure").isLazyInit());
+		assertFalse(beanFactory.getBeanDefinition("exporter").isLazyInit());
+	}
+
+	static class Plain {
+	}
+
+	@Lazy(false)
+	static class Eager {
+	}
+
+	static class Exporter implements SmartInitializingSingleton {
+
+		@Override
+		public void afterSingletonsInstantiated() {
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package in.ravikalla.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.internal.util.reflection.Whitebox;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import in.ravikalla.exception.OrderAlreadyExistsException;
+import in.ravikalla.exception.OrderException;
+import in.ravikalla.exception.OrderRejectedException;
+import in.ravikalla.exception.OrderRejectedException.Reason;
+import in.ravikalla.external.service.DeliveryScoreService;
+import in.ravikalla.external.service.OrderStorageService;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+import in.ravikalla.model.OrderState;
+import in.ravikalla.service.AmazonDeliveryService;
+import in.ravikalla.service.DiscountCatalogService;
+
+/**
+ * @author - Ravi Kalla
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class OrderControllerTest {
+
+	private static final String TEST_PRODUCT = "Test";
+
+	@Mock
+	private AmazonDeliveryService amazonDeliveryService;
+
+	@Mock
+	private DeliveryScoreService deliveryScoreService;
+
+	@Mock
+	private OrderStorageService orderStorageService;
+
+	@Mock
+	private DiscountCatalogService discountCatalogService;
+
+	@InjectMocks
+	private OrderController orderController;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Before
+	public void setUp() {
+		Executor sameThread = Runnable::run;
+		Whitebox.setInternalState(orderController, "orderExecutor", sameThread);
+		Whitebox.setInternalState(orderController, "objectMapper", objectMapper);
+		Mockito.when(orderStorageService.whenDurable(Mockito.anyLong())).thenReturn(CompletableFuture.completedFuture(null));
+	}
+
+	@Test
+	public void createShouldReturnCreatedOrder() throws Exception {
+		//Given
+		Order order = order();
+		Mockito.when(amazonDeliveryService.initOrder(TEST_PRODUCT, 150.0, true)).thenReturn(order);
+
+		//When
+		ResponseEntity<Object> response = orderController.create(new OrderRequest(TEST_PRODUCT, 150.0, true)).get();
+
+		//Then
+		assertEquals(HttpStatus.CREATED, response.getStatusCode());
+		assertSame(order, response.getBody());
+	}
+
+	@Test
+	public void createShouldReturnConflictWhenOrderExists() throws Exception {
+		//Given
+		Mockito.when(amazonDeliveryService.initOrder(TEST_PRODUCT, 150.0, true))
+				.thenThrow(new OrderAlreadyExistsException());
+
+		//When
+		ResponseEntity<Object> response = orderController.create(new OrderRequest(TEST_PRODUCT, 150.0, true)).get();
+
+		//Then
+		assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+	}
+
+	@Test
+	public void createShouldTellWhenToRetryRejectedOrder() throws Exception {
+		//Given
+		Mockito.when(amazonDeliveryService.initOrder(TEST_PRODUCT, 150.0, false))
+				.thenThrow(new OrderRejectedException(Reason.RATE_LIMITED, 1500));
+		Mockito.when(amazonDeliveryService.initOrder(TEST_PRODUCT, 150.0, true))
+				.thenThrow(new OrderRejectedException(Reason.OVERLOADED, 3));
+
+		//When
+		ResponseEntity<Object> rateLimited = orderController.create(new OrderRequest(TEST_PRODUCT, 150.0, false)).get();
+		ResponseEntity<Object> overloaded = orderController.create(new OrderRequest(TEST_PRODUCT, 150.0, true)).get();
+
+		//Then
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, rateLimited.getStatusCode());
+		assertEquals("2", rateLimited.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, overloaded.getStatusCode());
+		assertEquals("1", overloaded.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+	}
+
+	@Test
+	public void addDiscountShouldApplyDiscountToStoredOrder() throws Exception {
+		//Given
+		Order order = order();
+		Discount discount = new Discount("Promo", 5.0);
+		Mockito.when(amazonDeliveryService.find(TEST_PRODUCT)).thenReturn(order);
+
+		//When
+		ResponseEntity<Object> response = orderController.addDiscount(TEST_PRODUCT, discount).get();
+
+		//Then
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		Mockito.verify(amazonDeliveryService).addDiscount(order, discount);
+	}
+
+	@Test
+	public void addCatalogDiscountShouldApplyDiscountOfCode() throws Exception {
+		//Given
+		Order order = order();
+		Discount discount = new Discount("Promo of new year", 5.0);
+		Mockito.when(amazonDeliveryService.find(TEST_PRODUCT)).thenReturn(order);
+		Mockito.when(discountCatalogService.find("NEWYEAR")).thenReturn(discount);
+
+		//When
+		ResponseEntity<Object> found = orderController.addCatalogDiscount(TEST_PRODUCT, "NEWYEAR").get();
+		ResponseEntity<Object> unknown = orderController.addCatalogDiscount(TEST_PRODUCT, "UNKNOWN").get();
+
+		//Then
+		assertEquals(HttpStatus.OK, found.getStatusCode());
+		assertEquals(HttpStatus.NOT_FOUND, unknown.getStatusCode());
+		Mockito.verify(amazonDeliveryService).addDiscount(order, discount);
+	}
+
+	@Test
+	public void addDiscountShouldReturnBadRequestWhenDiscountIsNotValid() throws Exception {
+		//Given
+		Order order = order();
+		Discount discount = new Discount("Free", 150.0);
+		Mockito.when(amazonDeliveryService.find(TEST_PRODUCT)).thenReturn(order);
+		Mockito.doThrow(new IllegalArgumentException("Discount of 150.0% is not between 0% and 100%"))
+				.when(amazonDeliveryService).addDiscount(order, discount);
+
+		//When
+		ResponseEntity<Object> response = orderController.addDiscount(TEST_PRODUCT, discount).get();
+
+		//Then
+		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+	}
+
+	@Test
+	public void sendShouldAnswerOnceOrderIsDurable() throws Throwable {
+		//Given
+		Order order = order();
+		order.setId(42);
+		CompletableFuture<Void> durable = new CompletableFuture<>();
+		Mockito.when(amazonDeliveryService.find(TEST_PRODUCT)).thenReturn(order);
+		Mockito.when(orderStorageService.whenDurable(42)).thenReturn(durable);
+
+		//When
+		CompletableFuture<ResponseEntity<Object>> response = orderController.send(TEST_PRODUCT, null, null);
+
+		//Then
+		Mockito.verify(amazonDeliveryService).markSent(Mockito.same(order), Mockito.any(Date.class), Mockito.isNull(String.class));
+		assertFalse(response.isDone());
+		durable.complete(null);
+		assertEquals(HttpStatus.OK, response.get().getStatusCode());
+	}
+
+	@Test
+	public void sendShouldReturnNotFoundForUnknownOrder() throws Exception {
+		//When
+		ResponseEntity<Object> response = orderController.send(TEST_PRODUCT, null, null).get();
+
+		//Then
+		assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+	}
+
+	@Test
+	public void sendByIdShouldSendOrderOfIdentifierOnly() throws Throwable {
+		//Given - the description is shared with other orders
+		Order order = order();
+		order.setId(42);
+		Date now = new Date();
+		Mockito.when(amazonDeliveryService.findById(42)).thenReturn(order);
+
+		//When
+		ResponseEntity<Object> response = orderController.sendById(42, now, "send-1").get();
+
+		//Then
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertSame(order, response.getBody());
+		Mockito.verify(amazonDeliveryService).markSent(order, now, "send-1");
+		Mockito.verify(amazonDeliveryService, Mockito.never()).find(TEST_PRODUCT);
+	}
+
+	@Test
+	public void getByIdShouldReturnNotFoundForUnknownIdentifier() throws Exception {
+		//When
+		ResponseEntity<Object> response = orderController.getById(42).get();
+
+		//Then
+		assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+		assertEquals(Collections.singletonMap("error", "Order 42 not found"), response.getBody());
+	}
+
+	@Test
+	public void deliverShouldReturnConflictWhenOrderNotSent() throws Throwable {
+		//Given
+		Order order = order();
+		Date now = new Date();
+		Mockito.when(amazonDeliveryService.find(TEST_PRODUCT)).thenReturn(order);
+		Mockito.doThrow(new OrderException("Order not sent")).when(amazonDeliveryService).markDelivered(order, now,
+				"retry-1");
+
+		//When
+		ResponseEntity<Object> response = orderController.deliver(TEST_PRODUCT, now, "retry-1").get();
+
+		//Then
+		assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+		assertEquals(Collections.singletonMap("error", "Order not sent"), response.getBody());
+	}
+
+	@Test
+	public void findByStateShouldStreamJsonArray() throws Exception {
+		//Given
+		Order first = order();
+		Order second = order();
+		second.setDescription("Other");
+		Mockito.when(orderStorageService.findByState(OrderState.CREATED)).thenReturn(Arrays.asList(first, second));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		//When
+		StreamingResponseBody body = orderController.findByState(OrderState.CREATED).getBody();
+		body.writeTo(out);
+
+		//Then
+		List<?> orders = objectMapper.readValue(out.toByteArray(), List.class);
+		assertEquals(2, orders.size());
+		assertEquals("Other", ((Map<?, ?>) orders.get(1)).get("description"));
+	}
+
+	@Test
+	public void requestsShouldBeRejectedWhenExecutorIsFull() throws Exception {
+		//Given
+		Executor full = command -> {
+			throw new RejectedExecutionException();
+		};
+		Whitebox.setInternalState(orderController, "orderExecutor", full);
+
+		//When
+		ResponseEntity<Object> response = orderController.get(TEST_PRODUCT).get();
+
+		//Then
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+	}
+
+	private static Order order() {
+		Order order = new Order();
+		order.setDescription(TEST_PRODUCT);
+		order.setBasePrice(150.0);
+		return order;
+	}
+}
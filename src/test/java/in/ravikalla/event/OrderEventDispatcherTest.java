@@ -0,0 +1,226 @@
+package in.ravikalla.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class OrderEventDispatcherTest {
+
+	private static final int PUBLISHERS = 4;
+	private static final int EVENTS = 5_000;
+	private static final int RING_SIZE = 64;
+	private static final int BATCH_SIZE = 16;
+	private static final String TEST_PRODUCT = "Test";
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(PUBLISHERS);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void everyConsumerShouldGetEveryEventOnceInOffsetOrder() throws Exception {
+		//Given - a ring much smaller than the events, so publishers wait for the slow consumer
+		RecordingConsumer fast = new RecordingConsumer(false);
+		RecordingConsumer slow = new RecordingConsumer(true);
+		OrderEventDispatcher dispatcher = new OrderEventDispatcher(Arrays.asList(fast, slow), RING_SIZE,
+				BATCH_SIZE, EVENTS * PUBLISHERS);
+		dispatcher.start();
+
+		//When
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> results = new ArrayList<>();
+		for (int p = 0; p < PUBLISHERS; p++) {
+			final int publisher = p;
+			results.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < EVENTS; i++) {
+					dispatcher.publish(new OrderSent(TEST_PRODUCT + publisher, i, i));
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> result : results) {
+			result.get();
+		}
+		dispatcher.stop();
+
+		//Then
+		for (RecordingConsumer consumer : Arrays.asList(fast, slow)) {
+			assertEquals(EVENTS * PUBLISHERS, consumer.events.size());
+			long[] lastSendMillis = new long[PUBLISHERS];
+			Arrays.fill(lastSendMillis, -1);
+			for (int i = 0; i < consumer.events.size(); i++) {
+				OrderSent event = (OrderSent) consumer.events.get(i);
+				assertEquals(i, event.getOffset());
+				int publisher = Integer.parseInt(event.getDescription().substring(TEST_PRODUCT.length()));
+				assertEquals(lastSendMillis[publisher] + 1, event.getSendMillis());
+				lastSendMillis[publisher] = event.getSendMillis();
+			}
+			assertTrue(consumer.largestBatch <= BATCH_SIZE);
+		}
+		assertEquals(0, dispatcher.getBacklog());
+		assertEquals(EVENTS * PUBLISHERS, dispatcher.getLog().getEndOffset());
+	}
+
+	@Test
+	public void replayShouldRebuildConsumerFromOffset() throws Exception {
+		//Given
+		OrderEventDispatcher dispatcher = new OrderEventDispatcher(Collections.emptyList(), RING_SIZE, BATCH_SIZE,
+				1_000);
+		dispatcher.start();
+		for (int i = 0; i < 100; i++) {
+			dispatcher.publish(new OrderCreated(TEST_PRODUCT + i, i, i, false, null));
+		}
+		dispatcher.stop();
+		RecordingConsumer rebuilt = new RecordingConsumer(false);
+
+		//When
+		long next = dispatcher.replay(40, rebuilt);
+
+		//Then
+		assertEquals(100, next);
+		assertEquals(60, rebuilt.events.size());
+		assertEquals(TEST_PRODUCT + 40, rebuilt.events.get(0).getDescription());
+		assertEquals(99, rebuilt.events.get(59).getOffset());
+		assertTrue(rebuilt.largestBatch <= BATCH_SIZE);
+		assertEquals(100, dispatcher.replay(100, rebuilt));
+	}
+
+	@Test
+	public void failedBatchShouldBeRetriedBeforeNextEvents() throws Exception {
+		//Given
+		FailingConsumer consumer = new FailingConsumer(2);
+		OrderEventDispatcher dispatcher = new OrderEventDispatcher(Arrays.asList(consumer), RING_SIZE, 1, 1_000,
+				3, 1, 10);
+		dispatcher.start();
+
+		//When
+		dispatcher.publish(new OrderCreated(TEST_PRODUCT + 0, 0, 0, false, null));
+		dispatcher.publish(new OrderCreated(TEST_PRODUCT + 1, 1, 1, false, null));
+		dispatcher.stop();
+
+		//Then
+		assertEquals(Arrays.asList(TEST_PRODUCT + 0, TEST_PRODUCT + 1), consumer.descriptions());
+		assertEquals(1, dispatcher.getRetriedBatches());
+		assertEquals(0, dispatcher.getFailedBatches());
+		assertEquals(0, dispatcher.getDeadLetters());
+	}
+
+	@Test
+	public void batchFailingEveryAttemptShouldBeRedeliveredFromDeadLetters() throws Exception {
+		//Given
+		FailingConsumer consumer = new FailingConsumer(2);
+		OrderEventDispatcher dispatcher = new OrderEventDispatcher(Arrays.asList(consumer), RING_SIZE, 1, 1_000,
+				2, 1, 10);
+		dispatcher.start();
+		dispatcher.publish(new OrderCreated(TEST_PRODUCT + 0, 0, 0, false, null));
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (dispatcher.getDeadLetters() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		assertEquals(1, dispatcher.getDeadLetters());
+
+		//When
+		dispatcher.publish(new OrderCreated(TEST_PRODUCT + 1, 1, 1, false, null));
+		assertEquals(1, dispatcher.redeliverDeadLetters());
+		dispatcher.stop();
+
+		//Then
+		assertEquals(new HashSet<>(Arrays.asList(TEST_PRODUCT + 0, TEST_PRODUCT + 1)),
+				new HashSet<>(consumer.descriptions()));
+		assertEquals(1, dispatcher.getFailedBatches());
+		assertEquals(0, dispatcher.getLostBatches());
+		assertEquals(0, dispatcher.getDeadLetters());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void readShouldRejectOffsetsNoLongerRetained() {
+		//Given
+		OrderEventLog log = new OrderEventLog(10);
+		List<OrderEvent> events = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			OrderEvent event = new OrderCreated(TEST_PRODUCT + i, i, i, false, null);
+			event.setOffset(i);
+			events.add(event);
+		}
+		log.onEvents(events);
+
+		//When
+		List<OrderEvent> read = new ArrayList<>();
+		assertEquals(10, log.read(9_990, 100, read));
+		assertEquals(TEST_PRODUCT + 9_990, read.get(0).getDescription());
+		log.read(0, 100, read);
+	}
+
+	private static final class FailingConsumer implements OrderEventConsumer {
+
+		private final List<String> descriptions = new ArrayList<>();
+		private int failuresLeft;
+
+		private FailingConsumer(int failures) {
+			this.failuresLeft = failures;
+		}
+
+		@Override
+		public void onEvents(List<OrderEvent> batch) {
+			if (failuresLeft-- > 0) {
+				throw new IllegalStateException("Consumer unavailable");
+			}
+			synchronized (descriptions) {
+				for (OrderEvent event : batch) {
+					descriptions.add(event.getDescription());
+				}
+			}
+		}
+
+		private List<String> descriptions() {
+			synchronized (descriptions) {
+				return new ArrayList<>(descriptions);
+			}
+		}
+	}
+
+	private static final class RecordingConsumer implements OrderEventConsumer {
+
+		private final boolean slow;
+		private final List<OrderEvent> events = new ArrayList<>();
+		private int largestBatch;
+
+		private RecordingConsumer(boolean slow) {
+			this.slow = slow;
+		}
+
+		@Override
+		public void onEvents(List<OrderEvent> batch) {
+			if (slow) {
+				Thread.yield();
+			}
+			largestBatch = Math.max(largestBatch, batch.size());
+			events.addAll(batch);
+		}
+	}
+}
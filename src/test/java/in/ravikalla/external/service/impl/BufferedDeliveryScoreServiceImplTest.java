@@ -0,0 +1,165 @@
+package in.ravikalla.external.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class BufferedDeliveryScoreServiceImplTest {
+
+	private static final int FAILURE_THRESHOLD = 3;
+	private static final long OPEN_MILLIS = 5_000;
+
+	private FakeDeliveryScoreService scoreService;
+	private MutableClock clock;
+	private BufferedDeliveryScoreServiceImpl client;
+
+	@Before
+	public void setUp() {
+		scoreService = new FakeDeliveryScoreService();
+		clock = new MutableClock(1_000_000);
+		client = new BufferedDeliveryScoreServiceImpl(scoreService, clock, 10, 3, 1, 4, FAILURE_THRESHOLD,
+				OPEN_MILLIS);
+	}
+
+	@Test
+	public void flushShouldCoalesceSubmissionsIntoOneCall() throws Exception {
+		//Given
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> results = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			results.add(executor.submit(() -> {
+				for (int i = -50; i < 200; i++) {
+					client.submitDeliveryPoints(i);
+				}
+			}));
+		}
+		for (Future<?> result : results) {
+			result.get();
+		}
+		executor.shutdown();
+
+		//When
+		long scoreBeforeFlush = client.getCurrentScore();
+		client.flush();
+
+		//Then
+		assertEquals(4 * 18_625, scoreBeforeFlush);
+		assertEquals(1, scoreService.getCalls());
+		assertEquals(4 * 18_625, scoreService.getCurrentScore());
+		assertEquals(4 * 18_625, client.getCurrentScore());
+		assertEquals(-50, client.getMinDeliveryPoints());
+		assertEquals(199, client.getMaxDeliveryPoints());
+		assertEquals(0, client.getPendingPoints());
+	}
+
+	@Test
+	public void flushShouldRetryFailedCallsWithBackoff() {
+		//Given
+		scoreService.failNext(2);
+		client.submitDeliveryPoints(10);
+
+		//When
+		client.flush();
+
+		//Then
+		assertEquals(3, scoreService.getCalls());
+		assertEquals(2, client.getRetries());
+		assertEquals(10, scoreService.getCurrentScore());
+		assertEquals("CLOSED", client.getCircuitState());
+	}
+
+	@Test
+	public void openCircuitShouldKeepPointsUntilTrialCallSucceeds() {
+		//Given - every attempt of the first flush fails
+		scoreService.failNext(FAILURE_THRESHOLD);
+		client.submitDeliveryPoints(10);
+		client.flush();
+
+		//When
+		client.submitDeliveryPoints(5);
+		client.flush();
+		long callsWhileOpen = scoreService.getCalls();
+		clock.advance(OPEN_MILLIS);
+		client.flush();
+
+		//Then
+		assertEquals(FAILURE_THRESHOLD, callsWhileOpen);
+		assertEquals(1, client.getShortCircuited());
+		assertEquals(FAILURE_THRESHOLD + 1, scoreService.getCalls());
+		assertEquals(15, scoreService.getCurrentScore());
+		assertEquals("CLOSED", client.getCircuitState());
+	}
+
+	@Test
+	public void slowScoreServiceShouldNotDelaySubmissions() throws Exception {
+		//Given
+		scoreService.setLatencyMillis(200);
+		scoreService.setFailureRate(0.3);
+		client.start();
+
+		//When
+		long start = System.nanoTime();
+		for (int i = 0; i < 100_000; i++) {
+			client.submitDeliveryPoints(1);
+		}
+		long submitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		scoreService.setLatencyMillis(0);
+		scoreService.setFailureRate(0);
+		clock.advance(OPEN_MILLIS);
+		client.stop();
+
+		//Then - everything is sent on stop, nothing twice
+		assertTrue("Submissions took " + submitMillis + " ms", submitMillis < 200);
+		assertEquals(100_000, scoreService.getCurrentScore());
+		assertEquals(0, client.getPendingPoints());
+	}
+
+	private static final class MutableClock extends Clock {
+
+		private volatile long millis;
+
+		private MutableClock(long millis) {
+			this.millis = millis;
+		}
+
+		private void advance(long delta) {
+			millis += delta;
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public long millis() {
+			return millis;
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(millis);
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package in.ravikalla.external.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class CachingOrderStorageServiceImplTest {
+
+	private static final int MAX_SIZE = 4;
+	private static final long TTL_MILLIS = 1000;
+	private static final int THREADS = 16;
+	private static final int ORDERS = 500;
+	private static final String TEST_PRODUCT = "Test";
+
+	private OrderStorageServiceImpl delegate;
+	private MutableClock clock;
+	private CachingOrderStorageServiceImpl cachingOrderStorageService;
+
+	@Before
+	public void setUp() {
+		delegate = spy(new OrderStorageServiceImpl());
+		clock = new MutableClock(0);
+		cachingOrderStorageService = new CachingOrderStorageServiceImpl(delegate, clock, MAX_SIZE, TTL_MILLIS, 1,
+				10000, 0.01);
+		cachingOrderStorageService.start();
+	}
+
+	@Test
+	public void existsShouldBeAnsweredFromCacheAfterStore() {
+		//Given
+		cachingOrderStorageService.storeIfAbsent(buildOrderTestObject(TEST_PRODUCT));
+
+		//When
+		boolean exists = cachingOrderStorageService.exists(TEST_PRODUCT);
+
+		//Then
+		assertTrue(exists);
+		verify(delegate, never()).exists(anyString());
+		assertEquals(1, cachingOrderStorageService.getHits());
+	}
+
+	@Test
+	public void existsShouldNotCallStoreForUnknownDescription() {
+		//When
+		boolean exists = cachingOrderStorageService.exists(TEST_PRODUCT);
+
+		//Then
+		assertFalse(exists);
+		assertNull(cachingOrderStorageService.find(TEST_PRODUCT));
+		verify(delegate, never()).exists(anyString());
+		verify(delegate, never()).find(anyString());
+		assertEquals(2, cachingOrderStorageService.getFilteredOut());
+	}
+
+	@Test
+	public void startShouldLoadDescriptionsAlreadyStored() {
+		//Given
+		Order order = buildOrderTestObject(TEST_PRODUCT);
+		delegate.storeIfAbsent(order);
+		CachingOrderStorageServiceImpl restarted = new CachingOrderStorageServiceImpl(delegate, clock, MAX_SIZE,
+				TTL_MILLIS, 1, 10000, 0.01);
+
+		//When
+		restarted.start();
+
+		//Then
+		assertSame(order, restarted.find(TEST_PRODUCT));
+		assertEquals(1, restarted.getMisses());
+		assertSame(order, restarted.find(TEST_PRODUCT));
+		assertEquals(1, restarted.getHits());
+	}
+
+	@Test
+	public void entriesShouldExpireAfterTimeToLive() {
+		//Given
+		cachingOrderStorageService.storeIfAbsent(buildOrderTestObject(TEST_PRODUCT));
+
+		//When
+		clock.advance(TTL_MILLIS);
+
+		//Then
+		assertTrue(cachingOrderStorageService.exists(TEST_PRODUCT));
+		verify(delegate, times(1)).exists(TEST_PRODUCT);
+		assertEquals(1, cachingOrderStorageService.getExpirations());
+		assertEquals(1, cachingOrderStorageService.getMisses());
+	}
+
+	@Test
+	public void leastRecentlyUsedEntryShouldBeEvictedWhenFull() {
+		//Given
+		for (int i = 0; i < MAX_SIZE; i++) {
+			cachingOrderStorageService.storeIfAbsent(buildOrderTestObject(TEST_PRODUCT + i));
+		}
+		cachingOrderStorageService.exists(TEST_PRODUCT + 0);
+
+		//When
+		cachingOrderStorageService.storeIfAbsent(buildOrderTestObject(TEST_PRODUCT + MAX_SIZE));
+
+		//Then
+		assertEquals(MAX_SIZE, cachingOrderStorageService.getSize());
+		assertEquals(1, cachingOrderStorageService.getEvictions());
+		assertTrue(cachingOrderStorageService.exists(TEST_PRODUCT + 0));
+		verify(delegate, never()).exists(TEST_PRODUCT + 0);
+		assertTrue(cachingOrderStorageService.exists(TEST_PRODUCT + 1));
+		verify(delegate, times(1)).exists(TEST_PRODUCT + 1);
+	}
+
+	@Test
+	public void storeIfAbsentShouldLetExactlyOneThreadWinPerDescription() throws Exception {
+		//Given
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> results = new ArrayList<>();
+
+		//When - every thread checks then races on the same descriptions, like concurrent initOrder calls
+		for (int t = 0; t < THREADS; t++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				int won = 0;
+				for (int i = 0; i < ORDERS; i++) {
+					String description = TEST_PRODUCT + i;
+					if (!cachingOrderStorageService.exists(description)
+							&& cachingOrderStorageService.storeIfAbsent(buildOrderTestObject(description))) {
+						won++;
+					}
+				}
+				return won;
+			}));
+		}
+		start.countDown();
+
+		//Then
+		int totalWon = 0;
+		for (Future<Integer> result : results) {
+			totalWon += result.get();
+		}
+		executor.shutdown();
+		assertEquals(ORDERS, totalWon);
+		assertEquals(ORDERS, cachingOrderStorageService.findByState(OrderState.CREATED).size());
+		for (int i = 0; i < ORDERS; i++) {
+			assertTrue(cachingOrderStorageService.exists(TEST_PRODUCT + i));
+		}
+	}
+
+	private Order buildOrderTestObject(String description) {
+		Order order = new Order();
+		order.setDescription(description);
+		return order;
+	}
+
+	private static final class MutableClock extends Clock {
+
+		private volatile long millis;
+
+		private MutableClock(long millis) {
+			this.millis = millis;
+		}
+
+		private void advance(long delta) {
+			millis += delta;
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public long millis() {
+			return millis;
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(millis);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package in.ravikalla.external.service.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class DeliveryScoreServiceImplTest {
+
+	private static final int THREADS = 16;
+	private static final int SUBMISSIONS_PER_THREAD = 10_000;
+
+	private MutableClock clock;
+
+	private DeliveryScoreServiceImpl deliveryScoreService;
+
+	@Before
+	public void setUp() {
+		clock = new MutableClock(TimeUnit.DAYS.toMillis(365));
+		deliveryScoreService = new DeliveryScoreServiceImpl(clock);
+	}
+
+	@Test
+	public void submitDeliveryPointsShouldNotLoseConcurrentUpdates() throws Exception {
+		//Given
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> results = new ArrayList<>();
+
+		//When
+		for (int t = 0; t < THREADS; t++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < SUBMISSIONS_PER_THREAD; i++) {
+					deliveryScoreService.submitDeliveryPoints(3);
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> result : results) {
+			result.get();
+		}
+		executor.shutdown();
+
+		//Then
+		assertEquals(3L * THREADS * SUBMISSIONS_PER_THREAD, deliveryScoreService.getCurrentScore());
+		assertEquals(3L * THREADS * SUBMISSIONS_PER_THREAD, deliveryScoreService.getScoreLastMinute());
+	}
+
+	@Test
+	public void rollingScoresShouldExpireOldSubmissions() {
+		//Given
+		deliveryScoreService.submitDeliveryPoints(48);
+		clock.advance(TimeUnit.SECONDS.toMillis(30));
+		deliveryScoreService.submitDeliveryPoints(120);
+
+		//When - then
+		assertEquals(168, deliveryScoreService.getScoreLastMinute());
+
+		clock.advance(TimeUnit.SECONDS.toMillis(45));
+		assertEquals(120, deliveryScoreService.getScoreLastMinute());
+		assertEquals(168, deliveryScoreService.getScoreLastHour());
+
+		clock.advance(TimeUnit.HOURS.toMillis(1));
+		assertEquals(0, deliveryScoreService.getScoreLastMinute());
+		assertEquals(0, deliveryScoreService.getScoreLastHour());
+		assertEquals(168, deliveryScoreService.getCurrentScore());
+	}
+
+	@Test
+	public void perOrderAggregatesShouldTrackMinMaxAndPercentiles() {
+		//Given
+		for (long points = -50; points <= 49; points++) {
+			deliveryScoreService.submitDeliveryPoints(points);
+		}
+
+		//When - then
+		assertEquals(-50, deliveryScoreService.getMinDeliveryPoints());
+		assertEquals(49, deliveryScoreService.getMaxDeliveryPoints());
+		assertEquals(-1, deliveryScoreService.getDeliveryPointsPercentile(50));
+		assertEquals(48, deliveryScoreService.getDeliveryPointsPercentile(99));
+		assertEquals(49, deliveryScoreService.getDeliveryPointsPercentile(100));
+	}
+
+	@Test
+	public void perOrderAggregatesShouldBeZeroWhenNothingSubmitted() {
+		assertEquals(0, deliveryScoreService.getMinDeliveryPoints());
+		assertEquals(0, deliveryScoreService.getMaxDeliveryPoints());
+		assertEquals(0, deliveryScoreService.getDeliveryPointsPercentile(99));
+	}
+
+	private static final class MutableClock extends Clock {
+
+		private volatile long millis;
+
+		private MutableClock(long millis) {
+			this.millis = millis;
+		}
+
+		private void advance(long delta) {
+			millis += delta;
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public long millis() {
+			return millis;
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(millis);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package in.ravikalla.external.service.impl;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for a remote score service, scoring like {@link DeliveryScoreServiceImpl} after
+ * an injected latency, and failing a share of the calls or the next few calls on demand.
+ *
+ * @author - Ravi Kalla
+ */
+class FakeDeliveryScoreService extends DeliveryScoreServiceImpl {
+
+	private final Random random = new Random(42);
+	private volatile long latencyMillis;
+	private volatile double failureRate;
+	private final AtomicInteger failNext = new AtomicInteger();
+	private final LongAdder calls = new LongAdder();
+
+	@Override
+	public void submitDeliveryPoints(long points) {
+		calls.increment();
+		if (latencyMillis > 0) {
+			try {
+				Thread.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted", e);
+			}
+		}
+		if (failNext.getAndUpdate(count -> Math.max(0, count - 1)) > 0 || nextFailure()) {
+			throw new IllegalStateException("Score service unavailable");
+		}
+		super.submitDeliveryPoints(points);
+	}
+
+	void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	void setFailureRate(double failureRate) {
+		this.failureRate = failureRate;
+	}
+
+	void failNext(int calls) {
+		failNext.set(calls);
+	}
+
+	long getCalls() {
+		return calls.sum();
+	}
+
+	private boolean nextFailure() {
+		synchronized (random) {
+			return failureRate > 0 && random.nextDouble() < failureRate;
+		}
+	}
+}
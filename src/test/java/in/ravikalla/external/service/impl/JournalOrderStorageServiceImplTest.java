@@ -0,0 +1,92 @@
+package in.ravikalla.external.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import in.ravikalla.journal.FsyncPolicy;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class JournalOrderStorageServiceImplTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void restartShouldRestoreLatestStateOfEveryOrder() throws IOException {
+		//Given
+		File directory = folder.newFolder();
+		JournalOrderStorageServiceImpl storage = start(directory);
+		Order sent = order("Soaps #1");
+		Order created = order("Soaps #2");
+		storage.storeAll(Arrays.asList(sent, created));
+		sent.setSent(true);
+		sent.setSendDate(new Date(1_000L));
+		storage.store(sent);
+		assertFalse(storage.storeIfAbsent(order("Soaps #2")));
+		storage.stop();
+
+		//When
+		JournalOrderStorageServiceImpl restarted = start(directory);
+
+		//Then
+		assertTrue(restarted.exists("Soaps #1"));
+		assertTrue(restarted.find("Soaps #1").isSent());
+		assertEquals(new Date(1_000L), restarted.find("Soaps #1").getSendDate());
+		assertEquals(1, restarted.findByState(OrderState.SENT).size());
+		assertEquals(1, restarted.findByState(OrderState.CREATED).size());
+		restarted.stop();
+	}
+
+	@Test
+	public void restartShouldNotRestoreRemovedOrders() throws IOException {
+		//Given - an order removed, and one removed then stored again
+		File directory = folder.newFolder();
+		JournalOrderStorageServiceImpl storage = start(directory);
+		Order handedOver = order("Soaps #1");
+		Order handedBack = order("Soaps #2");
+		storage.storeAll(Arrays.asList(handedOver, handedBack));
+		assertTrue(storage.remove("Soaps #1"));
+		assertTrue(storage.remove("Soaps #2"));
+		assertTrue(storage.storeIfAbsent(handedBack));
+		storage.stop();
+
+		//When
+		JournalOrderStorageServiceImpl restarted = start(directory);
+
+		//Then
+		assertFalse(restarted.exists("Soaps #1"));
+		assertNull(restarted.findById(handedOver.getId()));
+		assertEquals(handedBack.getId(), restarted.find("Soaps #2").getId());
+		assertEquals(1, restarted.findByState(OrderState.CREATED).size());
+		restarted.stop();
+	}
+
+	private static JournalOrderStorageServiceImpl start(File directory) throws IOException {
+		JournalOrderStorageServiceImpl storage = new JournalOrderStorageServiceImpl(directory.getPath(), 4096,
+				FsyncPolicy.GROUP, 1, 0, 4);
+		storage.start();
+		return storage;
+	}
+
+	private static Order order(String description) {
+		Order order = new Order();
+		order.setDescription(description);
+		order.setBasePrice(10.0);
+		return order;
+	}
+}
@@ -0,0 +1,141 @@
+package in.ravikalla.external.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class OffHeapOrderStorageServiceImplTest {
+
+	private static final int THREADS = 16;
+	private static final int ORDERS = 500;
+	private static final String TEST_PRODUCT = "Test";
+
+	private OffHeapOrderStorageServiceImpl orderStorageService;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		orderStorageService = new OffHeapOrderStorageServiceImpl(16);
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void findShouldReturnCopyOfLastStoredOrder() {
+		//Given
+		Order order = buildOrderTestObject(TEST_PRODUCT);
+		assertTrue(orderStorageService.storeIfAbsent(order));
+		assertFalse(orderStorageService.storeIfAbsent(buildOrderTestObject(TEST_PRODUCT)));
+
+		//When
+		order.setSent(true);
+		Order beforeStore = orderStorageService.find(TEST_PRODUCT);
+		orderStorageService.store(order);
+		Order afterStore = orderStorageService.find(TEST_PRODUCT);
+
+		//Then
+		assertNotSame(order, afterStore);
+		assertFalse(beforeStore.isSent());
+		assertTrue(afterStore.isSent());
+		assertNull(orderStorageService.find(TEST_PRODUCT + 1));
+		assertEquals(1, orderStorageService.findByState(OrderState.SENT).size());
+		assertTrue(orderStorageService.findByState(OrderState.CREATED).isEmpty());
+	}
+
+	@Test
+	public void storeAllIfAbsentShouldRejectExistingDescriptions() {
+		//Given
+		orderStorageService.storeAll(Arrays.asList(buildOrderTestObject(TEST_PRODUCT + 1)));
+		Order duplicate = buildOrderTestObject(TEST_PRODUCT + 1);
+
+		//When
+		List<Order> rejected = new ArrayList<>(orderStorageService.storeAllIfAbsent(
+				Arrays.asList(duplicate, buildOrderTestObject(TEST_PRODUCT + 2))));
+
+		//Then
+		assertEquals(Arrays.asList(duplicate), rejected);
+		assertTrue(orderStorageService.exists(TEST_PRODUCT + 2));
+		assertEquals(2, orderStorageService.getSize());
+	}
+
+	@Test
+	public void removeShouldForgetOrderAndFreeItsDescription() {
+		//Given
+		Order order = buildOrderTestObject(TEST_PRODUCT);
+		orderStorageService.store(order);
+		orderStorageService.store(buildOrderTestObject(TEST_PRODUCT + 1));
+
+		//When
+		boolean removed = orderStorageService.remove(TEST_PRODUCT);
+
+		//Then
+		assertTrue(removed);
+		assertFalse(orderStorageService.remove(TEST_PRODUCT));
+		assertNull(orderStorageService.findById(order.getId()));
+		assertEquals(1, orderStorageService.getSize());
+		assertEquals(1, orderStorageService.findByState(OrderState.CREATED).size());
+		assertTrue(orderStorageService.storeIfAbsent(buildOrderTestObject(TEST_PRODUCT)));
+	}
+
+	@Test
+	public void storeIfAbsentShouldLetExactlyOneThreadWinPerDescription() throws Exception {
+		//Given
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> results = new ArrayList<>();
+
+		//When - every thread races on the same descriptions
+		for (int t = 0; t < THREADS; t++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				int won = 0;
+				for (int i = 0; i < ORDERS; i++) {
+					if (orderStorageService.storeIfAbsent(buildOrderTestObject(TEST_PRODUCT + i))) {
+						won++;
+					}
+					orderStorageService.find(TEST_PRODUCT + (ORDERS - i));
+				}
+				return won;
+			}));
+		}
+		start.countDown();
+
+		//Then
+		int totalWon = 0;
+		for (Future<Integer> result : results) {
+			totalWon += result.get();
+		}
+		assertEquals(ORDERS, totalWon);
+		assertEquals(ORDERS, orderStorageService.findByState(OrderState.CREATED).size());
+	}
+
+	private Order buildOrderTestObject(String description) {
+		Order order = new Order();
+		order.setDescription(description);
+		return order;
+	}
+}
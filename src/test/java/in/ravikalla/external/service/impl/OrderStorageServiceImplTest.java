@@ -0,0 +1,237 @@
+package in.ravikalla.external.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+import in.ravikalla.util.SnowflakeIdGenerator;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class OrderStorageServiceImplTest {
+
+	private static final int THREADS = 16;
+	private static final int ORDERS = 500;
+	private static final String TEST_PRODUCT = "Test";
+
+	private OrderStorageServiceImpl orderStorageService;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		orderStorageService = new OrderStorageServiceImpl();
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void storeIfAbsentShouldRejectDuplicatedDescription() {
+		//Given
+		Order first = buildOrderTestObject(TEST_PRODUCT);
+		Order second = buildOrderTestObject(TEST_PRODUCT);
+
+		//When - then
+		assertTrue(orderStorageService.storeIfAbsent(first));
+		assertFalse(orderStorageService.storeIfAbsent(second));
+		assertTrue(orderStorageService.exists(TEST_PRODUCT));
+		assertSame(first, orderStorageService.find(TEST_PRODUCT));
+	}
+
+	@Test
+	public void storeShouldMoveOrderBetweenStateIndexes() {
+		//Given
+		Order order = buildOrderTestObject(TEST_PRODUCT);
+		orderStorageService.storeIfAbsent(order);
+
+		//When
+		order.setSent(true);
+		orderStorageService.store(order);
+
+		//Then
+		assertTrue(orderStorageService.findByState(OrderState.CREATED).isEmpty());
+		assertEquals(1, orderStorageService.findByState(OrderState.SENT).size());
+
+		//When
+		order.setDelivered(true);
+		orderStorageService.store(order);
+
+		//Then
+		assertTrue(orderStorageService.findByState(OrderState.SENT).isEmpty());
+		assertEquals(1, orderStorageService.findByState(OrderState.DELIVERED).size());
+	}
+
+	@Test
+	public void storeIfAbsentShouldLetExactlyOneThreadWinPerDescription() throws Exception {
+		//Given
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> results = new ArrayList<>();
+
+		//When - every thread races on the same descriptions
+		for (int t = 0; t < THREADS; t++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				int won = 0;
+				for (int i = 0; i < ORDERS; i++) {
+					if (orderStorageService.storeIfAbsent(buildOrderTestObject(TEST_PRODUCT + i))) {
+						won++;
+					}
+				}
+				return won;
+			}));
+		}
+		start.countDown();
+
+		//Then
+		int totalWon = 0;
+		for (Future<Integer> result : results) {
+			totalWon += result.get();
+		}
+		assertEquals(ORDERS, totalWon);
+		assertEquals(ORDERS, orderStorageService.findByState(OrderState.CREATED).size());
+	}
+
+	@Test
+	public void stateIndexesShouldStayConsistentUnderConcurrentTransitions() throws Exception {
+		//Given
+		List<Order> orders = new ArrayList<>();
+		for (int i = 0; i < ORDERS; i++) {
+			Order order = buildOrderTestObject(TEST_PRODUCT + i);
+			orderStorageService.storeIfAbsent(order);
+			orders.add(order);
+		}
+		CountDownLatch start = new CountDownLatch(1);
+		List<Callable<Void>> tasks = new ArrayList<>();
+
+		//When - each thread drives its own slice of orders through the lifecycle
+		for (int t = 0; t < THREADS; t++) {
+			final int slice = t;
+			tasks.add(() -> {
+				start.await();
+				for (int i = slice; i < ORDERS; i += THREADS) {
+					Order order = orders.get(i);
+					order.setSent(true);
+					orderStorageService.store(order);
+					if (i % 2 == 0) {
+						order.setDelivered(true);
+						orderStorageService.store(order);
+					}
+				}
+				return null;
+			});
+		}
+		List<Future<Void>> results = new ArrayList<>();
+		for (Callable<Void> task : tasks) {
+			results.add(executor.submit(task));
+		}
+		start.countDown();
+		for (Future<Void> result : results) {
+			result.get();
+		}
+
+		//Then
+		assertEquals(0, orderStorageService.findByState(OrderState.CREATED).size());
+		assertEquals(ORDERS / 2, orderStorageService.findByState(OrderState.SENT).size());
+		assertEquals(ORDERS / 2, orderStorageService.findByState(OrderState.DELIVERED).size());
+	}
+
+	@Test
+	public void storeShouldGiveOrdersIdentifiersFoundWithoutDescription() {
+		//Given
+		orderStorageService = new OrderStorageServiceImpl(new SnowflakeIdGenerator(Clock.systemUTC(), 7), true);
+		Set<Long> ids = new HashSet<>();
+		List<Order> orders = new ArrayList<>();
+		for (int i = 0; i < ORDERS; i++) {
+			orders.add(buildOrderTestObject(TEST_PRODUCT + i));
+		}
+
+		//When
+		orderStorageService.storeAll(orders);
+
+		//Then
+		for (Order order : orders) {
+			assertTrue(ids.add(order.getId()));
+			assertEquals(7, SnowflakeIdGenerator.nodeOf(order.getId()));
+			assertSame(order, orderStorageService.findById(order.getId()));
+		}
+		assertNull(orderStorageService.findById(1));
+	}
+
+	@Test
+	public void storeShouldKeepIdentifierOfUniqueDescription() {
+		//Given
+		Order first = buildOrderTestObject(TEST_PRODUCT);
+		orderStorageService.storeIfAbsent(first);
+		Order second = buildOrderTestObject(TEST_PRODUCT);
+
+		//When
+		orderStorageService.store(second);
+
+		//Then
+		assertEquals(first.getId(), second.getId());
+		assertSame(second, orderStorageService.findById(first.getId()));
+		assertEquals(1, orderStorageService.findByState(OrderState.CREATED).size());
+	}
+
+	@Test
+	public void ordersShouldShareDescriptionWhenNotUnique() {
+		//Given
+		orderStorageService = new OrderStorageServiceImpl(new SnowflakeIdGenerator(Clock.systemUTC(), 0), false);
+		Order first = buildOrderTestObject(TEST_PRODUCT);
+		Order second = buildOrderTestObject(TEST_PRODUCT);
+
+		//When
+		assertTrue(orderStorageService.storeIfAbsent(first));
+		assertTrue(orderStorageService.storeIfAbsent(second));
+		second.setSent(true);
+		orderStorageService.store(second);
+
+		//Then
+		assertNotEquals(first.getId(), second.getId());
+		assertSame(second, orderStorageService.find(TEST_PRODUCT));
+		assertSame(first, orderStorageService.findById(first.getId()));
+		assertFalse(orderStorageService.storeIfAbsent(first));
+		assertEquals(1, orderStorageService.findByState(OrderState.CREATED).size());
+		assertEquals(1, orderStorageService.findByState(OrderState.SENT).size());
+
+		//When
+		assertTrue(orderStorageService.remove(TEST_PRODUCT));
+
+		//Then
+		assertNull(orderStorageService.findById(first.getId()));
+		assertNull(orderStorageService.findById(second.getId()));
+		assertFalse(orderStorageService.exists(TEST_PRODUCT));
+		assertTrue(orderStorageService.findByState(OrderState.CREATED).isEmpty());
+	}
+
+	private Order buildOrderTestObject(String description) {
+		Order order = new Order();
+		order.setDescription(description);
+		return order;
+	}
+}
@@ -0,0 +1,192 @@
+package in.ravikalla.idempotency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import in.ravikalla.exception.OrderException;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class IdempotencyTableTest {
+
+	private static final String SEND = "send Test";
+
+	private final AtomicInteger runs = new AtomicInteger();
+
+	@Test
+	public void retryShouldGetOutcomeOfFirstRunWithoutRunningAgain() throws OrderException {
+		//Given
+		IdempotencyTable table = new IdempotencyTable(60_000, 1000, 100);
+		table.run("key-1", SEND, runs::incrementAndGet);
+		IdempotencyTable.Operation alreadySent = () -> {
+			runs.incrementAndGet();
+			throw new OrderException("Order is sent exception");
+		};
+
+		//When - then
+		for (int attempt = 0; attempt < 2; attempt++) {
+			table.run("key-1", SEND, runs::incrementAndGet);
+			try {
+				table.run("key-2", SEND, alreadySent);
+				fail("Expected the failure of the first run");
+			} catch (OrderException e) {
+				assertEquals("Order is sent exception", e.getMessage());
+			}
+		}
+		assertEquals(2, runs.get());
+		assertEquals(3, table.getReplays());
+		assertEquals(2, table.getSize());
+	}
+
+	@Test
+	public void retryShouldGetFailureOfFirstRunAsThrown() throws OrderException {
+		//Given
+		IdempotencyTable table = new IdempotencyTable(60_000, 1000, 100);
+		OrderException alreadySent = new AlreadySentException();
+		try {
+			table.run("key-1", SEND, () -> {
+				throw alreadySent;
+			});
+			fail("Expected the failure of the first run");
+		} catch (OrderException e) {
+			assertSame(alreadySent, e);
+		}
+
+		//When - then
+		try {
+			table.run("key-1", SEND, runs::incrementAndGet);
+			fail("Expected the failure of the first run");
+		} catch (AlreadySentException e) {
+			assertSame(alreadySent, e);
+		}
+		assertEquals(0, runs.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void keyShouldNotBeReusedForAnotherOperation() throws OrderException {
+		//Given
+		IdempotencyTable table = new IdempotencyTable(60_000, 1000, 100);
+		table.run("key-1", SEND, runs::incrementAndGet);
+
+		//When
+		table.run("key-1", "deliver Test", runs::incrementAndGet);
+	}
+
+	@Test
+	public void runFailingWithoutOutcomeShouldBeForgotten() throws OrderException {
+		//Given
+		IdempotencyTable table = new IdempotencyTable(60_000, 1000, 100);
+		try {
+			table.run("key-1", SEND, () -> {
+				throw new IllegalStateException("Storage unavailable");
+			});
+			fail("Expected the storage failure");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+
+		//When
+		table.run("key-1", SEND, runs::incrementAndGet);
+
+		//Then
+		assertEquals(1, runs.get());
+		assertEquals(0, table.getReplays());
+	}
+
+	@Test
+	public void outcomesShouldExpireAfterTimeToLive() throws OrderException {
+		//Given - 3 ticks to live
+		IdempotencyTable table = new IdempotencyTable(3000, 1000, 100);
+		table.run("key-1", SEND, runs::incrementAndGet);
+
+		//When - then
+		table.tick();
+		table.tick();
+		assertEquals(1, table.getSize());
+		table.tick();
+		assertEquals(0, table.getSize());
+		table.run("key-1", SEND, runs::incrementAndGet);
+		assertEquals(2, runs.get());
+	}
+
+	@Test
+	public void fullTableShouldDropOldestOutcomes() throws OrderException {
+		//Given
+		IdempotencyTable table = new IdempotencyTable(60_000, 1000, 2);
+		table.run("key-1", SEND, runs::incrementAndGet);
+		table.tick();
+		table.run("key-2", SEND, runs::incrementAndGet);
+
+		//When
+		table.run("key-3", SEND, runs::incrementAndGet);
+
+		//Then
+		assertEquals(1, table.getEvictions());
+		assertEquals(2, table.getSize());
+		table.run("key-2", SEND, runs::incrementAndGet);
+		table.run("key-1", SEND, runs::incrementAndGet);
+		assertEquals(4, runs.get());
+	}
+
+	@Test
+	public void concurrentRetryShouldWaitForFirstRun() throws Exception {
+		//Given
+		IdempotencyTable table = new IdempotencyTable(60_000, 1000, 100);
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> first = executor.submit(() -> run(table, () -> {
+				runs.incrementAndGet();
+				running.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+			running.await();
+			Future<?> retry = executor.submit(() -> run(table, runs::incrementAndGet));
+
+			//When
+			Thread.sleep(50);
+			release.countDown();
+			first.get(10, TimeUnit.SECONDS);
+			retry.get(10, TimeUnit.SECONDS);
+
+			//Then
+			assertEquals(1, runs.get());
+			assertEquals(1, table.getReplays());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void run(IdempotencyTable table, IdempotencyTable.Operation call) {
+		try {
+			table.run("key-1", SEND, call);
+		} catch (OrderException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static final class AlreadySentException extends OrderException {
+
+		private static final long serialVersionUID = 1L;
+
+		private AlreadySentException() {
+			super("Order is sent exception");
+		}
+	}
+}
@@ -0,0 +1,252 @@
+package in.ravikalla.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.internal.util.reflection.Whitebox;
+import org.mockito.invocation.InvocationOnMock;
+
+import in.ravikalla.exception.OrderRejectedException;
+import in.ravikalla.exception.OrderRejectedException.Reason;
+import in.ravikalla.external.service.DeliveryScoreService;
+import in.ravikalla.external.service.impl.OrderStorageServiceImpl;
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.model.BatchResult;
+import in.ravikalla.model.OrderRequest;
+import in.ravikalla.model.OrderState;
+import in.ravikalla.service.AmazonDeliveryService;
+import in.ravikalla.service.NotificationService;
+import in.ravikalla.service.impl.AmazonDeliveryServiceImpl;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class OrderFileImporterTest {
+
+	private static final int ORDERS = 1_000;
+	private static final int BATCH_SIZE = 16;
+	//small enough for records to straddle every refill of the buffer
+	private static final int BUFFER_SIZE = 100;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private OrderStorageServiceImpl orderStorageService;
+	private AmazonDeliveryServiceImpl amazonDeliveryService;
+
+	@Before
+	public void setUp() {
+		orderStorageService = new OrderStorageServiceImpl();
+		amazonDeliveryService = new AmazonDeliveryServiceImpl();
+		Whitebox.setInternalState(amazonDeliveryService, "deliveryScoreService", mock(DeliveryScoreService.class));
+		Whitebox.setInternalState(amazonDeliveryService, "orderStorageService", orderStorageService);
+		Whitebox.setInternalState(amazonDeliveryService, "notificationService", mock(NotificationService.class));
+		Whitebox.setInternalState(amazonDeliveryService, "orderMetrics", new OrderMetrics());
+	}
+
+	@Test
+	public void importFileShouldImportValidRowsAndRejectTheOthers() throws Exception {
+		//Given - a header, a duplicate, a malformed row, a row longer than the buffer, a negative price and no final
+		//line break
+		StringBuilder csv = new StringBuilder("description,basePrice,premium\r\n");
+		for (int i = 0; i < ORDERS; i++) {
+			csv.append("\"Order, #").append(i).append("\",").append(i).append(".5,").append(i % 2 == 0).append("\r\n");
+		}
+		csv.append("\"Order, #7\",1,false\n");
+		csv.append("Broken,abc\n");
+		csv.append("Long ").append(new String(new char[BUFFER_SIZE * 3]).replace('\0', 'x')).append(",1\n");
+		csv.append("Negative,-1\n");
+		csv.append("Last,1,true");
+		File file = write("orders.csv", csv.toString());
+
+		//When
+		OrderImportProgress progress = importer(amazonDeliveryService).importFile(file, OrderFileFormat.CSV);
+
+		//Then
+		assertEquals(ORDERS + 1, progress.getImported());
+		assertEquals(4, progress.getRejected());
+		assertEquals(file.length(), progress.getBytesRead());
+		assertEquals(ORDERS + 1, orderStorageService.findByState(OrderState.CREATED).size());
+		assertEquals(7.5, orderStorageService.find("Order, #7").getBasePrice(), 0.0);
+		assertTrue(orderStorageService.exists("Last"));
+
+		List<String> deadLetters = Files.readAllLines(new File(file.getPath() + ".rejected").toPath());
+		assertEquals(4, deadLetters.size());
+		assertTrue(deadLetters.contains((ORDERS + 2) + "\tOrderAlreadyExistsException\t\"Order, #7\",1,false"));
+		assertTrue(deadLetters.contains((ORDERS + 3) + "\tInvalid basePrice abc\tBroken,abc"));
+		//rows are written as they are rejected, by the reader or by the workers
+		assertTrue(deadLetters.stream()
+				.anyMatch(row -> row.startsWith((ORDERS + 4) + "\tRow longer than " + BUFFER_SIZE + " bytes\tLong x")));
+		assertTrue(deadLetters.contains((ORDERS + 5) + "\tNegative basePrice -1\tNegative,-1"));
+
+		Properties checkpoint = checkpoint(file);
+		assertEquals(Long.toString(file.length()), checkpoint.getProperty("offset"));
+		assertEquals(Integer.toString(ORDERS + 1), checkpoint.getProperty("imported"));
+		assertEquals("4", checkpoint.getProperty("rejected"));
+
+		//once done, importing again does nothing
+		assertEquals(ORDERS + 1, importer(amazonDeliveryService).importFile(file, OrderFileFormat.CSV).getImported());
+		assertEquals(4, Files.readAllLines(new File(file.getPath() + ".rejected").toPath()).size());
+	}
+
+	@Test
+	public void importFileShouldResumeAfterFailedBatch() throws Exception {
+		//Given - the storage fails from the fourth batch on
+		StringBuilder ndjson = new StringBuilder();
+		for (int i = 0; i < ORDERS; i++) {
+			ndjson.append("{\"description\": \"Order #").append(i).append("\", \"basePrice\": ").append(i).append("}\n");
+		}
+		File file = write("orders.ndjson", ndjson.toString());
+		AtomicInteger batches = new AtomicInteger();
+		AmazonDeliveryService failingService = mock(AmazonDeliveryService.class);
+		when(failingService.initOrders(anyListOf(OrderRequest.class))).thenAnswer(invocation -> {
+			if (batches.incrementAndGet() >= 4) {
+				throw new IllegalStateException("Storage unavailable");
+			}
+			return amazonDeliveryService.initOrders(requests(invocation));
+		});
+
+		//When
+		try {
+			importer(failingService).importFile(file, OrderFileFormat.of(file));
+			fail("Import should fail with the storage");
+		} catch (IllegalStateException e) {
+			assertEquals("Storage unavailable", e.getMessage());
+		}
+		long checkpointLine = Long.parseLong(checkpoint(file).getProperty("line"));
+		OrderImportProgress resumed = importer(amazonDeliveryService).importFile(file, OrderFileFormat.of(file));
+
+		//Then - the checkpoint stopped before the failed batch and nothing is lost
+		assertEquals(3 * BATCH_SIZE, checkpointLine);
+		assertTrue(resumed.getStartOffset() > 0);
+		assertEquals(ORDERS, orderStorageService.findByState(OrderState.CREATED).size());
+		assertEquals(ORDERS, resumed.getImported());
+		assertEquals(0, resumed.getRejected());
+	}
+
+	@Test
+	public void importFileShouldSkipRowsImportedAfterCheckpointWhenResuming() throws Exception {
+		//Given - the fourth batch, with a malformed row, is stored but the import stops before it is committed
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < ORDERS; i++) {
+			csv.append("Order #").append(i).append(',').append(i).append('\n');
+			if (i == 3 * BATCH_SIZE + 1) {
+				csv.append("Broken,abc\n");
+			}
+		}
+		csv.append("Order #7,8\n");
+		File file = write("orders.csv", csv.toString());
+		AtomicInteger batches = new AtomicInteger();
+		AmazonDeliveryService failingService = mock(AmazonDeliveryService.class);
+		when(failingService.initOrders(anyListOf(OrderRequest.class))).thenAnswer(invocation -> {
+			int batch = batches.incrementAndGet();
+			if (batch > 4) {
+				throw new IllegalStateException("Connection reset");
+			}
+			BatchResult result = amazonDeliveryService.initOrders(requests(invocation));
+			if (batch == 4) {
+				throw new IllegalStateException("Connection reset");
+			}
+			return result;
+		});
+		try {
+			importer(failingService).importFile(file, OrderFileFormat.CSV);
+			fail("Import should fail with the storage");
+		} catch (IllegalStateException e) {
+			assertEquals("Connection reset", e.getMessage());
+		}
+
+		//When
+		OrderImportProgress resumed = importer(amazonDeliveryService).importFile(file, OrderFileFormat.CSV);
+
+		//Then - the stored rows count as imported, the duplicate with another price and the broken row are
+		//rejected once
+		assertEquals(ORDERS, orderStorageService.findByState(OrderState.CREATED).size());
+		assertEquals(ORDERS, resumed.getImported());
+		assertEquals(2, resumed.getRejected());
+		List<String> deadLetters = Files.readAllLines(new File(file.getPath() + ".rejected").toPath());
+		assertEquals(Arrays.asList((3 * BATCH_SIZE + 3) + "\tInvalid basePrice abc\tBroken,abc",
+				(ORDERS + 2) + "\tOrderAlreadyExistsException\tOrder #7,8"), deadLetters);
+	}
+
+	@Test
+	public void importFileShouldSubmitRowsTurnedAwayAgain() throws Exception {
+		//Given - admission control turns away every other row the first time it is submitted
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < ORDERS; i++) {
+			csv.append("Order #").append(i).append(',').append(i).append('\n');
+		}
+		File file = write("orders.csv", csv.toString());
+		Set<String> turnedAway = ConcurrentHashMap.newKeySet();
+		AmazonDeliveryService overloadedService = mock(AmazonDeliveryService.class);
+		when(overloadedService.initOrders(anyListOf(OrderRequest.class))).thenAnswer(invocation -> {
+			List<OrderRequest> requests = requests(invocation);
+			BatchResult result = new BatchResult(requests.size());
+			for (OrderRequest request : requests) {
+				if (request.getBasePrice() % 2 == 1 && turnedAway.add(request.getDescription())) {
+					result.failed(request, new OrderRejectedException(Reason.OVERLOADED, 1));
+				} else {
+					result.add(amazonDeliveryService.initOrders(Collections.singletonList(request)).getItems().get(0));
+				}
+			}
+			return result;
+		});
+
+		//When
+		OrderImportProgress progress = importer(overloadedService).importFile(file, OrderFileFormat.CSV);
+
+		//Then - every row is imported and none is dead-lettered
+		assertEquals(ORDERS / 2, turnedAway.size());
+		assertEquals(ORDERS, progress.getImported());
+		assertEquals(0, progress.getRejected());
+		assertEquals(ORDERS, orderStorageService.findByState(OrderState.CREATED).size());
+		File deadLetters = new File(file.getPath() + ".rejected");
+		assertTrue(!deadLetters.exists() || deadLetters.length() == 0);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<OrderRequest> requests(InvocationOnMock invocation) {
+		return invocation.getArgumentAt(0, List.class);
+	}
+
+	private OrderFileImporter importer(AmazonDeliveryService service) {
+		//one worker keeps the batches done in file order, so the failed batch is the first one left out
+		return new OrderFileImporter(service, BATCH_SIZE, 1, BUFFER_SIZE, 1_000);
+	}
+
+	private File write(String name, String content) throws IOException {
+		File file = temporaryFolder.newFile(name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static Properties checkpoint(File file) throws IOException {
+		Properties checkpoint = new Properties();
+		try (InputStream in = new FileInputStream(file.getPath() + ".checkpoint")) {
+			checkpoint.load(in);
+		}
+		return checkpoint;
+	}
+}
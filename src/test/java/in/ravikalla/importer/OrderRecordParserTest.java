@@ -0,0 +1,89 @@
+package in.ravikalla.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import in.ravikalla.model.OrderRequest;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class OrderRecordParserTest {
+
+	@Test
+	public void parseCsvShouldReadQuotedAndPlainDescriptions() {
+		//Given
+		byte[] plain = bytes("Soaps, 90.25 ,TRUE");
+		byte[] quoted = bytes("\"Soaps, \"\"large\"\" € \",12");
+
+		//When
+		OrderRequest plainRequest = OrderFileFormat.CSV.parse(plain, 0, plain.length);
+		OrderRequest quotedRequest = OrderFileFormat.CSV.parse(quoted, 0, quoted.length);
+
+		//Then
+		assertEquals("Soaps", plainRequest.getDescription());
+		assertEquals(90.25, plainRequest.getBasePrice(), 0.0);
+		assertTrue(plainRequest.isPremium());
+		assertEquals("Soaps, \"large\" € ", quotedRequest.getDescription());
+		assertEquals(12.0, quotedRequest.getBasePrice(), 0.0);
+		assertFalse(quotedRequest.isPremium());
+		assertTrue(OrderFileFormat.CSV.isHeader(bytes("Description,basePrice,premium"), 0, 29));
+	}
+
+	@Test
+	public void parseNdjsonShouldReadFieldsInAnyOrderAndSkipOthers() {
+		//Given
+		byte[] record = bytes("{\"premium\": true, \"tags\": [\"a\", {\"b\": \"}\"}], \"basePrice\": 1.5e2, "
+				+ "\"description\": \"Soaps \\\"large\\\" \\u20ac\", \"note\": null}");
+
+		//When
+		OrderRequest request = OrderFileFormat.NDJSON.parse(record, 0, record.length);
+
+		//Then
+		assertEquals("Soaps \"large\" €", request.getDescription());
+		assertEquals(150.0, request.getBasePrice(), 0.0);
+		assertTrue(request.isPremium());
+	}
+
+	@Test
+	public void parsePriceShouldMatchDoubleParsing() {
+		for (String price : new String[] { "0", "-0", "0.1", "90.25", "12345678.99", "0.000000000000000001",
+				"123456789012345678901", "1e3" }) {
+			byte[] bytes = bytes(price);
+			assertEquals(price, Double.parseDouble(price), OrderRecordParser.parsePrice(bytes, 0, bytes.length), 0.0);
+		}
+	}
+
+	@Test
+	public void malformedRecordsShouldBeRejected() {
+		for (String record : new String[] { "", "Soaps", "Soaps,", "Soaps,abc", "Soaps,1,maybe", "\"Soaps,1",
+				"Soaps,-3.3", "Soaps,-1e3", "Soaps,NaN", "Soaps,Infinity", "Soaps,-Infinity", "Soaps,1e400" }) {
+			assertRejected(OrderFileFormat.CSV, record);
+		}
+		for (String record : new String[] { "", "{}", "{\"description\": \"Soaps\"}", "{\"basePrice\": 1}",
+				"{\"description\": \"Soaps\", \"basePrice\": 1", "{\"description\": \"Soaps\", \"basePrice\": 1} x",
+				"[1]", "{\"description\": \"Soaps\", \"basePrice\": -1}",
+				"{\"description\": \"Soaps\", \"basePrice\": 1e999}" }) {
+			assertRejected(OrderFileFormat.NDJSON, record);
+		}
+	}
+
+	private static void assertRejected(OrderFileFormat format, String record) {
+		byte[] bytes = bytes(record);
+		try {
+			format.parse(bytes, 0, bytes.length);
+		} catch (IllegalArgumentException e) {
+			return;
+		}
+		throw new AssertionError(format + " accepted " + record);
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
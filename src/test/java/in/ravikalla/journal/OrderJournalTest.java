@@ -0,0 +1,310 @@
+package in.ravikalla.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class OrderJournalTest {
+
+	private static final int SEGMENT_SIZE = 1024;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void replayShouldRestoreEveryOrderAcrossSegments() throws IOException {
+		//Given
+		File directory = folder.newFolder();
+		try (OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, FsyncPolicy.SYNC, 1)) {
+			for (int i = 0; i < 50; i++) {
+				journal.append(order("Soaps #" + i, i));
+			}
+			assertTrue(journal.getSegmentCount() > 2);
+		}
+
+		//When
+		Map<String, Order> restored = replay(directory);
+
+		//Then
+		assertEquals(50, restored.size());
+		Order order = restored.get("Soaps #7");
+		assertEquals(1007L, order.getBasePriceCents());
+		assertEquals(907L, order.getFinalPriceCents());
+		assertEquals("EU", order.getRegion());
+		assertTrue(order.isSent());
+		assertFalse(order.isDelivered());
+		assertEquals(new Date(7_000L), order.getSendDate());
+		assertNull(order.getRealDelivery());
+		assertEquals(1, order.getDiscounts().size());
+		assertEquals(10.0, order.getDiscounts().get(0).getPercent(), 0.0);
+		assertTrue(order.getDiscounts().get(0).isCompounding());
+	}
+
+	@Test
+	public void replayShouldStopAtRecordTornByCrash() throws IOException {
+		//Given
+		File directory = folder.newFolder();
+		try (OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, FsyncPolicy.SYNC, 1)) {
+			for (int i = 0; i < 20; i++) {
+				journal.append(order("Soaps #" + i, i));
+			}
+		}
+		File last = lastSegmentWithData(directory);
+		long[] records = recordOffsets(last);
+		long lastRecord = records[records.length - 2];
+		long payloadLength = records[records.length - 1] - lastRecord - 8;
+		try (RandomAccessFile file = new RandomAccessFile(last, "rw")) {
+			//crash halfway through writing the payload of the last record
+			file.setLength(lastRecord + 8 + payloadLength / 2);
+		}
+
+		//When
+		Map<String, Order> restored = replay(directory);
+
+		//Then
+		assertEquals(19, restored.size());
+		for (int i = 0; i < 19; i++) {
+			Order order = restored.get("Soaps #" + i);
+			assertEquals(1000L + i, order.getBasePriceCents());
+			assertEquals(900L + i, order.getFinalPriceCents());
+			assertEquals(new Date(i * 1000L), order.getSendDate());
+		}
+		assertFalse(restored.containsKey("Soaps #19"));
+
+		//appends after recovery go to a new segment and survive the next restart
+		try (OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, FsyncPolicy.GROUP, 1)) {
+			journal.append(order("Soaps #19", 19));
+			journal.append(order("Soaps #20", 20));
+		}
+		assertEquals(21, replay(directory).size());
+	}
+
+	@Test
+	public void openShouldCarryOnAppendingToLastSegment() throws IOException {
+		//Given
+		File directory = folder.newFolder();
+		try (OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, FsyncPolicy.SYNC, 1)) {
+			journal.append(order("Soaps #0", 0));
+		}
+
+		//When
+		for (int i = 1; i < 4; i++) {
+			try (OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, FsyncPolicy.SYNC, 1)) {
+				journal.append(order("Soaps #" + i, i));
+				assertEquals(1, journal.getSegmentCount());
+			}
+		}
+
+		//Then
+		assertEquals(1, directory.listFiles((dir, name) -> name.endsWith(".log")).length);
+		assertEquals(Arrays.asList("Soaps #0", "Soaps #1", "Soaps #2", "Soaps #3"),
+				new ArrayList<>(replay(directory).keySet()));
+	}
+
+	@Test
+	public void replayShouldStopAtCorruptedRecord() throws IOException {
+		//Given
+		File directory = folder.newFolder();
+		try (OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, FsyncPolicy.SYNC, 1)) {
+			for (int i = 0; i < 3; i++) {
+				journal.append(order("Soaps #" + i, i));
+			}
+		}
+		File last = lastSegmentWithData(directory);
+		long[] records = recordOffsets(last);
+		try (RandomAccessFile file = new RandomAccessFile(last, "rw")) {
+			long position = records[1] + 12;
+			file.seek(position);
+			int value = file.read();
+			file.seek(position);
+			file.write(value ^ 0xFF);
+		}
+
+		//When
+		Map<String, Order> restored = replay(directory);
+
+		//Then
+		assertEquals(Arrays.asList("Soaps #0"), new ArrayList<>(restored.keySet()));
+	}
+
+	@Test
+	public void whenDurableShouldCompleteOnceRecordIsForced() throws IOException {
+		//Given - the flusher does not run during the test
+		File directory = folder.newFolder();
+		OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, FsyncPolicy.ASYNC, 60_000);
+		long sequence = journal.write(order("Soaps #0", 0));
+
+		//When
+		CompletableFuture<Void> durable = journal.whenDurable(sequence);
+
+		//Then
+		assertFalse(durable.isDone());
+		journal.close();
+		assertTrue(durable.isDone());
+		assertTrue(journal.whenDurable(sequence).isDone());
+	}
+
+	@Test
+	public void compactShouldKeepLatestSnapshotOfEachOrder() throws IOException {
+		//Given
+		File directory = folder.newFolder();
+		int removed;
+		try (OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, FsyncPolicy.ASYNC, 1)) {
+			for (int version = 0; version < 10; version++) {
+				for (int i = 0; i < 5; i++) {
+					Order order = order("Soaps #" + i, i);
+					order.setBasePriceCents(version);
+					journal.append(order);
+				}
+			}
+			int segments = journal.getSegmentCount();
+
+			//When
+			removed = journal.compact();
+
+			//Then
+			assertTrue(removed > 0);
+			assertEquals(segments + 1 - removed, journal.getSegmentCount());
+			journal.append(order("Soaps #5", 5));
+		}
+
+		Map<String, Order> restored = replay(directory);
+		assertEquals(6, restored.size());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(9L, restored.get("Soaps #" + i).getBasePriceCents());
+		}
+	}
+
+	@Test
+	public void compactShouldDropRemovedOrdersWithTheirTombstones() throws IOException {
+		//Given - orders with identifiers, one without, removed and one of them stored again
+		File directory = folder.newFolder();
+		List<Order> tombstones = new ArrayList<>();
+		try (OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, FsyncPolicy.ASYNC, 1)) {
+			for (int version = 0; version < 10; version++) {
+				for (int i = 0; i < 5; i++) {
+					Order order = order("Soaps #" + i, i);
+					order.setId(i);
+					journal.append(order);
+				}
+			}
+			Order removed = order("Soaps #1", 1);
+			removed.setId(1);
+			journal.sync(journal.writeTombstone(removed));
+			Order stored = order("Soaps #3", 3);
+			stored.setId(3);
+			journal.sync(journal.writeTombstone(stored));
+			journal.append(stored);
+			Order removedAgain = order("Soaps #0", 0);
+			journal.sync(journal.writeTombstone(removedAgain));
+
+			//When
+			assertTrue(journal.compact() > 0);
+			journal.replay(order -> {
+			}, tombstones::add);
+		}
+
+		//Then
+		assertTrue(tombstones.isEmpty());
+		Map<String, Order> restored = replay(directory);
+		assertEquals(Arrays.asList("Soaps #2", "Soaps #4", "Soaps #3"), new ArrayList<>(restored.keySet()));
+		assertEquals(3L, restored.get("Soaps #3").getId());
+	}
+
+	@Test
+	public void openShouldDiscardIncompleteCompaction() throws IOException {
+		//Given
+		File directory = folder.newFolder();
+		try (OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, FsyncPolicy.SYNC, 1)) {
+			journal.append(order("Soaps #0", 0));
+		}
+		assertTrue(new File(directory, "00000000000000000000.log.compact").createNewFile());
+
+		//When
+		Map<String, Order> restored = replay(directory);
+
+		//Then
+		assertEquals(1, restored.size());
+		assertFalse(new File(directory, "00000000000000000000.log.compact").exists());
+	}
+
+	private static Order order(String description, int i) {
+		Order order = new Order();
+		order.setDescription(description);
+		order.setBasePriceCents(1000 + i);
+		order.setRegion("EU");
+		order.setPremium(i % 2 == 0);
+		order.setDiscounts(new ArrayList<>(Arrays.asList(new Discount("Sale", 10.0, true, false))));
+		order.setFinalPriceCents(900 + i);
+		order.setSent(true);
+		order.setSendDate(new Date(i * 1000L));
+		return order;
+	}
+
+	private static Map<String, Order> replay(File directory) throws IOException {
+		Map<String, Order> restored = new LinkedHashMap<>();
+		try (OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, FsyncPolicy.SYNC, 1)) {
+			journal.replay(order -> restored.put(order.getDescription(), order),
+					order -> restored.remove(order.getDescription()));
+		}
+		return restored;
+	}
+
+	private static File lastSegmentWithData(File directory) throws IOException {
+		File[] segments = directory.listFiles((dir, name) -> name.endsWith(".log"));
+		Arrays.sort(segments);
+		for (int i = segments.length - 1; i >= 0; i--) {
+			if (recordOffsets(segments[i]).length > 1) {
+				return segments[i];
+			}
+		}
+		throw new IllegalStateException("No segment with data in " + directory);
+	}
+
+	/**
+	 * @return Start offset of every record followed by the end of the data
+	 */
+	private static long[] recordOffsets(File segment) throws IOException {
+		List<Long> offsets = new ArrayList<>();
+		try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+			long position = 0;
+			while (position + 8 <= file.length()) {
+				file.seek(position);
+				int length = file.readInt();
+				if (length == 0) {
+					break;
+				}
+				offsets.add(position);
+				position += 8 + length;
+			}
+			offsets.add(position);
+		}
+		long[] result = new long[offsets.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = offsets.get(i);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,153 @@
+package in.ravikalla.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class OrderTest {
+
+	@Test
+	public void deliveringShouldAlsoSendOrder() {
+		//Given
+		Order order = new Order();
+
+		//When
+		order.setDelivered(true);
+
+		//Then
+		assertTrue(order.isSent());
+		assertTrue(order.isDelivered());
+		assertEquals(OrderState.DELIVERED, order.getState());
+	}
+
+	@Test
+	public void unsendingShouldAlsoUndeliverOrder() {
+		//Given
+		Order order = new Order();
+		order.setDelivered(true);
+
+		//When
+		order.setSent(false);
+
+		//Then
+		assertFalse(order.isDelivered());
+		assertEquals(OrderState.CREATED, order.getState());
+
+		//When
+		order.setDelivered(true);
+		order.setDelivered(false);
+
+		//Then
+		assertEquals(OrderState.SENT, order.getState());
+	}
+
+	@Test
+	public void premiumShouldNotChangeState() {
+		//Given
+		Order order = new Order();
+		order.setSent(true);
+
+		//When
+		order.setPremium(true);
+
+		//Then
+		assertTrue(order.isPremium());
+		assertEquals(OrderState.SENT, order.getState());
+
+		//When
+		order.setState(OrderState.DELIVERED);
+		order.setPremium(false);
+
+		//Then
+		assertFalse(order.isPremium());
+		assertEquals(OrderState.DELIVERED, order.getState());
+	}
+
+	@Test
+	public void datesShouldBeStoredAsEpochMillis() {
+		//Given
+		Order order = new Order();
+		Date sendDate = new Date(1_792_000_000_000L);
+
+		//When
+		order.setSendDate(sendDate);
+
+		//Then
+		assertEquals(sendDate.getTime(), order.getSendMillis());
+		assertEquals(sendDate, order.getSendDate());
+		assertNotSame(sendDate, order.getSendDate());
+		assertNull(order.getRealDelivery());
+		assertEquals(Order.NO_DATE, order.getRealDeliveryMillis());
+
+		//When
+		order.setSendDate(null);
+
+		//Then
+		assertNull(order.getSendDate());
+	}
+
+	@Test
+	public void changesToDiscountListShouldKeepDiscountTotals() {
+		//Given
+		Order order = new Order();
+		Order copy = new Order();
+		order.addDiscount(new Discount("Regular", 10.0));
+
+		//When
+		copy.copyStateFrom(order);
+		order.getDiscounts().add(new Discount("Special", 5.0));
+		order.getDiscounts().add(new Discount("Coupon", 20.0, false, true));
+		order.getDiscounts().set(0, new Discount("Regular", 15.0));
+
+		//Then
+		assertEquals(3, order.getDiscounts().size());
+		assertEquals(2000, order.getAdditiveDiscountBasisPoints());
+		assertEquals(2000, order.getExclusiveDiscountBasisPoints());
+		assertEquals(1, copy.getDiscounts().size());
+		assertEquals(1000, copy.getAdditiveDiscountBasisPoints());
+
+		//When
+		order.getDiscounts().remove(2);
+		order.getDiscounts().removeIf(discount -> discount.getPercent() < 10);
+
+		//Then
+		assertEquals(1, order.getDiscounts().size());
+		assertEquals(1500, order.getAdditiveDiscountBasisPoints());
+		assertEquals(0, order.getExclusiveDiscountBasisPoints());
+	}
+
+	@Test
+	public void copiesShouldNotSeeDiscountsAppendedToEachOther() {
+		//Given - an array with room left
+		Order order = new Order();
+		for (int i = 0; i < 5; i++) {
+			order.addDiscount(new Discount("Promo " + i, 1.0));
+		}
+		Order copy = new Order();
+		copy.copyStateFrom(order);
+		Order restored = new Order();
+		restored.copyStateFrom(copy);
+
+		//When
+		order.addDiscount(new Discount("Order", 2.0));
+		copy.addDiscount(new Discount("Copy", 3.0));
+		restored.addDiscount(new Discount("Restored", 4.0));
+
+		//Then
+		assertEquals("Order", order.getDiscounts().get(5).getDescription());
+		assertEquals("Copy", copy.getDiscounts().get(5).getDescription());
+		assertEquals("Restored", restored.getDiscounts().get(5).getDescription());
+		assertEquals(6, order.getDiscounts().size());
+		assertEquals(700, order.getAdditiveDiscountBasisPoints());
+		assertEquals(800, copy.getAdditiveDiscountBasisPoints());
+	}
+}
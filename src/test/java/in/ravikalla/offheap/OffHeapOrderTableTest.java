@@ -0,0 +1,217 @@
+package in.ravikalla.offheap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class OffHeapOrderTableTest {
+
+	private static final String TEST_PRODUCT = "Test";
+	private static final long SEND_MILLIS = 1_792_000_000_000L;
+
+	private OffHeapOrderTable table;
+
+	@Before
+	public void setUp() {
+		table = new OffHeapOrderTable(16);
+	}
+
+	@Test
+	public void getShouldRestoreStoredOrder() {
+		//Given
+		Order order = new Order();
+		order.setDescription("Crème brûlée € 😀");
+		order.setRegion("EU");
+		order.setBasePriceCents(15_000);
+		order.setPremium(true);
+		order.setSendDate(new Date(SEND_MILLIS));
+		order.setEstimatedDelivery(new Date(SEND_MILLIS + 86_400_000L));
+		order.setSent(true);
+		order.addDiscount(new Discount("Black Friday", 10.0));
+		order.addDiscount(new Discount(null, 2.5, true, false));
+		order.setFinalPriceCents(13_163);
+
+		//When
+		int row = table.insert(order);
+		Order restored = table.get(table.find(order.getDescription()));
+
+		//Then
+		assertEquals(0, row);
+		assertNotSame(order, restored);
+		assertEquals(order.getDescription(), restored.getDescription());
+		assertEquals("EU", restored.getRegion());
+		assertEquals(15_000, restored.getBasePriceCents());
+		assertEquals(13_163, restored.getFinalPriceCents());
+		assertEquals(OrderState.SENT, restored.getState());
+		assertEquals(true, restored.isPremium());
+		assertEquals(SEND_MILLIS, restored.getSendMillis());
+		assertEquals(SEND_MILLIS + 86_400_000L, restored.getEstimatedDeliveryMillis());
+		assertNull(restored.getRealDelivery());
+		assertEquals(2, restored.getDiscounts().size());
+		assertEquals("Black Friday", restored.getDiscounts().get(0).getDescription());
+		assertNull(restored.getDiscounts().get(1).getDescription());
+		assertEquals(2.5, restored.getDiscounts().get(1).getPercent(), 0.0);
+		assertEquals(true, restored.getDiscounts().get(1).isCompounding());
+		assertEquals(order.getCompoundedRemaining(), restored.getCompoundedRemaining());
+	}
+
+	@Test
+	public void findShouldLocateOrdersAcrossChunksAndIndexGrowth() {
+		//Given
+		int orders = OffHeapOrderTable.ROWS_PER_CHUNK + 1000;
+		for (int i = 0; i < orders; i++) {
+			table.insert(buildOrderTestObject(TEST_PRODUCT + i, i));
+		}
+
+		//When - then
+		assertEquals(orders, table.size());
+		assertEquals(-1, table.find(TEST_PRODUCT));
+		assertEquals(-1, table.find(TEST_PRODUCT + orders));
+		for (int i = 0; i < orders; i += 997) {
+			Order order = table.get(table.find(TEST_PRODUCT + i));
+			assertEquals(TEST_PRODUCT + i, order.getDescription());
+			assertEquals(i, order.getBasePriceCents());
+			assertEquals(i % 3, order.getDiscounts().size());
+		}
+	}
+
+	@Test
+	public void findByIdShouldLocateOrdersAcrossIndexGrowth() {
+		//Given
+		int orders = 10_000;
+		long firstId = 1L << 22;
+		for (int i = 0; i < orders; i++) {
+			Order order = buildOrderTestObject(TEST_PRODUCT + i, i);
+			order.setId(firstId + i);
+			table.insert(order);
+		}
+
+		//When - then
+		assertEquals(-1, table.findById(firstId - 1));
+		assertEquals(-1, table.findById(0));
+		for (int i = 0; i < orders; i += 97) {
+			int row = table.findById(firstId + i);
+			assertEquals(row, table.find(TEST_PRODUCT + i));
+			assertEquals(firstId + i, table.getId(row));
+			assertEquals(firstId + i, table.get(row).getId());
+		}
+	}
+
+	@Test
+	public void appendedDiscountsShouldBeWrittenInPlaceAtEndOfSlab() {
+		//Given
+		Order order = buildOrderTestObject(TEST_PRODUCT, 100);
+		int row = table.insert(order);
+
+		//When
+		order.addDiscount(new Discount("Loyalty", 5.0));
+		table.update(row, order);
+		order.addDiscount(new Discount("Coupon", 1.0));
+		table.update(row, order);
+
+		//Then
+		assertEquals(0, table.getGarbageBytes());
+		assertEquals(3, table.get(row).getDiscounts().size());
+	}
+
+	@Test
+	public void changedDiscountsShouldMoveToEndOfSlab() {
+		//Given
+		Order first = buildOrderTestObject(TEST_PRODUCT + 1, 100);
+		Order second = buildOrderTestObject(TEST_PRODUCT + 2, 200);
+		int firstRow = table.insert(first);
+		table.insert(second);
+
+		//When - the run of the first order is no longer at the end of the slab
+		first.addDiscount(new Discount("Loyalty", 5.0));
+		table.update(firstRow, first);
+		first.setDiscounts(Arrays.asList(new Discount("Coupon", 1.0)));
+		table.update(firstRow, first);
+
+		//Then
+		assertEquals(3 * 16, table.getGarbageBytes());
+		assertEquals(1, table.get(firstRow).getDiscounts().size());
+		assertEquals("Coupon", table.get(firstRow).getDiscounts().get(0).getDescription());
+		assertEquals(2, table.get(table.find(TEST_PRODUCT + 2)).getDiscounts().size());
+	}
+
+	@Test
+	public void updateShouldChangeStateColumn() {
+		//Given
+		Order order = buildOrderTestObject(TEST_PRODUCT, 100);
+		int row = table.insert(order);
+
+		//When
+		order.setDelivered(true);
+		table.update(row, order);
+
+		//Then
+		assertEquals(OrderState.DELIVERED, table.getState(row));
+		assertEquals(OrderState.DELIVERED, table.get(row).getState());
+	}
+
+	@Test
+	public void removeShouldFreeRowAndKeepOtherOrdersFindable() {
+		//Given - enough orders for their probe sequences to run into each other
+		int orders = 1_000;
+		long firstId = 1L << 22;
+		for (int i = 0; i < orders; i++) {
+			Order order = buildOrderTestObject(TEST_PRODUCT + i, i);
+			order.setId(firstId + i);
+			table.insert(order);
+		}
+
+		//When
+		for (int i = 0; i < orders; i += 3) {
+			table.remove(table.find(TEST_PRODUCT + i));
+		}
+
+		//Then
+		int removed = (orders + 2) / 3;
+		assertEquals(orders - removed, table.size());
+		for (int i = 0; i < orders; i++) {
+			int row = table.find(TEST_PRODUCT + i);
+			if (i % 3 == 0) {
+				assertEquals(-1, row);
+				assertEquals(-1, table.findById(firstId + i));
+			} else {
+				assertEquals(row, table.findById(firstId + i));
+				assertFalse(table.isFree(row));
+				assertEquals(i, table.get(row).getBasePriceCents());
+			}
+		}
+
+		//the freed rows are reused
+		int row = table.insert(buildOrderTestObject(TEST_PRODUCT, 1));
+		assertTrue(row < orders);
+		assertEquals(orders, table.getRowCount());
+		assertEquals(row, table.find(TEST_PRODUCT));
+		assertEquals(OrderState.CREATED, table.getState(row));
+		assertEquals(1, table.get(row).getDiscounts().size());
+	}
+
+	private Order buildOrderTestObject(String description, long basePriceCents) {
+		Order order = new Order();
+		order.setDescription(description);
+		order.setBasePriceCents(basePriceCents);
+		for (int i = 0; i < basePriceCents % 3; i++) {
+			order.addDiscount(new Discount("Promo " + i, i + 1));
+		}
+		return order;
+	}
+}
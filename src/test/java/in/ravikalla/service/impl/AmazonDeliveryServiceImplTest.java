@@ -2,10 +2,20 @@ package in.ravikalla.service.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 import org.junit.Before;
@@ -16,17 +26,33 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.internal.util.reflection.Whitebox;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import in.ravikalla.admission.AdaptiveConcurrencyLimit;
+import in.ravikalla.admission.AdmissionControl;
+import in.ravikalla.admission.TokenBucket;
+import in.ravikalla.config.DeliveryEstimationProperties;
+import in.ravikalla.event.OrderEventDispatcher;
 import in.ravikalla.exception.OrderAlreadyExistsException;
 import in.ravikalla.exception.OrderException;
+import in.ravikalla.exception.OrderRejectedException;
+import in.ravikalla.exception.OrderRejectedException.Reason;
 import in.ravikalla.external.service.DeliveryScoreService;
-import in.ravikalla.external.service.EmailService;
 import in.ravikalla.external.service.OrderStorageService;
-import in.ravikalla.factory.EmailServiceFactory;
+import in.ravikalla.external.service.impl.OrderStorageServiceImpl;
+import in.ravikalla.idempotency.IdempotencyTable;
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.model.BatchResult;
 import in.ravikalla.model.Discount;
 import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+import in.ravikalla.model.OrderState;
 import in.ravikalla.service.AmazonDeliveryService;
+import in.ravikalla.service.DeliveryEstimationService;
+import in.ravikalla.service.NotificationService;
+import in.ravikalla.util.SnowflakeIdGenerator;
 
 /**
  * @author - Ravi Kalla
@@ -44,14 +70,18 @@ public class AmazonDeliveryServiceImplTest {
 	@Mock
 	private DeliveryScoreService deliveryScoreService;
 
-	@Mock
-	private EmailService emailService;
-
 	@Mock
 	private OrderStorageService orderStorageService;
 
 	@Mock
-	private EmailServiceFactory emailServiceFactory;
+	private NotificationService notificationService;
+
+	@Spy
+	private DeliveryEstimationService deliveryEstimationService =
+			new DeliveryEstimationServiceImpl(new DeliveryEstimationProperties(), Clock.systemUTC());
+
+	@Spy
+	private OrderMetrics orderMetrics = new OrderMetrics();
 
 	@InjectMocks
 	private AmazonDeliveryServiceImpl amazonDeliveryService;
@@ -64,8 +94,7 @@ public class AmazonDeliveryServiceImplTest {
 	@Before
 	public void setUp() throws Exception {
 		Mockito.doNothing().when(deliveryScoreService).submitDeliveryPoints(Mockito.anyLong());
-		Mockito.when(emailServiceFactory.buildEmailService(Mockito.any(Order.class))).thenReturn(emailService);
-		Mockito.doNothing().when(emailService).sendDeliveryNotification();
+		Mockito.doNothing().when(notificationService).notifyDelivered(Mockito.any(Order.class));
 
 		ordersBag = new HashSet<String>();
 
@@ -75,6 +104,23 @@ public class AmazonDeliveryServiceImplTest {
 			return null;
 		}).when(orderStorageService).store(Mockito.any(Order.class));
 
+		Mockito.doAnswer(invocationOnMock -> {
+			Order order = (Order)invocationOnMock.getArguments()[0];
+			return ordersBag.add(order.getDescription());
+		}).when(orderStorageService).storeIfAbsent(Mockito.any(Order.class));
+
+		Mockito.doAnswer(invocationOnMock -> {
+			Collection<?> orders = (Collection<?>)invocationOnMock.getArguments()[0];
+			List<Order> rejected = new ArrayList<Order>();
+			for (Object stored : orders) {
+				Order order = (Order)stored;
+				if (!ordersBag.add(order.getDescription())) {
+					rejected.add(order);
+				}
+			}
+			return rejected;
+		}).when(orderStorageService).storeAllIfAbsent(Mockito.anyCollectionOf(Order.class));
+
 		Mockito.doAnswer(invocationOnMock -> {
 			String desc = (String)invocationOnMock.getArguments()[0];
 			return ordersBag.contains(desc);
@@ -102,7 +148,7 @@ public class AmazonDeliveryServiceImplTest {
 
 		Mockito.verify(orderStorageService).exists(order.getDescription());
 
-		Mockito.verify(orderStorageService).store(order);
+		Mockito.verify(orderStorageService).storeIfAbsent(order);
 
 	}
 
@@ -127,6 +173,18 @@ public class AmazonDeliveryServiceImplTest {
 		Mockito.verify(orderStorageService, Mockito.times(2)).exists(Mockito.anyString());
 	}
 
+	@Test (expected = OrderAlreadyExistsException.class)
+	public void initOrderShouldThrowOrderAlreadyExistsExceptionWhenConcurrentInitWinsTheRace()
+			throws OrderAlreadyExistsException {
+		//Given - another initOrder stored the description after our exists() check
+		Mockito.doReturn(false).when(orderStorageService).storeIfAbsent(Mockito.any(Order.class));
+
+		//When
+		amazonDeliveryService.initOrder(TEST_PRODUCT, TEST_PRODUCT_PRICE, true);
+
+		//Then - throw new OrderAlreadyExistsException
+	}
+
 	@Test
 	public void addDiscountShouldCalcFinalPriceWhenDiscountsAdded() {
 		//Given
@@ -236,6 +294,7 @@ public class AmazonDeliveryServiceImplTest {
 				expectedPointsRegular, argumentCaptor.getValue().longValue());
 
 		Mockito.verify(orderStorageService, Mockito.times(2)).store(regularOrder);
+		Mockito.verify(notificationService).notifyDelivered(regularOrder);
 	}
 
 	@Test
@@ -278,6 +337,18 @@ public class AmazonDeliveryServiceImplTest {
 
 	}
 
+	@Test (expected = IllegalStateException.class)
+	public void calcDeliveryDateScoreShouldThrowWhenEstimatedDeliveryIsNotSet() {
+		//Given - delivered but never estimated
+		Order order = buildOrderTestObject(TEST_PRODUCT, TEST_PRODUCT_PRICE, true);
+		order.setRealDelivery(JUST_NOW);
+
+		//When
+		amazonDeliveryService.calcDeliveryDateScore(order);
+
+		//Then throw IllegalStateException
+	}
+
 	@Test (expected = OrderException.class)
 	public void markDeliveredShouldThrowOrderExceptionWhenAlreadyDelivered() throws OrderException {
 		//Given
@@ -293,6 +364,360 @@ public class AmazonDeliveryServiceImplTest {
 		Mockito.verify(orderStorageService, Mockito.times(2)).store(order);
 	}
 
+	@Test
+	public void retriedTransitionsWithIdempotencyKeyShouldGetFirstOutcome() throws OrderException {
+		//Given
+		Whitebox.setInternalState(amazonDeliveryService, "idempotencyTable",
+				Optional.of(new IdempotencyTable(60_000, 1000, 100)));
+		Order order = buildOrderTestObject(TEST_PRODUCT, TEST_PRODUCT_PRICE, true);
+
+		//When
+		amazonDeliveryService.markSent(order, JUST_NOW, "send-1");
+		amazonDeliveryService.markSent(order, JUST_NOW, "send-1");
+		amazonDeliveryService.markDelivered(order, JUST_NOW, "deliver-1");
+		amazonDeliveryService.markDelivered(order, JUST_NOW, "deliver-1");
+
+		//Then - sent, delivered and scored once, a retry without key still fails
+		Mockito.verify(orderStorageService, Mockito.times(2)).store(order);
+		Mockito.verify(deliveryScoreService).submitDeliveryPoints(Mockito.anyLong());
+		try {
+			amazonDeliveryService.markDelivered(order, JUST_NOW, null);
+			fail("Expected the order to be delivered already");
+		} catch (OrderException e) {
+			assertTrue(order.isDelivered());
+		}
+	}
+
+	@Test
+	public void initOrdersShouldReportDuplicatedOrdersPerItem() {
+		//Given
+		ordersBag.add(TEST_PRODUCT + "Stored");
+		List<OrderRequest> requests = Arrays.asList(
+				new OrderRequest(TEST_PRODUCT + "1", TEST_PRODUCT_PRICE, true),
+				new OrderRequest(TEST_PRODUCT + "Stored", TEST_PRODUCT_PRICE, true),
+				new OrderRequest(TEST_PRODUCT + "1", TEST_PRODUCT_PRICE, false),
+				new OrderRequest(TEST_PRODUCT + "2", TEST_PRODUCT_PRICE, false));
+
+		//When
+		BatchResult result = amazonDeliveryService.initOrders(requests);
+
+		//Then
+		assertEquals(4, result.getItems().size());
+		assertTrue(result.getItems().get(0).isSucceeded());
+		assertTrue(result.getItems().get(1).getFailure() instanceof OrderAlreadyExistsException);
+		assertSame(requests.get(1), result.getItems().get(1).getRequest());
+		assertTrue(result.getItems().get(2).getFailure() instanceof OrderAlreadyExistsException);
+		assertSame(requests.get(2), result.getItems().get(2).getRequest());
+		assertTrue(result.getItems().get(3).isSucceeded());
+		assertEquals(TEST_PRODUCT_PRICE, result.getItems().get(3).getOrder().getFinalPrice(),
+				EPSILON_ALLOWED_DOUBLE_EQUALS);
+
+		Mockito.verify(orderStorageService).storeAllIfAbsent(Mockito.anyCollectionOf(Order.class));
+		Mockito.verify(orderStorageService, Mockito.never()).exists(Mockito.anyString());
+	}
+
+	@Test
+	public void batchesShouldGoThroughAdmissionControl() throws OrderException {
+		//Given - two regular orders, then none for a long while, and one call in progress
+		AdmissionControl admissionControl = new AdmissionControl(new TokenBucket(Clock.systemUTC(), 0.001, 10),
+				new TokenBucket(Clock.systemUTC(), 0.001, 2), new AdaptiveConcurrencyLimit(1, 1, 1, 2.0, 0.5, 100),
+				0.2);
+		Whitebox.setInternalState(amazonDeliveryService, "admissionControl", Optional.of(admissionControl));
+
+		//When
+		BatchResult created = amazonDeliveryService.initOrders(Arrays.asList(
+				new OrderRequest(TEST_PRODUCT + "1", TEST_PRODUCT_PRICE, false),
+				new OrderRequest(TEST_PRODUCT + "2", TEST_PRODUCT_PRICE, true),
+				new OrderRequest(TEST_PRODUCT + "3", TEST_PRODUCT_PRICE, false),
+				new OrderRequest(TEST_PRODUCT + "4", TEST_PRODUCT_PRICE, false)));
+
+		//Then
+		assertTrue(created.getItems().get(0).isSucceeded());
+		assertTrue(created.getItems().get(1).isSucceeded());
+		assertTrue(created.getItems().get(2).isSucceeded());
+		assertEquals(Reason.RATE_LIMITED, ((OrderRejectedException) created.getItems().get(3).getFailure())
+				.getReason());
+		assertEquals(3, ordersBag.size());
+
+		//When - the regular rate is used up
+		List<Order> orders = created.getSucceeded();
+		for (Order order : orders) {
+			amazonDeliveryService.markSent(order, JUST_NOW);
+		}
+		BatchResult delivered = amazonDeliveryService.markDeliveredAll(orders, JUST_NOW);
+
+		//Then
+		assertEquals(Reason.RATE_LIMITED, ((OrderRejectedException) delivered.getItems().get(0).getFailure())
+				.getReason());
+		assertTrue(delivered.getItems().get(1).isSucceeded());
+		assertFalse(orders.get(0).isDelivered());
+		assertEquals(4, admissionControl.getAdmitted());
+		assertEquals(3, admissionControl.getRateLimited());
+		assertEquals(0, admissionControl.getInFlight());
+	}
+
+	@Test
+	public void initOrderShouldGiveEveryOrderAnIdentifier() throws OrderAlreadyExistsException {
+		//Given - when
+		Order first = amazonDeliveryService.initOrder(TEST_PRODUCT + "1", TEST_PRODUCT_PRICE, true);
+		Order second = amazonDeliveryService.initOrder(TEST_PRODUCT + "2", TEST_PRODUCT_PRICE, true);
+
+		//Then
+		assertNotEquals(0, first.getId());
+		assertTrue(second.getId() > first.getId());
+	}
+
+	@Test
+	public void initOrdersShouldAcceptRepeatedDescriptionsWhenNotUnique() throws OrderAlreadyExistsException {
+		//Given
+		OrderStorageServiceImpl storage = new OrderStorageServiceImpl(
+				new SnowflakeIdGenerator(Clock.systemUTC(), 0), false);
+		Whitebox.setInternalState(amazonDeliveryService, "orderStorageService", storage);
+		Whitebox.setInternalState(amazonDeliveryService, "uniqueDescriptions", false);
+		List<OrderRequest> requests = Arrays.asList(
+				new OrderRequest(TEST_PRODUCT, TEST_PRODUCT_PRICE, true),
+				new OrderRequest(TEST_PRODUCT, TEST_PRODUCT_PRICE, false));
+
+		//When
+		BatchResult result = amazonDeliveryService.initOrders(requests);
+		Order third = amazonDeliveryService.initOrder(TEST_PRODUCT, TEST_PRODUCT_PRICE, false);
+
+		//Then
+		assertEquals(2, result.getSucceeded().size());
+		assertSame(third, storage.find(TEST_PRODUCT));
+		assertEquals(3, storage.findByState(OrderState.CREATED).size());
+		for (Order order : result.getSucceeded()) {
+			assertSame(order, storage.findById(order.getId()));
+		}
+	}
+
+	@Test
+	public void addDiscountsShouldCalcFinalPricesAndStoreOnce() {
+		//Given
+		final double discount = 10.0;
+		final double finalPrice = TEST_PRODUCT_PRICE - (TEST_PRODUCT_PRICE * discount / 100.0);
+		List<Order> orders = Arrays.asList(buildOrderTestObject(TEST_PRODUCT + "1", TEST_PRODUCT_PRICE, true),
+				buildOrderTestObject(TEST_PRODUCT + "2", TEST_PRODUCT_PRICE, false));
+
+		//When
+		BatchResult result = amazonDeliveryService.addDiscounts(orders, new Discount("Regular", discount));
+
+		//Then
+		assertTrue(result.isAllSucceeded());
+		for (Order order : orders) {
+			assertEquals(finalPrice, order.getFinalPrice(), EPSILON_ALLOWED_DOUBLE_EQUALS);
+		}
+
+		Mockito.verify(orderStorageService).storeAll(orders);
+		Mockito.verify(orderStorageService, Mockito.never()).store(Mockito.any(Order.class));
+	}
+
+	@Test
+	public void addDiscountShouldRejectDiscountsSummingPastHundredPercent() {
+		//Given
+		Order order = buildOrderTestObject(TEST_PRODUCT, TEST_PRODUCT_PRICE, true);
+		amazonDeliveryService.addDiscount(order, new Discount("Regular", 60.0));
+
+		//When
+		try {
+			amazonDeliveryService.addDiscount(order, new Discount("Special", 50.0));
+			fail("Discounts summing past 100% accepted");
+		} catch (IllegalArgumentException e) {
+			//Then
+			assertEquals(1, order.getDiscounts().size());
+			assertEquals(TEST_PRODUCT_PRICE * 0.4, order.getFinalPrice(), EPSILON_ALLOWED_DOUBLE_EQUALS);
+		}
+
+		//When - compounding discounts never take the price below 0
+		amazonDeliveryService.addDiscount(order, new Discount("Special", 50.0, true, false));
+
+		//Then
+		assertEquals(TEST_PRODUCT_PRICE * 0.2, order.getFinalPrice(), EPSILON_ALLOWED_DOUBLE_EQUALS);
+		Mockito.verify(orderStorageService, Mockito.times(2)).store(order);
+	}
+
+	@Test
+	public void addDiscountsShouldFailOnlyOrdersTheDiscountIsNotValidFor() {
+		//Given
+		Order discounted = buildOrderTestObject(TEST_PRODUCT + "1", TEST_PRODUCT_PRICE, true);
+		Order other = buildOrderTestObject(TEST_PRODUCT + "2", TEST_PRODUCT_PRICE, false);
+		amazonDeliveryService.addDiscount(discounted, new Discount("Regular", 80.0));
+
+		//When
+		BatchResult result = amazonDeliveryService.addDiscounts(Arrays.asList(discounted, other),
+				new Discount("Special", 30.0));
+
+		//Then
+		assertTrue(result.getItems().get(0).getFailure() instanceof IllegalArgumentException);
+		assertTrue(result.getItems().get(1).isSucceeded());
+		Mockito.verify(orderStorageService).storeAll(Arrays.asList(other));
+	}
+
+	@Test
+	public void markSentAllShouldReportAlreadySentOrdersPerItem() throws OrderException {
+		//Given
+		Order sentOrder = buildOrderTestObject(TEST_PRODUCT + "1", TEST_PRODUCT_PRICE, true);
+		Order newOrder = buildOrderTestObject(TEST_PRODUCT + "2", TEST_PRODUCT_PRICE, false);
+		amazonDeliveryService.markSent(sentOrder, JUST_NOW);
+
+		//When
+		BatchResult result = amazonDeliveryService.markSentAll(Arrays.asList(sentOrder, newOrder), JUST_NOW);
+
+		//Then
+		assertTrue(result.getItems().get(0).getFailure() instanceof OrderException);
+		assertTrue(result.getItems().get(1).isSucceeded());
+		assertTrue(newOrder.isSent());
+		assertEquals(Arrays.asList(newOrder), result.getSucceeded());
+
+		Mockito.verify(orderStorageService).storeAll(Arrays.asList(newOrder));
+	}
+
+	@Test
+	public void markSentAllShouldPutOrdersBackWhenTheyCannotBeStored() throws OrderException {
+		//Given
+		Order sentOrder = buildOrderTestObject(TEST_PRODUCT + "1", TEST_PRODUCT_PRICE, true);
+		Order newOrder = buildOrderTestObject(TEST_PRODUCT + "2", TEST_PRODUCT_PRICE, false);
+		amazonDeliveryService.markSent(sentOrder, JUST_NOW);
+		Date sendDate = sentOrder.getSendDate();
+		Mockito.doThrow(new IllegalStateException("Storage unavailable"))
+				.when(orderStorageService).storeAll(Mockito.anyCollectionOf(Order.class));
+
+		//When
+		try {
+			amazonDeliveryService.markSentAll(Arrays.asList(sentOrder, newOrder, newOrder), JUST_NOW);
+			fail("Expected the storage failure");
+		} catch (IllegalStateException e) {
+			//Then
+			assertEquals(sendDate, sentOrder.getSendDate());
+			assertTrue(sentOrder.isSent());
+			assertFalse(newOrder.isSent());
+			assertEquals(Order.NO_DATE, newOrder.getSendMillis());
+			assertEquals(Order.NO_DATE, newOrder.getEstimatedDeliveryMillis());
+		}
+	}
+
+	@Test
+	public void markSentAllShouldPublishNothingWhenOrdersCannotBeStored() throws Exception {
+		//Given
+		OrderEventDispatcher dispatcher = new OrderEventDispatcher(Collections.emptyList(), 16, 4, 100);
+		dispatcher.start();
+		Whitebox.setInternalState(amazonDeliveryService, "orderEventDispatcher", Optional.of(dispatcher));
+		Order order = buildOrderTestObject(TEST_PRODUCT, TEST_PRODUCT_PRICE, false);
+		Mockito.doThrow(new IllegalStateException("Storage unavailable"))
+				.when(orderStorageService).storeAll(Mockito.anyCollectionOf(Order.class));
+
+		//When
+		try {
+			amazonDeliveryService.markSentAll(Arrays.asList(order), JUST_NOW);
+			fail("Expected the storage failure");
+		} catch (IllegalStateException e) {
+			//Then
+			assertEquals(-1, dispatcher.getPublishedOffset());
+		} finally {
+			dispatcher.stop();
+		}
+	}
+
+	@Test
+	public void markSentShouldFailBeforeStoringWhenDispatcherIsStopped() throws OrderException {
+		//Given
+		OrderEventDispatcher dispatcher = new OrderEventDispatcher(Collections.emptyList(), 16, 4, 100);
+		Whitebox.setInternalState(amazonDeliveryService, "orderEventDispatcher", Optional.of(dispatcher));
+		Order order = buildOrderTestObject(TEST_PRODUCT, TEST_PRODUCT_PRICE, false);
+
+		//When
+		try {
+			amazonDeliveryService.markSent(order, JUST_NOW);
+			fail("Expected the stopped dispatcher to fail the order");
+		} catch (IllegalStateException e) {
+			//Then
+			assertFalse(order.isSent());
+			Mockito.verify(orderStorageService, Mockito.never()).store(Mockito.any(Order.class));
+		}
+	}
+
+	@Test
+	public void markDeliveredShouldPutOrderBackWhenItCannotBeStored() throws OrderException {
+		//Given
+		Order order = buildOrderTestObject(TEST_PRODUCT, TEST_PRODUCT_PRICE, true);
+		amazonDeliveryService.markSent(order, JUST_NOW);
+		Mockito.doThrow(new IllegalStateException("Storage unavailable"))
+				.when(orderStorageService).store(order);
+
+		//When
+		try {
+			amazonDeliveryService.markDelivered(order, JUST_NOW);
+			fail("Expected the storage failure");
+		} catch (IllegalStateException e) {
+			//Then
+			assertFalse(order.isDelivered());
+			assertEquals(Order.NO_DATE, order.getRealDeliveryMillis());
+			Mockito.verify(deliveryScoreService, Mockito.never()).submitDeliveryPoints(Mockito.anyLong());
+		}
+	}
+
+	@Test
+	public void markDeliveredAllShouldSubmitScoresOfDeliveredOrdersOnly() throws OrderException {
+		final long expectedPointsPremium = AmazonDeliveryService.ESTIMATED_DAYS_TO_DELIVER_PREMIUM * HOURS_A_DAY;
+
+		//Given
+		Order sentOrder = buildOrderTestObject(TEST_PRODUCT + "1", TEST_PRODUCT_PRICE, true);
+		Order notSentOrder = buildOrderTestObject(TEST_PRODUCT + "2", TEST_PRODUCT_PRICE, true);
+		amazonDeliveryService.markSent(sentOrder, JUST_NOW);
+
+		//When
+		BatchResult result = amazonDeliveryService.markDeliveredAll(Arrays.asList(sentOrder, notSentOrder), JUST_NOW);
+
+		//Then
+		assertTrue(result.getItems().get(0).isSucceeded());
+		assertTrue(result.getItems().get(1).getFailure() instanceof OrderException);
+		assertFalse(notSentOrder.isDelivered());
+
+		Mockito.verify(deliveryScoreService).submitDeliveryPoints(argumentCaptor.capture());
+		assertEquals(expectedPointsPremium, argumentCaptor.getValue().longValue());
+		Mockito.verify(orderStorageService).storeAll(Arrays.asList(sentOrder));
+		Mockito.verify(notificationService).notifyDelivered(sentOrder);
+		Mockito.verify(notificationService, Mockito.never()).notifyDelivered(notSentOrder);
+	}
+
+	@Test
+	public void markDeliveredShouldRecordLatenciesOfOperationAndDownstreamCalls() throws OrderException {
+		//Given
+		Order order = buildOrderTestObject(TEST_PRODUCT, TEST_PRODUCT_PRICE, true);
+		amazonDeliveryService.markSent(order, JUST_NOW);
+
+		//When
+		amazonDeliveryService.markDelivered(order, JUST_NOW);
+
+		//Then
+		assertEquals(1, orderMetrics.getLatency(OrderMetrics.Operation.MARK_SENT).getCount());
+		assertEquals(1, orderMetrics.getLatency(OrderMetrics.Operation.MARK_DELIVERED).getCount());
+		assertEquals(2, orderMetrics.getLatency(OrderMetrics.Downstream.STORAGE).getCount());
+		assertEquals(1, orderMetrics.getLatency(OrderMetrics.Downstream.SCORE).getCount());
+		assertEquals(1, orderMetrics.getLatency(OrderMetrics.Downstream.NOTIFICATION).getCount());
+	}
+
+	@Test
+	public void operationsShouldCountFailuresByExceptionType() throws OrderException, OrderAlreadyExistsException {
+		//Given
+		Order order = buildOrderTestObject(TEST_PRODUCT, TEST_PRODUCT_PRICE, true);
+		amazonDeliveryService.initOrder(TEST_PRODUCT, TEST_PRODUCT_PRICE, true);
+
+		//When
+		try {
+			amazonDeliveryService.initOrder(TEST_PRODUCT, TEST_PRODUCT_PRICE, true);
+		} catch (OrderAlreadyExistsException e) {
+			//counted
+		}
+		amazonDeliveryService.markDeliveredAll(Arrays.asList(order), JUST_NOW);
+
+		//Then
+		assertEquals(1, orderMetrics.getFailures(OrderAlreadyExistsException.class));
+		assertEquals(1, orderMetrics.getFailures(OrderException.class));
+		assertEquals(2, orderMetrics.getLatency(OrderMetrics.Operation.INIT_ORDER).getCount());
+		assertEquals(Long.valueOf(1), orderMetrics.getExceptions().get(OrderException.class.getName()));
+	}
+
 	private Order buildOrderTestObject(String description, double basePrice, boolean premiumCustomer) {
 		Order order = new Order();
 		order.setDescription(description);
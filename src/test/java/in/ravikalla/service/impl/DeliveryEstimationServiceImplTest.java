@@ -0,0 +1,115 @@
+package in.ravikalla.service.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import in.ravikalla.config.DeliveryEstimationProperties;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class DeliveryEstimationServiceImplTest {
+
+	private static final Clock FRIDAY = Clock.fixed(Instant.parse("2026-10-16T10:00:00Z"), ZoneOffset.UTC);
+
+	private DeliveryEstimationProperties properties;
+
+	@Before
+	public void setUp() {
+		properties = new DeliveryEstimationProperties();
+	}
+
+	@Test
+	public void estimateShouldCountCalendarDaysByDefault() {
+		//Given
+		DeliveryEstimationServiceImpl engine = new DeliveryEstimationServiceImpl(properties, FRIDAY);
+
+		//When - then
+		assertEquals(millis("2026-10-18T10:00:00Z"), engine.estimateDeliveryMillis(millis("2026-10-16T10:00:00Z"), true, null));
+		assertEquals(millis("2026-10-21T10:00:00Z"), engine.estimateDeliveryMillis(millis("2026-10-16T10:00:00Z"), false, null));
+	}
+
+	@Test
+	public void estimateShouldSkipWeekends() {
+		//Given
+		properties.setBusinessDays(Arrays.asList("MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY"));
+		DeliveryEstimationServiceImpl engine = new DeliveryEstimationServiceImpl(properties, FRIDAY);
+
+		//When - then
+		assertEquals(millis("2026-10-20T10:00:00Z"), engine.estimateDeliveryMillis(millis("2026-10-16T10:00:00Z"), true, null));
+		assertEquals(millis("2026-10-23T10:00:00Z"), engine.estimateDeliveryMillis(millis("2026-10-16T10:00:00Z"), false, null));
+	}
+
+	@Test
+	public void estimateShouldSkipHolidays() {
+		//Given
+		properties.setBusinessDays(Arrays.asList("MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY"));
+		properties.setHolidays(Arrays.asList("2026-12-25"));
+		DeliveryEstimationServiceImpl engine = new DeliveryEstimationServiceImpl(properties, FRIDAY);
+
+		//When - then
+		assertEquals(millis("2026-12-29T10:00:00Z"), engine.estimateDeliveryMillis(millis("2026-12-24T10:00:00Z"), true, null));
+	}
+
+	@Test
+	public void estimateShouldStartNextDayWhenSentAfterCutoff() {
+		//Given
+		properties.setBusinessDays(Arrays.asList("MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY"));
+		properties.setCutoff("16:00");
+		DeliveryEstimationServiceImpl engine = new DeliveryEstimationServiceImpl(properties, FRIDAY);
+
+		//When - then
+		assertEquals(millis("2026-10-19T15:59:00Z"), engine.estimateDeliveryMillis(millis("2026-10-15T15:59:00Z"), true, null));
+		assertEquals(millis("2026-10-20T16:00:00Z"), engine.estimateDeliveryMillis(millis("2026-10-15T16:00:00Z"), true, null));
+	}
+
+	@Test
+	public void estimateShouldUseRegionSla() {
+		//Given
+		properties.getRegions().put("EU", new DeliveryEstimationProperties.Sla(3, 6));
+		DeliveryEstimationServiceImpl engine = new DeliveryEstimationServiceImpl(properties, FRIDAY);
+
+		//When - then
+		assertEquals(millis("2026-10-19T10:00:00Z"), engine.estimateDeliveryMillis(millis("2026-10-16T10:00:00Z"), true, "EU"));
+		assertEquals(millis("2026-10-22T10:00:00Z"), engine.estimateDeliveryMillis(millis("2026-10-16T10:00:00Z"), false, "EU"));
+		assertEquals(millis("2026-10-21T10:00:00Z"), engine.estimateDeliveryMillis(millis("2026-10-16T10:00:00Z"), false, "US"));
+	}
+
+	@Test
+	public void estimateShouldEvaluateCalendarInZoneOffset() {
+		//Given - 23:00 UTC Friday is already Saturday in +05:30, Tuesday 04:30 local is Monday 23:00 UTC
+		properties.setZoneOffset("+05:30");
+		properties.setBusinessDays(Arrays.asList("MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY"));
+		DeliveryEstimationServiceImpl engine = new DeliveryEstimationServiceImpl(properties, FRIDAY);
+
+		//When - then
+		assertEquals(millis("2026-10-19T23:00:00Z"), engine.estimateDeliveryMillis(millis("2026-10-16T23:00:00Z"), true, null));
+	}
+
+	@Test
+	public void estimateShouldMatchLookupTablesOutsideTheHorizon() {
+		//Given
+		properties.setBusinessDays(Arrays.asList("MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY"));
+		properties.setHolidays(Arrays.asList("2031-01-01"));
+		DeliveryEstimationServiceImpl longHorizon = new DeliveryEstimationServiceImpl(properties, FRIDAY);
+		properties.setHorizonDays(10);
+		DeliveryEstimationServiceImpl shortHorizon = new DeliveryEstimationServiceImpl(properties, FRIDAY);
+
+		//When - then
+		for (long send = millis("2030-12-20T08:00:00Z"); send < millis("2031-01-20T08:00:00Z"); send += 3_600_000L * 7) {
+			assertEquals(longHorizon.estimateDeliveryMillis(send, false, null),
+					shortHorizon.estimateDeliveryMillis(send, false, null));
+		}
+	}
+
+	private static long millis(String instant) {
+		return Instant.parse(instant).toEpochMilli();
+	}
+}
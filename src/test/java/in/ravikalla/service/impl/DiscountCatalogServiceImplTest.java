@@ -0,0 +1,133 @@
+package in.ravikalla.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import in.ravikalla.model.Discount;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class DiscountCatalogServiceImplTest {
+
+	private static final String CATALOG = "{\"NEWYEAR\": {\"description\": \"Promo of new year\", \"percent\": 5.0},"
+			+ " \"LOYALTY\": {\"description\": \"Loyalty\", \"percent\": 2.5, \"compounding\": true}}";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = temporaryFolder.newFile("discounts.json");
+		write(CATALOG, 0);
+	}
+
+	@Test
+	public void internShouldShareCatalogInstanceOfEqualDefinitions() {
+		//Given
+		DiscountCatalogServiceImpl catalog = new DiscountCatalogServiceImpl(file.getPath(), 0);
+		Discount posted = new Discount(new String("Promo of new year"), 5.0);
+		Discount unknown = new Discount("Promo of new year", 6.0);
+
+		//When - then
+		assertEquals(2, catalog.getSize());
+		assertSame(catalog.find("NEWYEAR"), catalog.intern(posted));
+		assertSame(unknown, catalog.intern(unknown));
+		assertTrue(catalog.find("LOYALTY").isCompounding());
+		assertNull(catalog.find("Promo of new year"));
+	}
+
+	@Test
+	public void reloadShouldKeepInstancesOfUnchangedDefinitions() throws IOException {
+		//Given
+		DiscountCatalogServiceImpl catalog = new DiscountCatalogServiceImpl(file.getPath(), 0);
+		Discount newYear = catalog.find("NEWYEAR");
+		Discount loyalty = catalog.find("LOYALTY");
+		write("{\"NEWYEAR\": {\"description\": \"Promo of new year\", \"percent\": 5.0},"
+				+ " \"LOYALTY\": {\"description\": \"Loyalty\", \"percent\": 3.0, \"compounding\": true},"
+				+ " \"PROMO\": {\"description\": \"Promo of new year\", \"percent\": 5.0}}", 1);
+
+		//When
+		catalog.reloadIfChanged();
+
+		//Then
+		assertEquals(1, catalog.getReloads());
+		assertEquals(3, catalog.getSize());
+		assertSame(newYear, catalog.find("NEWYEAR"));
+		assertSame(newYear, catalog.find("PROMO"));
+		assertNotSame(loyalty, catalog.find("LOYALTY"));
+		assertEquals(3.0, catalog.find("LOYALTY").getPercent(), 0.0);
+	}
+
+	@Test
+	public void reloadShouldKeepCatalogWhenFileIsNotValid() throws IOException {
+		//Given
+		DiscountCatalogServiceImpl catalog = new DiscountCatalogServiceImpl(file.getPath(), 0);
+		Discount newYear = catalog.find("NEWYEAR");
+
+		for (String invalid : new String[] { "{\"FREE\": {\"description\": \"Free\", \"percent\": 120.0}}",
+				"{\"NEGATIVE\": {\"description\": \"Negative\", \"percent\": -5.0}}",
+				"{\"UNNAMED\": {\"percent\": 5.0}}", "{\"NEWYEAR\": " }) {
+			write(invalid, 1);
+
+			//When - then
+			assertFalse(invalid, catalog.reload());
+			assertSame(newYear, catalog.find("NEWYEAR"));
+		}
+		assertEquals(4, catalog.getRejectedReloads());
+
+		//When - a rejected version is not read again until it changes
+		catalog.reloadIfChanged();
+
+		//Then
+		assertEquals(5, catalog.getRejectedReloads());
+		catalog.reloadIfChanged();
+		assertEquals(5, catalog.getRejectedReloads());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorShouldFailOnInvalidFile() throws IOException {
+		//Given
+		write("{\"FREE\": {\"description\": \"Free\", \"percent\": 100.5}}", 0);
+
+		//When
+		new DiscountCatalogServiceImpl(file.getPath(), 0);
+	}
+
+	@Test
+	public void emptyFileNameShouldGiveEmptyCatalog() {
+		//Given
+		DiscountCatalogServiceImpl catalog = new DiscountCatalogServiceImpl("", 0);
+		Discount discount = new Discount("Promo of new year", 5.0);
+
+		//When - then
+		assertEquals(0, catalog.getSize());
+		assertSame(discount, catalog.intern(discount));
+		assertFalse(catalog.reload());
+	}
+
+	/**
+	 * Sets the modification time explicitly, file systems may not tell writes in the same second apart.
+	 */
+	private void write(String json, int version) throws IOException {
+		Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(1_000_000_000_000L + version * 1000L));
+	}
+}
@@ -0,0 +1,182 @@
+package in.ravikalla.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import in.ravikalla.external.service.EmailService;
+import in.ravikalla.external.service.impl.OrderStorageServiceImpl;
+import in.ravikalla.factory.EmailServiceFactory;
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.model.Order;
+import in.ravikalla.service.BackpressurePolicy;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class EmailNotificationServiceImplTest {
+
+	private static final String TEST_PRODUCT = "Test";
+	private static final int BATCH_SIZE = 100;
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private RecordingEmailService emailService;
+
+	private OrderStorageServiceImpl orderStorageService;
+
+	private EmailNotificationServiceImpl notificationService;
+
+	@Before
+	public void setUp() {
+		emailService = new RecordingEmailService();
+		orderStorageService = new OrderStorageServiceImpl();
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		emailService.releaseCalls();
+		if (notificationService != null) {
+			notificationService.stop();
+		}
+	}
+
+	@Test
+	public void notifyDeliveredShouldSendQueuedNotificationsInBatches() throws Exception {
+		//Given
+		notificationService = start(1000, BackpressurePolicy.BLOCK);
+
+		//When
+		for (int i = 0; i < 250; i++) {
+			notificationService.notifyDelivered(storedOrder(TEST_PRODUCT + i));
+		}
+
+		//Then
+		awaitSent(250);
+		assertTrue(notificationService.getSendLatency().getCount() >= 250 / BATCH_SIZE + 1);
+		assertEquals(250, notificationService.getSent());
+		assertEquals(0, notificationService.getQueueDepth());
+		assertTrue(notificationService.getSendLatency().getCount() > 0);
+	}
+
+	@Test
+	public void notifyDeliveredShouldRetryFailedBatches() throws Exception {
+		//Given
+		emailService.failNextCalls(2);
+		notificationService = start(10, BackpressurePolicy.BLOCK);
+
+		//When
+		notificationService.notifyDelivered(storedOrder(TEST_PRODUCT));
+
+		//Then
+		awaitSent(1);
+		assertEquals(2, notificationService.getRetries());
+		assertEquals(0, notificationService.getFailed());
+	}
+
+	@Test
+	public void retryShouldOnlySendOrdersNotSentBeforeTheFailure() throws Exception {
+		//Given - the third notification of the batch fails once
+		emailService.holdCalls();
+		emailService.failCall(3);
+		notificationService = start(10, BackpressurePolicy.BLOCK);
+		List<Order> orders = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			orders.add(storedOrder(TEST_PRODUCT + i));
+		}
+
+		//When
+		for (Order order : orders) {
+			notificationService.notifyDelivered(order);
+		}
+		emailService.releaseCalls();
+
+		//Then - every order is notified exactly once
+		awaitSent(5);
+		Set<Order> notified = Collections.newSetFromMap(new IdentityHashMap<>());
+		notified.addAll(emailService.getSent());
+		assertEquals(5, notified.size());
+		assertTrue(notified.containsAll(orders));
+		assertEquals(1, notificationService.getRetries());
+		assertEquals(5, notificationService.getSent());
+	}
+
+	@Test
+	public void notifyDeliveredShouldDropWhenQueueIsFull() throws Exception {
+		//Given - dispatcher is stuck sending the first notification and the queue holds one more
+		emailService.holdCalls();
+		notificationService = start(1, BackpressurePolicy.DROP);
+		notificationService.notifyDelivered(storedOrder(TEST_PRODUCT + 1));
+		assertTrue(emailService.awaitSending());
+		notificationService.notifyDelivered(storedOrder(TEST_PRODUCT + 2));
+
+		//When
+		notificationService.notifyDelivered(storedOrder(TEST_PRODUCT + 3));
+		emailService.releaseCalls();
+
+		//Then
+		awaitSent(2);
+		assertEquals(1, notificationService.getDropped());
+	}
+
+	@Test
+	public void notifyDeliveredShouldSpillToDiskAndReplayWhenQueueIsFull() throws Exception {
+		//Given - dispatcher is stuck sending the first notification and the queue holds one more
+		emailService.holdCalls();
+		notificationService = start(1, BackpressurePolicy.SPILL);
+		notificationService.notifyDelivered(storedOrder(TEST_PRODUCT + 1));
+		assertTrue(emailService.awaitSending());
+		notificationService.notifyDelivered(storedOrder(TEST_PRODUCT + 2));
+
+		//When
+		notificationService.notifyDelivered(storedOrder(TEST_PRODUCT + 3));
+		notificationService.notifyDelivered(storedOrder(TEST_PRODUCT + 4));
+		emailService.releaseCalls();
+
+		//Then
+		awaitSent(4);
+		assertEquals(2, notificationService.getSpilled());
+		assertEquals(0, notificationService.getDropped());
+	}
+
+	private EmailNotificationServiceImpl start(int capacity, BackpressurePolicy policy) throws Exception {
+		File spillFile = new File(temporaryFolder.getRoot(), "notifications.spill");
+		EmailNotificationServiceImpl service = new EmailNotificationServiceImpl(new EmailServiceFactory() {
+			@Override
+			public EmailService getEmailService() {
+				return emailService;
+			}
+		}, orderStorageService, new OrderMetrics(), capacity, BATCH_SIZE, policy, 3, 1, 10, spillFile.getPath());
+		service.start();
+		return service;
+	}
+
+	private Order storedOrder(String description) {
+		Order order = new Order();
+		order.setDescription(description);
+		orderStorageService.storeIfAbsent(order);
+		return order;
+	}
+
+	private void awaitSent(int expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (emailService.getSentCount() < expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected, emailService.getSentCount());
+	}
+}
@@ -0,0 +1,163 @@
+package in.ravikalla.service.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class FinalPriceCalculationTest {
+
+	private static final int SAMPLES = 100_000;
+	//Half-cent results may round either way in double arithmetic
+	private static final double ONE_CENT = 0.01 + 1e-9;
+	private static final double EPSILON_ALLOWED_DOUBLE_EQUALS = 0.0;
+
+	private AmazonDeliveryServiceImpl amazonDeliveryService;
+
+	@Before
+	public void setUp() {
+		amazonDeliveryService = new AmazonDeliveryServiceImpl();
+	}
+
+	@Test
+	public void finalPriceShouldMatchDoubleArithmeticWithinRounding() {
+		Random random = new Random(20261018L);
+
+		for (int sample = 0; sample < SAMPLES; sample++) {
+			//Given - a price with cents and up to 20 additive discounts with up to two decimals
+			double basePrice = random.nextInt(10_000_000) / 100.0;
+			List<Discount> discounts = new ArrayList<>();
+			int count = random.nextInt(21);
+			for (int i = 0; i < count; i++) {
+				discounts.add(new Discount("Promo " + i, random.nextInt(1_000) / 100.0));
+			}
+
+			//When
+			Order order = new Order();
+			order.setBasePrice(basePrice);
+			for (Discount discount : discounts) {
+				order.addDiscount(discount);
+			}
+			amazonDeliveryService.calcFinalPrice(order);
+
+			//Then
+			assertEquals("Base price " + basePrice + " discounts " + count,
+					legacyFinalPrice(basePrice, discounts), order.getFinalPrice(), ONE_CENT);
+		}
+	}
+
+	@Test
+	public void finalPriceShouldBeExactForCentAmounts() {
+		//Given
+		Order order = new Order();
+		order.setBasePrice(0.10);
+		order.addDiscount(new Discount("Regular", 10.0));
+		order.addDiscount(new Discount("Regular", 20.0));
+
+		//When
+		amazonDeliveryService.calcFinalPrice(order);
+
+		//Then - double arithmetic gives 0.06999999999999999 before rounding
+		assertEquals(7, order.getFinalPriceCents());
+	}
+
+	@Test
+	public void compoundingDiscountShouldApplyOnRemainingPrice() {
+		//Given
+		Order order = buildOrder(200.0);
+		order.addDiscount(new Discount("Regular", 10.0));
+		order.addDiscount(new Discount("Loyalty", 50.0, true, false));
+
+		//When
+		amazonDeliveryService.calcFinalPrice(order);
+
+		//Then - 200 * 0.9 * 0.5
+		assertEquals(90.0, order.getFinalPrice(), EPSILON_ALLOWED_DOUBLE_EQUALS);
+	}
+
+	@Test
+	public void exclusiveDiscountShouldNotStackWithOthers() {
+		//Given
+		Order order = buildOrder(200.0);
+		order.addDiscount(new Discount("Regular", 10.0));
+		order.addDiscount(new Discount("Special", 5.0));
+		order.addDiscount(new Discount("Black friday", 20.0, false, true));
+
+		//When
+		amazonDeliveryService.calcFinalPrice(order);
+
+		//Then - 20% alone beats 10% + 5%
+		assertEquals(160.0, order.getFinalPrice(), EPSILON_ALLOWED_DOUBLE_EQUALS);
+
+		//When
+		order.addDiscount(new Discount("Coupon", 10.0));
+		amazonDeliveryService.calcFinalPrice(order);
+
+		//Then - 10% + 5% + 10% now beats 20% alone
+		assertEquals(150.0, order.getFinalPrice(), EPSILON_ALLOWED_DOUBLE_EQUALS);
+	}
+
+	@Test
+	public void totalDiscountShouldBeCapped() {
+		//Given
+		Whitebox.setInternalState(amazonDeliveryService, "maxDiscountPercent", 25.0);
+		Order order = buildOrder(200.0);
+		order.addDiscount(new Discount("Regular", 20.0));
+		order.addDiscount(new Discount("Special", 20.0));
+
+		//When
+		amazonDeliveryService.calcFinalPrice(order);
+
+		//Then
+		assertEquals(150.0, order.getFinalPrice(), EPSILON_ALLOWED_DOUBLE_EQUALS);
+	}
+
+	@Test
+	public void setDiscountsShouldRecomputeRunningTotals() {
+		//Given
+		Order order = buildOrder(100.0);
+		order.addDiscount(new Discount("Regular", 20.0));
+
+		//When
+		List<Discount> discounts = new ArrayList<>();
+		discounts.add(new Discount("Special", 5.0));
+		order.setDiscounts(discounts);
+		amazonDeliveryService.calcFinalPrice(order);
+
+		//Then
+		assertEquals(500, order.getAdditiveDiscountBasisPoints());
+		assertEquals(95.0, order.getFinalPrice(), EPSILON_ALLOWED_DOUBLE_EQUALS);
+	}
+
+	/**
+	 * Final price computation as it was done before prices were kept in cents.
+	 */
+	private static double legacyFinalPrice(double basePrice, List<Discount> discounts) {
+		double totalDiscount = 0;
+		for (Discount discount : discounts) {
+			totalDiscount += discount.getPercent();
+		}
+		double finalPrice = basePrice - (basePrice * totalDiscount / 100.0);
+		finalPrice *= 100;
+		finalPrice = Math.round(finalPrice);
+		finalPrice /= 100;
+		return finalPrice;
+	}
+
+	private static Order buildOrder(double basePrice) {
+		Order order = new Order();
+		order.setBasePrice(basePrice);
+		return order;
+	}
+}
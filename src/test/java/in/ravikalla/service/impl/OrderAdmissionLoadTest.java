@@ -0,0 +1,150 @@
+package in.ravikalla.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import in.ravikalla.admission.AdaptiveConcurrencyLimit;
+import in.ravikalla.admission.AdmissionControl;
+import in.ravikalla.admission.TokenBucket;
+import in.ravikalla.config.DeliveryEstimationProperties;
+import in.ravikalla.exception.OrderRejectedException;
+import in.ravikalla.external.service.DeliveryScoreService;
+import in.ravikalla.external.service.impl.OrderStorageServiceImpl;
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.model.Order;
+import in.ravikalla.service.NotificationService;
+
+/**
+ * Overloads order creation, many more clients than a storage able to write one order at a time
+ * can serve, and checks that admission control sheds the excess: clients are told to come back
+ * later and the concurrency limit converges below the number of clients. Latencies are left to
+ * the benchmarks, they depend on the machine.
+ *
+ * @author - Ravi Kalla
+ */
+public class OrderAdmissionLoadTest {
+
+	private static final int CLIENTS = 32;
+	private static final int ORDERS_PER_CLIENT = 40;
+	private static final int WINDOW = 20;
+	private static final long WRITE_MILLIS = 1;
+	private static final double TEST_PRODUCT_PRICE = 150.0;
+
+	private AmazonDeliveryServiceImpl amazonDeliveryService;
+	private ExecutorService executor;
+
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder retryAfterMillis = new LongAdder();
+
+	@Before
+	public void setUp() {
+		amazonDeliveryService = new AmazonDeliveryServiceImpl();
+		Whitebox.setInternalState(amazonDeliveryService, "deliveryScoreService", mock(DeliveryScoreService.class));
+		Whitebox.setInternalState(amazonDeliveryService, "orderStorageService", new SlowOrderStorageService());
+		Whitebox.setInternalState(amazonDeliveryService, "notificationService", mock(NotificationService.class));
+		Whitebox.setInternalState(amazonDeliveryService, "deliveryEstimationService",
+				new DeliveryEstimationServiceImpl(new DeliveryEstimationProperties(), Clock.systemUTC()));
+		Whitebox.setInternalState(amazonDeliveryService, "orderMetrics", new OrderMetrics());
+
+		executor = Executors.newFixedThreadPool(CLIENTS);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void admissionControlShouldShedExcessUnderOverload() throws Exception {
+		//Given
+		AdmissionControl admissionControl = new AdmissionControl(new TokenBucket(Clock.systemUTC(), 1_000_000, 1000),
+				new TokenBucket(Clock.systemUTC(), 1_000_000, 1000), new AdaptiveConcurrencyLimit(CLIENTS, 2, CLIENTS,
+						2.0, 0.9, WINDOW), 0.2);
+		Whitebox.setInternalState(amazonDeliveryService, "admissionControl", Optional.of(admissionControl));
+
+		//When
+		int created = createOrders("admitted");
+
+		//Then - the excess waits at the client instead of in front of storage
+		assertEquals(CLIENTS * ORDERS_PER_CLIENT, created);
+		assertEquals(created, admissionControl.getAdmitted());
+		assertEquals(0, admissionControl.getRateLimited());
+		assertTrue(rejected.sum() > 0);
+		assertEquals(rejected.sum(), admissionControl.getOverloaded());
+		assertTrue(retryAfterMillis.sum() >= rejected.sum());
+		assertTrue(String.valueOf(admissionControl.getConcurrencyLimit()),
+				admissionControl.getConcurrencyLimit() < CLIENTS / 2);
+		assertEquals(0, admissionControl.getInFlight());
+	}
+
+	/**
+	 * Every client creates its orders one after the other, waiting the hinted delay after a rejection.
+	 *
+	 * @return Number of orders created
+	 */
+	private int createOrders(String run) throws Exception {
+		LongAdder created = new LongAdder();
+		List<Future<?>> clients = new ArrayList<>();
+		for (int client = 0; client < CLIENTS; client++) {
+			String prefix = run + "-" + client + "-";
+			clients.add(executor.submit(() -> {
+				for (int i = 0; i < ORDERS_PER_CLIENT; i++) {
+					while (true) {
+						try {
+							amazonDeliveryService.initOrder(prefix + i, TEST_PRODUCT_PRICE, i % 2 == 0);
+							created.increment();
+							break;
+						} catch (OrderRejectedException e) {
+							rejected.increment();
+							retryAfterMillis.add(e.getRetryAfterMillis());
+							Thread.sleep(e.getRetryAfterMillis());
+						}
+					}
+				}
+				return null;
+			}));
+		}
+		for (Future<?> client : clients) {
+			client.get(2, TimeUnit.MINUTES);
+		}
+		return created.intValue();
+	}
+
+	/**
+	 * Writes one order at a time, like a single disk.
+	 */
+	private static final class SlowOrderStorageService extends OrderStorageServiceImpl {
+
+		private final Semaphore disk = new Semaphore(1);
+
+		@Override
+		public boolean storeIfAbsent(Order order) {
+			disk.acquireUninterruptibly();
+			try {
+				Thread.sleep(WRITE_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				disk.release();
+			}
+			return super.storeIfAbsent(order);
+		}
+	}
+}
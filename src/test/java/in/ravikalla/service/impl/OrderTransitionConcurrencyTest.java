@@ -0,0 +1,226 @@
+package in.ravikalla.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import in.ravikalla.config.DeliveryEstimationProperties;
+import in.ravikalla.event.DeliveryScoreConsumer;
+import in.ravikalla.event.NotificationConsumer;
+import in.ravikalla.event.OrderEvent;
+import in.ravikalla.event.OrderEventConsumer;
+import in.ravikalla.event.OrderEventDispatcher;
+import in.ravikalla.exception.OrderException;
+import in.ravikalla.external.service.DeliveryScoreService;
+import in.ravikalla.external.service.impl.OrderStorageServiceImpl;
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderState;
+import in.ravikalla.service.DeliveryEstimationService;
+import in.ravikalla.service.NotificationService;
+
+/**
+ * Races every lifecycle operation on the same orders from many threads.
+ *
+ * @author - Ravi Kalla
+ */
+public class OrderTransitionConcurrencyTest {
+
+	private static final int THREADS = 8;
+	private static final int ORDERS = 200;
+	private static final int ROUNDS = 10;
+	private static final String TEST_PRODUCT = "Test";
+	private static final double TEST_PRODUCT_PRICE = 150.0;
+
+	private DeliveryScoreService deliveryScoreService;
+	private NotificationService notificationService;
+	private OrderMetrics orderMetrics;
+	private OrderStorageServiceImpl orderStorageService;
+	private ConcurrentHashMap<Order, AtomicInteger> notifications;
+	private AmazonDeliveryServiceImpl amazonDeliveryService;
+
+	private ExecutorService executor;
+
+	private final AtomicInteger sent = new AtomicInteger();
+	private final AtomicInteger delivered = new AtomicInteger();
+
+	@Before
+	public void setUp() {
+		deliveryScoreService = mock(DeliveryScoreService.class);
+		orderStorageService = new OrderStorageServiceImpl();
+		notifications = new ConcurrentHashMap<>();
+		notificationService = order -> notifications.computeIfAbsent(order, key -> new AtomicInteger()).incrementAndGet();
+
+		amazonDeliveryService = new AmazonDeliveryServiceImpl();
+		Whitebox.setInternalState(amazonDeliveryService, "deliveryScoreService", deliveryScoreService);
+		Whitebox.setInternalState(amazonDeliveryService, "orderStorageService", orderStorageService);
+		Whitebox.setInternalState(amazonDeliveryService, "notificationService", notificationService);
+		Whitebox.setInternalState(amazonDeliveryService, "deliveryEstimationService",
+				new YieldingDeliveryEstimationService());
+		orderMetrics = new OrderMetrics();
+		Whitebox.setInternalState(amazonDeliveryService, "orderMetrics", orderMetrics);
+
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void eachOrderShouldBeScoredAndNotifiedExactlyOnce() throws Exception {
+		//Given - when - then
+		List<Order> orders = raceLifecycle();
+		assertScoredAndNotifiedOnce(orders);
+	}
+
+	@Test
+	public void eachOrderShouldBeScoredAndNotifiedExactlyOnceThroughEvents() throws Exception {
+		//Given
+		DeliveryScoreConsumer scoreConsumer = new DeliveryScoreConsumer();
+		Whitebox.setInternalState(scoreConsumer, "deliveryScoreService", deliveryScoreService);
+		Whitebox.setInternalState(scoreConsumer, "orderMetrics", orderMetrics);
+		NotificationConsumer notificationConsumer = new NotificationConsumer();
+		Whitebox.setInternalState(notificationConsumer, "notificationService", notificationService);
+		Whitebox.setInternalState(notificationConsumer, "orderMetrics", orderMetrics);
+		Map<String, List<OrderEvent.Type>> streams = new ConcurrentHashMap<>();
+		OrderEventConsumer recorder = events -> {
+			for (OrderEvent event : events) {
+				streams.computeIfAbsent(event.getDescription(), key -> new ArrayList<>()).add(event.getType());
+			}
+		};
+		OrderEventDispatcher dispatcher = new OrderEventDispatcher(
+				Arrays.asList(scoreConsumer, notificationConsumer, recorder), 64, 16, 1_000_000);
+		Whitebox.setInternalState(amazonDeliveryService, "orderEventDispatcher", Optional.of(dispatcher));
+		dispatcher.start();
+
+		//When
+		List<Order> orders = raceLifecycle();
+		dispatcher.stop();
+
+		//Then - every order is created first, gets a discount per thread and is sent before it is delivered
+		assertScoredAndNotifiedOnce(orders);
+		assertEquals(orders.size(), streams.size());
+		for (List<OrderEvent.Type> stream : streams.values()) {
+			assertEquals(THREADS + 3, stream.size());
+			assertEquals(OrderEvent.Type.CREATED, stream.get(0));
+			assertEquals(THREADS, Collections.frequency(stream, OrderEvent.Type.DISCOUNT_ADDED));
+			assertEquals(1, Collections.frequency(stream, OrderEvent.Type.SENT));
+			assertEquals(1, Collections.frequency(stream, OrderEvent.Type.DELIVERED));
+			assertTrue(stream.indexOf(OrderEvent.Type.SENT) < stream.indexOf(OrderEvent.Type.DELIVERED));
+		}
+	}
+
+	private List<Order> raceLifecycle() throws Exception {
+		List<Order> orders = new ArrayList<>();
+		for (int round = 0; round < ROUNDS; round++) {
+			List<Order> roundOrders = new ArrayList<>();
+			for (int i = 0; i < ORDERS; i++) {
+				roundOrders.add(amazonDeliveryService.initOrder(TEST_PRODUCT + round + "-" + i, TEST_PRODUCT_PRICE,
+						false));
+			}
+
+			//every thread discounts, sends and delivers every order, half of them in batches
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> results = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				final boolean batch = t % 2 == 0;
+				results.add(executor.submit(() -> {
+					start.await();
+					Date now = new Date();
+					if (batch) {
+						amazonDeliveryService.addDiscounts(roundOrders, new Discount("Promo", 1.0));
+						sent.addAndGet(amazonDeliveryService.markSentAll(roundOrders, now).getSucceeded().size());
+						delivered.addAndGet(
+								amazonDeliveryService.markDeliveredAll(roundOrders, now).getSucceeded().size());
+						return null;
+					}
+					for (Order order : roundOrders) {
+						amazonDeliveryService.addDiscount(order, new Discount("Promo", 1.0));
+						try {
+							amazonDeliveryService.markSent(order, now);
+							sent.incrementAndGet();
+						} catch (OrderException e) {
+							//another thread sent it first
+						}
+						try {
+							amazonDeliveryService.markDelivered(order, now);
+							delivered.incrementAndGet();
+						} catch (OrderException e) {
+							//another thread delivered it first
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> result : results) {
+				result.get();
+			}
+			orders.addAll(roundOrders);
+		}
+		return orders;
+	}
+
+	private void assertScoredAndNotifiedOnce(List<Order> orders) {
+		assertEquals(ROUNDS * ORDERS, sent.get());
+		assertEquals(ROUNDS * ORDERS, delivered.get());
+		verify(deliveryScoreService, times(ROUNDS * ORDERS)).submitDeliveryPoints(anyLong());
+		assertEquals(ROUNDS * ORDERS, notifications.size());
+		for (AtomicInteger count : notifications.values()) {
+			assertEquals(1, count.get());
+		}
+		for (Order order : orders) {
+			assertTrue(order.isDelivered());
+			assertEquals(THREADS, order.getDiscounts().size());
+		}
+		assertEquals(ROUNDS * ORDERS, orderStorageService.findByState(OrderState.DELIVERED).size());
+		assertEquals(Collections.emptyList(), new ArrayList<>(orderStorageService.findByState(OrderState.SENT)));
+	}
+
+	/**
+	 * Gives up the processor while an order is being sent, so that racing threads interleave
+	 * even on a single core.
+	 */
+	private static final class YieldingDeliveryEstimationService implements DeliveryEstimationService {
+
+		private final DeliveryEstimationService delegate =
+				new DeliveryEstimationServiceImpl(new DeliveryEstimationProperties(), Clock.systemUTC());
+
+		@Override
+		public long estimateDeliveryMillis(long sendMillis, boolean premiumCustomer, String region) {
+			Thread.yield();
+			return delegate.estimateDeliveryMillis(sendMillis, premiumCustomer, region);
+		}
+
+		@Override
+		public long currentMillis() {
+			return delegate.currentMillis();
+		}
+	}
+}
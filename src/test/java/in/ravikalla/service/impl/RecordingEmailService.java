@@ -0,0 +1,75 @@
+package in.ravikalla.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import in.ravikalla.external.service.EmailService;
+import in.ravikalla.model.Order;
+
+/**
+ * Local stand-in sender recording the orders it was asked to notify.
+ * It can be told to fail the next calls or one given call, or to hold every call until released.
+ *
+ * @author - Ravi Kalla
+ */
+public class RecordingEmailService extends EmailService {
+
+	private final List<Order> sent = new ArrayList<>();
+	private final AtomicInteger calls = new AtomicInteger();
+	private final AtomicInteger failuresLeft = new AtomicInteger();
+	private volatile int failingCall;
+	private final CountDownLatch sending = new CountDownLatch(1);
+	private volatile CountDownLatch release = new CountDownLatch(0);
+
+	public void failNextCalls(int calls) {
+		failuresLeft.set(calls);
+	}
+
+	/**
+	 * @param call Number of the call to fail, counting from 1
+	 */
+	public void failCall(int call) {
+		failingCall = call;
+	}
+
+	public void holdCalls() {
+		release = new CountDownLatch(1);
+	}
+
+	public void releaseCalls() {
+		release.countDown();
+	}
+
+	public boolean awaitSending() throws InterruptedException {
+		return sending.await(5, TimeUnit.SECONDS);
+	}
+
+	@Override
+	public void sendDeliveryNotification(Order order) {
+		sending.countDown();
+		try {
+			release.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (calls.incrementAndGet() == failingCall || failuresLeft.getAndDecrement() > 0) {
+			throw new IllegalStateException("Mail server unavailable");
+		}
+		synchronized (sent) {
+			sent.add(order);
+		}
+	}
+
+	public List<Order> getSent() {
+		synchronized (sent) {
+			return new ArrayList<>(sent);
+		}
+	}
+
+	public int getSentCount() {
+		return getSent().size();
+	}
+}
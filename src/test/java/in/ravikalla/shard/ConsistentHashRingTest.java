@@ -0,0 +1,94 @@
+package in.ravikalla.shard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class ConsistentHashRingTest {
+
+	private static final int KEYS = 100_000;
+	private static final int VIRTUAL_NODES = 128;
+
+	@Test
+	public void testKeysAreSpreadEvenly() {
+		//Given
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), VIRTUAL_NODES);
+
+		//When
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			counts.merge(ring.owner("Order-" + i), 1, Integer::sum);
+		}
+
+		//Then
+		assertEquals(4, counts.size());
+		for (int count : counts.values()) {
+			assertTrue("Unbalanced: " + counts, Math.abs(count - KEYS / 4) < KEYS / 4 / 5);
+		}
+	}
+
+	@Test
+	public void testAddingNodeMovesOnlyKeysToIt() {
+		//Given
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c"), VIRTUAL_NODES);
+
+		//When
+		ConsistentHashRing grown = ring.withNode("d");
+
+		//Then
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String before = ring.owner("Order-" + i);
+			String after = grown.owner("Order-" + i);
+			if (!before.equals(after)) {
+				assertEquals("d", after);
+				moved++;
+			}
+		}
+		assertTrue("Moved " + moved, Math.abs(moved - KEYS / 4) < KEYS / 4 / 5);
+	}
+
+	@Test
+	public void testRemovingNodeMovesOnlyItsKeys() {
+		//Given
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), VIRTUAL_NODES);
+
+		//When
+		ConsistentHashRing shrunk = ring.withoutNode("b");
+
+		//Then
+		for (int i = 0; i < KEYS; i++) {
+			String before = ring.owner("Order-" + i);
+			if (!before.equals("b")) {
+				assertEquals(before, shrunk.owner("Order-" + i));
+			}
+		}
+		assertEquals(Arrays.asList("a", "c", "d"), Arrays.asList(shrunk.getNodes().toArray()));
+	}
+
+	@Test
+	public void testOwnerDoesNotDependOnNodeOrder() {
+		//Given
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c"), VIRTUAL_NODES);
+		ConsistentHashRing reversed = new ConsistentHashRing(Arrays.asList("c", "b", "a"), VIRTUAL_NODES);
+
+		//Then
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(ring.owner("Order-" + i), reversed.owner("Order-" + i));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testEmptyRingHasNoOwner() {
+		new ConsistentHashRing(Collections.emptyList(), VIRTUAL_NODES).owner("Order");
+	}
+}
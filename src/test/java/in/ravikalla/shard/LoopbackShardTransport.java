@@ -0,0 +1,123 @@
+package in.ravikalla.shard;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import in.ravikalla.model.BatchResult;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+
+/**
+ * In-process {@link ShardTransport} calling the {@link LocalShard} of the other nodes directly, with
+ * the same {@link ShardMessages} the HTTP transport sends, so orders cross nodes as copies.
+ * Nodes can be taken down to make them unreachable.
+ *
+ * @author - Ravi Kalla
+ */
+class LoopbackShardTransport implements ShardTransport {
+
+	private final Map<String, LocalShard> nodes = new ConcurrentHashMap<>();
+
+	void up(String node, LocalShard localShard) {
+		nodes.put(node, localShard);
+	}
+
+	void down(String node) {
+		nodes.remove(node);
+	}
+
+	@Override
+	public BatchResult initOrders(String node, List<OrderRequest> requests) {
+		ShardMessages.Reader request = wire(new ShardMessages.Writer().writeRequests(requests));
+		return wire(new ShardMessages.Writer().writeResult(shard(node).initOrders(request.readRequests())))
+				.readResult();
+	}
+
+	@Override
+	public BatchResult addDiscounts(String node, List<String> descriptions, List<Long> ids, Discount discount) {
+		ShardMessages.Reader request = wire(new ShardMessages.Writer().writeDescriptions(descriptions)
+				.writeDiscount(discount).writeIds(ids));
+		List<String> read = request.readDescriptions();
+		Discount readDiscount = request.readDiscount();
+		return wire(new ShardMessages.Writer().writeResult(
+				shard(node).addDiscounts(read, request.readIds(), readDiscount))).readResult();
+	}
+
+	@Override
+	public BatchResult markSentAll(String node, List<String> descriptions, List<Long> ids, Date sendDate,
+			List<String> idempotencyKeys) {
+		ShardMessages.Reader request = wire(new ShardMessages.Writer().writeDescriptions(descriptions)
+				.writeDate(sendDate).writeIdempotencyKeys(idempotencyKeys).writeIds(ids));
+		List<String> read = request.readDescriptions();
+		Date date = request.readDate();
+		List<String> keys = request.readIdempotencyKeys();
+		return wire(new ShardMessages.Writer().writeResult(shard(node).markSentAll(read, request.readIds(), date,
+				keys))).readResult();
+	}
+
+	@Override
+	public BatchResult markDeliveredAll(String node, List<String> descriptions, List<Long> ids, Date deliverDate,
+			List<String> idempotencyKeys) {
+		ShardMessages.Reader request = wire(new ShardMessages.Writer().writeDescriptions(descriptions)
+				.writeDate(deliverDate).writeIdempotencyKeys(idempotencyKeys).writeIds(ids));
+		List<String> read = request.readDescriptions();
+		Date date = request.readDate();
+		List<String> keys = request.readIdempotencyKeys();
+		return wire(new ShardMessages.Writer().writeResult(shard(node).markDeliveredAll(read, request.readIds(),
+				date, keys))).readResult();
+	}
+
+	@Override
+	public Order find(String node, String description) {
+		ShardMessages.Reader request = wire(new ShardMessages.Writer()
+				.writeDescriptions(Collections.singletonList(description)));
+		return wire(new ShardMessages.Writer().writeOrder(shard(node).find(request.readDescriptions().get(0))))
+				.readOrder();
+	}
+
+	@Override
+	public Order findById(String node, long id) {
+		ShardMessages.Reader request = wire(new ShardMessages.Writer().writeIds(Collections.singletonList(id)));
+		return wire(new ShardMessages.Writer().writeOrder(shard(node).findById(request.readIds().get(0))))
+				.readOrder();
+	}
+
+	@Override
+	public int transfer(String node, Collection<Order> orders) {
+		ShardMessages.Reader request = wire(new ShardMessages.Writer().writeOrders(orders));
+		return wire(new ShardMessages.Writer().writeCount(shard(node).transfer(request.readOrders())))
+				.readCount();
+	}
+
+	@Override
+	public void handedOver(String node, String from, Collection<String> ringNodes) {
+		List<String> descriptions = new ArrayList<>(ringNodes.size() + 1);
+		descriptions.add(from);
+		descriptions.addAll(ringNodes);
+		List<String> read = wire(new ShardMessages.Writer().writeDescriptions(descriptions)).readDescriptions();
+		shard(node).handedOver(read.get(0), read.subList(1, read.size()));
+	}
+
+	private LocalShard shard(String node) {
+		LocalShard localShard = nodes.get(node);
+		if (localShard == null) {
+			throw new UncheckedIOException("Node " + node + " unreachable", new IOException("Connection refused"));
+		}
+		return localShard;
+	}
+
+	/**
+	 * Requests and responses go through their bytes, as over HTTP.
+	 */
+	private static ShardMessages.Reader wire(ShardMessages.Writer message) {
+		return new ShardMessages.Reader(message.toByteArray());
+	}
+}
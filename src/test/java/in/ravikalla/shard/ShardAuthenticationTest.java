@@ -0,0 +1,30 @@
+package in.ravikalla.shard;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class ShardAuthenticationTest {
+
+	@Test
+	public void onlyTheSecretOfTheRingShouldBeAuthenticated() {
+		//Given
+		ShardAuthentication authentication = new ShardAuthentication("s3cret");
+
+		//Then
+		assertTrue(authentication.isAuthenticated("s3cret"));
+		assertFalse(authentication.isAuthenticated(null));
+		assertFalse(authentication.isAuthenticated(""));
+		assertFalse(authentication.isAuthenticated("s3cre"));
+		assertFalse(authentication.isAuthenticated("s3cret "));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptySecretShouldBeRefused() {
+		new ShardAuthentication("");
+	}
+}
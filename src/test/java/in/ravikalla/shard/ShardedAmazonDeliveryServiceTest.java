@@ -0,0 +1,481 @@
+package in.ravikalla.shard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import in.ravikalla.admission.AdaptiveConcurrencyLimit;
+import in.ravikalla.admission.AdmissionControl;
+import in.ravikalla.admission.TokenBucket;
+import in.ravikalla.config.DeliveryEstimationProperties;
+import in.ravikalla.exception.OrderAlreadyExistsException;
+import in.ravikalla.exception.OrderException;
+import in.ravikalla.exception.OrderRejectedException;
+import in.ravikalla.exception.OrderRejectedException.Reason;
+import in.ravikalla.external.service.DeliveryScoreService;
+import in.ravikalla.external.service.impl.OrderStorageServiceImpl;
+import in.ravikalla.idempotency.IdempotencyTable;
+import in.ravikalla.metrics.OrderMetrics;
+import in.ravikalla.model.BatchResult;
+import in.ravikalla.model.Discount;
+import in.ravikalla.model.Order;
+import in.ravikalla.model.OrderRequest;
+import in.ravikalla.model.OrderState;
+import in.ravikalla.service.NotificationService;
+import in.ravikalla.service.impl.AmazonDeliveryServiceImpl;
+import in.ravikalla.service.impl.DeliveryEstimationServiceImpl;
+import in.ravikalla.util.SnowflakeIdGenerator;
+
+/**
+ * Nodes running in-process over a {@link LoopbackShardTransport}.
+ *
+ * @author - Ravi Kalla
+ */
+public class ShardedAmazonDeliveryServiceTest {
+
+	private static final int ORDERS = 1000;
+	private static final int VIRTUAL_NODES = 64;
+	private static final int TRANSFER_BATCH_SIZE = 100;
+	private static final double TEST_PRODUCT_PRICE = 150.0;
+	private static final List<String> NODES = Arrays.asList("http://node1", "http://node2", "http://node3");
+
+	private LoopbackShardTransport transport;
+	private Map<String, Node> nodes;
+
+	@Before
+	public void setUp() {
+		transport = new LoopbackShardTransport();
+		nodes = new HashMap<>();
+		for (String node : NODES) {
+			start(node, NODES);
+		}
+	}
+
+	@Test
+	public void testOrdersAreStoredOnlyOnTheirOwner() throws OrderAlreadyExistsException {
+		//Given
+		Node entry = nodes.get("http://node1");
+
+		//When
+		for (int i = 0; i < ORDERS; i++) {
+			entry.service.initOrder("Order-" + i, TEST_PRODUCT_PRICE, i % 2 == 0);
+		}
+
+		//Then
+		assertEquals(ORDERS, entry.service.getLocalOrders() + entry.service.getForwardedOrders());
+		assertTrue(entry.service.getForwardedOrders() > ORDERS / 2);
+		for (int i = 0; i < ORDERS; i++) {
+			String owner = entry.membership.owner("Order-" + i);
+			for (Node node : nodes.values()) {
+				assertEquals(node.self.equals(owner), node.storage.find("Order-" + i) != null);
+				assertEquals("Order-" + i, node.service.find("Order-" + i).getDescription());
+			}
+		}
+	}
+
+	@Test(expected = OrderAlreadyExistsException.class)
+	public void testDuplicateIsDetectedOnAnotherNode() throws OrderAlreadyExistsException {
+		//Given
+		String description = remoteDescription("http://node1");
+		nodes.get("http://node2").service.initOrder(description, TEST_PRODUCT_PRICE, false);
+
+		//When
+		nodes.get("http://node1").service.initOrder(description, TEST_PRODUCT_PRICE, false);
+	}
+
+	@Test
+	public void testLifecycleAcrossNodes() throws OrderAlreadyExistsException, OrderException {
+		//Given
+		String description = remoteDescription("http://node1");
+		String owner = nodes.get("http://node1").membership.owner(description);
+		nodes.get("http://node1").service.initOrder(description, TEST_PRODUCT_PRICE, true);
+		Node caller = nodes.get("http://node1");
+
+		//When
+		Order order = caller.service.find(description);
+		caller.service.addDiscount(order, new Discount("Promo", 10.0));
+		caller.service.markSent(order, new Date());
+		caller.service.markDelivered(order, new Date());
+
+		//Then
+		Order stored = nodes.get(owner).storage.find(description);
+		assertEquals(OrderState.DELIVERED, order.getState());
+		assertEquals(OrderState.DELIVERED, stored.getState());
+		assertEquals(13500, order.getFinalPriceCents());
+		assertEquals(stored.getFinalPriceCents(), order.getFinalPriceCents());
+		assertEquals(stored.getEstimatedDeliveryMillis(), order.getEstimatedDeliveryMillis());
+		assertEquals(1, order.getDiscounts().size());
+	}
+
+	@Test
+	public void testRetryWithIdempotencyKeyGetsFirstOutcomeOnAnyNode()
+			throws OrderAlreadyExistsException, OrderException {
+		//Given
+		String description = remoteDescription("http://node1");
+		Node caller = nodes.get("http://node1");
+		Node owner = nodes.get(caller.membership.owner(description));
+		caller.service.initOrder(description, TEST_PRODUCT_PRICE, true);
+		Order order = caller.service.find(description);
+		caller.service.markSent(order, new Date(), "send-1");
+		caller.service.markDelivered(order, new Date(), "deliver-1");
+
+		//When - retried through the first node and through the owner
+		caller.service.markDelivered(caller.service.find(description), new Date(), "deliver-1");
+		owner.service.markDelivered(owner.service.find(description), new Date(), "deliver-1");
+		caller.service.markSent(order, new Date(), "send-1");
+
+		//Then
+		assertEquals(OrderState.DELIVERED, order.getState());
+		verify(owner.scoreService).submitDeliveryPoints(anyLong());
+	}
+
+	@Test(expected = OrderException.class)
+	public void testTransitionFailsOnOwnerAsLocally() throws OrderAlreadyExistsException, OrderException {
+		//Given
+		String description = remoteDescription("http://node1");
+		Node caller = nodes.get("http://node1");
+		Order order = caller.service.initOrder(description, TEST_PRODUCT_PRICE, false);
+
+		//When
+		caller.service.markDelivered(order, new Date());
+	}
+
+	@Test
+	public void testOrdersSharingDescriptionAreReachedByIdAcrossNodes()
+			throws OrderAlreadyExistsException, OrderException {
+		//Given - descriptions are not unique, both orders live on another node than the caller
+		nodes.clear();
+		for (String node : NODES) {
+			start(node, NODES, false);
+		}
+		String description = remoteDescription("http://node1");
+		Node caller = nodes.get("http://node1");
+		Node owner = nodes.get(caller.membership.owner(description));
+		Order first = caller.service.initOrder(description, TEST_PRODUCT_PRICE, false);
+		Order second = caller.service.initOrder(description, TEST_PRODUCT_PRICE, false);
+
+		//When
+		Order found = caller.service.findById(first.getId());
+		caller.service.markSent(found, new Date());
+
+		//Then - only the order of the identifier is sent
+		assertEquals(description, found.getDescription());
+		assertEquals(OrderState.SENT, owner.storage.findById(first.getId()).getState());
+		assertEquals(OrderState.CREATED, owner.storage.findById(second.getId()).getState());
+		assertEquals(OrderState.CREATED, caller.service.findById(second.getId()).getState());
+		assertNull(caller.storage.findById(first.getId()));
+		assertNull(caller.service.findById(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testBatchesAreSplitByOwnerAndKeepTheirOrder() {
+		//Given
+		Node caller = nodes.get("http://node2");
+		List<OrderRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			requests.add(new OrderRequest("Order-" + i, TEST_PRODUCT_PRICE, false));
+		}
+		requests.add(new OrderRequest("Order-7", TEST_PRODUCT_PRICE, false));
+
+		//When
+		BatchResult created = caller.service.initOrders(requests);
+		List<Order> orders = created.getSucceeded();
+		orders.add(0, orders.get(3));
+		BatchResult sent = caller.service.markSentAll(orders, new Date());
+
+		//Then
+		assertEquals(31, created.getItems().size());
+		for (int i = 0; i < 30; i++) {
+			assertEquals("Order-" + i, created.getItems().get(i).getOrder().getDescription());
+		}
+		assertTrue(created.getItems().get(30).getFailure() instanceof OrderAlreadyExistsException);
+
+		assertEquals(31, sent.getItems().size());
+		assertEquals(1, sent.getFailed().size());
+		for (int i = 0; i < 30; i++) {
+			assertEquals(OrderState.SENT, caller.service.find("Order-" + i).getState());
+			assertEquals(OrderState.SENT, orders.get(i + 1).getState());
+		}
+	}
+
+	@Test
+	public void testUnreachableOwnerFailsOnlyItsOrders() {
+		//Given
+		Node caller = nodes.get("http://node1");
+		transport.down("http://node3");
+		List<OrderRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			requests.add(new OrderRequest("Order-" + i, TEST_PRODUCT_PRICE, false));
+		}
+
+		//When
+		BatchResult result = caller.service.initOrders(requests);
+
+		//Then
+		for (int i = 0; i < 100; i++) {
+			BatchResult.Item item = result.getItems().get(i);
+			boolean unreachable = caller.membership.owner("Order-" + i).equals("http://node3");
+			assertEquals(unreachable, item.getFailure() instanceof UncheckedIOException);
+			assertEquals(unreachable ? requests.get(i) : null, item.getRequest());
+		}
+		assertEquals(1, caller.service.getForwardFailures());
+	}
+
+	@Test
+	public void testForwardedOrdersAreAdmittedByTheirOwner() throws OrderAlreadyExistsException {
+		//Given - an owner admitting two regular orders, none more for a long while
+		Node caller = nodes.get("http://node1");
+		Node owner = nodes.get("http://node2");
+		AdmissionControl admissionControl = new AdmissionControl(new TokenBucket(Clock.systemUTC(), 0.001, 2),
+				new TokenBucket(Clock.systemUTC(), 0.001, 2), new AdaptiveConcurrencyLimit(10, 1, 10, 2.0, 0.5, 100),
+				0.2);
+		Whitebox.setInternalState(owner.delivery, "admissionControl", Optional.of(admissionControl));
+		List<String> descriptions = new ArrayList<>();
+		for (int i = 0; descriptions.size() < 4; i++) {
+			if (caller.membership.owner("Order-" + i).equals(owner.self)) {
+				descriptions.add("Order-" + i);
+			}
+		}
+		caller.service.initOrder(descriptions.get(0), TEST_PRODUCT_PRICE, false);
+
+		//When
+		BatchResult result = caller.service.initOrders(Arrays.asList(
+				new OrderRequest(descriptions.get(1), TEST_PRODUCT_PRICE, false),
+				new OrderRequest(descriptions.get(2), TEST_PRODUCT_PRICE, false)));
+
+		//Then
+		assertTrue(result.getItems().get(0).isSucceeded());
+		OrderRejectedException rejection = (OrderRejectedException) result.getItems().get(1).getFailure();
+		assertEquals(Reason.RATE_LIMITED, rejection.getReason());
+		assertTrue(rejection.getRetryAfterMillis() > 0);
+		try {
+			caller.service.initOrder(descriptions.get(3), TEST_PRODUCT_PRICE, false);
+			fail("Expected " + Reason.RATE_LIMITED);
+		} catch (OrderRejectedException e) {
+			assertEquals(Reason.RATE_LIMITED, e.getReason());
+		}
+		assertNotNull(owner.storage.find(descriptions.get(1)));
+		assertNull(owner.storage.find(descriptions.get(2)));
+		assertNull(owner.storage.find(descriptions.get(3)));
+		assertEquals(2, admissionControl.getAdmitted());
+		assertEquals(2, admissionControl.getRateLimited());
+		assertEquals(0, admissionControl.getInFlight());
+	}
+
+	@Test
+	public void testAddingNodeMovesOnlyOrdersItNowOwns() throws OrderAlreadyExistsException {
+		//Given
+		for (int i = 0; i < ORDERS; i++) {
+			nodes.get("http://node1").service.initOrder("Order-" + i, TEST_PRODUCT_PRICE, false);
+		}
+		Map<String, String> ownersBefore = owners(nodes.get("http://node1").membership.getRing());
+		List<String> grown = new ArrayList<>(NODES);
+		grown.add("http://node4");
+		start("http://node4", grown);
+
+		//When
+		int moved = 0;
+		for (String node : NODES) {
+			moved += nodes.get(node).service.addNode("http://node4");
+		}
+
+		//Then
+		ConsistentHashRing ring = nodes.get("http://node4").membership.getRing();
+		assertEquals(ring.getNodes(), nodes.get("http://node1").membership.getRing().getNodes());
+		Map<String, String> ownersAfter = owners(ring);
+		int changed = 0;
+		for (int i = 0; i < ORDERS; i++) {
+			String description = "Order-" + i;
+			String owner = ownersAfter.get(description);
+			if (!owner.equals(ownersBefore.get(description))) {
+				assertEquals("http://node4", owner);
+				changed++;
+			}
+			for (Node node : nodes.values()) {
+				assertEquals(node.self.equals(owner), node.storage.find(description) != null);
+			}
+			assertNotNull(nodes.get("http://node2").service.find(description));
+		}
+		assertEquals(changed, moved);
+		assertTrue("Moved " + moved, moved > ORDERS / 8 && moved < ORDERS / 2);
+	}
+
+	@Test
+	public void testRemovingNodeHandsItsOrdersOver() throws OrderAlreadyExistsException {
+		//Given
+		for (int i = 0; i < ORDERS; i++) {
+			nodes.get("http://node1").service.initOrder("Order-" + i, TEST_PRODUCT_PRICE, false);
+		}
+
+		//When
+		for (String node : NODES) {
+			nodes.get(node).service.removeNode("http://node3");
+		}
+		transport.down("http://node3");
+
+		//Then
+		assertTrue(nodes.get("http://node3").storage.findByState(OrderState.CREATED).isEmpty());
+		for (int i = 0; i < ORDERS; i++) {
+			Order order = nodes.get("http://node1").service.find("Order-" + i);
+			assertNotNull(order);
+			assertFalse(nodes.get("http://node1").membership.owner("Order-" + i).equals("http://node3"));
+		}
+		assertNull(nodes.get("http://node2").service.find("Unknown"));
+	}
+
+	@Test
+	public void testNewOwnerChecksPreviousOwnerUntilItHandedOver() throws OrderAlreadyExistsException {
+		//Given - node1 took over part of the orders of node3, which has not handed them over yet
+		Node node1 = nodes.get("http://node1");
+		ConsistentHashRing shrunk = node1.membership.getRing().withoutNode("http://node3");
+		List<String> moving = new ArrayList<>();
+		for (int i = 0; moving.size() < 3; i++) {
+			if (node1.membership.owner("Order-" + i).equals("http://node3")
+					&& shrunk.owner("Order-" + i).equals("http://node1")) {
+				moving.add("Order-" + i);
+			}
+		}
+		node1.service.initOrder(moving.get(0), TEST_PRODUCT_PRICE, false);
+		node1.service.removeNode("http://node3");
+
+		//When - the order on node3 is created again through the new owner
+		try {
+			node1.service.initOrder(moving.get(0), TEST_PRODUCT_PRICE, false);
+			throw new AssertionError("The order on the previous owner should be found");
+		} catch (OrderAlreadyExistsException e) {
+			//Then - it is taken over instead
+			assertNotNull(node1.storage.find(moving.get(0)));
+		}
+		assertNotNull(node1.service.initOrder(moving.get(1), TEST_PRODUCT_PRICE, false));
+		assertEquals(Arrays.asList("http://node2", "http://node3"), Arrays.asList(node1.service.getHandingOver()));
+
+		//an unreachable previous owner fails the new orders it may have, until it is marked handed over
+		transport.down("http://node3");
+		try {
+			node1.service.initOrder(moving.get(2), TEST_PRODUCT_PRICE, false);
+			throw new AssertionError("The unreachable previous owner should fail the order");
+		} catch (UncheckedIOException e) {
+			assertNull(node1.storage.find(moving.get(2)));
+		}
+		node1.service.handedOver("http://node3");
+		nodes.get("http://node2").service.removeNode("http://node3");
+		assertEquals(0, node1.service.getHandingOver().length);
+		assertNotNull(node1.service.initOrder(moving.get(2), TEST_PRODUCT_PRICE, false));
+	}
+
+	@Test
+	public void testTransferReplacesOnlyCopiesBehindTheIncomingOne() throws OrderAlreadyExistsException, OrderException {
+		//Given - a node kept a copy from an earlier ring, the order went on on its owner
+		Node caller = nodes.get("http://node1");
+		String description = remoteDescription("http://node1");
+		String owner = caller.membership.owner(description);
+		Node keeper = nodes.get(owner.equals("http://node2") ? "http://node3" : "http://node2");
+		caller.service.initOrder(description, TEST_PRODUCT_PRICE, false);
+		Order stale = copy(caller.service.find(description));
+		keeper.storage.store(stale);
+		caller.service.markSent(caller.service.find(description), new Date());
+		Order sent = caller.service.find(description);
+
+		//When
+		int same = keeper.localShard.transfer(Arrays.asList(copy(stale)));
+		int newer = keeper.localShard.transfer(Arrays.asList(sent));
+		int older = keeper.localShard.transfer(Arrays.asList(copy(stale)));
+
+		//Then
+		assertEquals(0, same);
+		assertEquals(1, newer);
+		assertEquals(0, older);
+		assertTrue(stale.isSent());
+		assertEquals(OrderState.SENT, keeper.storage.find(description).getState());
+		assertEquals(1, keeper.storage.findByState(OrderState.SENT).size());
+		assertTrue(keeper.storage.findByState(OrderState.CREATED).isEmpty());
+	}
+
+	private void start(String self, List<String> members) {
+		start(self, members, true);
+	}
+
+	private void start(String self, List<String> members, boolean uniqueDescriptions) {
+		Node node = new Node(self, members, uniqueDescriptions);
+		nodes.put(self, node);
+		transport.up(self, node.localShard);
+	}
+
+	private String remoteDescription(String caller) {
+		ShardMembership membership = nodes.get(caller).membership;
+		for (int i = 0;; i++) {
+			if (!membership.isLocal("Order-" + i)) {
+				return "Order-" + i;
+			}
+		}
+	}
+
+	private static Order copy(Order order) {
+		return new ShardMessages.Reader(new ShardMessages.Writer().writeOrders(Arrays.asList(order)).toByteArray())
+				.readOrders().get(0);
+	}
+
+	private static Map<String, String> owners(ConsistentHashRing ring) {
+		Map<String, String> owners = new HashMap<>();
+		for (int i = 0; i < ORDERS; i++) {
+			owners.put("Order-" + i, ring.owner("Order-" + i));
+		}
+		return owners;
+	}
+
+	private class Node {
+
+		private final String self;
+		private final OrderStorageServiceImpl storage;
+		private final AmazonDeliveryServiceImpl delivery;
+		private final DeliveryScoreService scoreService = mock(DeliveryScoreService.class);
+		private final ShardMembership membership;
+		private final LocalShard localShard;
+		private final ShardedAmazonDeliveryService service;
+
+		private Node(String self, List<String> members, boolean uniqueDescriptions) {
+			this.self = self;
+			//orders handed over keep their identifiers, every node generates them with its own number
+			SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(Clock.systemUTC(), nodes.size());
+			storage = new OrderStorageServiceImpl(idGenerator, uniqueDescriptions);
+			AmazonDeliveryServiceImpl local = new AmazonDeliveryServiceImpl();
+			Whitebox.setInternalState(local, "idGenerator", idGenerator);
+			Whitebox.setInternalState(local, "deliveryScoreService", scoreService);
+			Whitebox.setInternalState(local, "idempotencyTable",
+					Optional.of(new IdempotencyTable(60_000, 1000, ORDERS)));
+			Whitebox.setInternalState(local, "orderStorageService", storage);
+			Whitebox.setInternalState(local, "notificationService", (NotificationService) order -> {
+			});
+			Whitebox.setInternalState(local, "deliveryEstimationService",
+					new DeliveryEstimationServiceImpl(new DeliveryEstimationProperties(), Clock.systemUTC()));
+			Whitebox.setInternalState(local, "orderMetrics", new OrderMetrics());
+			Whitebox.setInternalState(local, "uniqueDescriptions", uniqueDescriptions);
+
+			membership = new ShardMembership(self, members.toArray(new String[0]), VIRTUAL_NODES);
+			delivery = local;
+			localShard = new LocalShard(local, storage, membership, transport, TRANSFER_BATCH_SIZE);
+			Whitebox.setInternalState(localShard, "uniqueDescriptions", uniqueDescriptions);
+			service = new ShardedAmazonDeliveryService(local, membership, transport, localShard);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package in.ravikalla.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author - Ravi Kalla
+ */
+public class LongIndexTest {
+
+	private static final int OPERATIONS = 200_000;
+
+	@Test
+	public void shouldMatchHashMapUnderRandomPutsAndRemovals() {
+		//Given - few distinct keys, so that runs collide and removals shift entries back
+		Random random = new Random(42);
+		LongIndex<String> index = new LongIndex<>(4);
+		Map<Long, String> expected = new HashMap<>();
+
+		for (int i = 0; i < OPERATIONS; i++) {
+			long key = 1 + random.nextInt(5_000);
+
+			//When - then
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), index.remove(key));
+			} else {
+				String value = "Value-" + i;
+				assertEquals(expected.put(key, value), index.put(key, value));
+			}
+			assertEquals(expected.size(), index.getSize());
+		}
+		for (long key = 1; key <= 5_000; key++) {
+			assertEquals(expected.get(key), index.get(key));
+		}
+	}
+
+	@Test
+	public void getShouldFindSequentialIdentifiersAfterGrowth() {
+		//Given
+		LongIndex<Long> index = new LongIndex<>(16);
+		long first = 1L << 22;
+
+		//When
+		for (long id = first; id < first + 100_000; id++) {
+			index.put(id, id);
+		}
+
+		//Then
+		assertEquals(100_000, index.getSize());
+		for (long id = first; id < first + 100_000; id++) {
+			assertEquals(Long.valueOf(id), index.get(id));
+		}
+		assertNull(index.get(first - 1));
+		assertNull(index.get(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void putShouldRejectReservedKey() {
+		new LongIndex<String>(16).put(0, "Value");
+	}
+}